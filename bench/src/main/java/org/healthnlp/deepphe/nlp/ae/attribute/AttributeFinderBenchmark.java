@@ -0,0 +1,44 @@
+package org.healthnlp.deepphe.nlp.ae.attribute;
+
+import org.healthnlp.deepphe.omop.sample.SyntheticReports;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size and nuclear grade extraction over whole synthetic reports, as SizeFinderAe and NuclearGradeFinder see them.
+ *
+ * @since {10/18/2026}
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class AttributeFinderBenchmark {
+
+   @Param( { "RADIOLOGY", "PATHOLOGY" } )
+   public SyntheticReports.Kind kind;
+
+   @Param( { "4000", "40000" } )
+   public int length;
+
+   private String _text;
+
+   @Setup
+   public void setup() {
+      _text = new SyntheticReports( 42 ).next( kind, length );
+   }
+
+   @Benchmark
+   public Object getSizes() {
+      return SizeFinderAe.SizeFinder.getSizes( _text );
+   }
+
+   @Benchmark
+   public Object getNuclearGrades() {
+      return NuclearGradeFinder.getNuclearGrades( _text );
+   }
+
+}
@@ -0,0 +1,51 @@
+package org.healthnlp.deepphe.omop;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mention serialization.  A new Mention per operation shows the cost when nothing is cached,
+ * the shared Mention the cost of repeated calls.
+ *
+ * @since {10/18/2026}
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MentionBenchmark {
+
+   private Mention _mention;
+
+   @Setup
+   public void setup() {
+      _mention = create();
+   }
+
+   static private Mention create() {
+      return new Mention( "Disease_Or_Disorder", "Invasive_Ductal_Carcinoma", "C1134719",
+                          Arrays.asList( "T191", "T047" ), "210", "236", "Invasive Ductal Carcinoma",
+                          "False", "False", "False", "False", "False", ".93",
+                          "invasive ductal carcinoma", "right breast core biopsy: invasive ductal carcinoma, grade 2" );
+   }
+
+   @Benchmark
+   public String toStringNew() {
+      return create().toString();
+   }
+
+   @Benchmark
+   public String toStringRepeated() {
+      return _mention.toString();
+   }
+
+   @Benchmark
+   public String getTuiAsJsonArrayNew() {
+      return create().getTuiAsJsonArray();
+   }
+
+}
@@ -0,0 +1,63 @@
+package org.healthnlp.deepphe.omop;
+
+import org.apache.uima.UIMAException;
+import org.healthnlp.deepphe.omop.sample.SyntheticReports;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole OmopDocRunner pipeline over synthetic reports shaped like the sample note in DpheOmopPipelineBuilder.
+ * Resources are found as {@link PiperResources} describes, e.g. -Ddphe.omop.resources=/app/resources
+ *
+ * @since {10/18/2026}
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 10 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class PipelineBenchmark {
+
+   static private final int REPORTS = 64;
+
+   @Param( { "pipeline/OmopDocRunner.piper" } )
+   public String piper;
+
+   @Param( { "RADIOLOGY", "PATHOLOGY" } )
+   public SyntheticReports.Kind kind;
+
+   @Param( { "4000" } )
+   public int length;
+
+   private DpheOmopPipelineBuilder _pipeline;
+   private String[] _reports;
+   private int _next;
+
+   @Setup( Level.Trial )
+   public void setup() throws UIMAException, IOException {
+      _pipeline = new DpheOmopPipelineBuilder( piper, 1, 0 );
+      _pipeline.initialize();
+      final SyntheticReports reports = new SyntheticReports( 42 );
+      _reports = new String[ REPORTS ];
+      for ( int i = 0; i < REPORTS; i++ ) {
+         _reports[ i ] = reports.next( kind, length );
+      }
+   }
+
+   @TearDown( Level.Trial )
+   public void tearDown() {
+      _pipeline.close();
+   }
+
+   @Benchmark
+   public List<Mention> run() throws UIMAException {
+      final String report = _reports[ _next ];
+      _next = ( _next + 1 ) % REPORTS;
+      return _pipeline.run( report );
+   }
+
+}
@@ -0,0 +1,37 @@
+package org.healthnlp.deepphe.omop.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line, as the JMH main does, always with the gc profiler
+ * so that every result has an allocation rate (gc.alloc.rate.norm is bytes per operation).
+ * <pre>
+ * java -jar bench/target/benchmarks.jar                         every benchmark except the full pipeline
+ * java -jar bench/target/benchmarks.jar SizeFinder              benchmarks matching a pattern
+ * java -Ddphe.omop.resources=/app/resources -jar bench/target/benchmarks.jar Pipeline
+ * </pre>
+ *
+ * @since {10/18/2026}
+ */
+final public class DpheOmopBenchmarks {
+
+   private DpheOmopBenchmarks() {
+   }
+
+   public static void main( final String... args ) throws RunnerException, CommandLineOptionException {
+      final CommandLineOptions cli = new CommandLineOptions( args );
+      final OptionsBuilder options = new OptionsBuilder();
+      options.parent( cli ).addProfiler( GCProfiler.class );
+      if ( cli.getIncludes().isEmpty() ) {
+         // The full pipeline needs the ontology and models, so it only runs when asked for.
+         options.exclude( "PipelineBenchmark" );
+      }
+      new Runner( options.build() ).run();
+   }
+
+}
@@ -0,0 +1,82 @@
+package org.healthnlp.deepphe.omop.load;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counts garbage collection pauses from the collectors' notifications while open.
+ * Collections that run concurrently with the application, e.g. G1 or ZGC concurrent cycles, are not pauses.
+ *
+ * @since {10/18/2026}
+ */
+final class GcPauses implements NotificationListener, AutoCloseable {
+
+   private final List<NotificationEmitter> _emitters = new ArrayList<>();
+   private long _count;
+   private long _totalMillis;
+   private long _maxMillis;
+
+   GcPauses() {
+      for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() ) {
+         if ( collector instanceof NotificationEmitter ) {
+            final NotificationEmitter emitter = (NotificationEmitter)collector;
+            emitter.addNotificationListener( this, null, null );
+            _emitters.add( emitter );
+         }
+      }
+   }
+
+   @Override
+   public void handleNotification( final Notification notification, final Object handback ) {
+      if ( !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals( notification.getType() ) ) {
+         return;
+      }
+      final GarbageCollectionNotificationInfo info
+            = GarbageCollectionNotificationInfo.from( (CompositeData)notification.getUserData() );
+      final String name = ( info.getGcName() + ' ' + info.getGcAction() ).toLowerCase( Locale.ROOT );
+      if ( name.contains( "concurrent" ) || name.contains( "cycles" ) ) {
+         return;
+      }
+      final long millis = info.getGcInfo().getDuration();
+      synchronized ( this ) {
+         _count++;
+         _totalMillis += millis;
+         _maxMillis = Math.max( _maxMillis, millis );
+      }
+   }
+
+   synchronized long getCount() {
+      return _count;
+   }
+
+   synchronized long getTotalMillis() {
+      return _totalMillis;
+   }
+
+   synchronized long getMaxMillis() {
+      return _maxMillis;
+   }
+
+   @Override
+   public void close() {
+      for ( NotificationEmitter emitter : _emitters ) {
+         try {
+            emitter.removeNotificationListener( this );
+         } catch ( ListenerNotFoundException lnfE ) {
+            // Already removed.
+         }
+      }
+      _emitters.clear();
+   }
+
+}
@@ -0,0 +1,396 @@
+package org.healthnlp.deepphe.omop.load;
+
+import com.google.gson.GsonBuilder;
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+import org.healthnlp.deepphe.omop.DpheOmopPipelineBuilder;
+import org.healthnlp.deepphe.omop.PiperResources;
+import org.healthnlp.deepphe.omop.WarmUp;
+import org.healthnlp.deepphe.omop.sample.SyntheticReports;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes synthetic reports through an initialized pipeline and reports throughput, latency percentiles,
+ * garbage collection pauses and peak memory.  Everything runs in one JVM on one machine, without network or PHI.
+ * <p>
+ * Closed loop (rate 0) keeps a fixed number of reports in flight, which measures the most throughput.
+ * At a fixed rate reports are started on schedule whether or not earlier ones are done, and latency is measured
+ * from the scheduled start, so that a pipeline that falls behind shows the delay rather than hiding it.
+ * Every report is processed once, so a result cache does not answer any of them.
+ * <p>
+ * The generated reports can also be written to a directory, to time a DpheOmopDocRunner run on the same corpus.
+ *
+ * @since {10/18/2026}
+ */
+final public class LoadTest {
+
+   static private final Logger LOGGER = Logger.getLogger( "LoadTest" );
+
+   static private final String PROC_STATUS = "/proc/self/status";
+   static private final int REPORTS_PER_PATIENT = 10;
+
+   private final DpheOmopPipelineBuilder _pipeline;
+   private final List<String> _reports;
+   private final int _concurrency;
+   private final double _rate;
+
+   /**
+    * @param pipeline    initialized pipeline.
+    * @param reports     reports to process, each once.
+    * @param concurrency reports in flight in a closed loop, or threads submitting to the pipeline at a fixed rate.
+    * @param rate        reports started per second, or 0 for a closed loop.
+    */
+   public LoadTest( final DpheOmopPipelineBuilder pipeline, final List<String> reports, final int concurrency,
+                    final double rate ) {
+      _pipeline = pipeline;
+      _reports = reports;
+      _concurrency = concurrency;
+      _rate = rate;
+   }
+
+   /**
+    * @param count          number of reports.
+    * @param seed           the same seed gives the same reports.
+    * @param kind           kind of every report, or null for alternating radiology and pathology.
+    * @param minLength      least characters of a report.
+    * @param maxLength      most characters a report is made to have, chosen evenly between the least and this.
+    * @param mentionDensity fraction of sentences about findings.
+    * @param sizeRate       fraction of finding sentences that are tumor sizes.
+    * @param gradeRate      fraction of finding sentences that are nuclear grades.
+    * @param extraSections  sections added to each report, with headings from the sectionizer's sections.txt.
+    * @return synthetic reports.
+    */
+   static public List<String> createReports( final int count, final long seed, final SyntheticReports.Kind kind,
+                                             final int minLength, final int maxLength,
+                                             final double mentionDensity, final double sizeRate,
+                                             final double gradeRate, final int extraSections ) {
+      final SyntheticReports generator = new SyntheticReports( seed ).setMentionDensity( mentionDensity )
+                                                                     .setSizeRate( sizeRate )
+                                                                     .setGradeRate( gradeRate )
+                                                                     .setExtraSections( extraSections );
+      final Random lengths = new Random( seed );
+      final List<String> reports = new ArrayList<>( count );
+      for ( int i = 0; i < count; i++ ) {
+         final SyntheticReports.Kind reportKind = kind != null ? kind : SyntheticReports.Kind.values()[ i % 2 ];
+         final int length = maxLength > minLength ? minLength + lengths.nextInt( maxLength - minLength + 1 )
+                                                  : minLength;
+         reports.add( generator.next( reportKind, length ) );
+      }
+      return reports;
+   }
+
+   /**
+    * Write reports as patient directories of {@value #REPORTS_PER_PATIENT} notes, the layout DpheOmopDocRunner reads.
+    */
+   static public void writeReports( final List<String> reports, final Path dir ) throws IOException {
+      for ( int i = 0; i < reports.size(); i++ ) {
+         final Path patientDir = dir.resolve( String.format( "patient%05d", i / REPORTS_PER_PATIENT ) );
+         Files.createDirectories( patientDir );
+         Files.write( patientDir.resolve( String.format( "report%06d.txt", i ) ),
+               reports.get( i ).getBytes( StandardCharsets.UTF_8 ) );
+      }
+   }
+
+   /**
+    * Process every report once.
+    *
+    * @return throughput, latency and memory of the run.
+    */
+   public Result run() throws InterruptedException {
+      final long[] latencies = new long[ _reports.size() ];
+      final AtomicInteger failures = new AtomicInteger();
+      final AtomicLong chars = new AtomicLong();
+      final ExecutorService executor = Executors.newFixedThreadPool( _concurrency );
+      resetPeakHeap();
+      final long start;
+      final long nanos;
+      try ( GcPauses pauses = new GcPauses() ) {
+         start = System.nanoTime();
+         if ( _rate > 0 ) {
+            final double interval = 1_000_000_000d / _rate;
+            for ( int i = 0; i < _reports.size(); i++ ) {
+               final long scheduled = start + (long)( i * interval );
+               final long wait = scheduled - System.nanoTime();
+               if ( wait > 0 ) {
+                  LockSupport.parkNanos( wait );
+               }
+               final int index = i;
+               executor.execute( () -> process( index, scheduled, latencies, failures, chars ) );
+            }
+         } else {
+            final AtomicInteger next = new AtomicInteger();
+            for ( int t = 0; t < _concurrency; t++ ) {
+               executor.execute( () -> {
+                  for ( int i = next.getAndIncrement(); i < _reports.size(); i = next.getAndIncrement() ) {
+                     process( i, System.nanoTime(), latencies, failures, chars );
+                  }
+               } );
+            }
+         }
+         executor.shutdown();
+         while ( !executor.awaitTermination( 30, TimeUnit.SECONDS ) ) {
+            LOGGER.info( "Waiting for reports to finish ..." );
+         }
+         nanos = System.nanoTime() - start;
+         return new Result( this, latencies, failures.get(), chars.get(), nanos, pauses );
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * A failed report is counted and has no latency.
+    */
+   private void process( final int index, final long scheduled, final long[] latencies, final AtomicInteger failures,
+                         final AtomicLong chars ) {
+      final String report = _reports.get( index );
+      try {
+         _pipeline.run( report );
+         latencies[ index ] = System.nanoTime() - scheduled;
+         chars.addAndGet( report.length() );
+      } catch ( UIMAException | RuntimeException e ) {
+         LOGGER.warn( "Report " + index + " failed: " + e.getMessage() );
+         latencies[ index ] = -1;
+         failures.incrementAndGet();
+      }
+   }
+
+   static private void resetPeakHeap() {
+      for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+         if ( pool.getType() == MemoryType.HEAP ) {
+            pool.resetPeakUsage();
+         }
+      }
+   }
+
+   /**
+    * @return the sum of the peak use of each heap pool, which can be more than the heap ever held at once.
+    */
+   static private long getPeakHeap() {
+      long peak = 0;
+      for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+         if ( pool.getType() == MemoryType.HEAP ) {
+            peak += pool.getPeakUsage().getUsed();
+         }
+      }
+      return peak;
+   }
+
+   /**
+    * @return the process's peak resident set size in bytes from /proc, which covers its whole life, or -1 off Linux.
+    */
+   static private long getPeakRss() {
+      final Path status = Paths.get( PROC_STATUS );
+      if ( !Files.isReadable( status ) ) {
+         return -1;
+      }
+      try ( BufferedReader reader = Files.newBufferedReader( status, StandardCharsets.UTF_8 ) ) {
+         String line = reader.readLine();
+         while ( line != null ) {
+            if ( line.startsWith( "VmHWM:" ) ) {
+               return Long.parseLong( line.substring( 6 ).replace( "kB", "" ).trim() ) * 1024;
+            }
+            line = reader.readLine();
+         }
+      } catch ( IOException | NumberFormatException e ) {
+         LOGGER.warn( "Could not read peak RSS: " + e.getMessage() );
+      }
+      return -1;
+   }
+
+   /**
+    * Results of one run.  Field names are those of the json report.
+    */
+   static public final class Result {
+      private final String release;
+      private final String javaVersion;
+      private final String mode;
+      private final int concurrency;
+      private final double rate;
+      private final int documents;
+      private final int failures;
+      private final double seconds;
+      private final double documentsPerSecond;
+      private final double kbPerSecond;
+      private final double meanMillis;
+      private final double p50Millis;
+      private final double p90Millis;
+      private final double p99Millis;
+      private final double maxMillis;
+      private final long gcPauses;
+      private final long gcPauseMillis;
+      private final long gcMaxPauseMillis;
+      private final long peakHeapMb;
+      private final long peakRssMb;
+
+      private Result( final LoadTest test, final long[] latencies, final int failures, final long chars,
+                      final long nanos, final GcPauses pauses ) {
+         final Package pkg = LoadTest.class.getPackage();
+         this.release = pkg == null ? null : pkg.getImplementationVersion();
+         this.javaVersion = System.getProperty( "java.version" );
+         this.mode = test._rate > 0 ? "rate" : "closed";
+         this.concurrency = test._concurrency;
+         this.rate = test._rate;
+         this.documents = latencies.length;
+         this.failures = failures;
+         this.seconds = nanos / 1e9;
+         final long[] sorted = Arrays.stream( latencies ).filter( l -> l >= 0 ).sorted().toArray();
+         this.documentsPerSecond = sorted.length / seconds;
+         this.kbPerSecond = chars / 1024d / seconds;
+         this.meanMillis = sorted.length == 0 ? 0 : Arrays.stream( sorted ).average().orElse( 0 ) / 1e6;
+         this.p50Millis = getPercentile( sorted, 0.5 );
+         this.p90Millis = getPercentile( sorted, 0.9 );
+         this.p99Millis = getPercentile( sorted, 0.99 );
+         this.maxMillis = sorted.length == 0 ? 0 : sorted[ sorted.length - 1 ] / 1e6;
+         this.gcPauses = pauses.getCount();
+         this.gcPauseMillis = pauses.getTotalMillis();
+         this.gcMaxPauseMillis = pauses.getMaxMillis();
+         this.peakHeapMb = getPeakHeap() / ( 1024 * 1024 );
+         final long rss = getPeakRss();
+         this.peakRssMb = rss < 0 ? -1 : rss / ( 1024 * 1024 );
+      }
+
+      /**
+       * Nearest rank percentile.
+       */
+      static private double getPercentile( final long[] sorted, final double fraction ) {
+         if ( sorted.length == 0 ) {
+            return 0;
+         }
+         final int rank = (int)Math.ceil( fraction * sorted.length );
+         return sorted[ Math.max( 0, rank - 1 ) ] / 1e6;
+      }
+
+      public double getDocumentsPerSecond() {
+         return documentsPerSecond;
+      }
+
+      public double getP50Millis() {
+         return p50Millis;
+      }
+
+      public double getP99Millis() {
+         return p99Millis;
+      }
+
+      public String toJson() {
+         return new GsonBuilder().setPrettyPrinting().create().toJson( this );
+      }
+
+      @Override
+      public String toString() {
+         return String.format( Locale.ROOT,
+               "%s loop, concurrency %d%s%n"
+               + "Documents         %d  (%d failed) in %.1f s%n"
+               + "Throughput        %.2f documents/s, %.1f KB/s%n"
+               + "Latency ms        mean %.1f  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n"
+               + "GC pauses         %d, %d ms total, %d ms longest%n"
+               + "Peak memory       heap %d MB, RSS %s",
+               mode.equals( "rate" ) ? "Fixed rate" : "Closed", concurrency,
+               mode.equals( "rate" ) ? String.format( Locale.ROOT, ", %.2f documents/s", rate ) : "",
+               documents, failures, seconds, documentsPerSecond, kbPerSecond,
+               meanMillis, p50Millis, p90Millis, p99Millis, maxMillis,
+               gcPauses, gcPauseMillis, gcMaxPauseMillis,
+               peakHeapMb, peakRssMb < 0 ? "unknown" : peakRssMb + " MB" );
+      }
+   }
+
+   public static void main( final String... args ) throws IOException, UIMAException, InterruptedException {
+      final Options options = new Options();
+      options.addOption( "p", "piper", true, "Piper file." );
+      options.addOption( "r", "resources", true, "Resource directory used in place of /app/resources in the piper." );
+      options.addOption( "c", "concurrency", true, "Reports in flight, or engines for a fixed rate.  Default 1" );
+      options.addOption( "rate", true, "Reports started per second, 0 for a closed loop.  Default 0" );
+      options.addOption( "n", "documents", true, "Reports to process.  Default 500" );
+      options.addOption( "kind", true, "RADIOLOGY, PATHOLOGY or MIXED.  Default MIXED" );
+      options.addOption( "length", true, "Least characters per report.  Default 4000" );
+      options.addOption( "maxLength", true, "Most characters per report.  Default the least" );
+      options.addOption( "density", true, "Fraction of sentences about findings.  Default 1" );
+      options.addOption( "sizes", true, "Fraction of finding sentences that are tumor sizes.  Default 0" );
+      options.addOption( "grades", true, "Fraction of finding sentences that are nuclear grades.  Default 0" );
+      options.addOption( "sections", true, "Sections added to each report from sections.txt.  Default 0" );
+      options.addOption( "seed", true, "Report seed.  Default 42" );
+      options.addOption( "w", "warmup", true, "Most warm-up reports before measuring, 0 for none.  Default "
+                                             + WarmUp.DOCUMENTS_PROPERTY + " or 200" );
+      options.addOption( "json", true, "File for the results as json, to compare runs." );
+      options.addOption( "generate", true, "Write the reports to this directory as patient directories and exit." );
+      final CommandLine cmd;
+      try {
+         cmd = new BasicParser().parse( options, args );
+      } catch ( ParseException pE ) {
+         System.err.println( "Error parsing command line arguments: " + pE.getMessage() );
+         new HelpFormatter().printHelp( "LoadTest", options );
+         System.exit( 1 );
+         return;
+      }
+      if ( !cmd.hasOption( "p" ) && !cmd.hasOption( "generate" ) ) {
+         new HelpFormatter().printHelp( "LoadTest", options );
+         System.exit( 1 );
+         return;
+      }
+      final String kind = cmd.getOptionValue( "kind", "MIXED" ).toUpperCase( Locale.ROOT );
+      final int length = Integer.parseInt( cmd.getOptionValue( "length", "4000" ) );
+      final List<String> reports = createReports(
+            Integer.parseInt( cmd.getOptionValue( "n", "500" ) ),
+            Long.parseLong( cmd.getOptionValue( "seed", "42" ) ),
+            kind.equals( "MIXED" ) ? null : SyntheticReports.Kind.valueOf( kind ),
+            length,
+            Integer.parseInt( cmd.getOptionValue( "maxLength", String.valueOf( length ) ) ),
+            Double.parseDouble( cmd.getOptionValue( "density", "1" ) ),
+            Double.parseDouble( cmd.getOptionValue( "sizes", "0" ) ),
+            Double.parseDouble( cmd.getOptionValue( "grades", "0" ) ),
+            Integer.parseInt( cmd.getOptionValue( "sections", "0" ) ) );
+      if ( cmd.hasOption( "generate" ) ) {
+         final Path dir = Paths.get( cmd.getOptionValue( "generate" ) );
+         writeReports( reports, dir );
+         System.out.println( "Wrote " + reports.size() + " reports to " + dir );
+         return;
+      }
+      final int concurrency = Integer.parseInt( cmd.getOptionValue( "c", "1" ) );
+      final DpheOmopPipelineBuilder pipeline = new DpheOmopPipelineBuilder(
+            cmd.getOptionValue( "p" ),
+            cmd.getOptionValue( "r", PiperResources.getResourceRoot() ),
+            concurrency,
+            0 );
+      pipeline.initialize();
+      if ( pipeline.getResultCache() != null ) {
+         LOGGER.warn( "A result cache is configured.  Reports are stored in it, which is counted in the results." );
+      }
+      try {
+         new WarmUp( pipeline,
+               Integer.parseInt( cmd.getOptionValue( "w", String.valueOf(
+                     Integer.getInteger( WarmUp.DOCUMENTS_PROPERTY, 200 ) ) ) ),
+               Long.getLong( WarmUp.SECONDS_PROPERTY, 300L ) * 1000 ).run();
+         final Result result = new LoadTest( pipeline, reports, concurrency,
+               Double.parseDouble( cmd.getOptionValue( "rate", "0" ) ) ).run();
+         System.out.println( result );
+         if ( cmd.hasOption( "json" ) ) {
+            Files.write( Paths.get( cmd.getOptionValue( "json" ) ), result.toJson().getBytes( StandardCharsets.UTF_8 ) );
+         }
+      } finally {
+         pipeline.close();
+      }
+   }
+
+}
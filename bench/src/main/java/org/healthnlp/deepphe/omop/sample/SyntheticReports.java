@@ -0,0 +1,292 @@
+package org.healthnlp.deepphe.omop.sample;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Makes fake radiology and pathology reports shaped like the sample note in
+ * {@link org.healthnlp.deepphe.omop.DpheOmopPipelineBuilder#main(String[])}: a header block and titled sections
+ * whose sentences hold the sizes, grades, receptor statuses and attributes that the pipeline looks for.
+ * Reports are made from a seed, so the same seed always gives the same reports.
+ * No real patient information is used.
+ * <p>
+ * By default every sentence is one of the sample-like sentences of its section.
+ * Mention density, extra size and grade sentences and extra sections with headings from the sectionizer's
+ * sections.txt can be set to shape a corpus.  Changing none of them gives the same reports as before.
+ *
+ * @since {10/18/2026}
+ */
+final public class SyntheticReports {
+
+   public enum Kind {
+      RADIOLOGY( "RAD" ),
+      PATHOLOGY( "SP" );
+
+      private final String _recordType;
+
+      Kind( final String recordType ) {
+         _recordType = recordType;
+      }
+   }
+
+   static private final String[] RADIOLOGY_SECTIONS = { "CLINICAL HISTORY:", "PROCEDURE:", "FINDINGS:",
+                                                        "IMPRESSION:" };
+   static private final String[] PATHOLOGY_SECTIONS = { "CLINICAL HISTORY:", "GROSS DESCRIPTION:",
+                                                        "MICROSCOPIC DESCRIPTION:", "FINAL DIAGNOSIS:" };
+   static private final String[] SIDES = { "right", "left" };
+   static private final String[] QUADRANTS = { "upper inner", "upper outer", "lower inner", "lower outer" };
+   static private final String[] CANCERS = { "breast cancer", "melanoma", "ovarian cancer", "colon cancer" };
+   static private final String[] RELATIVES = { "mother", "sister", "maternal aunt", "father" };
+   static private final String[] FILLERS = { "The images were reviewed at the workstation.",
+                                             "Results were discussed with the referring office by telephone.",
+                                             "Dictated on the date of service and signed electronically.",
+                                             "Please refer to the prior report for additional details." };
+   static private final String SECTIONS_RESOURCE = "org/healthnlp/deepphe/sections/sections.txt";
+   static private final String[] DEFAULT_HEADINGS = { "ADDENDUM", "COMMENT", "IMMUNOHISTOCHEMISTRY" };
+   static private List<String> _headings;
+
+   private final Random _random;
+   private int _reportCount;
+   private double _mentionDensity = 1;
+   private double _sizeRate;
+   private double _gradeRate;
+   private int _extraSections;
+
+   public SyntheticReports( final long seed ) {
+      _random = new Random( seed );
+   }
+
+   /**
+    * @param mentionDensity fraction of sentences about findings.  The rest are administrative.  Default 1.
+    */
+   public SyntheticReports setMentionDensity( final double mentionDensity ) {
+      _mentionDensity = mentionDensity;
+      return this;
+   }
+
+   /**
+    * @param sizeRate fraction of finding sentences that are replaced by a tumor size sentence.  Default 0.
+    */
+   public SyntheticReports setSizeRate( final double sizeRate ) {
+      _sizeRate = sizeRate;
+      return this;
+   }
+
+   /**
+    * @param gradeRate fraction of finding sentences that are replaced by a nuclear grade sentence.  Default 0.
+    */
+   public SyntheticReports setGradeRate( final double gradeRate ) {
+      _gradeRate = gradeRate;
+      return this;
+   }
+
+   /**
+    * @param extraSections sections added before the last, with headings from the sectionizer's sections.txt.
+    *                      Default 0.
+    */
+   public SyntheticReports setExtraSections( final int extraSections ) {
+      _extraSections = extraSections;
+      return this;
+   }
+
+   /**
+    * @param kind      radiology or pathology.
+    * @param minLength the report is at least this many characters, ending at the end of a sentence.
+    * @return a new report.
+    */
+   public String next( final Kind kind, final int minLength ) {
+      _reportCount++;
+      final StringBuilder sb = new StringBuilder( minLength + 512 );
+      sb.append( "===================================================================\n" )
+        .append( "Report ID....................." ).append( _reportCount ).append( ",doc" ).append( _reportCount )
+        .append( '\n' )
+        .append( "Patient ID....................pt" ).append( 100000 + _random.nextInt( 900000 ) ).append( '\n' )
+        .append( "Patient Name..................Fake Patient" ).append( _reportCount ).append( '\n' )
+        .append( "Principal Date................20" ).append( 10 + _random.nextInt( 10 ) )
+        .append( pad( 1 + _random.nextInt( 12 ) ) ).append( pad( 1 + _random.nextInt( 28 ) ) )
+        .append( ' ' ).append( pad( _random.nextInt( 24 ) ) ).append( pad( _random.nextInt( 60 ) ) ).append( '\n' )
+        .append( "Record Type..................." ).append( kind._recordType ).append( '\n' )
+        .append( "Patient DOB...................04/01/19" ).append( 40 + _random.nextInt( 40 ) ).append( "\n\n" );
+      final String[] kindSections = kind == Kind.RADIOLOGY ? RADIOLOGY_SECTIONS : PATHOLOGY_SECTIONS;
+      final String[] sections = _extraSections > 0 ? addSections( kindSections ) : kindSections;
+      // Every section gets at least one sentence, then sentences are added round robin until the length is met.
+      final StringBuilder[] bodies = new StringBuilder[ sections.length ];
+      int length = sb.length();
+      for ( int i = 0; i < sections.length; i++ ) {
+         bodies[ i ] = new StringBuilder();
+         length += sections[ i ].length() + 2;
+      }
+      int section = 0;
+      do {
+         final String sentence = sentence( kind, getContent( section, kindSections.length, sections.length ) );
+         bodies[ section ].append( sentence ).append( "  " );
+         length += sentence.length() + 2;
+         section = ( section + 1 ) % sections.length;
+      } while ( length < minLength || section != 0 );
+      for ( int i = 0; i < sections.length; i++ ) {
+         sb.append( sections[ i ] ).append( '\n' ).append( bodies[ i ] ).append( "\n\n" );
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Extra sections are inserted before the last section and hold finding sentences.
+    *
+    * @return the section of the kind whose sentences are used for the section at the index.
+    */
+   static private int getContent( final int section, final int kindCount, final int count ) {
+      if ( section < kindCount - 1 ) {
+         return section;
+      }
+      return section == count - 1 ? kindCount - 1 : 2;
+   }
+
+   private String[] addSections( final String[] kindSections ) {
+      final List<String> headings = new ArrayList<>( getHeadings() );
+      final List<String> sections = new ArrayList<>( Arrays.asList( kindSections ) );
+      headings.removeIf( heading -> sections.contains( heading + ":" ) );
+      for ( int i = 0; i < _extraSections && !headings.isEmpty(); i++ ) {
+         sections.add( sections.size() - 1, headings.remove( _random.nextInt( headings.size() ) ) + ":" );
+      }
+      return sections.toArray( new String[ 0 ] );
+   }
+
+   private String sentence( final Kind kind, final int section ) {
+      if ( _mentionDensity < 1 && _random.nextDouble() >= _mentionDensity ) {
+         return pick( FILLERS );
+      }
+      if ( _sizeRate > 0 && _random.nextDouble() < _sizeRate ) {
+         return pick( "A mass measuring " + size( 2, " x " ) + " cm is identified.",
+                      "The largest lesion measures " + size( 3, " x " ) + " cm." );
+      }
+      if ( _gradeRate > 0 && _random.nextDouble() < _gradeRate ) {
+         return pick( "Nuclear grade " + ( 1 + _random.nextInt( 3 ) ) + ".",
+                      "Tumor grade " + ( 1 + _random.nextInt( 3 ) ) + " is noted." );
+      }
+      return kind == Kind.RADIOLOGY ? radiologySentence( section ) : pathologySentence( section );
+   }
+
+   private String radiologySentence( final int section ) {
+      switch ( section ) {
+         case 0:
+            return pick( "This is a " + ( 35 + _random.nextInt( 45 ) ) + " year old female who underwent mammogram"
+                         + " for a palpable lump in the " + side() + " breast.",
+                         "History of " + pick( CANCERS ) + " in the patient's " + pick( RELATIVES ) + ".",
+                         "She denies any prior breast surgery." );
+         case 1:
+            return pick( "Ultrasound guided core biopsy of " + side() + " breast " + clock()
+                         + " o'clock abnormality with clip placement.",
+                         "Local anesthesia was obtained with 2% xylocaine.",
+                         "Under ultrasound guidance, " + ( 2 + _random.nextInt( 4 ) )
+                         + " passes with a 14 gauge biopsy device were performed." );
+         case 2:
+            return pick( "Ultrasonography revealed a " + size( 3, "x" ) + " cm hypoechoic mass in the "
+                         + pick( QUADRANTS ) + " quadrant at the " + clock() + " o'clock position.",
+                         "An abnormally thickened lymph node in the " + side() + " axilla had a cortex of "
+                         + ( 2 + _random.nextInt( 12 ) ) + " mm.",
+                         "There is no evidence of suspicious calcifications in the " + side() + " breast.",
+                         "A " + size( 2, " by " ) + " cm cyst may represent a benign finding." );
+         default:
+            return pick( "Uncomplicated ultrasound guided core biopsy of the " + side() + " breast at the "
+                         + clock() + " o'clock position.",
+                         "Post procedure mammogram of the " + side() + " breast demonstrated adequate clip placement.",
+                         "BI-RADS " + ( 3 + _random.nextInt( 3 ) ) + ": suspicious abnormality." );
+      }
+   }
+
+   private String pathologySentence( final int section ) {
+      final int grade = 1 + _random.nextInt( 3 );
+      switch ( section ) {
+         case 0:
+            return pick( "Clinical history of " + side() + " breast mass, rule out carcinoma.",
+                         "History of " + pick( CANCERS ) + " in the patient's " + pick( RELATIVES ) + ".",
+                         "CTCAE grade " + grade + " dermatitis was noted after prior radiation." );
+         case 1:
+            return pick( "The specimen measures " + size( 3, " x " ) + " cm and is received in formalin.",
+                         "Sectioning reveals a firm tan mass measuring " + size( 2, " by " ) + " cm.",
+                         "The closest margin is " + ( 1 + _random.nextInt( 20 ) ) + " mm from the mass." );
+         case 2:
+            return pick( "Nuclear grade " + grade + " ductal carcinoma in situ is present.",
+                         "Tumor grade " + grade + " with " + ( 1 + _random.nextInt( 30 ) ) + " mitoses per 10 hpf.",
+                         "Lymphovascular invasion is " + pick( "not identified", "present" ) + ".",
+                         "Estrogen receptor is positive (" + ( 10 * ( 1 + _random.nextInt( 10 ) ) )
+                         + "%), progesterone receptor is " + pick( "positive", "negative" ) + ", HER2 is "
+                         + pick( "negative (1+)", "equivocal (2+)", "positive (3+)" ) + "." );
+         default:
+            return pick( "Invasive ductal carcinoma, Nottingham grade " + grade + ", measuring "
+                         + size( 2, " x " ) + " cm.",
+                         _random.nextInt( 4 ) + " of " + ( 4 + _random.nextInt( 12 ) )
+                         + " lymph nodes are positive for metastatic carcinoma.",
+                         "Margins are negative for carcinoma.",
+                         "No evidence of malignancy in the " + side() + " axillary tissue." );
+      }
+   }
+
+   private String size( final int dimensions, final String separator ) {
+      final StringBuilder sb = new StringBuilder();
+      for ( int i = 0; i < dimensions; i++ ) {
+         if ( i > 0 ) {
+            sb.append( separator );
+         }
+         sb.append( 1 + _random.nextInt( 9 ) ).append( '.' ).append( _random.nextInt( 10 ) );
+      }
+      return sb.toString();
+   }
+
+   private String side() {
+      return pick( SIDES );
+   }
+
+   private int clock() {
+      return 1 + _random.nextInt( 12 );
+   }
+
+   private String pick( final String... choices ) {
+      return choices[ _random.nextInt( choices.length ) ];
+   }
+
+   /**
+    * @return upper case headings of the sectionizer's sections.txt that are plain text rather than expressions.
+    */
+   static private synchronized List<String> getHeadings() {
+      if ( _headings != null ) {
+         return _headings;
+      }
+      final List<String> headings = new ArrayList<>();
+      try ( InputStream stream = SyntheticReports.class.getClassLoader().getResourceAsStream( SECTIONS_RESOURCE ) ) {
+         if ( stream != null ) {
+            final BufferedReader reader = new BufferedReader( new InputStreamReader( stream, StandardCharsets.UTF_8 ) );
+            String line = reader.readLine();
+            while ( line != null ) {
+               if ( !line.startsWith( "#" ) ) {
+                  final String[] fields = line.split( "," );
+                  for ( int i = 1; i < fields.length; i++ ) {
+                     final String heading = fields[ i ].trim();
+                     if ( heading.length() >= 4 && heading.matches( "[A-Z][A-Z ]+" ) && !headings.contains( heading ) ) {
+                        headings.add( heading );
+                     }
+                  }
+               }
+               line = reader.readLine();
+            }
+         }
+      } catch ( IOException ioE ) {
+         headings.clear();
+      }
+      _headings = Collections.unmodifiableList( headings.isEmpty() ? Arrays.asList( DEFAULT_HEADINGS ) : headings );
+      return _headings;
+   }
+
+   static private String pad( final int value ) {
+      return value < 10 ? "0" + value : Integer.toString( value );
+   }
+
+}
@@ -0,0 +1,72 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import org.apache.ctakes.ner.group.dphe.DpheGroup;
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.healthnlp.deepphe.nlp.ae.attribute.AnnotationFactory;
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.sample.SyntheticReports;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mention extraction from a JCas that already holds thousands of annotations, made as the DeepPhe annotators make them.
+ * The writer gets uris through Neo4jOntologyConceptUtil and groups through DpheGroupAccessor as it does in the pipeline,
+ * so their cost is included.  Groups are cached by uris, so after warm-up each group lookup is a cache hit.
+ *
+ * @since {10/18/2026}
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class MentionTableBenchmark {
+
+   static private final String[] URIS = { "Breast", "Carcinoma", "Mass", "Lymph_Node", "Right", "Left",
+                                          "Invasive_Ductal_Carcinoma", "Estrogen_Receptor_Positive" };
+
+   @Param( { "1000", "5000" } )
+   public int mentions;
+
+   private JCas _jCas;
+   private OmopMentionTableWriter _writer;
+
+   @Setup
+   public void setup() throws UIMAException {
+      final String text = new SyntheticReports( 42 ).next( SyntheticReports.Kind.PATHOLOGY, mentions * 20 );
+      _jCas = JCasFactory.createJCas();
+      _jCas.setDocumentText( text );
+      final DpheGroup[] groups = DpheGroup.values();
+      // Spread mentions over the text at word starts, a few characters each.
+      final int step = Math.max( 1, ( text.length() - 20 ) / mentions );
+      for ( int i = 0; i < mentions; i++ ) {
+         final int begin = i * step;
+         final int end = Math.min( text.length(), begin + 4 + i % 12 );
+         final String uri = URIS[ i % URIS.length ];
+         AnnotationFactory.createAnnotation( _jCas, begin, end, groups[ i % groups.length ], uri,
+                                             "C" + ( 1000000 + i % 97 ), uri.replace( '_', ' ' ) );
+      }
+      _writer = new OmopMentionTableWriter();
+   }
+
+   @Benchmark
+   public List<org.healthnlp.deepphe.omop.Mention> createDataFields() {
+      return _writer.createDataFields( _jCas );
+   }
+
+   @Benchmark
+   public List<List<String>> createDataRows() {
+      return _writer.createDataRows( _jCas );
+   }
+
+   @Benchmark
+   public List<CompactMention> createCompactMentions() {
+      return _writer.createCompactMentions( _jCas );
+   }
+
+}
@@ -0,0 +1,197 @@
+package org.healthnlp.deepphe.nlp.ae;
+
+import org.apache.ctakes.core.patient.PatientDocCounter;
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.core.util.doc.SourceMetadataUtil;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.healthnlp.deepphe.nlp.uri.UriInfoCache;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the UriInfoCache across documents.  Lookups that this tree makes on the per-document path go through
+ * bounded per-entry caches such as {@link org.healthnlp.deepphe.nlp.ontology.UriLookupCache},
+ * so the UriInfoCache is only cleared as a last resort: when live heap grows past a fraction of the maximum,
+ * optionally after a number of documents, and optionally when all of a patient's documents have been processed.
+ * This replaces "UriInfoCacheCleaner CleanAfterDoc=yes", which sent the lookups of common uris
+ * back to the ontology graph for nearly every document.
+ * <p>
+ * Live heap is the heap used after the most recent garbage collection, so garbage that has not been collected
+ * does not cause a clear, and the cache is not cleared again for heap until there has been another collection.
+ * Every engine in a pool shares the one cache, so a clear by any engine empties it for documents that other engines
+ * are processing.  Those documents look their uris up in the graph again, their output does not change.
+ * Settings belong to each instance.  Only the counts, which describe the shared cache, are shared.
+ *
+ * @since {10/18/2026}
+ */
+@PipeBitInfo(
+      name = "UriInfoCachePolicy",
+      description = "Clears the Uri Info Cache when heap runs low or it has been used for a number of documents.",
+      role = PipeBitInfo.Role.SPECIAL
+)
+final public class UriInfoCachePolicy extends JCasAnnotator_ImplBase {
+
+   static private final Logger LOGGER = Logger.getLogger( "UriInfoCachePolicy" );
+
+   static public final String PARAM_MAX_DOCUMENTS = "MaxDocuments";
+   @ConfigurationParameter(
+         name = PARAM_MAX_DOCUMENTS,
+         description = "Clear the cache after this many documents.  0 for no document limit.",
+         mandatory = false,
+         defaultValue = "0"
+   )
+   private int _maxDocuments;
+
+   static public final String PARAM_MAX_HEAP_FRACTION = "MaxHeapFraction";
+   @ConfigurationParameter(
+         name = PARAM_MAX_HEAP_FRACTION,
+         description = "Clear the cache when live heap is over this fraction of the maximum heap.  0 for no limit.",
+         mandatory = false,
+         defaultValue = "0.7"
+   )
+   private float _maxHeapFraction;
+
+   static public final String PARAM_CLEAR_AFTER_PATIENT = "ClearAfterPatient";
+   @ConfigurationParameter(
+         name = PARAM_CLEAR_AFTER_PATIENT,
+         description = "Also clear the cache when all of a patient's documents have been processed.",
+         mandatory = false,
+         defaultValue = "false"
+   )
+   private boolean _clearAfterPatient;
+
+   static private final AtomicLong _documentsSinceClear = new AtomicLong();
+   static private final AtomicLong _collectionsAtClear = new AtomicLong( -1 );
+   static private final AtomicLong _documents = new AtomicLong();
+   static private final AtomicLong _documentClears = new AtomicLong();
+   static private final AtomicLong _heapClears = new AtomicLong();
+   static private final AtomicLong _patientClearCount = new AtomicLong();
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      LOGGER.info( "Clearing the Uri Info Cache after " + ( _maxDocuments > 0 ? _maxDocuments : "unlimited" )
+                   + " documents or over " + ( _maxHeapFraction > 0 ? _maxHeapFraction : "unlimited" )
+                   + " live heap" + ( _clearAfterPatient ? " or after each patient." : "." ) );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      _documents.incrementAndGet();
+      final long documents = _documentsSinceClear.incrementAndGet();
+      if ( _maxDocuments > 0 && documents >= _maxDocuments ) {
+         // Only one of the engines that pass the limit together clears the cache.
+         if ( _documentsSinceClear.compareAndSet( documents, 0 ) ) {
+            clear( _documentClears, documents + " documents" );
+         }
+      } else if ( _maxHeapFraction > 0 ) {
+         final long collections = getCollectionCount();
+         final long atClear = _collectionsAtClear.get();
+         if ( collections != atClear ) {
+            final double fraction = getLiveHeapFraction();
+            if ( fraction > _maxHeapFraction && _collectionsAtClear.compareAndSet( atClear, collections ) ) {
+               _documentsSinceClear.set( 0 );
+               clear( _heapClears, String.format( "%.2f of the heap in use", fraction ) );
+            }
+         }
+      }
+      if ( _clearAfterPatient
+           && PatientDocCounter.getInstance().isPatientFull( SourceMetadataUtil.getPatientIdentifier( jCas ) ) ) {
+         clear( _patientClearCount, "patient complete" );
+      }
+   }
+
+   static private void clear( final AtomicLong counter, final String reason ) {
+      UriInfoCache.getInstance().clear();
+      counter.incrementAndGet();
+      LOGGER.debug( "Cleared the Uri Info Cache after " + reason );
+   }
+
+   /**
+    * @return the number of garbage collections so far, of every collector.
+    */
+   static private long getCollectionCount() {
+      long count = 0;
+      for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() ) {
+         count += Math.max( 0, collector.getCollectionCount() );
+      }
+      return count;
+   }
+
+   /**
+    * @return heap used after the last garbage collection of each heap pool over the maximum heap, or 0 if unknown.
+    */
+   static private double getLiveHeapFraction() {
+      final long max = Runtime.getRuntime().maxMemory();
+      if ( max <= 0 || max == Long.MAX_VALUE ) {
+         return 0;
+      }
+      long used = 0;
+      for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+         if ( pool.getType() != MemoryType.HEAP ) {
+            continue;
+         }
+         final MemoryUsage usage = pool.getCollectionUsage();
+         used += usage != null ? usage.getUsed() : pool.getUsage().getUsed();
+      }
+      return (double)used / max;
+   }
+
+   static public long getDocumentCount() {
+      return _documents.get();
+   }
+
+   static public long getDocumentsSinceClear() {
+      return _documentsSinceClear.get();
+   }
+
+   /**
+    * @return the number of times the cache was cleared because it reached the document limit.
+    */
+   static public long getDocumentClearCount() {
+      return _documentClears.get();
+   }
+
+   /**
+    * @return the number of times the cache was cleared because live heap was over the limit.
+    */
+   static public long getHeapClearCount() {
+      return _heapClears.get();
+   }
+
+   /**
+    * @return the number of times the cache was cleared because a patient was complete.
+    */
+   static public long getPatientClearCount() {
+      return _patientClearCount.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void collectionProcessComplete() throws AnalysisEngineProcessException {
+      super.collectionProcessComplete();
+      LOGGER.info( "Uri Info Cache: " + getDocumentCount() + " documents, cleared " + getDocumentClearCount()
+                   + " times for documents, " + getHeapClearCount() + " for heap, "
+                   + getPatientClearCount() + " for patients." );
+   }
+
+}
@@ -0,0 +1,113 @@
+package org.healthnlp.deepphe.nlp.ae.attribute;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds every occurrence of a set of lower case anchors in one pass over a text, without regard to case.
+ * Anchors are grouped by first character, so most characters of a text cost one table lookup.
+ *
+ * @since {10/18/2026}
+ */
+final class AnchorIndex {
+
+   private final String[] _anchors;
+   /**
+    * Anchor numbers by lower case first character.  Anchors starting with other characters are in the last slot.
+    */
+   private final int[][] _byFirst = new int[ 129 ][];
+
+   AnchorIndex( final List<String> anchors ) {
+      _anchors = anchors.toArray( new String[ 0 ] );
+      for ( int i = 0; i < _anchors.length; i++ ) {
+         if ( _anchors[ i ].isEmpty() ) {
+            throw new IllegalArgumentException( "Empty anchor." );
+         }
+         final int slot = Math.min( toLower( _anchors[ i ].charAt( 0 ) ), 128 );
+         final int[] previous = _byFirst[ slot ];
+         final int[] numbers = previous == null ? new int[ 1 ] : Arrays.copyOf( previous, previous.length + 1 );
+         numbers[ numbers.length - 1 ] = i;
+         _byFirst[ slot ] = numbers;
+      }
+   }
+
+   int getAnchorCount() {
+      return _anchors.length;
+   }
+
+   /**
+    * @return the begin offsets of each anchor, in increasing order.
+    */
+   Hits scan( final CharSequence text ) {
+      final int[][] begins = new int[ _anchors.length ][ 4 ];
+      final int[] counts = new int[ _anchors.length ];
+      final int length = text.length();
+      for ( int i = 0; i < length; i++ ) {
+         final int[] numbers = _byFirst[ Math.min( toLower( text.charAt( i ) ), 128 ) ];
+         if ( numbers == null ) {
+            continue;
+         }
+         for ( int number : numbers ) {
+            if ( matches( text, i, _anchors[ number ] ) ) {
+               if ( counts[ number ] == begins[ number ].length ) {
+                  begins[ number ] = Arrays.copyOf( begins[ number ], counts[ number ] * 2 );
+               }
+               begins[ number ][ counts[ number ]++ ] = i;
+            }
+         }
+      }
+      for ( int i = 0; i < begins.length; i++ ) {
+         begins[ i ] = Arrays.copyOf( begins[ i ], counts[ i ] );
+      }
+      return new Hits( begins );
+   }
+
+   static private boolean matches( final CharSequence text, final int offset, final String anchor ) {
+      if ( offset + anchor.length() > text.length() ) {
+         return false;
+      }
+      for ( int i = 1; i < anchor.length(); i++ ) {
+         if ( toLower( text.charAt( offset + i ) ) != anchor.charAt( i ) ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   static private int toLower( final char c ) {
+      if ( c >= 'A' && c <= 'Z' ) {
+         return c + ( 'a' - 'A' );
+      }
+      return c < 128 ? c : Character.toLowerCase( c );
+   }
+
+   /**
+    * Anchor occurrences in one text.
+    */
+   final class Hits {
+      private final int[][] _begins;
+
+      private Hits( final int[][] begins ) {
+         _begins = begins;
+      }
+
+      /**
+       * @param anchors anchor numbers.
+       * @return true if any of the anchors lies wholly within begin to end.
+       */
+      boolean hasAny( final int[] anchors, final int begin, final int end ) {
+         for ( int anchor : anchors ) {
+            final int[] begins = _begins[ anchor ];
+            int i = Arrays.binarySearch( begins, begin );
+            if ( i < 0 ) {
+               i = -i - 1;
+            }
+            if ( i < begins.length && begins[ i ] + _anchors[ anchor ].length() <= end ) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+}
@@ -0,0 +1,225 @@
+package org.healthnlp.deepphe.nlp.ae.attribute;
+
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Segment;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs several attribute finders with one scan of the document text.
+ * The scan finds the anchors of every rule, e.g. "grade" or "cm".  Each rule's own matcher is then run
+ * only on the document or sections that contain one of its anchors, and creates annotations as it always has.
+ * As every match of a rule contains an anchor, the annotations are the same as running each finder on its own.
+ * <p>
+ * Rules run in the order given, so this can replace adjacent finders in a piper.
+ * Regions run, regions skipped, annotations and time are counted per rule for every instance in the JVM.
+ *
+ * @since {10/18/2026}
+ */
+@PipeBitInfo(
+      name = "AttributeFinderAe",
+      description = "Finds grades, sizes and other attributes with one anchor scan of the document.",
+      products = { PipeBitInfo.TypeProduct.IDENTIFIED_ANNOTATION },
+      role = PipeBitInfo.Role.ANNOTATOR
+)
+final public class AttributeFinderAe extends JCasAnnotator_ImplBase {
+
+   static private final Logger LOGGER = Logger.getLogger( "AttributeFinderAe" );
+
+   /**
+    * Rules by name, in their default order.
+    */
+   static private final Map<String, Supplier<AttributeRule>> RULES = new LinkedHashMap<>();
+
+   static {
+      RULES.put( NuclearGradeFinder.GradeRule.NAME, NuclearGradeFinder.GradeRule::new );
+      RULES.put( SizeFinderAe.SizeRule.NAME, SizeFinderAe.SizeRule::new );
+   }
+
+   static public final String PARAM_RULES = "Rules";
+   @ConfigurationParameter(
+         name = PARAM_RULES,
+         description = "Rules to run, in order.  Default NuclearGrade,Size.",
+         mandatory = false,
+         defaultValue = { "NuclearGrade", "Size" }
+   )
+   private String[] _ruleNames;
+
+   static private final Map<String, RuleStats> STATS = new ConcurrentHashMap<>();
+   static private final AtomicLong SCAN_NANOS = new AtomicLong();
+
+   private final List<AttributeRule> _rules = new ArrayList<>();
+   private final List<int[]> _ruleAnchors = new ArrayList<>();
+   private final List<RuleStats> _ruleStats = new ArrayList<>();
+   private AnchorIndex _anchorIndex;
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      final List<String> anchors = new ArrayList<>();
+      for ( String name : _ruleNames ) {
+         final Supplier<AttributeRule> supplier = RULES.get( name.trim() );
+         if ( supplier == null ) {
+            throw new ResourceInitializationException(
+                  new IllegalArgumentException( "Unknown attribute rule " + name.trim() + ", not one of "
+                                                + RULES.keySet() ) );
+         }
+         final AttributeRule rule = supplier.get();
+         final Collection<String> ruleAnchors = rule.getAnchors();
+         final int[] numbers = new int[ ruleAnchors.size() ];
+         int i = 0;
+         for ( String anchor : ruleAnchors ) {
+            numbers[ i++ ] = anchors.size();
+            anchors.add( anchor );
+         }
+         _rules.add( rule );
+         _ruleAnchors.add( numbers );
+         _ruleStats.add( STATS.computeIfAbsent( rule.getName(), RuleStats::new ) );
+      }
+      _anchorIndex = new AnchorIndex( anchors );
+      LOGGER.info( "Finding attributes with rules " + String.join( ",", _ruleNames ) + " and "
+                   + anchors.size() + " anchors." );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      final String text = jCas.getDocumentText();
+      final long scanStart = System.nanoTime();
+      final AnchorIndex.Hits hits = _anchorIndex.scan( text );
+      SCAN_NANOS.addAndGet( System.nanoTime() - scanStart );
+      List<Segment> sections = null;
+      for ( int r = 0; r < _rules.size(); r++ ) {
+         final AttributeRule rule = _rules.get( r );
+         final int[] anchors = _ruleAnchors.get( r );
+         final RuleStats stats = _ruleStats.get( r );
+         final long start = System.nanoTime();
+         rule.startDocument( jCas );
+         if ( rule.getScope() == AttributeRule.Scope.DOCUMENT ) {
+            if ( hits.hasAny( anchors, 0, text.length() ) ) {
+               stats.record( true, rule.find( jCas, (Annotation)jCas.getDocumentAnnotationFs() ).size() );
+            } else {
+               stats.record( false, 0 );
+            }
+         } else {
+            if ( sections == null ) {
+               // A copy, as rules may add annotations while sections are iterated.
+               sections = new ArrayList<>( JCasUtil.select( jCas, Segment.class ) );
+            }
+            for ( Segment section : sections ) {
+               if ( hits.hasAny( anchors, section.getBegin(), section.getEnd() ) ) {
+                  stats.record( true, rule.find( jCas, section ).size() );
+               } else {
+                  stats.record( false, 0 );
+               }
+            }
+         }
+         stats._nanos.addAndGet( System.nanoTime() - start );
+      }
+   }
+
+   /**
+    * @return counts of every rule that has been run in the JVM.
+    */
+   static public Collection<RuleStats> getRuleStats() {
+      return new ArrayList<>( STATS.values() );
+   }
+
+   /**
+    * @return time spent scanning documents for anchors, shared by every rule.
+    */
+   static public long getScanNanos() {
+      return SCAN_NANOS.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void collectionProcessComplete() throws AnalysisEngineProcessException {
+      super.collectionProcessComplete();
+      LOGGER.info( "Anchor scan: " + getScanNanos() / 1_000_000 + " ms." );
+      for ( AttributeRule rule : _rules ) {
+         final RuleStats stats = STATS.get( rule.getName() );
+         LOGGER.info( rule.getName() + ": " + stats.getRegionsRun() + " regions run, " + stats.getRegionsSkipped()
+                      + " skipped, " + stats.getAnnotations() + " annotations in "
+                      + stats.getNanos() / 1_000_000 + " ms." );
+      }
+   }
+
+   /**
+    * Counts of one rule, shared by every instance.
+    */
+   static public final class RuleStats {
+      private final String _name;
+      private final AtomicLong _regionsRun = new AtomicLong();
+      private final AtomicLong _regionsSkipped = new AtomicLong();
+      private final AtomicLong _annotations = new AtomicLong();
+      private final AtomicLong _nanos = new AtomicLong();
+
+      private RuleStats( final String name ) {
+         _name = name;
+      }
+
+      private void record( final boolean run, final int annotations ) {
+         if ( run ) {
+            _regionsRun.incrementAndGet();
+            _annotations.addAndGet( annotations );
+         } else {
+            _regionsSkipped.incrementAndGet();
+         }
+      }
+
+      public String getName() {
+         return _name;
+      }
+
+      /**
+       * @return documents or sections with an anchor, on which the rule's matcher was run.
+       */
+      public long getRegionsRun() {
+         return _regionsRun.get();
+      }
+
+      /**
+       * @return documents or sections without an anchor, which the rule's matcher never saw.
+       */
+      public long getRegionsSkipped() {
+         return _regionsSkipped.get();
+      }
+
+      public long getAnnotations() {
+         return _annotations.get();
+      }
+
+      /**
+       * @return time spent in the rule, not counting the shared anchor scan.
+       */
+      public long getNanos() {
+         return _nanos.get();
+      }
+   }
+
+}
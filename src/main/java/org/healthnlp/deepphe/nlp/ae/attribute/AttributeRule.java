@@ -0,0 +1,53 @@
+package org.healthnlp.deepphe.nlp.ae.attribute;
+
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An attribute finder that {@link AttributeFinderAe} runs only on regions containing one of its anchors.
+ * <p>
+ * Anchors are lower case literals.  Every match of the rule must contain at least one of them,
+ * matched without regard to case.  Then skipping regions without an anchor cannot change what the rule finds.
+ * One instance is used by one engine, so a rule may keep state from {@link #startDocument(JCas)}.
+ *
+ * @since {10/18/2026}
+ */
+public interface AttributeRule {
+
+   enum Scope {
+      /**
+       * The rule runs once on the whole document.
+       */
+      DOCUMENT,
+      /**
+       * The rule runs on each Segment.
+       */
+      SECTION
+   }
+
+   /**
+    * @return name used to select the rule and to report its counts.
+    */
+   String getName();
+
+   Collection<String> getAnchors();
+
+   Scope getScope();
+
+   /**
+    * Called for every document before any region, whether or not the document has an anchor.
+    */
+   default void startDocument( final JCas jCas ) {
+   }
+
+   /**
+    * @param region the document annotation or a Segment, according to the scope.
+    * @return annotations created within the region.
+    */
+   List<IdentifiedAnnotation> find( JCas jCas, Annotation region );
+
+}
@@ -1,8 +1,10 @@
 package org.healthnlp.deepphe.nlp.ae.attribute;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -13,13 +15,15 @@ import org.apache.ctakes.ner.group.dphe.DpheGroup;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.tcas.Annotation;
-import org.healthnlp.deepphe.nlp.neo4j.Neo4jOntologyConceptUtil;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.healthnlp.deepphe.nlp.ontology.OntologyBranchIndex;
 
 /**
  * Finds Nuclear Grade of the form "Grade 1", "Nuclear grade 2" etc.
@@ -40,16 +44,74 @@ public final class NuclearGradeFinder extends JCasAnnotator_ImplBase {
   public NuclearGradeFinder() {
   }
 
+  /**
+   * Builds or reads the ontology branch index here, after the graph is connected, so that no document waits for it.
+   */
+  @Override
+  public void initialize(UimaContext context) throws ResourceInitializationException {
+    super.initialize(context);
+    OntologyBranchIndex.getInstance();
+  }
+
   public void process(JCas jCas) throws AnalysisEngineProcessException {
     LOGGER.info("Finding Grade Score Values ...");
-    Collection<IdentifiedAnnotation> grades = Neo4jOntologyConceptUtil.getAnnotationsByUriBranch(jCas, "GradingSystem");
-    grades.forEach(TOP::removeFromIndexes);
+    final GradeRule rule = new GradeRule();
+    rule.startDocument(jCas);
     for ( Segment section : JCasUtil.select( jCas, Segment.class ) ) {
-      findNuclearGrades( jCas, section );
+      rule.find( jCas, section );
+    }
+  }
+
+  /**
+   * Nuclear grades as a rule of {@link AttributeFinderAe}.  Every grade match contains "grade".
+   */
+  public static final class GradeRule implements AttributeRule {
+    public static final String NAME = "NuclearGrade";
+    private PlainGradeIndex _plainGrades;
+
+    public GradeRule() {
+      OntologyBranchIndex.getInstance();
+    }
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+
+    @Override
+    public Collection<String> getAnchors() {
+      return Collections.singletonList("grade");
+    }
+
+    @Override
+    public Scope getScope() {
+      return Scope.SECTION;
+    }
+
+    /**
+     * Removes existing grades, which happens whether or not the document mentions a grade.
+     */
+    @Override
+    public void startDocument(JCas jCas) {
+      Collection<IdentifiedAnnotation> grades
+        = OntologyBranchIndex.getInstance().getAnnotationsByUriBranch(jCas, GRADE_URI);
+      grades.forEach(TOP::removeFromIndexes);
+      // One document-level lookup of plain grades, shared by every section.
+      _plainGrades = new PlainGradeIndex(jCas);
+    }
+
+    @Override
+    public List<IdentifiedAnnotation> find(JCas jCas, Annotation region) {
+      return findNuclearGrades(jCas, region, _plainGrades);
     }
   }
 
   public static List<IdentifiedAnnotation> findNuclearGrades(JCas jcas, Annotation lookupWindow) {
+    return findNuclearGrades(jcas, lookupWindow, new PlainGradeIndex(jcas));
+  }
+
+  private static List<IdentifiedAnnotation> findNuclearGrades(JCas jcas, Annotation lookupWindow,
+                                                             PlainGradeIndex plainGrades) {
     String lookupText = lookupWindow.getCoveredText();
     int grouping = lookupText.indexOf("Prognostic Nuclear Grade Group");
     if (grouping >= 0) {
@@ -60,23 +122,19 @@ public final class NuclearGradeFinder extends JCasAnnotator_ImplBase {
     if (grades.isEmpty()) {
       return Collections.emptyList();
     } else {
-      Collection<IdentifiedAnnotation> plainGrades = Neo4jOntologyConceptUtil.getAnnotationsByUriBranch(jcas, lookupWindow, "CTCAE_Grade_Finding");
       int windowStartOffset = lookupWindow.getBegin();
       List<IdentifiedAnnotation> annotations = new ArrayList(grades.size());
       for ( SimpleGrade grade : grades ) {
         IdentifiedAnnotation annotation = AnnotationFactory.createAnnotation(jcas, windowStartOffset + grade._begin, windowStartOffset + grade._end, DpheGroup.DISEASE_GRADE_QUALIFIER, grade._uri, "", grade._uri);
         annotations.add(annotation);
-        plainGrades.stream()
-          .filter((a) -> a.getBegin() >= windowStartOffset + grade._matchBegin)
-          .filter((a) -> a.getEnd() <= windowStartOffset + grade._end)
-          .forEach(IdentifiedAnnotation::removeFromIndexes);
+        plainGrades.removeWithin(windowStartOffset + grade._matchBegin, windowStartOffset + grade._end);
       }
 
       return annotations;
     }
   }
 
-  private static List<SimpleGrade> getNuclearGrades(String lookupWindow) {
+  static List<SimpleGrade> getNuclearGrades(String lookupWindow) {
     if (lookupWindow.length() < 3) {
       return new ArrayList();
     } else {
@@ -105,6 +163,54 @@ public final class NuclearGradeFinder extends JCasAnnotator_ImplBase {
     return "Nuclear_Grade_Score_" + gradeText;
   }
 
+  /**
+   * CTCAE_Grade_Finding annotations sorted by begin offset, so that those within a grade match are a range query.
+   * The annotations are read when the index is created, before any grade is created, so that a new grade
+   * is never removed as a plain grade.
+   */
+  private static final class PlainGradeIndex {
+    private final IdentifiedAnnotation[] _annotations;
+    private final int[] _begins;
+
+    private PlainGradeIndex(JCas jCas) {
+      final Collection<IdentifiedAnnotation> plainGrades
+        = OntologyBranchIndex.getInstance().getAnnotationsByUriBranch(jCas, "CTCAE_Grade_Finding");
+      _annotations = plainGrades.toArray(new IdentifiedAnnotation[0]);
+      Arrays.sort(_annotations, Comparator.comparingInt(Annotation::getBegin));
+      _begins = new int[_annotations.length];
+      for ( int i = 0; i < _annotations.length; i++ ) {
+        _begins[i] = _annotations[i].getBegin();
+      }
+    }
+
+    /**
+     * Remove every indexed annotation that lies within begin to end.
+     */
+    private void removeWithin(int begin, int end) {
+      for ( int i = firstAtOrAfter(begin); i < _begins.length && _begins[i] <= end; i++ ) {
+        final IdentifiedAnnotation annotation = _annotations[i];
+        if (annotation != null && annotation.getEnd() <= end) {
+          annotation.removeFromIndexes();
+          _annotations[i] = null;
+        }
+      }
+    }
+
+    private int firstAtOrAfter(int begin) {
+      int low = 0;
+      int high = _begins.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (_begins[mid] < begin) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
   private static final class SimpleGrade {
     private final int _matchBegin;
     private final int _begin;
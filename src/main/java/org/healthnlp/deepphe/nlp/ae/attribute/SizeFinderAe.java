@@ -9,12 +9,13 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Finds Tumor Size of the form 1.2 cm, 1.2 x 1.2 cm, 1.2 x 1.2 cm, etc.,
@@ -38,6 +39,36 @@ public class SizeFinderAe extends JCasAnnotator_ImplBase {
     SizeFinder.addSizes(jcas);
   }
 
+  /**
+   * Sizes as a rule of {@link AttributeFinderAe}.  Every size ends in a unit, so contains "cm" or "mm".
+   */
+  public static final class SizeRule implements AttributeRule {
+    public static final String NAME = "Size";
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+
+    @Override
+    public Collection<String> getAnchors() {
+      return Arrays.asList("cm", "mm");
+    }
+
+    /**
+     * Sizes have always been found in the whole document, and a size may span a section boundary.
+     */
+    @Override
+    public Scope getScope() {
+      return Scope.DOCUMENT;
+    }
+
+    @Override
+    public List<IdentifiedAnnotation> find(JCas jcas, Annotation region) {
+      return SizeFinder.addSizes(jcas);
+    }
+  }
+
   public enum SizeFinder {
     INSTANCE;
 
@@ -47,13 +78,10 @@ public class SizeFinderAe extends JCasAnnotator_ImplBase {
 
     static private final Logger LOGGER = Logger.getLogger("SizeFinder");
 
-    static private final String SIZE_1_REGEX = "\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b";
-    static private final String SIZE_2_REGEX = "\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b";
-    static private final String SIZE_3_REGEX = "\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b";
-    // Use them in reverse so they capture the longer matches first
-    static private final String FULL_REGEX = "(?:\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b)|(?:\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b)|(?:\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b)";
-
-    static private final Pattern FULL_PATTERN = Pattern.compile(FULL_REGEX, Pattern.CASE_INSENSITIVE);
+    // Sizes are found by SizeScanner, which reports the same spans as the former pattern in a single pass:
+    // (?:\b\d+(?:\.\d+)?\s*(?:cm|mm)?\s*(?:x|by|to|and|&)?\s*\d+(?:\.\d+)?\s*(?:cm|mm)?\s*(?:x|by|to|and|&)?\s*\d+(?:\.\d+)?\s*(?:cm|mm)\b)
+    // |(?:\b\d+(?:\.\d+)?\s*(?:cm|mm)?\s*(?:x|by|to|and|&)?\s*\d+(?:\.\d+)?\s*(?:cm|mm)\b)
+    // |(?:\b\d+(?:\.\d+)?\s*(?:cm|mm)\b)      case insensitive, longer matches first.
 
     private final Object LOCK = new Object();
 
@@ -63,62 +91,53 @@ public class SizeFinderAe extends JCasAnnotator_ImplBase {
     static private final class SimpleSize {
       private final int _begin;
       private final int _end;
-      private final String _sizeText;
 
-      private SimpleSize(final int begin, final int end, String sizeText) {
+      private SimpleSize(final int begin, final int end) {
         _begin = begin;
         _end = end;
-        _sizeText = sizeText;
-      }
-
-      public String getSizeText() {
-        return _sizeText;
       }
     }
 
     static public List<IdentifiedAnnotation> addSizes(final JCas jcas) {
       final String docText = jcas.getDocumentText();
-      final List<SimpleSize> sizes = getSizes(docText);
-      if (sizes.isEmpty()) {
-        return Collections.emptyList();
-      }
-      final List<IdentifiedAnnotation> sizeAnnotations = new ArrayList<>();
-      for (SimpleSize size : sizes) {
-        final IdentifiedAnnotation annotation = AnnotationFactory.createAnnotation(jcas,
-          size._begin, size._end, DpheGroup.SIZE, "SizeMeasurement", "", size.getSizeText());
-        sizeAnnotations.add(annotation);
-      }
-      return sizeAnnotations;
+      return addSizes(jcas, docText, 0, docText.length());
     }
 
     static public List<IdentifiedAnnotation> addSizes(final JCas jcas, final AnnotationFS lookupWindow) {
-      final String windowText = lookupWindow.getCoveredText();
-      final List<SimpleSize> sizes = getSizes(windowText);
+      // Scan the window in place rather than copying its covered text.
+      return addSizes(jcas, lookupWindow.getCAS().getDocumentText(), lookupWindow.getBegin(), lookupWindow.getEnd());
+    }
+
+    static private List<IdentifiedAnnotation> addSizes(final JCas jcas, final String docText,
+                                                       final int windowBegin, final int windowEnd) {
+      final List<SimpleSize> sizes = getSizes(docText, windowBegin, windowEnd);
       if (sizes.isEmpty()) {
         return Collections.emptyList();
       }
-      final int windowStartOffset = lookupWindow.getBegin();
-      final List<IdentifiedAnnotation> sizeAnnotations = new ArrayList<>();
+      final List<IdentifiedAnnotation> sizeAnnotations = new ArrayList<>(sizes.size());
       for (SimpleSize size : sizes) {
         final IdentifiedAnnotation annotation = AnnotationFactory.createAnnotation(jcas,
-          windowStartOffset + size._begin, windowStartOffset + size._end,
-          DpheGroup.SIZE, "SizeMeasurement", "", size.getSizeText());
+          size._begin, size._end, DpheGroup.SIZE, "SizeMeasurement", "",
+          docText.substring(size._begin, size._end));
         sizeAnnotations.add(annotation);
       }
       return sizeAnnotations;
     }
 
     static List<SimpleSize> getSizes(final String lookupWindow) {
-      if (lookupWindow.length() < 2) {
+      return getSizes(lookupWindow, 0, lookupWindow.length());
+    }
+
+    /**
+     * @return sizes within text[windowBegin,windowEnd), found as if that window were the entire text,
+     * with offsets relative to the full text.
+     */
+    static List<SimpleSize> getSizes(final CharSequence text, final int windowBegin, final int windowEnd) {
+      if (windowEnd - windowBegin < 2) {
         return new ArrayList<>();
       }
       final List<SimpleSize> sizes = new ArrayList<>();
-      final Matcher fullMatcher = FULL_PATTERN.matcher(lookupWindow);
-      while (fullMatcher.find()) {
-        int fullMatchStart = fullMatcher.start();
-        String size = lookupWindow.substring(fullMatchStart, fullMatcher.end());
-        sizes.add(new SimpleSize(fullMatchStart, fullMatcher.end(), size));
-      }
+      SizeScanner.scan(text, windowBegin, windowEnd, (begin, end) -> sizes.add(new SimpleSize(begin, end)));
       return sizes;
     }
 
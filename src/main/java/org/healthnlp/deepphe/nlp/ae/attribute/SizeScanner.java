@@ -0,0 +1,331 @@
+package org.healthnlp.deepphe.nlp.ae.attribute;
+
+/**
+ * Single pass scanner for sizes of the form 1.2 cm, 1.2 x 3.4 cm, 1.2 x 3.4 x 5.6 mm, etc.
+ * It reports exactly the spans that the former SizeFinder regex reported:
+ * <pre>
+ * \b N S U? S C? S N S U? S C? S N S U \b  |  \b N S U? S C? S N S U \b  |  \b N S U \b
+ * N = \d+(?:\.\d+)?   S = \s*   U = cm|mm   C = x|by|to|and|&amp;    (case insensitive)
+ * </pre>
+ * The regex would retry every digit run against each alternation and backtrack through ways of splitting digits
+ * between numbers.  Every successful path for a given start ends at one of three places:
+ * the end of the first, second or third run of digits in the chain that starts there.
+ * So this scanner reads up to three runs once, counts how many numbers each run could be split into,
+ * and picks the end the regex would have found first.  No strings are created.
+ *
+ * @since {10/18/2026}
+ */
+final class SizeScanner {
+
+   /**
+    * Receives the begin and end offsets of each size, in text order.
+    */
+   interface SpanConsumer {
+      void accept( int begin, int end );
+   }
+
+   private SizeScanner() {
+   }
+
+   /**
+    * Scan text[from,to) as if it were the entire text, reporting offsets relative to the full text.
+    *
+    * @return the number of sizes found.
+    */
+   static int scan( final CharSequence text, final int from, final int to, final SpanConsumer consumer ) {
+      int count = 0;
+      int i = from;
+      while ( i < to ) {
+         if ( !isDigit( text.charAt( i ) ) || !isBoundaryBefore( text, from, i ) ) {
+            i++;
+            continue;
+         }
+         final int end = matchEnd( text, to, i );
+         if ( end < 0 ) {
+            i++;
+            continue;
+         }
+         consumer.accept( i, end );
+         count++;
+         i = end;
+      }
+      return count;
+   }
+
+   /**
+    * @param start offset of a digit that begins a word.
+    * @return end of the size starting at start, or -1 if there is none.
+    */
+   static private int matchEnd( final CharSequence text, final int to, final int start ) {
+      // Chain of up to three dotted digit runs joined by S U? S C? S gaps.
+      // Every number the regex matches lies within one run, and the numbers in a run must exactly cover it.
+      final long run1 = run( text, to, start );
+      if ( run1 == NO_RUN ) {
+         return -1;
+      }
+      final int end1 = runEnd( run1 );
+      final int unit1 = unitEnd( text, to, end1 );
+      long run2 = NO_RUN;
+      int unit2 = -1;
+      long run3 = NO_RUN;
+      int unit3 = -1;
+      final int next2 = gapEnd( text, to, end1 );
+      if ( next2 < to && isDigit( text.charAt( next2 ) ) ) {
+         run2 = run( text, to, next2 );
+         if ( run2 != NO_RUN ) {
+            unit2 = unitEnd( text, to, runEnd( run2 ) );
+            final int next3 = gapEnd( text, to, runEnd( run2 ) );
+            if ( next3 < to && isDigit( text.charAt( next3 ) ) ) {
+               run3 = run( text, to, next3 );
+               if ( run3 != NO_RUN ) {
+                  unit3 = unitEnd( text, to, runEnd( run3 ) );
+               }
+            }
+         }
+      }
+      // The regex tries L x W x H, then L x W, then L.
+      // Within each, its first successful path puts as few numbers as possible in the earlier runs,
+      // so it ends with the furthest run that can hold the remaining numbers.
+      for ( int numbers = 3; numbers >= 1; numbers-- ) {
+         if ( unit3 >= 0 && fits( numbers, run1, run2, run3 ) ) {
+            return unit3;
+         }
+         if ( unit2 >= 0 && fits( numbers, run1, run2 ) ) {
+            return unit2;
+         }
+         if ( unit1 >= 0 && fits( numbers, run1 ) ) {
+            return unit1;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * A run is packed into a long as end offset, then the minimum and maximum numbers it can be split into.
+    */
+   static private final long NO_RUN = -1;
+
+   static private int runEnd( final long run ) {
+      return (int)( run >>> 32 );
+   }
+
+   static private int runMin( final long run ) {
+      return (int)( ( run >>> 16 ) & 0xFFFF );
+   }
+
+   static private int runMax( final long run ) {
+      return (int)( run & 0xFFFF );
+   }
+
+   static private boolean fits( final int numbers, final long run1 ) {
+      return runMin( run1 ) <= numbers && numbers <= runMax( run1 );
+   }
+
+   static private boolean fits( final int numbers, final long run1, final long run2 ) {
+      return runMin( run1 ) + runMin( run2 ) <= numbers && numbers <= runMax( run1 ) + runMax( run2 );
+   }
+
+   static private boolean fits( final int numbers, final long run1, final long run2, final long run3 ) {
+      return runMin( run1 ) + runMin( run2 ) + runMin( run3 ) <= numbers
+             && numbers <= runMax( run1 ) + runMax( run2 ) + runMax( run3 );
+   }
+
+   /**
+    * Read the run of digit groups joined by single dots that starts at the digit at start.
+    * A number holds at most one dot, with digits on both sides, so a run with k dots needs at least k numbers,
+    * at most one per digit less k, and cannot be split at all if a group between two dots has a single digit.
+    *
+    * @return the packed run, or NO_RUN if it cannot be split into numbers.
+    */
+   static private long run( final CharSequence text, final int to, final int start ) {
+      int i = skipDigits( text, to, start );
+      int digits = i - start;
+      int dots = 0;
+      boolean splittable = true;
+      while ( i + 1 < to && text.charAt( i ) == '.' && isDigit( text.charAt( i + 1 ) ) ) {
+         final int groupEnd = skipDigits( text, to, i + 1 );
+         final int groupLength = groupEnd - i - 1;
+         dots++;
+         digits += groupLength;
+         i = groupEnd;
+         if ( groupLength < 2 && i + 1 < to && text.charAt( i ) == '.' && isDigit( text.charAt( i + 1 ) ) ) {
+            splittable = false;
+         }
+      }
+      if ( !splittable ) {
+         return NO_RUN;
+      }
+      // At most three numbers are matched, so larger counts are capped to keep them in 16 bits.
+      final long min = Math.min( 4, Math.max( 1, dots ) );
+      final long max = Math.min( 3, digits - dots );
+      return ( (long)i << 32 ) | ( min << 16 ) | max;
+   }
+
+   /**
+    * S U? S C? S
+    *
+    * @return the offset after the gap.  This is always found as it can be empty.
+    */
+   static private int gapEnd( final CharSequence text, final int to, final int start ) {
+      int i = skipSpaces( text, to, start );
+      if ( isUnit( text, to, i ) ) {
+         i = skipSpaces( text, to, i + 2 );
+      }
+      return skipSpaces( text, to, i + conjunctionLength( text, to, i ) );
+   }
+
+   /**
+    * S U \b
+    *
+    * @return the offset after the unit, or -1 if there is no unit.
+    */
+   static private int unitEnd( final CharSequence text, final int to, final int start ) {
+      final int i = skipSpaces( text, to, start );
+      if ( !isUnit( text, to, i ) ) {
+         return -1;
+      }
+      final int end = i + 2;
+      return isBoundaryAfterLetter( text, to, end ) ? end : -1;
+   }
+
+   static private boolean isUnit( final CharSequence text, final int to, final int i ) {
+      if ( i + 1 >= to ) {
+         return false;
+      }
+      final char c = lower( text.charAt( i ) );
+      return ( c == 'c' || c == 'm' ) && lower( text.charAt( i + 1 ) ) == 'm';
+   }
+
+   /**
+    * @return length of x|by|to|and|&amp; at i, or 0.
+    */
+   static private int conjunctionLength( final CharSequence text, final int to, final int i ) {
+      if ( i >= to ) {
+         return 0;
+      }
+      switch ( lower( text.charAt( i ) ) ) {
+         case 'x':
+         case '&':
+            return 1;
+         case 'b':
+            return i + 1 < to && lower( text.charAt( i + 1 ) ) == 'y' ? 2 : 0;
+         case 't':
+            return i + 1 < to && lower( text.charAt( i + 1 ) ) == 'o' ? 2 : 0;
+         case 'a':
+            return i + 2 < to && lower( text.charAt( i + 1 ) ) == 'n' && lower( text.charAt( i + 2 ) ) == 'd'
+                   ? 3 : 0;
+         default:
+            return 0;
+      }
+   }
+
+   static private int skipDigits( final CharSequence text, final int to, final int start ) {
+      int i = start;
+      while ( i < to && isDigit( text.charAt( i ) ) ) {
+         i++;
+      }
+      return i;
+   }
+
+   static private int skipSpaces( final CharSequence text, final int to, final int start ) {
+      int i = start;
+      while ( i < to && isSpace( text.charAt( i ) ) ) {
+         i++;
+      }
+      return i;
+   }
+
+   /**
+    * \d without UNICODE_CHARACTER_CLASS.
+    */
+   static private boolean isDigit( final char c ) {
+      return c >= '0' && c <= '9';
+   }
+
+   /**
+    * \s without UNICODE_CHARACTER_CLASS.
+    */
+   static private boolean isSpace( final char c ) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+   }
+
+   /**
+    * CASE_INSENSITIVE without UNICODE_CASE only folds ascii.
+    */
+   static private char lower( final char c ) {
+      return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c;
+   }
+
+   /**
+    * Same word test as java.util.regex \b, including its treatment of non-spacing marks.
+    */
+   static private boolean isWord( final int codePoint ) {
+      return codePoint == '_' || Character.isLetterOrDigit( codePoint );
+   }
+
+   static private boolean isNonSpacingMark( final int codePoint ) {
+      return Character.getType( codePoint ) == Character.NON_SPACING_MARK;
+   }
+
+   /**
+    * \b before the digit at i.
+    */
+   static private boolean isBoundaryBefore( final CharSequence text, final int from, final int i ) {
+      if ( i <= from ) {
+         return true;
+      }
+      final int before = codePointBefore( text, from, i );
+      if ( isWord( before ) ) {
+         return false;
+      }
+      return !( isNonSpacingMark( before ) && hasBaseCharacter( text, from, i - 1 ) );
+   }
+
+   /**
+    * \b after the letter ending at i.
+    */
+   static private boolean isBoundaryAfterLetter( final CharSequence text, final int to, final int i ) {
+      if ( i >= to ) {
+         return true;
+      }
+      final int after = codePointAt( text, to, i );
+      // A non-spacing mark right after a letter has that letter as its base, so it is part of the word.
+      return !isWord( after ) && !isNonSpacingMark( after );
+   }
+
+   static private boolean hasBaseCharacter( final CharSequence text, final int from, final int i ) {
+      for ( int x = i; x >= from; x-- ) {
+         final int codePoint = Character.codePointAt( text, x );
+         if ( Character.isLetterOrDigit( codePoint ) ) {
+            return true;
+         }
+         if ( !isNonSpacingMark( codePoint ) ) {
+            return false;
+         }
+      }
+      return false;
+   }
+
+   static private int codePointBefore( final CharSequence text, final int from, final int i ) {
+      final char low = text.charAt( i - 1 );
+      if ( Character.isLowSurrogate( low ) && i - 2 >= from ) {
+         final char high = text.charAt( i - 2 );
+         if ( Character.isHighSurrogate( high ) ) {
+            return Character.toCodePoint( high, low );
+         }
+      }
+      return low;
+   }
+
+   static private int codePointAt( final CharSequence text, final int to, final int i ) {
+      final char high = text.charAt( i );
+      if ( Character.isHighSurrogate( high ) && i + 1 < to ) {
+         final char low = text.charAt( i + 1 );
+         if ( Character.isLowSurrogate( low ) ) {
+            return Character.toCodePoint( high, low );
+         }
+      }
+      return high;
+   }
+
+}
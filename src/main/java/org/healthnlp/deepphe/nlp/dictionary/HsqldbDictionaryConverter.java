@@ -0,0 +1,297 @@
+package org.healthnlp.deepphe.nlp.dictionary;
+
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Writes the tables of a dictionary database, e.g. the HSQLDB DeepPhe_2023_v1 dictionary,
+ * to a {@link MmapDictionaryStore} file.
+ * <p>
+ * Every table is copied with all of its columns as text.  Rows are keyed by the first column unless another
+ * column is given with -k, e.g. -k CUI_TERMS=RWORD to look up terms by rare word.
+ * Rows with a null key cannot be looked up, so they are left out and counted in the log.
+ * </p>
+ * Run from the command line:
+ * <pre>
+ * java -cp deepphe-omop-0.1.0.jar org.healthnlp.deepphe.nlp.dictionary.HsqldbDictionaryConverter
+ *      -u jdbc:hsqldb:file:resources/dphe-db-resources/hsqldb/DeepPhe_2023_v1/DeepPhe_2023_v1
+ *      -o resources/dphe-db-resources/DeepPhe_2023_v1.dmd
+ * </pre>
+ *
+ * @since {10/18/2026}
+ */
+final public class HsqldbDictionaryConverter {
+
+   static private final Logger LOGGER = Logger.getLogger( "HsqldbDictionaryConverter" );
+
+   private HsqldbDictionaryConverter() {
+   }
+
+   /**
+    * @param connection dictionary database.
+    * @param tables     tables to copy, or empty for every table.
+    * @param keyColumns key column by table name.  Tables without one are keyed by their first column.
+    * @param file       store file to write.  It is replaced only once it is complete.
+    */
+   static public void convert( final Connection connection, final Collection<String> tables,
+                               final Map<String, String> keyColumns, final Path file )
+         throws SQLException, IOException {
+      final List<String> names = tables.isEmpty() ? getTableNames( connection ) : new ArrayList<>( tables );
+      final List<TableData> tableData = new ArrayList<>( names.size() );
+      for ( String name : names ) {
+         tableData.add( readTable( connection, name, keyColumns.get( name.toUpperCase() ) ) );
+      }
+      final Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+      try ( DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream( Files.newOutputStream( temp ) ) ) ) {
+         writeStore( tableData, out );
+      }
+      try {
+         Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException amnsE ) {
+         Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+      }
+      LOGGER.info( "Wrote " + tableData.size() + " tables, " + Files.size( file ) / 1024 + " KB, to " + file );
+   }
+
+   static private List<String> getTableNames( final Connection connection ) throws SQLException {
+      final List<String> names = new ArrayList<>();
+      try ( ResultSet tables = connection.getMetaData().getTables( null, null, "%", new String[]{ "TABLE" } ) ) {
+         while ( tables.next() ) {
+            final String schema = tables.getString( "TABLE_SCHEM" );
+            if ( schema == null || !schema.startsWith( "SYSTEM" ) && !schema.equals( "INFORMATION_SCHEMA" ) ) {
+               names.add( tables.getString( "TABLE_NAME" ) );
+            }
+         }
+      }
+      return names;
+   }
+
+   /**
+    * A table's rows sorted by key as utf-8 bytes, the order in which the store searches.
+    */
+   static private final class TableData {
+      private final String _name;
+      private final String[] _columns;
+      private final int _keyColumn;
+      private final List<byte[][]> _rows;
+
+      private TableData( final String name, final String[] columns, final int keyColumn, final List<byte[][]> rows ) {
+         _name = name;
+         _columns = columns;
+         _keyColumn = keyColumn;
+         _rows = rows;
+      }
+   }
+
+   static private TableData readTable( final Connection connection, final String name, final String keyName )
+         throws SQLException {
+      final long start = System.currentTimeMillis();
+      final String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+      final List<byte[][]> rows = new ArrayList<>();
+      final String[] columns;
+      int keyColumn = 0;
+      int nullKeys = 0;
+      try ( Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery( "SELECT * FROM " + quote + name + quote ) ) {
+         final ResultSetMetaData metaData = resultSet.getMetaData();
+         columns = new String[ metaData.getColumnCount() ];
+         for ( int c = 0; c < columns.length; c++ ) {
+            columns[ c ] = metaData.getColumnName( c + 1 );
+            if ( columns[ c ].equalsIgnoreCase( keyName ) ) {
+               keyColumn = c;
+            }
+         }
+         if ( keyName != null && !columns[ keyColumn ].equalsIgnoreCase( keyName ) ) {
+            throw new SQLException( "Table " + name + " has no column " + keyName );
+         }
+         while ( resultSet.next() ) {
+            final byte[][] row = new byte[ columns.length ][];
+            for ( int c = 0; c < columns.length; c++ ) {
+               final String value = resultSet.getString( c + 1 );
+               row[ c ] = value == null ? null : value.getBytes( StandardCharsets.UTF_8 );
+            }
+            if ( row[ keyColumn ] == null ) {
+               nullKeys++;
+            } else {
+               rows.add( row );
+            }
+         }
+      }
+      final int key = keyColumn;
+      rows.sort( ( r1, r2 ) -> compare( r1[ key ], r2[ key ] ) );
+      LOGGER.info( "Read " + rows.size() + " rows of " + name + " keyed by " + columns[ keyColumn ]
+                   + ( nullKeys > 0 ? ", left out " + nullKeys + " with no key," : "" )
+                   + " in " + ( System.currentTimeMillis() - start ) + " ms." );
+      return new TableData( name, columns, keyColumn, rows );
+   }
+
+   static private int compare( final byte[] b1, final byte[] b2 ) {
+      final int length = Math.min( b1.length, b2.length );
+      for ( int i = 0; i < length; i++ ) {
+         final int compare = Integer.compare( b1[ i ] & 0xFF, b2[ i ] & 0xFF );
+         if ( compare != 0 ) {
+            return compare;
+         }
+      }
+      return Integer.compare( b1.length, b2.length );
+   }
+
+   static private void writeStore( final List<TableData> tables, final DataOutputStream out ) throws IOException {
+      final List<byte[]> sections = new ArrayList<>( tables.size() );
+      for ( TableData table : tables ) {
+         sections.add( createSection( table ) );
+      }
+      final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+      final DataOutputStream header = new DataOutputStream( headerBytes );
+      header.writeInt( MmapDictionaryStore.MAGIC );
+      header.writeInt( MmapDictionaryStore.VERSION );
+      header.writeInt( tables.size() );
+      // Section offsets are the one thing not known until the header is written, and they are fixed width.
+      final int[] offsetPositions = new int[ tables.size() ];
+      for ( int i = 0; i < tables.size(); i++ ) {
+         final TableData table = tables.get( i );
+         writeString( table._name, header );
+         header.writeInt( table._columns.length );
+         for ( String column : table._columns ) {
+            writeString( column, header );
+         }
+         header.writeInt( table._keyColumn );
+         header.writeInt( table._rows.size() );
+         header.writeInt( countKeys( table ) );
+         offsetPositions[ i ] = header.size();
+         header.writeInt( 0 );
+      }
+      final byte[] headerArray = headerBytes.toByteArray();
+      long offset = headerArray.length;
+      for ( int i = 0; i < sections.size(); i++ ) {
+         if ( offset > Integer.MAX_VALUE ) {
+            throw new IOException( "Dictionary store would be over 2 GB." );
+         }
+         final int position = offsetPositions[ i ];
+         headerArray[ position ] = (byte)( offset >>> 24 );
+         headerArray[ position + 1 ] = (byte)( offset >>> 16 );
+         headerArray[ position + 2 ] = (byte)( offset >>> 8 );
+         headerArray[ position + 3 ] = (byte)offset;
+         offset += sections.get( i ).length;
+      }
+      out.write( headerArray );
+      for ( byte[] section : sections ) {
+         out.write( section );
+      }
+   }
+
+   static private int countKeys( final TableData table ) {
+      int keys = 0;
+      byte[] previous = null;
+      for ( byte[][] row : table._rows ) {
+         if ( previous == null || compare( previous, row[ table._keyColumn ] ) != 0 ) {
+            keys++;
+            previous = row[ table._keyColumn ];
+         }
+      }
+      return keys;
+   }
+
+   static private byte[] createSection( final TableData table ) throws IOException {
+      final int key = table._keyColumn;
+      final ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+      final List<Integer> keyOffsets = new ArrayList<>();
+      final List<Integer> keyRows = new ArrayList<>();
+      final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+      final DataOutputStream rowOut = new DataOutputStream( rowBytes );
+      final int[] rowOffsets = new int[ table._rows.size() + 1 ];
+      byte[] previous = null;
+      for ( int r = 0; r < table._rows.size(); r++ ) {
+         final byte[][] row = table._rows.get( r );
+         if ( previous == null || compare( previous, row[ key ] ) != 0 ) {
+            keyOffsets.add( keyBytes.size() );
+            keyRows.add( r );
+            keyBytes.write( row[ key ] );
+            previous = row[ key ];
+         }
+         rowOffsets[ r ] = rowOut.size();
+         for ( byte[] value : row ) {
+            if ( value == null ) {
+               rowOut.writeInt( -1 );
+            } else {
+               rowOut.writeInt( value.length );
+               rowOut.write( value );
+            }
+         }
+      }
+      keyOffsets.add( keyBytes.size() );
+      keyRows.add( table._rows.size() );
+      rowOffsets[ table._rows.size() ] = rowOut.size();
+      final ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+      final DataOutputStream section = new DataOutputStream( sectionBytes );
+      for ( int keyOffset : keyOffsets ) {
+         section.writeInt( keyOffset );
+      }
+      keyBytes.writeTo( section );
+      for ( int keyRow : keyRows ) {
+         section.writeInt( keyRow );
+      }
+      for ( int rowOffset : rowOffsets ) {
+         section.writeInt( rowOffset );
+      }
+      rowBytes.writeTo( section );
+      return sectionBytes.toByteArray();
+   }
+
+   static private void writeString( final String value, final DataOutput out ) throws IOException {
+      final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+      out.writeInt( bytes.length );
+      out.write( bytes );
+   }
+
+   public static void main( final String... args ) throws SQLException, IOException {
+      final Options options = new Options();
+      options.addOption( "u", "url", true, "Jdbc url of the dictionary database." );
+      options.addOption( "o", "output", true, "Dictionary store file to write." );
+      options.addOption( "t", "table", true, "Table to copy.  May be repeated.  Default every table." );
+      options.addOption( "k", "key", true, "TABLE=COLUMN key column of a table.  May be repeated." );
+      options.addOption( "user", true, "Database user.  Default SA" );
+      options.addOption( "pass", true, "Database password.  Default empty" );
+      final CommandLine cmd;
+      try {
+         cmd = new BasicParser().parse( options, args );
+      } catch ( ParseException pE ) {
+         System.err.println( "Error parsing command line arguments: " + pE.getMessage() );
+         new HelpFormatter().printHelp( "HsqldbDictionaryConverter", options );
+         System.exit( 1 );
+         return;
+      }
+      if ( !cmd.hasOption( "u" ) || !cmd.hasOption( "o" ) ) {
+         new HelpFormatter().printHelp( "HsqldbDictionaryConverter", options );
+         System.exit( 1 );
+         return;
+      }
+      final List<String> tables = cmd.hasOption( "t" )
+                                  ? Arrays.asList( cmd.getOptionValues( "t" ) ) : Collections.emptyList();
+      final Map<String, String> keyColumns = new HashMap<>();
+      if ( cmd.hasOption( "k" ) ) {
+         for ( String key : cmd.getOptionValues( "k" ) ) {
+            final int equals = key.indexOf( '=' );
+            if ( equals <= 0 ) {
+               System.err.println( "Key column must be TABLE=COLUMN : " + key );
+               System.exit( 1 );
+               return;
+            }
+            keyColumns.put( key.substring( 0, equals ).trim().toUpperCase(), key.substring( equals + 1 ).trim() );
+         }
+      }
+      try ( Connection connection = DriverManager.getConnection( cmd.getOptionValue( "u" ),
+                                                                 cmd.getOptionValue( "user", "SA" ),
+                                                                 cmd.getOptionValue( "pass", "" ) ) ) {
+         convert( connection, tables, keyColumns, Paths.get( cmd.getOptionValue( "o" ) ) );
+      }
+   }
+
+}
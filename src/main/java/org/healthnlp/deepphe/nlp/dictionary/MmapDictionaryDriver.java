@@ -0,0 +1,416 @@
+package org.healthnlp.deepphe.nlp.dictionary;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A read-only JDBC driver over a {@link MmapDictionaryStore}, so that the JDBC dictionaries and concept detailers
+ * of the cased ner can search a memory mapped store instead of HSQLDB without any change but their url:
+ * <pre>
+ * set deepphe_2023_v1_url=jdbc:dphe-mmap:/app/resources/dphe-db-resources/DeepPhe_2023_v1.dmd
+ * </pre>
+ * The driver understands the queries that dictionaries and detailers make:
+ * {@code SELECT * FROM table WHERE column = ?}, with a column list instead of * if wanted, and the same without a where.
+ * The where column must be the key column the table was written with, see {@link HsqldbDictionaryConverter}.
+ * Values are text, and numeric getters parse them.  Anything else throws an SQLException.
+ * <p>
+ * Every connection to a file shares one mapping of it, see {@link MmapDictionaryStore#open(java.nio.file.Path)}.
+ * The driver is registered as a java.sql.Driver service, so DriverManager finds it by url.
+ * </p>
+ *
+ * @since {10/18/2026}
+ */
+final public class MmapDictionaryDriver implements Driver {
+
+   static public final String URL_PREFIX = "jdbc:dphe-mmap:";
+
+   static private final Pattern SELECT_PATTERN = Pattern.compile(
+         "\\s*SELECT\\s+(.+?)\\s+FROM\\s+\"?(\\w+)\"?(?:\\s+WHERE\\s+(?:\\w+\\.)?\"?(\\w+)\"?\\s*=\\s*\\?)?\\s*;?\\s*",
+         Pattern.CASE_INSENSITIVE | Pattern.DOTALL );
+
+   static {
+      try {
+         DriverManager.registerDriver( new MmapDictionaryDriver() );
+      } catch ( SQLException sqlE ) {
+         throw new ExceptionInInitializerError( sqlE );
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Connection connect( final String url, final Properties info ) throws SQLException {
+      if ( !acceptsURL( url ) ) {
+         return null;
+      }
+      final String file = url.substring( URL_PREFIX.length() ).trim();
+      try {
+         final MmapDictionaryStore store = MmapDictionaryStore.open( Paths.get( file ) );
+         return proxy( Connection.class, new ConnectionHandler( store ) );
+      } catch ( IOException | RuntimeException e ) {
+         throw new SQLException( "Could not open dictionary store " + file + " : " + e.getMessage(), e );
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean acceptsURL( final String url ) {
+      return url != null && url.startsWith( URL_PREFIX );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DriverPropertyInfo[] getPropertyInfo( final String url, final Properties info ) {
+      return new DriverPropertyInfo[ 0 ];
+   }
+
+   @Override
+   public int getMajorVersion() {
+      return MmapDictionaryStore.VERSION;
+   }
+
+   @Override
+   public int getMinorVersion() {
+      return 0;
+   }
+
+   @Override
+   public boolean jdbcCompliant() {
+      return false;
+   }
+
+   @Override
+   public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+   /**
+    * @param sql query.
+    * @return the table, the indices of the selected columns and whether rows are looked up by key.
+    * @throws SQLException if the query is not one that the store can answer.
+    */
+   static private Query parse( final MmapDictionaryStore store, final String sql ) throws SQLException {
+      final Matcher matcher = SELECT_PATTERN.matcher( sql );
+      if ( !matcher.matches() ) {
+         throw new SQLFeatureNotSupportedException( "Dictionary stores only answer SELECT columns FROM table"
+                                                    + " [WHERE key = ?], not " + sql );
+      }
+      final MmapDictionaryStore.Table table = store.getTable( matcher.group( 2 ) );
+      if ( table == null ) {
+         throw new SQLException( "No table " + matcher.group( 2 ) + " in dictionary store " + store.getFile() );
+      }
+      final List<String> columns = table.getColumns();
+      final int[] selected;
+      if ( matcher.group( 1 ).trim().equals( "*" ) ) {
+         selected = new int[ columns.size() ];
+         for ( int i = 0; i < selected.length; i++ ) {
+            selected[ i ] = i;
+         }
+      } else {
+         final String[] names = matcher.group( 1 ).split( "," );
+         selected = new int[ names.length ];
+         for ( int i = 0; i < names.length; i++ ) {
+            selected[ i ] = getColumnIndex( table, names[ i ] );
+         }
+      }
+      final String where = matcher.group( 3 );
+      if ( where != null && !where.equalsIgnoreCase( table.getKeyColumn() ) ) {
+         throw new SQLFeatureNotSupportedException( "Table " + table.getName() + " is keyed by "
+                                                    + table.getKeyColumn() + ", not " + where
+                                                    + ".  Convert it with -k " + table.getName() + "=" + where );
+      }
+      return new Query( table, selected, where != null );
+   }
+
+   static private int getColumnIndex( final MmapDictionaryStore.Table table, final String name ) throws SQLException {
+      String column = name.trim().replace( "\"", "" );
+      column = column.substring( column.lastIndexOf( '.' ) + 1 );
+      final List<String> columns = table.getColumns();
+      for ( int i = 0; i < columns.size(); i++ ) {
+         if ( columns.get( i ).equalsIgnoreCase( column ) ) {
+            return i;
+         }
+      }
+      throw new SQLException( "No column " + column + " in table " + table.getName() );
+   }
+
+   static private final class Query {
+      private final MmapDictionaryStore.Table _table;
+      private final int[] _columns;
+      private final boolean _keyed;
+
+      private Query( final MmapDictionaryStore.Table table, final int[] columns, final boolean keyed ) {
+         _table = table;
+         _columns = columns;
+         _keyed = keyed;
+      }
+
+      private List<String[]> getRows( final String key ) throws SQLException {
+         if ( !_keyed ) {
+            final List<String[]> rows = new ArrayList<>( _table.getRowCount() );
+            for ( int row = 0; row < _table.getRowCount(); row++ ) {
+               rows.add( _table.getRow( row ) );
+            }
+            return rows;
+         }
+         if ( key == null ) {
+            throw new SQLException( "No value for the " + _table.getKeyColumn() + " parameter." );
+         }
+         return _table.getRows( key );
+      }
+   }
+
+   @SuppressWarnings( "unchecked" )
+   static private <T> T proxy( final Class<T> type, final InvocationHandler handler ) {
+      return (T)Proxy.newProxyInstance( MmapDictionaryDriver.class.getClassLoader(), new Class<?>[]{ type }, handler );
+   }
+
+   /**
+    * Handles the methods that every jdbc object has.  Others are passed to {@link #handle(String, Object[])}.
+    */
+   static private abstract class Handler implements InvocationHandler {
+      protected boolean _closed;
+
+      @Override
+      public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable {
+         final String name = method.getName();
+         switch ( name ) {
+            case "close":
+               _closed = true;
+               return null;
+            case "isClosed":
+               return _closed;
+            case "isWrapperFor":
+               return ( (Class<?>)args[ 0 ] ).isInstance( proxy );
+            case "unwrap":
+               if ( ( (Class<?>)args[ 0 ] ).isInstance( proxy ) ) {
+                  return proxy;
+               }
+               throw new SQLException( "Not a wrapper for " + args[ 0 ] );
+            case "hashCode":
+               return System.identityHashCode( proxy );
+            case "equals":
+               return proxy == args[ 0 ];
+            case "toString":
+               return getClass().getSimpleName() + "@" + Integer.toHexString( System.identityHashCode( proxy ) );
+            case "getWarnings":
+            case "clearWarnings":
+               return null;
+         }
+         if ( _closed ) {
+            throw new SQLException( "Closed." );
+         }
+         try {
+            return handle( name, args == null ? new Object[ 0 ] : args );
+         } catch ( RuntimeException rtE ) {
+            // e.g. a numeric getter on text that is not a number.
+            throw new SQLException( name + " failed : " + rtE.getMessage(), rtE );
+         }
+      }
+
+      abstract protected Object handle( String name, Object[] args ) throws SQLException;
+
+      static protected SQLException unsupported( final String name ) {
+         return new SQLFeatureNotSupportedException( name + " is not supported by a read-only dictionary store." );
+      }
+   }
+
+   static private final class ConnectionHandler extends Handler {
+      private final MmapDictionaryStore _store;
+
+      private ConnectionHandler( final MmapDictionaryStore store ) {
+         _store = store;
+      }
+
+      @Override
+      protected Object handle( final String name, final Object[] args ) throws SQLException {
+         switch ( name ) {
+            case "prepareStatement":
+               return proxy( PreparedStatement.class, new StatementHandler( parse( _store, (String)args[ 0 ] ) ) );
+            case "createStatement":
+               return proxy( Statement.class, new StatementHandler( null, _store ) );
+            case "isReadOnly":
+            case "getAutoCommit":
+            case "isValid":
+               return true;
+            case "setReadOnly":
+            case "setAutoCommit":
+            case "commit":
+            case "rollback":
+            case "setTransactionIsolation":
+               return null;
+            case "getTransactionIsolation":
+               return Connection.TRANSACTION_NONE;
+            case "getCatalog":
+            case "getSchema":
+               return null;
+         }
+         throw unsupported( name );
+      }
+   }
+
+   static private final class StatementHandler extends Handler {
+      private final Query _query;
+      private final MmapDictionaryStore _store;
+      private String _key;
+
+      private StatementHandler( final Query query ) {
+         this( query, null );
+      }
+
+      private StatementHandler( final Query query, final MmapDictionaryStore store ) {
+         _query = query;
+         _store = store;
+      }
+
+      @Override
+      protected Object handle( final String name, final Object[] args ) throws SQLException {
+         switch ( name ) {
+            case "setString":
+            case "setObject":
+            case "setInt":
+            case "setLong":
+               if ( (Integer)args[ 0 ] != 1 ) {
+                  throw new SQLException( "Dictionary store queries have one parameter, not " + args[ 0 ] );
+               }
+               _key = args[ 1 ] == null ? null : args[ 1 ].toString();
+               return null;
+            case "clearParameters":
+               _key = null;
+               return null;
+            case "executeQuery":
+               if ( ( args.length > 0 ) == ( _store == null ) ) {
+                  throw new SQLException( args.length > 0 ? "A prepared statement has its query already."
+                                                          : "No query." );
+               }
+               final Query query = args.length > 0 ? parse( _store, (String)args[ 0 ] ) : _query;
+               return proxy( ResultSet.class, new ResultSetHandler( query, query.getRows( _key ) ) );
+            case "setFetchSize":
+            case "setMaxRows":
+            case "setQueryTimeout":
+               return null;
+         }
+         throw unsupported( name );
+      }
+   }
+
+   static private final class ResultSetHandler extends Handler {
+      private final Query _query;
+      private final List<String[]> _rows;
+      private int _row = -1;
+      private boolean _wasNull;
+
+      private ResultSetHandler( final Query query, final List<String[]> rows ) {
+         _query = query;
+         _rows = rows;
+      }
+
+      @Override
+      protected Object handle( final String name, final Object[] args ) throws SQLException {
+         switch ( name ) {
+            case "next":
+               _row++;
+               return _row < _rows.size();
+            case "wasNull":
+               return _wasNull;
+            case "findColumn":
+               return findColumn( (String)args[ 0 ] );
+            case "getMetaData":
+               return proxy( ResultSetMetaData.class, new MetaDataHandler( _query ) );
+            case "getString":
+            case "getObject":
+               return getValue( args[ 0 ] );
+            case "getInt":
+               final String i = getValue( args[ 0 ] );
+               return i == null ? 0 : Integer.parseInt( i.trim() );
+            case "getLong":
+               final String l = getValue( args[ 0 ] );
+               return l == null ? 0L : Long.parseLong( l.trim() );
+            case "getShort":
+               final String s = getValue( args[ 0 ] );
+               return s == null ? (short)0 : Short.parseShort( s.trim() );
+            case "getDouble":
+               final String d = getValue( args[ 0 ] );
+               return d == null ? 0d : Double.parseDouble( d.trim() );
+            case "getFloat":
+               final String f = getValue( args[ 0 ] );
+               return f == null ? 0f : Float.parseFloat( f.trim() );
+            case "getBoolean":
+               final String b = getValue( args[ 0 ] );
+               return b != null && ( b.trim().equalsIgnoreCase( "true" ) || b.trim().equals( "1" ) );
+            case "getFetchSize":
+               return 0;
+            case "setFetchSize":
+               return null;
+         }
+         throw unsupported( name );
+      }
+
+      private int findColumn( final String label ) throws SQLException {
+         final int index = getColumnIndex( _query._table, label );
+         for ( int i = 0; i < _query._columns.length; i++ ) {
+            if ( _query._columns[ i ] == index ) {
+               return i + 1;
+            }
+         }
+         throw new SQLException( "Column " + label + " was not selected." );
+      }
+
+      private String getValue( final Object column ) throws SQLException {
+         if ( _row < 0 || _row >= _rows.size() ) {
+            throw new SQLException( "No current row." );
+         }
+         final int index = column instanceof String ? findColumn( (String)column ) : (Integer)column;
+         if ( index < 1 || index > _query._columns.length ) {
+            throw new SQLException( "No column " + index );
+         }
+         final String value = _rows.get( _row )[ _query._columns[ index - 1 ] ];
+         _wasNull = value == null;
+         return value;
+      }
+   }
+
+   static private final class MetaDataHandler extends Handler {
+      private final Query _query;
+
+      private MetaDataHandler( final Query query ) {
+         _query = query;
+      }
+
+      @Override
+      protected Object handle( final String name, final Object[] args ) throws SQLException {
+         switch ( name ) {
+            case "getColumnCount":
+               return _query._columns.length;
+            case "getColumnName":
+            case "getColumnLabel":
+               return _query._table.getColumns().get( _query._columns[ (Integer)args[ 0 ] - 1 ] );
+            case "getTableName":
+               return _query._table.getName();
+            case "getColumnType":
+               return Types.VARCHAR;
+            case "getColumnTypeName":
+               return "VARCHAR";
+            case "getColumnClassName":
+               return String.class.getName();
+            case "isNullable":
+               return ResultSetMetaData.columnNullable;
+         }
+         throw unsupported( name );
+      }
+   }
+
+}
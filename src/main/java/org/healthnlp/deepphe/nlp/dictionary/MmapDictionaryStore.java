@@ -0,0 +1,283 @@
+package org.healthnlp.deepphe.nlp.dictionary;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only dictionary tables in a memory mapped file written by {@link HsqldbDictionaryConverter}.
+ * <p>
+ * Each table's rows are sorted by a key column, e.g. the rare word of the term table or the cui of the
+ * concept tables, and a lookup is a binary search of the sorted distinct keys as utf-8 bytes.
+ * Nothing is copied into the heap until a row is returned, so a large dictionary costs page cache instead of heap,
+ * and every engine and every JVM on the machine that maps the same file shares the same pages.
+ * </p>
+ * A store is immutable.  Lookups take no locks and may be made from any number of threads.
+ * The JDBC dictionaries and concept detailers of the cased ner read a store through {@link MmapDictionaryDriver}.
+ * <pre>
+ * magic "DPMD" , version , table count
+ * per table : name , column count , column names , key column , row count , key count , section offset
+ * per section : key offsets (key count + 1 ints) , key bytes ,
+ *               first row of each key (key count + 1 ints) ,
+ *               row offsets (row count + 1 ints) , rows : per column an int length (-1 for null) and utf-8 bytes
+ * </pre>
+ *
+ * @since {10/18/2026}
+ */
+final public class MmapDictionaryStore {
+
+   static private final Logger LOGGER = Logger.getLogger( "MmapDictionaryStore" );
+
+   static final int MAGIC = ( 'D' << 24 ) | ( 'P' << 16 ) | ( 'M' << 8 ) | 'D';
+   static final int VERSION = 1;
+
+   static private final Map<Path, MmapDictionaryStore> OPEN_STORES = new ConcurrentHashMap<>();
+
+   private final Path _file;
+   private final Map<String, Table> _tables;
+
+   private MmapDictionaryStore( final Path file, final Map<String, Table> tables ) {
+      _file = file;
+      _tables = tables;
+   }
+
+   /**
+    * @param file store file.
+    * @return the store in the file, mapped once per JVM however many dictionaries and detailers use it.
+    * @throws IOException if the file cannot be read or is not a dictionary store.
+    */
+   static public MmapDictionaryStore open( final Path file ) throws IOException {
+      final Path key = file.toRealPath();
+      final MmapDictionaryStore open = OPEN_STORES.get( key );
+      if ( open != null ) {
+         return open;
+      }
+      synchronized ( OPEN_STORES ) {
+         MmapDictionaryStore store = OPEN_STORES.get( key );
+         if ( store == null ) {
+            store = map( key );
+            OPEN_STORES.put( key, store );
+         }
+         return store;
+      }
+   }
+
+   static private MmapDictionaryStore map( final Path file ) throws IOException {
+      final long start = System.currentTimeMillis();
+      final ByteBuffer buffer;
+      try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+         if ( channel.size() > Integer.MAX_VALUE ) {
+            throw new IOException( "Dictionary store " + file + " is over 2 GB." );
+         }
+         // The mapping stays valid after the channel is closed.
+         buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+      }
+      try {
+         if ( buffer.getInt() != MAGIC ) {
+            throw new IOException( file + " is not a dictionary store." );
+         }
+         final int version = buffer.getInt();
+         if ( version != VERSION ) {
+            throw new IOException( "Unsupported dictionary store version " + version + " in " + file );
+         }
+         final int tableCount = buffer.getInt();
+         final Map<String, Table> tables = new LinkedHashMap<>( tableCount * 2 );
+         for ( int i = 0; i < tableCount; i++ ) {
+            final String name = readString( buffer );
+            final String[] columns = new String[ buffer.getInt() ];
+            for ( int c = 0; c < columns.length; c++ ) {
+               columns[ c ] = readString( buffer );
+            }
+            final int keyColumn = buffer.getInt();
+            final int rowCount = buffer.getInt();
+            final int keyCount = buffer.getInt();
+            final int offset = buffer.getInt();
+            tables.put( name.toUpperCase(), new Table( name, columns, keyColumn, rowCount, keyCount, buffer, offset ) );
+         }
+         LOGGER.info( "Mapped dictionary store " + file + " with " + tables.size() + " tables in "
+                      + ( System.currentTimeMillis() - start ) + " ms." );
+         return new MmapDictionaryStore( file, Collections.unmodifiableMap( tables ) );
+      } catch ( RuntimeException rtE ) {
+         throw new IOException( "Corrupt dictionary store " + file, rtE );
+      }
+   }
+
+   public Path getFile() {
+      return _file;
+   }
+
+   public Collection<Table> getTables() {
+      return _tables.values();
+   }
+
+   /**
+    * @param name table name, in any case.
+    * @return the table, or null if there is no such table.
+    */
+   public Table getTable( final String name ) {
+      return _tables.get( name.toUpperCase() );
+   }
+
+   /**
+    * One dictionary table, with rows sorted by the key column.
+    */
+   static public final class Table {
+      private final String _name;
+      private final String[] _columns;
+      private final int _keyColumn;
+      private final int _rowCount;
+      private final int _keyCount;
+      private final ByteBuffer _buffer;
+      private final int _keyOffsets;
+      private final int _keyBytes;
+      private final int _keyRows;
+      private final int _rowOffsets;
+      private final int _rowBytes;
+
+      private Table( final String name, final String[] columns, final int keyColumn,
+                     final int rowCount, final int keyCount, final ByteBuffer buffer, final int offset ) {
+         _name = name;
+         _columns = columns;
+         _keyColumn = keyColumn;
+         _rowCount = rowCount;
+         _keyCount = keyCount;
+         _buffer = buffer;
+         _keyOffsets = offset;
+         _keyBytes = _keyOffsets + ( keyCount + 1 ) * Integer.BYTES;
+         _keyRows = _keyBytes + buffer.getInt( _keyOffsets + keyCount * Integer.BYTES );
+         _rowOffsets = _keyRows + ( keyCount + 1 ) * Integer.BYTES;
+         _rowBytes = _rowOffsets + ( rowCount + 1 ) * Integer.BYTES;
+      }
+
+      public String getName() {
+         return _name;
+      }
+
+      public List<String> getColumns() {
+         return Collections.unmodifiableList( Arrays.asList( _columns ) );
+      }
+
+      public String getKeyColumn() {
+         return _columns[ _keyColumn ];
+      }
+
+      public int getRowCount() {
+         return _rowCount;
+      }
+
+      public int getKeyCount() {
+         return _keyCount;
+      }
+
+      /**
+       * @param key value of the key column.
+       * @return every row with the key, each with a value per column.  Empty if there are none.
+       */
+      public List<String[]> getRows( final String key ) {
+         final int index = findKey( key.getBytes( StandardCharsets.UTF_8 ) );
+         if ( index < 0 ) {
+            return Collections.emptyList();
+         }
+         final int first = _buffer.getInt( _keyRows + index * Integer.BYTES );
+         final int last = _buffer.getInt( _keyRows + ( index + 1 ) * Integer.BYTES );
+         final List<String[]> rows = new ArrayList<>( last - first );
+         for ( int row = first; row < last; row++ ) {
+            rows.add( getRow( row ) );
+         }
+         return rows;
+      }
+
+      /**
+       * @param index key number, 0 to the key count.
+       * @return the key, in sorted order.
+       */
+      public String getKey( final int index ) {
+         final int begin = _buffer.getInt( _keyOffsets + index * Integer.BYTES );
+         final int end = _buffer.getInt( _keyOffsets + ( index + 1 ) * Integer.BYTES );
+         return decode( _keyBytes + begin, end - begin );
+      }
+
+      /**
+       * @return true if any row has the key.
+       */
+      public boolean containsKey( final String key ) {
+         return findKey( key.getBytes( StandardCharsets.UTF_8 ) ) >= 0;
+      }
+
+      /**
+       * @param row row number, 0 to the row count.
+       * @return the row, with a value per column.
+       */
+      public String[] getRow( final int row ) {
+         int position = _rowBytes + _buffer.getInt( _rowOffsets + row * Integer.BYTES );
+         final String[] values = new String[ _columns.length ];
+         for ( int c = 0; c < values.length; c++ ) {
+            final int length = _buffer.getInt( position );
+            position += Integer.BYTES;
+            if ( length >= 0 ) {
+               values[ c ] = decode( position, length );
+               position += length;
+            }
+         }
+         return values;
+      }
+
+      /**
+       * Binary search of the sorted keys, comparing unsigned utf-8 bytes in place.
+       */
+      private int findKey( final byte[] key ) {
+         int low = 0;
+         int high = _keyCount - 1;
+         while ( low <= high ) {
+            final int mid = ( low + high ) >>> 1;
+            final int compare = compareKey( mid, key );
+            if ( compare < 0 ) {
+               low = mid + 1;
+            } else if ( compare > 0 ) {
+               high = mid - 1;
+            } else {
+               return mid;
+            }
+         }
+         return -1;
+      }
+
+      private int compareKey( final int index, final byte[] key ) {
+         final int begin = _keyBytes + _buffer.getInt( _keyOffsets + index * Integer.BYTES );
+         final int end = _keyBytes + _buffer.getInt( _keyOffsets + ( index + 1 ) * Integer.BYTES );
+         final int length = Math.min( end - begin, key.length );
+         for ( int i = 0; i < length; i++ ) {
+            final int compare = Integer.compare( _buffer.get( begin + i ) & 0xFF, key[ i ] & 0xFF );
+            if ( compare != 0 ) {
+               return compare;
+            }
+         }
+         return Integer.compare( end - begin, key.length );
+      }
+
+      /**
+       * A duplicate has its own position, so the shared buffer is never moved and reads need no lock.
+       */
+      private String decode( final int position, final int length ) {
+         final byte[] bytes = new byte[ length ];
+         final ByteBuffer view = _buffer.duplicate();
+         view.position( position );
+         view.get( bytes );
+         return new String( bytes, StandardCharsets.UTF_8 );
+      }
+   }
+
+   static private String readString( final ByteBuffer buffer ) {
+      final byte[] bytes = new byte[ buffer.getInt() ];
+      buffer.get( bytes );
+      return new String( bytes, StandardCharsets.UTF_8 );
+   }
+
+}
@@ -0,0 +1,256 @@
+package org.healthnlp.deepphe.nlp.ontology;
+
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.log4j.Logger;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.healthnlp.deepphe.nlp.neo4j.Neo4jOntologyConceptUtil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Immutable index of the uris under ontology branch roots, so that branch membership is a hash lookup and a bit test
+ * instead of a graph traversal.
+ * <p>
+ * Every uri in an indexed branch has an int id, and each branch is a bit set of ids.
+ * The index is built once from the graph, or read from a snapshot file written by an earlier build.
+ * After that the graph is not used for indexed branches, and lookups need no locks.
+ * Branches that are not indexed are passed through to {@link Neo4jOntologyConceptUtil}.
+ * </p>
+ * The snapshot is taken from the graph as it was, so it must be deleted or rebuilt when the ontology changes.
+ *
+ * @since {10/18/2026}
+ */
+final public class OntologyBranchIndex {
+
+   static private final Logger LOGGER = Logger.getLogger( "OntologyBranchIndex" );
+
+   /**
+    * System property for a snapshot file.  It is read if it exists, otherwise written after the index is built.
+    */
+   static public final String SNAPSHOT_PROPERTY = "dphe.ontology.branchIndex";
+
+   /**
+    * Branches used on the per-document path.
+    */
+   static public final List<String> DEFAULT_ROOTS = Collections.unmodifiableList(
+         Arrays.asList( "GradingSystem", "CTCAE_Grade_Finding" ) );
+
+   static private final int MAGIC = ( 'D' << 24 ) | ( 'P' << 16 ) | ( 'O' << 8 ) | 'B';
+   static private final int VERSION = 1;
+
+   static private volatile OntologyBranchIndex _instance;
+
+   private final String[] _uris;
+   private final Map<String, Integer> _ids;
+   private final Map<String, BitSet> _branches;
+
+   private OntologyBranchIndex( final String[] uris, final Map<String, BitSet> branches ) {
+      _uris = uris;
+      final Map<String, Integer> ids = new HashMap<>( uris.length * 2 );
+      for ( int i = 0; i < uris.length; i++ ) {
+         ids.put( uris[ i ], i );
+      }
+      _ids = ids;
+      _branches = branches;
+   }
+
+   /**
+    * @return the index of the {@link #DEFAULT_ROOTS}, read from the snapshot if there is one,
+    * otherwise built from the graph the first time this is called.  The graph must be connected by then.
+    */
+   static public OntologyBranchIndex getInstance() {
+      OntologyBranchIndex index = _instance;
+      if ( index != null ) {
+         return index;
+      }
+      synchronized ( OntologyBranchIndex.class ) {
+         if ( _instance == null ) {
+            _instance = load( System.getProperty( SNAPSHOT_PROPERTY ) );
+         }
+         return _instance;
+      }
+   }
+
+   static private OntologyBranchIndex load( final String snapshot ) {
+      final Path file = snapshot == null || snapshot.trim().isEmpty() ? null : Paths.get( snapshot.trim() );
+      if ( file != null && Files.isRegularFile( file ) ) {
+         try {
+            final OntologyBranchIndex index = read( file );
+            if ( index._branches.keySet().containsAll( DEFAULT_ROOTS ) ) {
+               LOGGER.info( "Read ontology branch index of " + index._uris.length + " uris from " + file );
+               return index;
+            }
+            LOGGER.warn( "Ontology branch index " + file + " is missing branches, it will be rebuilt." );
+         } catch ( IOException ioE ) {
+            LOGGER.warn( "Could not read ontology branch index " + file + " : " + ioE.getMessage() );
+         }
+      }
+      final long start = System.currentTimeMillis();
+      final OntologyBranchIndex index = build( DEFAULT_ROOTS );
+      LOGGER.info( "Built ontology branch index of " + index._uris.length + " uris in "
+                   + ( System.currentTimeMillis() - start ) + " ms." );
+      if ( file != null ) {
+         try {
+            index.write( file );
+         } catch ( IOException ioE ) {
+            LOGGER.warn( "Could not write ontology branch index " + file + " : " + ioE.getMessage() );
+         }
+      }
+      return index;
+   }
+
+   /**
+    * @param roots roots of the branches to index.
+    * @return an index of the branches as they are in the graph.
+    */
+   static public OntologyBranchIndex build( final Collection<String> roots ) {
+      final Map<String, Collection<String>> branchUris = new LinkedHashMap<>();
+      final SortedSet<String> allUris = new TreeSet<>();
+      for ( String root : roots ) {
+         final Collection<String> uris = Neo4jOntologyConceptUtil.getBranchUris( root );
+         branchUris.put( root, uris );
+         allUris.addAll( uris );
+      }
+      final String[] uris = allUris.toArray( new String[ 0 ] );
+      final Map<String, BitSet> branches = new LinkedHashMap<>();
+      for ( Map.Entry<String, Collection<String>> branch : branchUris.entrySet() ) {
+         final BitSet members = new BitSet( uris.length );
+         for ( String uri : branch.getValue() ) {
+            members.set( Arrays.binarySearch( uris, uri ) );
+         }
+         branches.put( branch.getKey(), members );
+      }
+      return new OntologyBranchIndex( uris, branches );
+   }
+
+   /**
+    * @return true if the root's branch is in this index.
+    */
+   public boolean isIndexed( final String root ) {
+      return _branches.containsKey( root );
+   }
+
+   /**
+    * @return true if the uri is in the branch of the given root.
+    * @throws IllegalArgumentException if the branch is not indexed.
+    */
+   public boolean isInBranch( final String root, final String uri ) {
+      final BitSet branch = _branches.get( root );
+      if ( branch == null ) {
+         throw new IllegalArgumentException( "Ontology branch " + root + " is not indexed." );
+      }
+      final Integer id = _ids.get( uri );
+      return id != null && branch.get( id );
+   }
+
+   /**
+    * The same as {@link Neo4jOntologyConceptUtil#getAnnotationsByUriBranch(JCas, String)},
+    * without the graph for an indexed branch.
+    *
+    * @return annotations in the cas with any uri in the branch of the given root.
+    */
+   public Collection<IdentifiedAnnotation> getAnnotationsByUriBranch( final JCas jCas, final String root ) {
+      final BitSet branch = _branches.get( root );
+      if ( branch == null ) {
+         return Neo4jOntologyConceptUtil.getAnnotationsByUriBranch( jCas, root );
+      }
+      final List<IdentifiedAnnotation> annotations = new ArrayList<>();
+      for ( IdentifiedAnnotation annotation : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         for ( String uri : Neo4jOntologyConceptUtil.getUris( annotation ) ) {
+            final Integer id = _ids.get( uri );
+            if ( id != null && branch.get( id ) ) {
+               annotations.add( annotation );
+               break;
+            }
+         }
+      }
+      return annotations;
+   }
+
+   /**
+    * Snapshot layout: magic "DPOB", version, uri count, uris, branch count,
+    * then for each branch its root and the words of its bit set.  Strings are int length prefixed utf-8.
+    */
+   public void write( final Path file ) throws IOException {
+      final Path parent = file.toAbsolutePath().getParent();
+      if ( parent != null ) {
+         Files.createDirectories( parent );
+      }
+      final Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+      try ( DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream( Files.newOutputStream( temp ) ) ) ) {
+         out.writeInt( MAGIC );
+         out.writeInt( VERSION );
+         out.writeInt( _uris.length );
+         for ( String uri : _uris ) {
+            writeString( uri, out );
+         }
+         out.writeInt( _branches.size() );
+         for ( Map.Entry<String, BitSet> branch : _branches.entrySet() ) {
+            writeString( branch.getKey(), out );
+            final long[] words = branch.getValue().toLongArray();
+            out.writeInt( words.length );
+            for ( long word : words ) {
+               out.writeLong( word );
+            }
+         }
+      }
+      try {
+         Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException amnsE ) {
+         Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+      }
+   }
+
+   /**
+    * Read a snapshot written by {@link #write(Path)}.  The file is memory mapped while it is read.
+    */
+   static public OntologyBranchIndex read( final Path file ) throws IOException {
+      try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+         final ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+         if ( buffer.getInt() != MAGIC ) {
+            throw new IOException( "Not an ontology branch index." );
+         }
+         final int version = buffer.getInt();
+         if ( version != VERSION ) {
+            throw new IOException( "Unsupported ontology branch index version " + version );
+         }
+         final String[] uris = new String[ buffer.getInt() ];
+         for ( int i = 0; i < uris.length; i++ ) {
+            uris[ i ] = readString( buffer );
+         }
+         final int branchCount = buffer.getInt();
+         final Map<String, BitSet> branches = new LinkedHashMap<>( branchCount * 2 );
+         for ( int i = 0; i < branchCount; i++ ) {
+            final String root = readString( buffer );
+            final long[] words = new long[ buffer.getInt() ];
+            buffer.asLongBuffer().get( words );
+            buffer.position( buffer.position() + words.length * Long.BYTES );
+            branches.put( root, BitSet.valueOf( words ) );
+         }
+         return new OntologyBranchIndex( uris, branches );
+      } catch ( RuntimeException rtE ) {
+         // A truncated or corrupt file underflows the buffer or has an impossible length.
+         throw new IOException( "Corrupt ontology branch index " + file, rtE );
+      }
+   }
+
+   static private void writeString( final String value, final DataOutput out ) throws IOException {
+      final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+      out.writeInt( bytes.length );
+      out.write( bytes );
+   }
+
+   static private String readString( final ByteBuffer buffer ) {
+      final byte[] bytes = new byte[ buffer.getInt() ];
+      buffer.get( bytes );
+      return new String( bytes, StandardCharsets.UTF_8 );
+   }
+
+}
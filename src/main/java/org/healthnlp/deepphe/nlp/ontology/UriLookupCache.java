@@ -0,0 +1,138 @@
+package org.healthnlp.deepphe.nlp.ontology;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of values looked up in the ontology by uri, with hit, miss and eviction counts.
+ * <p>
+ * Entries are evicted one at a time, least recently used first, so common uris stay cached
+ * however many documents are processed and no clear is needed to bound memory.
+ * The cache is split into segments, each with its own lock and an equal share of the capacity,
+ * so that pooled engines do not all wait on one lock.
+ * </p>
+ * Values are computed while the segment is locked, so a value is looked up in the graph once per miss.
+ *
+ * @since {10/18/2026}
+ */
+final public class UriLookupCache<V> {
+
+   /**
+    * System property for the maximum number of entries in each cache.
+    */
+   static public final String MAX_ENTRIES_PROPERTY = "dphe.uriCache.maxEntries";
+
+   static public final int DEFAULT_MAX_ENTRIES = 65536;
+
+   static private final int SEGMENT_COUNT = 16;
+
+   private final String _name;
+   private final Segment<V>[] _segments;
+   private final LongAdder _hits = new LongAdder();
+   private final LongAdder _misses = new LongAdder();
+   private final LongAdder _evictions = new LongAdder();
+
+   /**
+    * @param name       name of the cache, used in {@link #toString()}.
+    * @param maxEntries maximum number of entries.  At least one entry is kept in each segment.
+    */
+   @SuppressWarnings( "unchecked" )
+   public UriLookupCache( final String name, final int maxEntries ) {
+      _name = name;
+      final int segmentEntries = Math.max( 1, maxEntries / SEGMENT_COUNT );
+      _segments = (Segment<V>[])new Segment<?>[ SEGMENT_COUNT ];
+      for ( int i = 0; i < SEGMENT_COUNT; i++ ) {
+         _segments[ i ] = new Segment<>( segmentEntries, _evictions );
+      }
+   }
+
+   /**
+    * @return a cache with the size given by {@link #MAX_ENTRIES_PROPERTY}, or {@link #DEFAULT_MAX_ENTRIES}.
+    */
+   static public <V> UriLookupCache<V> create( final String name ) {
+      return new UriLookupCache<>( name, Integer.getInteger( MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES ) );
+   }
+
+   /**
+    * @param key    uri, or uris, of the lookup.
+    * @param lookup called with the key when it is not cached.  A null value is returned but not cached.
+    * @return the cached value of the key, or the value returned by the lookup.
+    */
+   public V get( final String key, final Function<String, V> lookup ) {
+      final Segment<V> segment = _segments[ ( key.hashCode() & Integer.MAX_VALUE ) % SEGMENT_COUNT ];
+      synchronized ( segment ) {
+         final V cached = segment.get( key );
+         if ( cached != null ) {
+            _hits.increment();
+            return cached;
+         }
+         _misses.increment();
+         final V value = lookup.apply( key );
+         if ( value != null ) {
+            segment.put( key, value );
+         }
+         return value;
+      }
+   }
+
+   public long getHitCount() {
+      return _hits.sum();
+   }
+
+   public long getMissCount() {
+      return _misses.sum();
+   }
+
+   /**
+    * @return the number of entries removed to keep the cache within its maximum size.
+    */
+   public long getEvictionCount() {
+      return _evictions.sum();
+   }
+
+   public int size() {
+      int size = 0;
+      for ( Segment<V> segment : _segments ) {
+         synchronized ( segment ) {
+            size += segment.size();
+         }
+      }
+      return size;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString() {
+      return _name + " cache: " + size() + " entries, " + getHitCount() + " hits, " + getMissCount() + " misses, "
+             + getEvictionCount() + " evictions.";
+   }
+
+   /**
+    * Access ordered, so the eldest entry is the least recently used.
+    */
+   static private final class Segment<V> extends LinkedHashMap<String, V> {
+      static private final long serialVersionUID = 1L;
+      private final int _maxEntries;
+      private final LongAdder _evictions;
+
+      private Segment( final int maxEntries, final LongAdder evictions ) {
+         super( 16, 0.75f, true );
+         _maxEntries = maxEntries;
+         _evictions = evictions;
+      }
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<String, V> eldest ) {
+         if ( size() > _maxEntries ) {
+            _evictions.increment();
+            return true;
+         }
+         return false;
+      }
+   }
+
+}
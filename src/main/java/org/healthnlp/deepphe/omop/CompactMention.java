@@ -0,0 +1,109 @@
+package org.healthnlp.deepphe.omop;
+
+import org.healthnlp.deepphe.omop.writer.ConfidenceFormat;
+
+import java.util.Arrays;
+
+/**
+ * Typed, compact form of a {@link Mention}.
+ * Offsets are ints and the five attributes are bits in one byte.
+ * Confidence is the double the table writer formats, so it is written exactly as the table writer writes it.
+ * Semantic group, uri, cui and tui values repeat across mentions and documents, so they are interned.
+ *
+ * @since {10/18/2026}
+ */
+final public class CompactMention {
+
+   static public final int NEGATED = 1;
+   static public final int UNCERTAIN = 1 << 1;
+   static public final int HISTORIC = 1 << 2;
+   static public final int GENERIC = 1 << 3;
+   static public final int CONDITIONAL = 1 << 4;
+
+   static private final String[] NO_TUIS = new String[ 0 ];
+
+   public final String semantic;
+   public final String uri;
+   public final String cui;
+   public final String[] tuis;
+   public final int begin;
+   public final int end;
+   public final byte flags;
+   public final double confidence;
+   public final String prefText;
+   public final String term;
+   public final String window;
+
+   public CompactMention( final String semantic, final String uri, final String cui, final String[] tuis,
+                          final int begin, final int end, final int flags, final double confidence,
+                          final String prefText, final String term, final String window ) {
+      this.semantic = intern( semantic );
+      this.uri = intern( uri );
+      this.cui = intern( cui );
+      // A copy, so that interning does not change the caller's array.
+      this.tuis = tuis.length == 0 ? NO_TUIS : new String[ tuis.length ];
+      for ( int i = 0; i < this.tuis.length; i++ ) {
+         this.tuis[ i ] = intern( tuis[ i ] );
+      }
+      this.begin = begin;
+      this.end = end;
+      this.flags = (byte)flags;
+      this.confidence = confidence;
+      this.prefText = prefText;
+      this.term = term;
+      this.window = window;
+   }
+
+   static private String intern( final String value ) {
+      return value == null ? "" : value.intern();
+   }
+
+   static public int toFlags( final boolean negated, final boolean uncertain, final boolean historic,
+                              final boolean generic, final boolean conditional ) {
+      return ( negated ? NEGATED : 0 )
+             | ( uncertain ? UNCERTAIN : 0 )
+             | ( historic ? HISTORIC : 0 )
+             | ( generic ? GENERIC : 0 )
+             | ( conditional ? CONDITIONAL : 0 );
+   }
+
+   public boolean is( final int flag ) {
+      return ( flags & flag ) != 0;
+   }
+
+   public boolean isNegated() {
+      return is( NEGATED );
+   }
+
+   public boolean isUncertain() {
+      return is( UNCERTAIN );
+   }
+
+   public boolean isHistoric() {
+      return is( HISTORIC );
+   }
+
+   public boolean isGeneric() {
+      return is( GENERIC );
+   }
+
+   public boolean isConditional() {
+      return is( CONDITIONAL );
+   }
+
+   /**
+    * @return this mention in the all-text form, formatted exactly as the table writer formats it.
+    */
+   public Mention toMention() {
+      return new Mention( semantic, uri, cui, Arrays.asList( tuis ),
+                          String.valueOf( begin ), String.valueOf( end ), prefText,
+                          toText( isNegated() ), toText( isUncertain() ), toText( isHistoric() ),
+                          toText( isGeneric() ), toText( isConditional() ),
+                          ConfidenceFormat.format( confidence ), term, window );
+   }
+
+   static private String toText( final boolean value ) {
+      return value ? "True" : "False";
+   }
+
+}
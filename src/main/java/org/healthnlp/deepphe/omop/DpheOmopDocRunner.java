@@ -1,6 +1,8 @@
 package org.healthnlp.deepphe.omop;
 
 import org.apache.ctakes.core.pipeline.PiperFileRunner;
+import org.healthnlp.deepphe.omop.incremental.IncrementalDocRunner;
+import org.healthnlp.deepphe.omop.staged.StagedDocRunner;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -8,6 +10,8 @@ import java.util.List;
 /**
  * This is a 1:1 facade for the cTAKES PiperFileRunner.
  * The only thing that this class will do is add the default piper file if one is not specified.
+ * With {@value #INCREMENTAL} the run is handed to the {@link IncrementalDocRunner}, which skips unchanged notes,
+ * and with {@value #STAGED} to the {@link StagedDocRunner}, which reads, annotates and writes notes concurrently.
  *
  * @author SPF , chip-nlp
  * @since {6/25/2024}
@@ -15,8 +19,10 @@ import java.util.List;
 final public class DpheOmopDocRunner {
 
    static private final String DEFAULT_PIPER = "pipeline/OmopDocRunner.piper";
+   static private final String INCREMENTAL = "--incremental";
+   static private final String STAGED = "--staged";
 
-   public static void main( final String... args ) {
+   public static void main( final String... args ) throws Exception {
       // Create modifiable list of args.  List.of creates an UnmodifiableList, so wrap it.
       final List<String> parms = new ArrayList<>( List.of( args ) );
       // Add the default piper file if one is not specified.
@@ -24,6 +30,14 @@ final public class DpheOmopDocRunner {
          parms.add( "-p" );
          parms.add( DEFAULT_PIPER );
       }
+      if ( parms.remove( INCREMENTAL ) ) {
+         IncrementalDocRunner.main( parms.toArray( new String[ 0 ] ) );
+         return;
+      }
+      if ( parms.remove( STAGED ) ) {
+         StagedDocRunner.main( parms.toArray( new String[ 0 ] ) );
+         return;
+      }
       // Does nothing but call PiperFileRunner.
       if ( !PiperFileRunner.run( parms.toArray( new String[ 0 ] ) ) ) {
          System.exit( 1 );
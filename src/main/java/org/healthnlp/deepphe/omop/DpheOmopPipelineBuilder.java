@@ -1,29 +1,33 @@
 package org.healthnlp.deepphe.omop;
 
 import org.apache.commons.cli.*;
-import org.apache.ctakes.core.patient.PatientDocCounter;
 import org.apache.ctakes.core.pipeline.PipelineBuilder;
-import org.apache.ctakes.core.pipeline.PiperFileReader;
-import org.apache.ctakes.core.util.doc.SourceMetadataUtil;
+import org.apache.ctakes.core.util.doc.DocIdUtil;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.uima.UIMAException;
-import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
-import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.healthnlp.deepphe.nlp.uri.UriInfoCache;
+import org.healthnlp.deepphe.omop.admission.AdmissionController;
+import org.healthnlp.deepphe.omop.cache.ResultCache;
+import org.healthnlp.deepphe.omop.metrics.PipelineMetrics;
+import org.healthnlp.deepphe.omop.metrics.StageMeter;
+import org.healthnlp.deepphe.omop.sink.MentionSink;
+import org.healthnlp.deepphe.omop.triage.CandidateTerms;
 import org.healthnlp.deepphe.omop.writer.*;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Java equivalent of the DeepPhe piper file for processing medical documents.
@@ -36,58 +40,711 @@ public class DpheOmopPipelineBuilder {
      * @throws UIMAException
      */
     private final PipelineBuilder builder;
-    private AnalysisEngine analysisEngine;
-    private JCas jcas;
+    private final String configFile;
+    private final String resourceRoot;
+    private final int poolSize;
+    private final long borrowTimeoutMillis;
+    private volatile EnginePool enginePool;
+    private volatile ResultCache resultCache;
+    private ExecutorService batchExecutor;
+    private volatile EnginePool sectionPool;
+    private volatile CandidateTerms triageTerms;
+    private volatile AdmissionController admission;
+    private ExecutorService chunkExecutor;
+    private final int longDocumentChars = Integer.getInteger(LONG_DOCUMENT_PROPERTY, 200_000);
+    private final int chunkChars = Integer.getInteger(CHUNK_PROPERTY, 50_000);
+
+    /**
+     * System property for the number of pooled engines.  0 uses one engine per available processor.
+     */
+    static public final String POOL_SIZE_PROPERTY = "dphe.omop.poolSize";
+    /**
+     * System property for the maximum milliseconds run() waits for a free engine.  0 waits indefinitely.
+     */
+    static public final String BORROW_TIMEOUT_PROPERTY = "dphe.omop.borrowTimeoutMs";
+    /**
+     * System property to turn off per stage metrics.  Default true.
+     */
+    static public final String METRICS_PROPERTY = "dphe.omop.metrics";
+    /**
+     * System property for a file to which metrics are periodically written in the Prometheus text format.
+     */
+    static public final String METRICS_FILE_PROPERTY = "dphe.omop.metricsFile";
+    /**
+     * System property for the seconds between metrics file writes.  Default 60.
+     */
+    static public final String METRICS_PERIOD_PROPERTY = "dphe.omop.metricsPeriodSec";
+    /**
+     * System property for a directory in which results are cached by document content.  No cache if not set.
+     */
+    static public final String RESULT_CACHE_PROPERTY = "dphe.omop.resultCache";
+    /**
+     * System property for the maximum megabytes of cached results.  Default 1024.
+     */
+    static public final String RESULT_CACHE_MB_PROPERTY = "dphe.omop.resultCacheMb";
+    /**
+     * System property added to the result cache version.  Change it when models or resources change.
+     */
+    static public final String RESULT_CACHE_VERSION_PROPERTY = "dphe.omop.resultCacheVersion";
+    /**
+     * System property for a file of candidate terms, or a dictionary store table as store.dmd#TABLE.
+     * Documents without any of their words are not annotated and have no mentions.  No triage if not set.
+     */
+    static public final String TRIAGE_TERMS_PROPERTY = "dphe.omop.triageTerms";
+    /**
+     * System property for the characters above which a document is split into chunks processed concurrently.
+     * Default 200000.  0 never splits documents.
+     */
+    static public final String LONG_DOCUMENT_PROPERTY = "dphe.omop.longDocumentChars";
+    /**
+     * System property for the target characters of each chunk of a long document.  Default 50000.
+     */
+    static public final String CHUNK_PROPERTY = "dphe.omop.chunkChars";
+    /**
+     * System property for the last pipeline stage needed to find sections.  Default WtfSectionFixer.
+     */
+    static public final String SECTION_STAGE_PROPERTY = "dphe.omop.sectionStage";
+    /**
+     * System property for the megabytes of heap that documents in flight may be projected to use,
+     * or "auto" for most of the heap free after initialization.  Documents that do not fit wait.  No limit if not set.
+     */
+    static public final String HEAP_BUDGET_PROPERTY = "dphe.omop.heapBudgetMb";
 
     public DpheOmopPipelineBuilder(String configFile) throws UIMAException {
-        final PiperFileReader reader = new PiperFileReader(configFile);
-        this.builder = reader.getBuilder();
+        this(configFile,
+             Integer.getInteger(POOL_SIZE_PROPERTY, 1),
+             Long.getLong(BORROW_TIMEOUT_PROPERTY, 0L));
+    }
+
+    /**
+     * @param configFile          piper file describing the pipeline.
+     * @param poolSize            number of AnalysisEngines, which is the number of documents that can be
+     *                            annotated concurrently.  0 uses one engine per available processor.
+     * @param borrowTimeoutMillis maximum milliseconds run() waits for a free engine.  0 waits indefinitely.
+     */
+    public DpheOmopPipelineBuilder(String configFile, int poolSize, long borrowTimeoutMillis) throws UIMAException {
+        this(configFile, PiperResources.getResourceRoot(), poolSize, borrowTimeoutMillis);
+    }
+
+    /**
+     * @param configFile          piper file describing the pipeline.
+     * @param resourceRoot        directory holding the resources that the piper names under /app/resources,
+     *                            or null to use the piper paths as they are.  Nothing is copied.
+     * @param poolSize            number of AnalysisEngines, which is the number of documents that can be
+     *                            annotated concurrently.  0 uses one engine per available processor.
+     * @param borrowTimeoutMillis maximum milliseconds run() waits for a free engine.  0 waits indefinitely.
+     */
+    public DpheOmopPipelineBuilder(String configFile, String resourceRoot, int poolSize, long borrowTimeoutMillis)
+            throws UIMAException {
+        final long start = System.currentTimeMillis();
+        this.builder = PiperResources.read(configFile, resourceRoot);
+        this.configFile = configFile;
+        this.resourceRoot = resourceRoot;
+        this.poolSize = poolSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        System.out.println("Read piper " + configFile + " in " + (System.currentTimeMillis() - start) + " ms.");
     }
 
-    public void initialize() throws UIMAException, IOException {
-        if (this.analysisEngine != null) {
+    public synchronized void initialize() throws UIMAException, IOException {
+        if (this.enginePool != null) {
             return;
         }
-        System.out.println("Initializing DpheOmopPipelineBuilder: Creating live AnalysisEngine and JCas...");
+        System.out.println("Initializing DpheOmopPipelineBuilder: Creating live AnalysisEngine and JCas pool...");
+        final long start = System.currentTimeMillis();
         AnalysisEngineDescription aed = builder.getAnalysisEngineDesc();
-        this.analysisEngine = UIMAFramework.produceAnalysisEngine(aed);
-        this.jcas = JCasFactory.createJCas();
-        System.out.println("Initialization complete.");
+        final String triage = System.getProperty(TRIAGE_TERMS_PROPERTY);
+        if (triage != null && !triage.isEmpty()) {
+            this.triageTerms = CandidateTerms.load(triage);
+        }
+        if (longDocumentChars > 0) {
+            final String sectionStage = System.getProperty(SECTION_STAGE_PROPERTY, "WtfSectionFixer");
+            final AnalysisEngineDescription sections = LongDocuments.getSectionPipeline(aed, sectionStage);
+            if (sections == null) {
+                System.out.println("No " + sectionStage + " in the pipeline, long documents will not be split.");
+            } else {
+                this.sectionPool = new EnginePool(sections, poolSize, borrowTimeoutMillis);
+            }
+        }
+        if (Boolean.parseBoolean(System.getProperty(METRICS_PROPERTY, "true"))) {
+            aed = StageMeter.instrument(aed);
+            PipelineMetrics.getInstance().register();
+            final String metricsFile = System.getProperty(METRICS_FILE_PROPERTY);
+            if (metricsFile != null && !metricsFile.isEmpty()) {
+                PipelineMetrics.getInstance().startFileReporter(Paths.get(metricsFile),
+                        Long.getLong(METRICS_PERIOD_PROPERTY, 60L));
+            }
+        }
+        final String cacheDir = System.getProperty(RESULT_CACHE_PROPERTY);
+        if (cacheDir != null && !cacheDir.isEmpty()) {
+            setResultCache(new ResultCache(Paths.get(cacheDir), getResultVersion(),
+                    Long.getLong(RESULT_CACHE_MB_PROPERTY, 1024L) * 1024 * 1024));
+        }
+        final long described = System.currentTimeMillis();
+        this.enginePool = new EnginePool(aed, poolSize, borrowTimeoutMillis);
+        final long created = System.currentTimeMillis();
+        // After the engines are created, so that their heap is not part of the budget.
+        final String heapBudget = System.getProperty(HEAP_BUDGET_PROPERTY);
+        if (heapBudget != null && !heapBudget.isEmpty()) {
+            this.admission = AdmissionController.create(heapBudget, borrowTimeoutMillis);
+            PipelineMetrics.getInstance().setAdmissionController(this.admission);
+        }
+        System.out.println("Initialization complete.  Pipeline description " + (described - start)
+                           + " ms, AnalysisEngine and JCas creation " + (created - described) + " ms.");
+    }
+
+    /**
+     * @return the number of documents that can be annotated concurrently, 0 if the builder is not initialized.
+     */
+    public int getPoolSize() {
+        final EnginePool pool = this.enginePool;
+        return pool == null ? 0 : pool.getSize();
+    }
+
+    /**
+     * Use a cache of results by document content in {@link #run(String)}, or null for none.
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        PipelineMetrics.getInstance().setResultCache(resultCache);
+    }
+
+    public ResultCache getResultCache() {
+        return this.resultCache;
     }
 
+    /**
+     * @return a version of the pipeline made from the piper text, resource root, release
+     * and the {@value #RESULT_CACHE_VERSION_PROPERTY} property.
+     * Pipers loaded by the piper and the resources themselves are not read,
+     * so set the property when they change.
+     */
+    public String getResultVersion() throws IOException {
+        final Package release = DpheOmopPipelineBuilder.class.getPackage();
+        return ResultCache.createVersion(PiperResources.getText(configFile), resourceRoot,
+                release == null ? null : release.getImplementationVersion(),
+                System.getProperty(RESULT_CACHE_VERSION_PROPERTY));
+    }
+
+    /**
+     * Process a single document.  This may be called concurrently from multiple threads.
+     * If every engine is busy the call waits for one to be free, up to the borrow timeout.
+     * With a result cache, a document that has been processed before is returned from the cache
+     * without being processed again.
+     * A document longer than {@value #LONG_DOCUMENT_PROPERTY} characters is split at section boundaries
+     * into chunks that are processed concurrently.
+     * With a heap budget, a document waits until it fits within the budget, up to the borrow timeout.
+     *
+     * @throws EngineUnavailableException if no engine or heap became free within the borrow timeout.
+     */
     public List<Mention> run(String text) throws UIMAException {
-        if (this.analysisEngine == null || this.jcas == null) {
+        final ResultCache cache = this.resultCache;
+        if (cache == null && !isLong(text)) {
+            return process(text, jcas -> new OmopMentionTableWriter().createDataFields(jcas), isCandidate(text));
+        }
+        // Both cached and new results go through the compact form, so they are always formatted the same.
+        final List<CompactMention> mentions = getCompactMentions(text);
+        final List<Mention> results = new ArrayList<>(mentions.size());
+        for (CompactMention mention : mentions) {
+            results.add(mention.toMention());
+        }
+        return results;
+    }
+
+    /**
+     * Process a single document, returning its mentions packed into one heap buffer.
+     * A caller in another language can copy the buffer once instead of converting every string of every mention.
+     *
+     * @return mentions of the document in the layout of {@link PackedMentions}, sorted as {@link #run(String)} sorts them.
+     * @throws EngineUnavailableException if no engine or heap became free within the borrow timeout.
+     */
+    public ByteBuffer runPacked(String text) throws UIMAException {
+        return runPacked(text, null);
+    }
+
+    /**
+     * Process a single document, packing its mentions into a buffer that the caller keeps between calls,
+     * e.g. a direct buffer that a bridge wraps without copying.
+     *
+     * @param reuse buffer to pack into, usually the one returned by the last call.  A larger one is returned if it is too small.
+     * @return mentions of the document in the layout of {@link PackedMentions}, sorted as {@link #run(String)} sorts them.
+     * @throws EngineUnavailableException if no engine or heap became free within the borrow timeout.
+     */
+    public ByteBuffer runPacked(String text, ByteBuffer reuse) throws UIMAException {
+        return PackedMentions.pack(Collections.singletonList(getCompactMentions(text)), reuse);
+    }
+
+    /**
+     * Process many documents concurrently using every pooled engine,
+     * returning the mentions of all of them packed into one heap buffer with one shared string table.
+     *
+     * @param texts documents to process.
+     * @return mentions of each document, in the same order as the given texts, in the layout of {@link PackedMentions}.
+     * @throws UIMAException if any document fails.  Documents that are still in progress are cancelled.
+     */
+    public ByteBuffer runBatchPacked(List<String> texts) throws UIMAException {
+        return runBatchPacked(texts, null);
+    }
+
+    /**
+     * Process many documents concurrently, packing their mentions into a buffer that the caller keeps between calls.
+     *
+     * @param texts documents to process.
+     * @param reuse buffer to pack into, usually the one returned by the last call.  A larger one is returned if it is too small.
+     * @return mentions of each document, in the same order as the given texts, in the layout of {@link PackedMentions}.
+     * @throws UIMAException if any document fails.  Documents that are still in progress are cancelled.
+     */
+    public ByteBuffer runBatchPacked(List<String> texts, ByteBuffer reuse) throws UIMAException {
+        final List<List<CompactMention>> results = new ArrayList<>(texts.size());
+        final Iterator<List<CompactMention>> mentions = new BatchIterator<>(texts.iterator(), this::getCompactMentions,
+                getBatchExecutor(), getEnginePool().getCasCount());
+        try {
+            while (mentions.hasNext()) {
+                results.add(mentions.next());
+            }
+        } catch (BatchFailureException bfE) {
+            throw bfE.getUimaException();
+        }
+        return PackedMentions.pack(results, reuse);
+    }
+
+    /**
+     * Process a single document without the result cache, e.g. to warm up the pipeline.
+     */
+    List<CompactMention> runUncached(String text) throws UIMAException {
+        return runCompact(text);
+    }
+
+    /**
+     * @return sorted mentions of the document, from the result cache if there is one.
+     */
+    private List<CompactMention> getCompactMentions(String text) throws UIMAException {
+        final ResultCache cache = this.resultCache;
+        if (cache == null) {
+            return runCompact(text);
+        }
+        final String key = cache.getKey(text);
+        List<CompactMention> mentions = cache.get(key);
+        if (mentions == null) {
+            mentions = runCompact(text);
+            cache.put(key, mentions);
+        }
+        return mentions;
+    }
+
+    /**
+     * Process a single document, sending its mentions to the sink as they are read instead of returning them.
+     * The document id is the one set in the cas by the pipeline, if any.
+     *
+     * @return the number of mentions sent to the sink.
+     * @throws IllegalArgumentException if the sink needs a document id from the caller, e.g. a NOTE_NLP note_id.
+     * @see #run(String, String, MentionSink)
+     */
+    public int run(String text, MentionSink sink) throws UIMAException {
+        if (sink.requiresDocumentId()) {
+            throw new IllegalArgumentException(sink.getClass().getSimpleName() + " needs the id of each document."
+                                               + "  Use run(documentId, text, sink).");
+        }
+        return process(text, jcas -> stream(jcas, DocIdUtil.getDocumentID(jcas), sink), isCandidate(text));
+    }
+
+    /**
+     * Process a single document, sending its mentions to the sink as they are read instead of returning them.
+     * Mentions arrive in text order rather than the sorted order of {@link #run(String)}.
+     * This may be called concurrently with the same sink.  Each document is read from the cas and sent
+     * while holding the sink's monitor, so mentions are never collected for the whole document.
+     *
+     * @return the number of mentions sent to the sink.
+     * @throws UIMAException if the document fails or the sink cannot write.
+     */
+    public int run(String documentId, String text, MentionSink sink) throws UIMAException {
+        return process(text, jcas -> stream(jcas, documentId, sink), isCandidate(text));
+    }
+
+    /**
+     * @return false if there is a triage list and the text has none of its words, so the pipeline would find nothing.
+     */
+    private boolean isCandidate(String text) {
+        final CandidateTerms terms = this.triageTerms;
+        if (terms == null) {
+            return true;
+        }
+        final boolean candidate = terms.hasCandidate(text);
+        PipelineMetrics.getInstance().recordDocumentTriage(!candidate);
+        return candidate;
+    }
+
+    private boolean isLong(String text) {
+        return this.sectionPool != null && text.length() > longDocumentChars;
+    }
+
+    private List<CompactMention> runCompact(String text) throws UIMAException {
+        final boolean candidate = isCandidate(text);
+        if (candidate && isLong(text)) {
+            return runLong(text);
+        }
+        return process(text, jcas -> new OmopMentionTableWriter().createCompactMentions(jcas), candidate);
+    }
+
+    /**
+     * Find the sections of a long document, then process chunks of sections concurrently.
+     */
+    private List<CompactMention> runLong(String text) throws UIMAException {
+        final EnginePool sections = this.sectionPool;
+        final int[] bounds;
+        final JCas jcas = sections.borrowCas();
+        try {
+            jcas.setDocumentText(text);
+            final AnalysisEngine engine = sections.borrowEngine();
+            try {
+                engine.process(jcas);
+            } finally {
+                sections.releaseEngine(engine);
+            }
+            bounds = LongDocuments.getChunkBounds(jcas, chunkChars);
+        } finally {
+            sections.releaseCas(jcas);
+        }
+        if (bounds.length <= 2) {
+            return process(text, cas -> new OmopMentionTableWriter().createCompactMentions(cas), true);
+        }
+        final ExecutorService executor = getChunkExecutor();
+        final List<Future<List<CompactMention>>> chunks = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final int begin = bounds[i];
+            final String chunk = text.substring(begin, bounds[i + 1]);
+            chunks.add(executor.submit(() -> LongDocuments.toDocumentMentions(text, begin,
+                    process(chunk, cas -> new OmopMentionTableWriter().createCompactMentions(cas), true))));
+        }
+        final List<List<CompactMention>> mentions = new ArrayList<>(chunks.size());
+        try {
+            for (Future<List<CompactMention>> chunk : chunks) {
+                mentions.add(chunk.get());
+            }
+        } catch (ExecutionException eE) {
+            chunks.forEach(chunk -> chunk.cancel(false));
+            if (eE.getCause() instanceof UIMAException) {
+                throw (UIMAException) eE.getCause();
+            }
+            throw new UIMAException(eE.getCause());
+        } catch (InterruptedException intE) {
+            chunks.forEach(chunk -> chunk.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new EngineUnavailableException("Interrupted while waiting for a document chunk to be processed.");
+        }
+        return LongDocuments.stitch(mentions);
+    }
+
+    /**
+     * Chunks have their own threads.  Were they run on batch threads, a batch of long documents
+     * could fill every batch thread with documents waiting for their chunks.
+     */
+    private synchronized ExecutorService getChunkExecutor() {
+        if (this.chunkExecutor == null) {
+            final int threads = getEnginePool().getCasCount();
+            final AtomicInteger threadNumber = new AtomicInteger();
+            this.chunkExecutor = Executors.newFixedThreadPool(threads, r -> {
+                final Thread thread = new Thread(r, "DpheOmopChunk-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.chunkExecutor;
+    }
+
+    /**
+     * The lock is held while mentions are read so that each goes to the sink as soon as it is read,
+     * and the mentions of concurrent documents do not interleave.
+     */
+    static private int stream(JCas jcas, String documentId, MentionSink sink) throws AnalysisEngineProcessException {
+        synchronized (sink) {
+            try {
+                return new OmopMentionTableWriter().streamMentions(jcas, documentId, sink);
+            } catch (IOException ioE) {
+                throw new AnalysisEngineProcessException(ioE);
+            }
+        }
+    }
+
+    /**
+     * Reads results from a processed cas before the cas is returned to the pool.
+     */
+    private interface CasReader<T> {
+        T read(JCas jcas) throws UIMAException;
+    }
+
+    /**
+     * @param annotate false to read results from the cas without annotating it, which gives no mentions.
+     */
+    private <T> T process(String text, CasReader<T> reader, boolean annotate) throws UIMAException {
+        final AdmissionController admission = annotate ? this.admission : null;
+        if (admission == null) {
+            return process(text, reader, annotate, null);
+        }
+        // Admitted before a cas is borrowed, so that documents waiting for heap do not hold cas.
+        final long cost = admission.admit(text.length());
+        final int[] mentions = {-1};
+        try {
+            return process(text, reader, true, mentions);
+        } finally {
+            admission.release(cost, text.length(), mentions[0]);
+        }
+    }
+
+    /**
+     * @param mentions if not null, set to the number of identified annotations once the document is annotated.
+     */
+    private <T> T process(String text, CasReader<T> reader, boolean annotate, int[] mentions)
+            throws UIMAException {
+        final EnginePool pool = getEnginePool();
+        final JCas jcas = pool.borrowCas();
+        try {
+            jcas.setDocumentText(text);
+            if (!annotate) {
+                return reader.read(jcas);
+            }
+
+            // Return the engine as soon as annotation is done so that it can start on another document
+            // while mentions are extracted from this one.
+            final AnalysisEngine engine = pool.borrowEngine();
+            try {
+                engine.process(jcas);
+            } finally {
+                pool.releaseEngine(engine);
+            }
+            if (mentions != null) {
+                mentions[0] = jcas.getAnnotationIndex(IdentifiedAnnotation.type).size();
+            }
+
+            // UriInfoCachePolicy in the pipeline decides whether a complete patient clears the Uri cache.
+            return reader.read(jcas);
+        } finally {
+            pool.releaseCas(jcas);
+        }
+    }
+
+    /**
+     * Process many documents concurrently using every pooled engine.
+     *
+     * @param texts documents to process.
+     * @return the mentions of each document, in the same order as the given texts.
+     * @throws UIMAException if any document fails.  Documents that are still in progress are cancelled.
+     */
+    public List<List<Mention>> runBatch(List<String> texts) throws UIMAException {
+        final List<List<Mention>> results = new ArrayList<>(texts.size());
+        final BatchResults<List<Mention>> mentions = runAll(texts.iterator());
+        try {
+            while (mentions.hasNext()) {
+                results.add(mentions.next());
+            }
+        } catch (BatchFailureException bfE) {
+            throw bfE.getUimaException();
+        }
+        return results;
+    }
+
+    /**
+     * Process a stream of documents concurrently using every pooled engine.
+     * Documents are pulled from the given iterator only as fast as they can be processed,
+     * so very large or unbounded sources can be used without holding all of them in memory.
+     *
+     * @param texts documents to process.  The iterator is only used by the thread consuming the results.
+     * @return an iterator of the mentions of each document, in the same order as the given texts.
+     * Its methods throw BatchFailureException if a document fails.
+     */
+    public BatchResults<List<Mention>> runAll(Iterator<String> texts) {
+        return runAll(texts, getEnginePool().getCasCount());
+    }
+
+    /**
+     * Process a stream of documents concurrently, with at most the given number in flight,
+     * so that one stream cannot take every engine from other callers.
+     *
+     * @param texts       documents to process.  The iterator is only used by the thread consuming the results.
+     * @param maxInFlight most documents of this stream processed at once.
+     * @return an iterator of the mentions of each document, in the same order as the given texts.
+     * Close it to cancel the documents not yet started if the results are no longer wanted.
+     */
+    public BatchResults<List<Mention>> runAll(Iterator<String> texts, int maxInFlight) {
+        getEnginePool();
+        return new BatchIterator<>(texts, this::run, getBatchExecutor(), Math.max(1, maxInFlight));
+    }
+
+    private EnginePool getEnginePool() {
+        final EnginePool pool = this.enginePool;
+        if (pool == null) {
             throw new IllegalStateException("The builder has not been initialized. Please call initialize() first.");
         }
+        return pool;
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (this.batchExecutor == null) {
+            // One thread per JCas so that every engine stays busy while other documents have mentions extracted.
+            final int threads = getEnginePool().getCasCount();
+            final AtomicInteger threadNumber = new AtomicInteger();
+            this.batchExecutor = Executors.newFixedThreadPool(threads, r -> {
+                final Thread thread = new Thread(r, "DpheOmopBatch-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.batchExecutor;
+    }
+
+    /**
+     * Keeps up to a fixed number of documents in flight, returning results in submission order.
+     */
+    static private final class BatchIterator<T> implements BatchResults<T> {
+        private final Iterator<String> texts;
+        private final DocumentTask<T> task;
+        private final ExecutorService executor;
+        private final int maxInFlight;
+        private final Deque<Future<T>> inFlight = new ArrayDeque<>();
+
+        private BatchIterator(Iterator<String> texts, DocumentTask<T> task, ExecutorService executor,
+                              int maxInFlight) {
+            this.texts = texts;
+            this.task = task;
+            this.executor = executor;
+            this.maxInFlight = maxInFlight;
+        }
+
+        private void fill() {
+            try {
+                while (inFlight.size() < maxInFlight && texts.hasNext()) {
+                    final String text = texts.next();
+                    inFlight.add(executor.submit(() -> task.run(text)));
+                }
+            } catch (RuntimeException rtE) {
+                // The source failed, e.g. an unreadable line, so the documents in flight will never be read.
+                cancelAll();
+                throw rtE;
+            }
+        }
 
-        jcas.reset();
-        jcas.setDocumentText(text);
+        @Override
+        public void close() {
+            cancelAll();
+        }
 
-        analysisEngine.process(jcas);
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !inFlight.isEmpty();
+        }
 
-        OmopMentionTableWriter writer = new OmopMentionTableWriter();
-        List<Mention> rows = writer.createDataFields(jcas);
-        String patientId = SourceMetadataUtil.getPatientIdentifier( jcas );
-        if (PatientDocCounter.getInstance().isPatientFull(patientId)) {
-            UriInfoCache.getInstance().clear();
+        @Override
+        public T next() {
+            fill();
+            final Future<T> future = inFlight.poll();
+            if (future == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                final T result = future.get();
+                fill();
+                return result;
+            } catch (InterruptedException intE) {
+                Thread.currentThread().interrupt();
+                cancelAll();
+                throw new EngineUnavailableException("Interrupted while waiting for a document to be processed.");
+            } catch (ExecutionException execE) {
+                cancelAll();
+                final Throwable cause = execE.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof UIMAException) {
+                    throw new BatchFailureException((UIMAException) cause);
+                }
+                throw new BatchFailureException(new AnalysisEngineProcessException(cause));
+            }
+        }
+
+        /**
+         * Documents already being annotated are left to finish.  Interrupting an engine inside process()
+         * can close the graph and dictionary file channels it reads, leaving the pooled engine unusable.
+         */
+        private void cancelAll() {
+            inFlight.forEach(f -> f.cancel(false));
+            inFlight.clear();
         }
-        return rows;
     }
 
-    public void close() {
-        if (this.analysisEngine != null) {
-            System.out.println("Closing DpheOmopPipelineBuilder: Destroying AnalysisEngine...");
+    /**
+     * Results of a stream of documents.  Closing it cancels the documents that have not started.
+     * Documents already being annotated finish, and their engines return to the pool.
+     */
+    public interface BatchResults<T> extends Iterator<T>, AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Processes one document of a batch.
+     */
+    private interface DocumentTask<T> {
+        T run(String text) throws UIMAException;
+    }
+
+    /**
+     * Unchecked wrapper for a document failure during {@link #runAll(Iterator)} iteration.
+     */
+    static public final class BatchFailureException extends RuntimeException {
+        static private final long serialVersionUID = 1L;
+
+        private BatchFailureException(UIMAException cause) {
+            super(cause);
+        }
+
+        public UIMAException getUimaException() {
+            return (UIMAException) getCause();
+        }
+    }
+
+    public synchronized void close() {
+        final ResultCache cache = this.resultCache;
+        if (cache != null) {
+            System.out.println("Result cache: " + cache.getHitCount() + " hits, " + cache.getMissCount()
+                               + " misses, " + cache.getEntryCount() + " results stored.");
+        }
+        System.out.println(OmopMentionTableWriter.getGroupCache());
+        if (this.admission != null) {
+            System.out.println(this.admission.getSummary());
+        }
+        if (this.batchExecutor != null) {
+            // Not shutdownNow(), which would interrupt engines inside process().
+            this.batchExecutor.shutdown();
+            this.batchExecutor = null;
+        }
+        if (this.chunkExecutor != null) {
+            // Not shutdownNow(), which would interrupt engines inside process().
+            this.chunkExecutor.shutdown();
+            this.chunkExecutor = null;
+        }
+        if (this.sectionPool != null) {
+            try {
+                this.sectionPool.close();
+            } catch (Exception e) {
+                System.err.println("Error during AnalysisEngine destruction: " + e.getMessage());
+            } finally {
+                this.sectionPool = null;
+            }
+        }
+        if (this.enginePool != null) {
+            System.out.println("Closing DpheOmopPipelineBuilder: Destroying AnalysisEngine pool...");
             try {
-                this.analysisEngine.destroy();
+                this.enginePool.close();
             } catch (Exception e) {
                 System.err.println("Error during AnalysisEngine destruction: " + e.getMessage());
             } finally {
-                this.analysisEngine = null;
+                this.enginePool = null;
             }
         }
     }
 
     public static void main(String[] args) throws ParseException, UIMAException, IOException {
+        final long start = System.currentTimeMillis();
         Options options = new Options();
         options.addOption("r", "resources_path", true, "Get full path to resources directory");
 
@@ -110,31 +767,12 @@ public class DpheOmopPipelineBuilder {
             throw e;
         }
 
-        Path tmp_resources_path = Files.createTempDirectory("resources");
-        Path resourcesPath = Paths.get(resources_path);
-
-        Files.walk(resourcesPath)
-            .forEach(source -> {
-                try {
-                    Files.copy(source,
-                      tmp_resources_path.resolve(resourcesPath.relativize(source)),
-                      StandardCopyOption.REPLACE_EXISTING);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-
-        String tmp_resources_dir = tmp_resources_path.toString();
+        // Resources are used where they are.  The piper's /app/resources paths are pointed at them as it is read.
         String configFile = resources_path + File.separator + "pipeline" + File.separator + "OmopDocRunner.piper";
-        Path configPath = Paths.get(configFile);
-
-        Charset charset = StandardCharsets.UTF_8;
-        String content = new String(Files.readAllBytes(configPath), charset);
-        content = content.replaceAll("/app/resources", tmp_resources_dir);
-        Files.write(configPath, content.getBytes(charset));
-
-        DpheOmopPipelineBuilder pipeline = new DpheOmopPipelineBuilder(configFile);
+        DpheOmopPipelineBuilder pipeline = new DpheOmopPipelineBuilder(configFile, resources_path,
+                Integer.getInteger(POOL_SIZE_PROPERTY, 1), Long.getLong(BORROW_TIMEOUT_PROPERTY, 0L));
         pipeline.initialize();
+        System.out.println("Startup complete in " + (System.currentTimeMillis() - start) + " ms.");
         try {
             String text = "===================================================================\n" + //
                 "Report ID.....................1,doc1\n" + //
@@ -158,7 +796,9 @@ public class DpheOmopPipelineBuilder {
                 "IMPRESSION:\n" + //
                 "Uncomplicated ultrasound guided core biopsies of the right breast at the 1 o’clock position and abnormal right axillary lymph node.\n" + //
                 "\n";
+            final long first = System.currentTimeMillis();
             List<Mention> results = pipeline.run(text);
+            System.out.println("First document processed in " + (System.currentTimeMillis() - first) + " ms.");
             results.forEach(mention -> System.out.println(mention.toString()));
         } catch (ResourceInitializationException e) {
             System.err.println("Failed to create pipeline: " + e.getMessage());
@@ -0,0 +1,174 @@
+package org.healthnlp.deepphe.omop;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed set of AnalysisEngines created from a single pipeline description, plus a set of JCas to process with them.
+ * Each engine can process one document at a time, so up to {@link #getSize()} documents can be annotated concurrently.
+ * There are more JCas than engines so that mentions can be extracted from one JCas
+ * while its engine is already annotating the next document.
+ * Callers borrow an engine or JCas and must always release it, usually in a finally block.
+ *
+ * @since {10/18/2026}
+ */
+final class EnginePool {
+
+   static private final Logger LOGGER = Logger.getLogger( "EnginePool" );
+
+   /**
+    * A pool size of 0 (or less) means "use one engine per available processor".
+    */
+   static final int AUTO_SIZE = 0;
+
+   /**
+    * Number of JCas per engine.  One is being annotated while the other has mentions extracted.
+    */
+   static private final int CAS_PER_ENGINE = 2;
+
+   private final BlockingQueue<AnalysisEngine> _idleEngines;
+   private final BlockingQueue<JCas> _idleCases;
+   private final int _engineCount;
+   private final int _casCount;
+   private final long _borrowTimeoutMillis;
+   private volatile boolean _closed;
+
+   /**
+    * @param description         pipeline description used to produce every engine.
+    * @param size                number of engines, or {@link #AUTO_SIZE} for one engine per available processor.
+    * @param borrowTimeoutMillis maximum time to wait for a free engine or JCas.  0 or less waits indefinitely.
+    * @throws UIMAException if any engine or cas cannot be created.
+    */
+   EnginePool( final AnalysisEngineDescription description, final int size, final long borrowTimeoutMillis )
+         throws UIMAException {
+      _engineCount = resolveSize( size );
+      _casCount = _engineCount * CAS_PER_ENGINE;
+      _idleEngines = new ArrayBlockingQueue<>( _engineCount );
+      _idleCases = new ArrayBlockingQueue<>( _casCount );
+      _borrowTimeoutMillis = borrowTimeoutMillis;
+      for ( int i = 0; i < _engineCount; i++ ) {
+         _idleEngines.add( UIMAFramework.produceAnalysisEngine( description ) );
+      }
+      for ( int i = 0; i < _casCount; i++ ) {
+         _idleCases.add( JCasFactory.createJCas() );
+      }
+      LOGGER.info( "Created " + _engineCount + " AnalysisEngine(s) and " + _casCount + " JCas." );
+   }
+
+   static int resolveSize( final int size ) {
+      return size > AUTO_SIZE ? size : Math.max( 1, Runtime.getRuntime().availableProcessors() );
+   }
+
+   /**
+    * @return the number of engines, which is the number of documents that can be annotated concurrently.
+    */
+   int getSize() {
+      return _engineCount;
+   }
+
+   /**
+    * @return the number of JCas, which is the number of documents that can be in flight at once.
+    */
+   int getCasCount() {
+      return _casCount;
+   }
+
+   int getIdleCount() {
+      return _idleEngines.size();
+   }
+
+   /**
+    * @return a free engine, waiting up to the borrow timeout for one to be released.
+    * @throws EngineUnavailableException if the pool is closed, the wait times out or the thread is interrupted.
+    */
+   AnalysisEngine borrowEngine() {
+      final AnalysisEngine engine = borrow( _idleEngines, "AnalysisEngine" );
+      if ( _closed ) {
+         destroy( engine );
+         throw new EngineUnavailableException( "The AnalysisEngine pool has been closed." );
+      }
+      return engine;
+   }
+
+   /**
+    * Return an engine to the pool.  If the pool has been closed while the engine was in use it is destroyed instead.
+    */
+   void releaseEngine( final AnalysisEngine engine ) {
+      if ( _closed ) {
+         destroy( engine );
+         return;
+      }
+      _idleEngines.offer( engine );
+      // close() may have drained the idle engines between the check and the offer.
+      // Whichever of close() and this removes the engine from the queue destroys it, so it is destroyed once.
+      if ( _closed && _idleEngines.remove( engine ) ) {
+         destroy( engine );
+      }
+   }
+
+   /**
+    * @return a free, empty JCas, waiting up to the borrow timeout for one to be released.
+    * @throws EngineUnavailableException if the pool is closed, the wait times out or the thread is interrupted.
+    */
+   JCas borrowCas() {
+      final JCas jCas = borrow( _idleCases, "JCas" );
+      jCas.reset();
+      return jCas;
+   }
+
+   void releaseCas( final JCas jCas ) {
+      jCas.reset();
+      _idleCases.offer( jCas );
+   }
+
+   private <T> T borrow( final BlockingQueue<T> idle, final String name ) {
+      if ( _closed ) {
+         throw new EngineUnavailableException( "The AnalysisEngine pool has been closed." );
+      }
+      final T item;
+      try {
+         item = _borrowTimeoutMillis > 0
+                ? idle.poll( _borrowTimeoutMillis, TimeUnit.MILLISECONDS )
+                : idle.take();
+      } catch ( InterruptedException intE ) {
+         Thread.currentThread().interrupt();
+         throw new EngineUnavailableException( "Interrupted while waiting for a free " + name + "." );
+      }
+      if ( item == null ) {
+         throw new EngineUnavailableException( "No " + name + " became free within "
+                                               + _borrowTimeoutMillis + " ms." );
+      }
+      return item;
+   }
+
+   /**
+    * Destroy every idle engine.  Engines that are still in use are destroyed when they are released,
+    * including those released while this is draining the pool.
+    */
+   void close() {
+      _closed = true;
+      final List<AnalysisEngine> idle = new ArrayList<>( _engineCount );
+      _idleEngines.drainTo( idle );
+      idle.forEach( EnginePool::destroy );
+   }
+
+   static private void destroy( final AnalysisEngine engine ) {
+      try {
+         engine.destroy();
+      } catch ( Exception e ) {
+         LOGGER.error( "Error during AnalysisEngine destruction: " + e.getMessage() );
+      }
+   }
+
+}
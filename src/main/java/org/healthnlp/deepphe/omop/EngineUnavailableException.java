@@ -0,0 +1,17 @@
+package org.healthnlp.deepphe.omop;
+
+/**
+ * Thrown when no AnalysisEngine can be obtained to process a document,
+ * e.g. every pooled engine stayed busy past the borrow timeout or the builder was closed.
+ *
+ * @since {10/18/2026}
+ */
+public class EngineUnavailableException extends IllegalStateException {
+
+   static private final long serialVersionUID = 1L;
+
+   public EngineUnavailableException( final String message ) {
+      super( message );
+   }
+
+}
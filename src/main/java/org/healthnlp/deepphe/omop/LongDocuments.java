@@ -0,0 +1,139 @@
+package org.healthnlp.deepphe.omop;
+
+import org.apache.ctakes.typesystem.type.textspan.Segment;
+import org.apache.log4j.Logger;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.analysis_engine.metadata.FlowConstraints;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.util.InvalidXMLException;
+import org.healthnlp.deepphe.omop.writer.OmopMentionTableWriter;
+
+import java.util.*;
+
+/**
+ * Splits very long documents into chunks at section starts, so that the chunks can be
+ * processed concurrently, and stitches the mentions of the chunks back together.
+ * <p>
+ * Boundaries are found by running only the start of the pipeline, up to and including the sectionizing stage.
+ * Each chunk is then processed by the whole pipeline as a document of its own.
+ * Chunks are never split at paragraphs: a chunk that started mid-section would lose its section header,
+ * and with it section-based attributes such as Historic and Generic.
+ * Stitched mentions have document offsets and windows taken from the whole document, so both are the same
+ * as when the document is processed in one pass.  Annotations that depend on text in other sections,
+ * e.g. relations that cross a chunk boundary, can differ.
+ * </p>
+ *
+ * @since {10/18/2026}
+ */
+final class LongDocuments {
+
+   static private final Logger LOGGER = Logger.getLogger( "LongDocuments" );
+
+   private LongDocuments() {
+   }
+
+   /**
+    * @param aggregate pipeline with a fixed flow.
+    * @param lastStage simple class name of the last stage needed to find sections, e.g. WtfSectionFixer.
+    * @return the pipeline up to and including the last stage, or null if the pipeline has no such stage.
+    */
+   static AnalysisEngineDescription getSectionPipeline( final AnalysisEngineDescription aggregate,
+                                                        final String lastStage )
+         throws ResourceInitializationException {
+      final FlowConstraints flow = aggregate.getAnalysisEngineMetaData().getFlowConstraints();
+      if ( aggregate.isPrimitive() || !( flow instanceof FixedFlow ) ) {
+         return null;
+      }
+      final Map<String, ResourceSpecifier> delegates;
+      try {
+         delegates = aggregate.getDelegateAnalysisEngineSpecifiers();
+      } catch ( InvalidXMLException ixE ) {
+         throw new ResourceInitializationException( ixE );
+      }
+      final List<AnalysisEngineDescription> descriptions = new ArrayList<>();
+      final List<String> names = new ArrayList<>();
+      for ( String key : ( (FixedFlow)flow ).getFixedFlow() ) {
+         final ResourceSpecifier delegate = delegates.get( key );
+         if ( !( delegate instanceof AnalysisEngineDescription ) ) {
+            return null;
+         }
+         descriptions.add( (AnalysisEngineDescription)delegate );
+         names.add( key );
+         final String annotator = ( (AnalysisEngineDescription)delegate ).getAnnotatorImplementationName();
+         if ( annotator != null && annotator.substring( annotator.lastIndexOf( '.' ) + 1 ).equals( lastStage ) ) {
+            final AnalysisEngineDescription sections = AnalysisEngineFactory.createEngineDescription(
+                  descriptions, names,
+                  aggregate.getAnalysisEngineMetaData().getTypePriorities(),
+                  aggregate.getSofaMappings(), null );
+            sections.setResourceManagerConfiguration( aggregate.getResourceManagerConfiguration() );
+            return sections;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Chunks are at least the given size, except the last, and each starts at a section.
+    *
+    * @param jCas       document that has been sectioned.
+    * @param chunkChars target characters per chunk.
+    * @return chunk boundaries, starting with 0 and ending with the document length.
+    */
+   static int[] getChunkBounds( final JCas jCas, final int chunkChars ) {
+      final int length = jCas.getDocumentText().length();
+      final SortedSet<Integer> starts = new TreeSet<>();
+      for ( Annotation segment : JCasUtil.select( jCas, Segment.class ) ) {
+         starts.add( segment.getBegin() );
+      }
+      final List<Integer> bounds = new ArrayList<>();
+      bounds.add( 0 );
+      int start = 0;
+      for ( int next : starts ) {
+         if ( next - start >= chunkChars && length - next >= chunkChars / 2 ) {
+            bounds.add( next );
+            start = next;
+         }
+      }
+      bounds.add( length );
+      return bounds.stream().mapToInt( Integer::intValue ).toArray();
+   }
+
+   /**
+    * @param text     the whole document.
+    * @param offset   offset of the chunk in the document.
+    * @param mentions mentions of the chunk.
+    * @return the mentions with document offsets, and windows as they are in the whole document.
+    */
+   static List<CompactMention> toDocumentMentions( final String text, final int offset,
+                                                   final List<CompactMention> mentions ) {
+      final List<CompactMention> shifted = new ArrayList<>( mentions.size() );
+      for ( CompactMention mention : mentions ) {
+         final int begin = mention.begin + offset;
+         final int end = mention.end + offset;
+         shifted.add( new CompactMention( mention.semantic, mention.uri, mention.cui, mention.tuis,
+                                          begin, end, mention.flags, mention.confidence, mention.prefText,
+                                          mention.term, OmopMentionTableWriter.getWindow( text, begin, end ) ) );
+      }
+      return shifted;
+   }
+
+   /**
+    * @param chunks mentions of each chunk, in document order, with document offsets.
+    * @return the mentions of the document in the order of a single pass.
+    */
+   static List<CompactMention> stitch( final List<List<CompactMention>> chunks ) {
+      final List<CompactMention> mentions = new ArrayList<>();
+      chunks.forEach( mentions::addAll );
+      // A stable sort, so mentions that compare equal stay in text order as they would in a single pass.
+      mentions.sort( OmopMentionTableWriter.COMPACT_MENTION_COMPARATOR );
+      LOGGER.debug( "Stitched " + mentions.size() + " mentions from " + chunks.size() + " chunks." );
+      return mentions;
+   }
+
+}
@@ -46,11 +46,19 @@ public class Mention {
 
   private static final Gson GSON = new Gson();
 
+  /**
+   * The tui json is built on first use.  Transient so that Gson does not write it as a field.
+   */
+  private transient String tuiJson;
+
   /**
    * Returns the TUI list as a JSON array string, e.g., ["T047","T191"]
    */
   public String getTuiAsJsonArray() {
-    return GSON.toJson(tui == null ? Collections.emptyList() : tui);
+    if (tuiJson == null) {
+      tuiJson = GSON.toJson(tui == null ? Collections.emptyList() : tui);
+    }
+    return tuiJson;
   }
 
   public String toString() {
@@ -0,0 +1,146 @@
+package org.healthnlp.deepphe.omop;
+
+import org.apache.ctakes.core.pipeline.PipelineBuilder;
+import org.apache.ctakes.core.pipeline.PiperFileReader;
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a piper file with its resource paths pointed at a resource root, in place.
+ * The piper files refer to resources under {@link #PIPER_ROOT}, which is where the docker image puts them.
+ * When resources are elsewhere every occurrence of that root in a piper line is replaced as the line is read,
+ * so neither the resources nor the piper file need to be copied or rewritten.
+ * <p>
+ * The resource root is taken from the system property {@link #RESOURCE_ROOT_PROPERTY},
+ * then the environment variable {@link #RESOURCE_ROOT_ENV}.  Without either the piper is read unchanged.
+ * The graph database of "set GraphDb=" lines can be replaced as well, with the system property
+ * {@link #GRAPH_DB_PROPERTY}, so that each of several jvms can open its own copy of the graph.
+ * Only lines of the given piper are changed.  Pipers loaded from it with "load" are read by cTAKES as they are.
+ *
+ * @since {10/18/2026}
+ */
+final public class PiperResources {
+
+   static private final Logger LOGGER = Logger.getLogger( "PiperResources" );
+
+   /**
+    * The resource directory named in the piper files.
+    */
+   static public final String PIPER_ROOT = "/app/resources";
+
+   static public final String RESOURCE_ROOT_PROPERTY = "dphe.omop.resources";
+   static public final String RESOURCE_ROOT_ENV = "DPHE_OMOP_RESOURCES";
+
+   /**
+    * System property for a graph database directory used in place of the piper's GraphDb.
+    */
+   static public final String GRAPH_DB_PROPERTY = "dphe.omop.graphDb";
+
+   static private final Pattern GRAPH_DB_PATTERN = Pattern.compile( "\\s*set\\s+GraphDb\\s*=.*" );
+
+   private PiperResources() {
+   }
+
+   /**
+    * @return the configured resource root, or null if none is set.
+    */
+   static public String getResourceRoot() {
+      final String property = System.getProperty( RESOURCE_ROOT_PROPERTY );
+      if ( property != null && !property.trim().isEmpty() ) {
+         return property.trim();
+      }
+      final String env = System.getenv( RESOURCE_ROOT_ENV );
+      if ( env != null && !env.trim().isEmpty() ) {
+         return env.trim();
+      }
+      return null;
+   }
+
+   /**
+    * @param piperPath    file path or classpath location of the piper file.
+    * @param resourceRoot directory to use in place of {@link #PIPER_ROOT}, or null to read the piper unchanged.
+    * @return a builder for the pipeline described by the piper.
+    * @throws UIMAException if the piper cannot be read or any of its lines cannot be used.
+    */
+   static public PipelineBuilder read( final String piperPath, final String resourceRoot ) throws UIMAException {
+      final String root = normalize( resourceRoot );
+      final String graphDb = normalize( System.getProperty( GRAPH_DB_PROPERTY ) );
+      if ( ( root == null || root.equals( PIPER_ROOT ) ) && graphDb == null ) {
+         return new PiperFileReader( piperPath ).getBuilder();
+      }
+      LOGGER.info( "Loading Piper File " + piperPath + " with resources in " + ( root == null ? PIPER_ROOT : root )
+                   + ( graphDb == null ? "" : " and graph " + graphDb ) );
+      final PiperFileReader reader = new PiperFileReader();
+      try ( BufferedReader lines = reader.getPiperReader( piperPath ) ) {
+         String line = lines.readLine();
+         while ( line != null ) {
+            line = line.trim();
+            if ( graphDb != null && GRAPH_DB_PATTERN.matcher( line ).matches() ) {
+               line = "set GraphDb=" + graphDb;
+            } else if ( root != null ) {
+               line = line.replace( PIPER_ROOT, root );
+            }
+            // Same as PiperFileReader.loadPipelineFile, which also ignores the returned value.
+            reader.parsePipelineLine( line );
+            line = lines.readLine();
+         }
+      } catch ( IOException ioE ) {
+         throw new UIMAException( ioE );
+      }
+      return reader.getBuilder();
+   }
+
+   /**
+    * @param piperPath file path or classpath location of the piper file.
+    * @return the text of the piper file, as it is written.
+    * @throws IOException if the piper cannot be read.
+    */
+   static public String getText( final String piperPath ) throws IOException {
+      final StringBuilder sb = new StringBuilder();
+      try ( BufferedReader lines = new PiperFileReader().getPiperReader( piperPath ) ) {
+         String line = lines.readLine();
+         while ( line != null ) {
+            sb.append( line ).append( '\n' );
+            line = lines.readLine();
+         }
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @param piperPath    file path or classpath location of the piper file.
+    * @param resourceRoot directory to use in place of {@link #PIPER_ROOT}, or null for the piper's own paths.
+    * @return the GraphDb of the piper with its resource root replaced, or null if the piper sets none.
+    * @throws IOException if the piper cannot be read.
+    */
+   static public String getGraphDb( final String piperPath, final String resourceRoot ) throws IOException {
+      final String root = normalize( resourceRoot );
+      String graphDb = null;
+      for ( String line : getText( piperPath ).split( "\n" ) ) {
+         line = line.trim();
+         if ( GRAPH_DB_PATTERN.matcher( line ).matches() ) {
+            graphDb = line.substring( line.indexOf( '=' ) + 1 ).trim();
+         }
+      }
+      return graphDb == null || root == null ? graphDb : graphDb.replace( PIPER_ROOT, root );
+   }
+
+   /**
+    * Forward slashes work on every platform in piper paths and jdbc urls.  A trailing slash would double up.
+    */
+   static private String normalize( final String resourceRoot ) {
+      if ( resourceRoot == null || resourceRoot.trim().isEmpty() ) {
+         return null;
+      }
+      String root = resourceRoot.trim().replace( '\\', '/' );
+      while ( root.length() > 1 && root.endsWith( "/" ) ) {
+         root = root.substring( 0, root.length() - 1 );
+      }
+      return root;
+   }
+
+}
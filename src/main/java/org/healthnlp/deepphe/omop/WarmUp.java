@@ -0,0 +1,216 @@
+package org.healthnlp.deepphe.omop;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs fake reports through an initialized pipeline until its latency stops improving.
+ * The first documents are far slower than later ones while classes load, the JIT compiles the model
+ * and dictionary paths and the graph's pages are read.  Warming up before taking traffic keeps that off real notes.
+ * <p>
+ * Reports are processed in rounds on every pooled engine.  Latency is the median milliseconds per KB of a round,
+ * as the reports vary in length.  Warm-up ends when {@value #STABLE_ROUNDS} rounds in a row are within
+ * the tolerance of the round before, or when the document or time limit is reached.
+ * Reports are not put in the result cache.  They are counted in the pipeline metrics like any other document.
+ * <p>
+ * The reports are read from {@value #REPORTS_RESOURCE}, radiology and pathology reports of 1 to 12 KB
+ * made by the bench module's SyntheticReports.  No real patient information is used.
+ *
+ * @since {10/18/2026}
+ */
+final public class WarmUp {
+
+   static private final Logger LOGGER = Logger.getLogger( "WarmUp" );
+
+   /**
+    * System property for the most warm-up documents.  Default 200.  0 turns warm-up off.
+    */
+   static public final String DOCUMENTS_PROPERTY = "dphe.omop.warmUpDocuments";
+   /**
+    * System property for the most warm-up seconds.  Default 300.
+    */
+   static public final String SECONDS_PROPERTY = "dphe.omop.warmUpSeconds";
+
+   static private final int STABLE_ROUNDS = 2;
+   static private final double TOLERANCE = 0.1;
+   static private final String REPORTS_RESOURCE = "org/healthnlp/deepphe/omop/warm_up_reports.txt";
+   static private final String REPORT_SEPARATOR = "\n#####\n";
+
+   private final DpheOmopPipelineBuilder _pipeline;
+   private final int _maxDocuments;
+   private final long _maxMillis;
+   private int _documentCount;
+   private long _millis;
+   private double _coldMsPerKb;
+   private double _warmMsPerKb;
+   private boolean _stable;
+
+   /**
+    * @param pipeline     initialized pipeline.
+    * @param maxDocuments most documents to process.
+    * @param maxMillis    most milliseconds to spend.  A round that has started is finished.
+    */
+   public WarmUp( final DpheOmopPipelineBuilder pipeline, final int maxDocuments, final long maxMillis ) {
+      _pipeline = pipeline;
+      _maxDocuments = maxDocuments;
+      _maxMillis = maxMillis;
+   }
+
+   /**
+    * @return a warm-up with limits from {@value #DOCUMENTS_PROPERTY} and {@value #SECONDS_PROPERTY}.
+    */
+   static public WarmUp create( final DpheOmopPipelineBuilder pipeline ) {
+      return new WarmUp( pipeline, Integer.getInteger( DOCUMENTS_PROPERTY, 200 ),
+            Long.getLong( SECONDS_PROPERTY, 300L ) * 1000 );
+   }
+
+   /**
+    * Process the warm-up reports until latency is stable or a limit is reached, then log the result.
+    *
+    * @throws UIMAException if a report fails.
+    */
+   public void run() throws UIMAException {
+      if ( _maxDocuments <= 0 ) {
+         LOGGER.info( "No warm-up." );
+         return;
+      }
+      final int engines = Math.max( 1, _pipeline.getPoolSize() );
+      final int roundSize = Math.max( 8, engines * 4 );
+      final AtomicInteger threadNumber = new AtomicInteger();
+      final ExecutorService executor = Executors.newFixedThreadPool( engines, r -> {
+         final Thread thread = new Thread( r, "DpheOmopWarmUp-" + threadNumber.incrementAndGet() );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      final List<String> reports = getReports();
+      LOGGER.info( "Warming up with up to " + _maxDocuments + " reports in rounds of " + roundSize + " ..." );
+      final long start = System.currentTimeMillis();
+      try {
+         double previous = 0;
+         int stableRounds = 0;
+         while ( _documentCount < _maxDocuments && System.currentTimeMillis() - start < _maxMillis ) {
+            final int count = Math.min( roundSize, _maxDocuments - _documentCount );
+            final double msPerKb = runRound( executor, reports, count );
+            _documentCount += count;
+            if ( _coldMsPerKb == 0 ) {
+               _coldMsPerKb = msPerKb;
+            } else if ( Math.abs( msPerKb - previous ) <= TOLERANCE * previous ) {
+               stableRounds++;
+            } else {
+               stableRounds = 0;
+            }
+            LOGGER.debug( String.format( "Warm-up round of %d reports, median %.2f ms per KB.", count, msPerKb ) );
+            previous = msPerKb;
+            _warmMsPerKb = msPerKb;
+            if ( stableRounds >= STABLE_ROUNDS ) {
+               _stable = true;
+               break;
+            }
+         }
+      } finally {
+         // Not shutdownNow(), which would interrupt engines inside process().
+         executor.shutdown();
+         _millis = System.currentTimeMillis() - start;
+      }
+      LOGGER.info( String.format( "Warm-up %s after %d reports in %d ms.  Median %.2f ms per KB at first,"
+                                  + " %.2f at the end.", _stable ? "stable" : "stopped", _documentCount, _millis,
+            _coldMsPerKb, _warmMsPerKb ) );
+   }
+
+   /**
+    * @return the median milliseconds per KB of the reports.
+    */
+   private double runRound( final ExecutorService executor, final List<String> reports, final int count )
+         throws UIMAException {
+      final List<Future<Double>> futures = new ArrayList<>( count );
+      for ( int i = 0; i < count; i++ ) {
+         final String text = reports.get( ( _documentCount + i ) % reports.size() );
+         futures.add( executor.submit( () -> {
+            final long begin = System.nanoTime();
+            _pipeline.runUncached( text );
+            return ( System.nanoTime() - begin ) / 1_000_000d / ( text.length() / 1024d );
+         } ) );
+      }
+      final double[] msPerKb = new double[ count ];
+      try {
+         for ( int i = 0; i < count; i++ ) {
+            msPerKb[ i ] = futures.get( i ).get();
+         }
+      } catch ( InterruptedException intE ) {
+         // Interrupting a pooled engine mid document can leave it unusable, so only unstarted reports are cancelled.
+         futures.forEach( f -> f.cancel( false ) );
+         Thread.currentThread().interrupt();
+         throw new EngineUnavailableException( "Interrupted while warming up." );
+      } catch ( ExecutionException eE ) {
+         futures.forEach( f -> f.cancel( false ) );
+         if ( eE.getCause() instanceof UIMAException ) {
+            throw (UIMAException)eE.getCause();
+         }
+         if ( eE.getCause() instanceof RuntimeException ) {
+            throw (RuntimeException)eE.getCause();
+         }
+         throw new UIMAException( eE.getCause() );
+      }
+      Arrays.sort( msPerKb );
+      return msPerKb[ count / 2 ];
+   }
+
+   /**
+    * @return the warm-up reports.
+    * @throws UIMAException if they cannot be read.
+    */
+   static private List<String> getReports() throws UIMAException {
+      try ( InputStream stream = WarmUp.class.getClassLoader().getResourceAsStream( REPORTS_RESOURCE ) ) {
+         if ( stream == null ) {
+            throw new UIMAException( new IOException( "No warm-up reports at " + REPORTS_RESOURCE ) );
+         }
+         final String reports = new String( stream.readAllBytes(), StandardCharsets.UTF_8 );
+         return Collections.unmodifiableList( Arrays.asList( reports.split( REPORT_SEPARATOR ) ) );
+      } catch ( IOException ioE ) {
+         throw new UIMAException( ioE );
+      }
+   }
+
+   public int getDocumentCount() {
+      return _documentCount;
+   }
+
+   public long getMillis() {
+      return _millis;
+   }
+
+   /**
+    * @return median milliseconds per KB of the first round.
+    */
+   public double getColdMsPerKb() {
+      return _coldMsPerKb;
+   }
+
+   /**
+    * @return median milliseconds per KB of the last round.
+    */
+   public double getWarmMsPerKb() {
+      return _warmMsPerKb;
+   }
+
+   /**
+    * @return true if warm-up ended because latency was stable rather than at a limit.
+    */
+   public boolean isStable() {
+      return _stable;
+   }
+
+}
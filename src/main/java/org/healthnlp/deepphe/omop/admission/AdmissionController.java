@@ -0,0 +1,355 @@
+package org.healthnlp.deepphe.omop.admission;
+
+import org.apache.log4j.Logger;
+import org.healthnlp.deepphe.omop.EngineUnavailableException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Admits documents to the pipeline only while the heap they are projected to use stays under a budget.
+ * CAS and annotation memory grow with document length, so a few huge notes annotated together can exhaust the heap
+ * even though the same number of ordinary notes would not.
+ * <p>
+ * The cost of a document is estimated as a fixed amount per document, an amount per character,
+ * and an amount per expected mention.  Expected mentions come from the mentions per KB of text,
+ * learned from the documents processed so far.
+ * A document that does not fit waits, in one of three bins by size, until enough in-flight documents finish.
+ * Each bin is first in first out, but bins do not wait on each other,
+ * so small notes keep flowing while a large note waits for room.
+ * A document that has waited longer than the deferral limit is admitted before any other,
+ * so that a steady stream of small notes cannot starve a large one.
+ * A document larger than the whole budget is admitted when nothing else is in flight.
+ * <p>
+ * Documents that wait are counted as deferred.  Those that wait past the timeout are rejected.
+ *
+ * @since {10/18/2026}
+ */
+final public class AdmissionController {
+
+   static private final Logger LOGGER = Logger.getLogger( "AdmissionController" );
+
+   /**
+    * Upper character bounds of the small and medium bins.  Longer documents are large.
+    */
+   static private final int[] BIN_CHARS = { 16_384, 131_072 };
+   static private final String[] BIN_NAMES = { "small", "medium", "large" };
+
+   static public final long DEFAULT_DOCUMENT_BYTES = 4L * 1024 * 1024;
+   static public final long DEFAULT_CHAR_BYTES = 400;
+   static public final long DEFAULT_MENTION_BYTES = 8 * 1024;
+   static public final long DEFAULT_DEFER_MILLIS = 10_000;
+   /**
+    * Fraction of the heap free after initialization that is budgeted for documents by {@link #create(String, long)}.
+    */
+   static private final double AUTO_BUDGET_FRACTION = 0.75;
+   static private final double INITIAL_MENTIONS_PER_KB = 5;
+   /**
+    * Weight of each new document in the learned mentions per KB.
+    */
+   static private final double LEARNING_RATE = 0.05;
+   /**
+    * Shorter documents have too few mentions to say much about the rate.
+    */
+   static private final int MIN_LEARNING_CHARS = 512;
+
+   private final long _budgetBytes;
+   private final long _documentBytes;
+   private final long _charBytes;
+   private final long _mentionBytes;
+   private final long _timeoutMillis;
+   private final long _deferMillis;
+   private final long _baselineHeap;
+
+   @SuppressWarnings( "unchecked" )
+   private final Deque<Waiter>[] _bins = (Deque<Waiter>[])new Deque<?>[ BIN_NAMES.length ];
+   private final long[] _admitted = new long[ BIN_NAMES.length ];
+   private final long[] _deferred = new long[ BIN_NAMES.length ];
+   private final long[] _rejected = new long[ BIN_NAMES.length ];
+   private double _mentionsPerKb = INITIAL_MENTIONS_PER_KB;
+   private long _inFlightBytes;
+   private int _inFlight;
+   private long _peakEstimatedBytes;
+   private long _peakLiveBytes;
+
+   /**
+    * @param budgetBytes   heap that documents in flight may be projected to use, above the heap in use now.
+    * @param documentBytes estimated heap used by every document regardless of its length.
+    * @param charBytes     estimated heap used per character of a document.
+    * @param mentionBytes  estimated heap used per mention found in a document.
+    * @param timeoutMillis maximum milliseconds a document waits for admission.  0 waits indefinitely.
+    * @param deferMillis   milliseconds after which a waiting document is admitted before any other.
+    */
+   public AdmissionController( final long budgetBytes, final long documentBytes, final long charBytes,
+                               final long mentionBytes, final long timeoutMillis, final long deferMillis ) {
+      if ( budgetBytes <= 0 ) {
+         throw new IllegalArgumentException( "Admission budget must be positive, not " + budgetBytes );
+      }
+      _budgetBytes = budgetBytes;
+      _documentBytes = documentBytes;
+      _charBytes = charBytes;
+      _mentionBytes = mentionBytes;
+      _timeoutMillis = timeoutMillis;
+      _deferMillis = deferMillis;
+      _baselineHeap = getLiveHeap();
+      for ( int i = 0; i < _bins.length; i++ ) {
+         _bins[ i ] = new ArrayDeque<>();
+      }
+      LOGGER.info( "Admitting documents within " + toMb( budgetBytes ) + " MB of heap, above "
+                   + toMb( _baselineHeap ) + " MB in use." );
+   }
+
+   /**
+    * Call after the pipeline is initialized, so that its heap is not part of the budget.
+    *
+    * @param budgetMb      megabytes of heap for documents in flight,
+    *                      or "auto" for most of the heap that is free once the pipeline is initialized.
+    * @param timeoutMillis maximum milliseconds a document waits for admission.  0 waits indefinitely.
+    * @return a controller with default cost estimates.
+    */
+   static public AdmissionController create( final String budgetMb, final long timeoutMillis ) {
+      final long budget;
+      if ( budgetMb.trim().equalsIgnoreCase( "auto" ) ) {
+         budget = (long)( ( Runtime.getRuntime().maxMemory() - getLiveHeap() ) * AUTO_BUDGET_FRACTION );
+      } else {
+         budget = Long.parseLong( budgetMb.trim() ) * 1024 * 1024;
+      }
+      return new AdmissionController( budget, DEFAULT_DOCUMENT_BYTES, DEFAULT_CHAR_BYTES, DEFAULT_MENTION_BYTES,
+            timeoutMillis, DEFAULT_DEFER_MILLIS );
+   }
+
+   /**
+    * @param chars length of a document.
+    * @return projected heap use of the document, with the current mentions per KB.
+    */
+   public synchronized long estimate( final int chars ) {
+      final double mentions = chars / 1024d * _mentionsPerKb;
+      return _documentBytes + chars * _charBytes + (long)( mentions * _mentionBytes );
+   }
+
+   /**
+    * Wait until the document fits within the budget.  Every admitted document must be released.
+    *
+    * @param chars length of the document.
+    * @return the estimated cost of the document, to be given to {@link #release(long, int, int)}.
+    * @throws EngineUnavailableException if the document was not admitted within the timeout or the wait was interrupted.
+    */
+   public long admit( final int chars ) {
+      final long cost = estimate( chars );
+      final int bin = getBin( chars );
+      synchronized ( this ) {
+         if ( _bins[ bin ].isEmpty() && getStarved( System.nanoTime() ) == null && fits( cost ) ) {
+            add( bin, cost );
+            return cost;
+         }
+         final Waiter waiter = new Waiter( cost );
+         _bins[ bin ].addLast( waiter );
+         _deferred[ bin ]++;
+         try {
+            while ( !canAdmit( waiter, bin ) ) {
+               final long waited = ( System.nanoTime() - waiter._since ) / 1_000_000;
+               if ( _timeoutMillis > 0 && waited >= _timeoutMillis ) {
+                  _rejected[ bin ]++;
+                  throw new EngineUnavailableException( "Not enough heap to admit a document of " + chars
+                                                        + " characters within " + _timeoutMillis + " ms." );
+               }
+               // Only a release or another waiter leaving can make room, and both notify.
+               wait( _timeoutMillis > 0 ? _timeoutMillis - waited : 0 );
+            }
+         } catch ( InterruptedException intE ) {
+            Thread.currentThread().interrupt();
+            throw new EngineUnavailableException( "Interrupted while waiting to admit a document." );
+         } finally {
+            _bins[ bin ].remove( waiter );
+            // Whether admitted or not, the waiter was the head of its bin, so the next may now go.
+            notifyAll();
+         }
+         add( bin, cost );
+         return cost;
+      }
+   }
+
+   /**
+    * @param cost     cost returned by {@link #admit(int)}.
+    * @param chars    length of the document.
+    * @param mentions mentions found in the document, or -1 if it was not annotated.
+    */
+   public synchronized void release( final long cost, final int chars, final int mentions ) {
+      _inFlightBytes -= cost;
+      _inFlight--;
+      if ( mentions >= 0 && chars >= MIN_LEARNING_CHARS ) {
+         _mentionsPerKb += LEARNING_RATE * ( mentions * 1024d / chars - _mentionsPerKb );
+      }
+      _peakLiveBytes = Math.max( _peakLiveBytes, getLiveHeap() - _baselineHeap );
+      notifyAll();
+   }
+
+   private void add( final int bin, final long cost ) {
+      _inFlightBytes += cost;
+      _inFlight++;
+      _admitted[ bin ]++;
+      _peakEstimatedBytes = Math.max( _peakEstimatedBytes, _inFlightBytes );
+   }
+
+   private boolean fits( final long cost ) {
+      return _inFlight == 0 || _inFlightBytes + cost <= _budgetBytes;
+   }
+
+   private boolean canAdmit( final Waiter waiter, final int bin ) {
+      if ( _bins[ bin ].peekFirst() != waiter ) {
+         return false;
+      }
+      final Waiter starved = getStarved( System.nanoTime() );
+      if ( starved != null && starved != waiter ) {
+         return false;
+      }
+      return fits( waiter._cost );
+   }
+
+   /**
+    * @return the longest waiting document if it has waited past the deferral limit, otherwise null.
+    */
+   private Waiter getStarved( final long now ) {
+      Waiter oldest = null;
+      for ( Deque<Waiter> bin : _bins ) {
+         final Waiter head = bin.peekFirst();
+         if ( head != null && ( oldest == null || head._since < oldest._since ) ) {
+            oldest = head;
+         }
+      }
+      if ( oldest == null || ( now - oldest._since ) / 1_000_000 < _deferMillis ) {
+         return null;
+      }
+      return oldest;
+   }
+
+   static private int getBin( final int chars ) {
+      for ( int i = 0; i < BIN_CHARS.length; i++ ) {
+         if ( chars <= BIN_CHARS[ i ] ) {
+            return i;
+         }
+      }
+      return BIN_CHARS.length;
+   }
+
+   /**
+    * @return bin names, in the order of the per bin counts.
+    */
+   static public String[] getBinNames() {
+      return BIN_NAMES.clone();
+   }
+
+   public long getBudgetBytes() {
+      return _budgetBytes;
+   }
+
+   public synchronized long[] getAdmittedCounts() {
+      return _admitted.clone();
+   }
+
+   /**
+    * @return per bin, documents that had to wait for admission, including those that were then rejected.
+    */
+   public synchronized long[] getDeferredCounts() {
+      return _deferred.clone();
+   }
+
+   public synchronized long[] getRejectedCounts() {
+      return _rejected.clone();
+   }
+
+   public synchronized int getInFlightCount() {
+      return _inFlight;
+   }
+
+   public synchronized int getWaitingCount() {
+      int waiting = 0;
+      for ( Deque<Waiter> bin : _bins ) {
+         waiting += bin.size();
+      }
+      return waiting;
+   }
+
+   /**
+    * @return projected heap use of the documents in flight.
+    */
+   public synchronized long getEstimatedBytes() {
+      return _inFlightBytes;
+   }
+
+   /**
+    * @return live heap above the heap in use when the controller was created.
+    */
+   public long getLiveBytes() {
+      return Math.max( 0, getLiveHeap() - _baselineHeap );
+   }
+
+   /**
+    * @return the most heap projected for documents in flight at one time.
+    */
+   public synchronized long getPeakEstimatedBytes() {
+      return _peakEstimatedBytes;
+   }
+
+   /**
+    * @return the most live heap seen as a document finished, above the heap in use when the controller was created.
+    */
+   public synchronized long getPeakLiveBytes() {
+      return _peakLiveBytes;
+   }
+
+   public synchronized double getMentionsPerKb() {
+      return _mentionsPerKb;
+   }
+
+   /**
+    * @return a one line summary of admissions and of estimated versus live heap.
+    */
+   public String getSummary() {
+      final StringBuilder sb = new StringBuilder( "Admission: " );
+      final long[] admitted = getAdmittedCounts();
+      final long[] deferred = getDeferredCounts();
+      final long[] rejected = getRejectedCounts();
+      for ( int i = 0; i < BIN_NAMES.length; i++ ) {
+         sb.append( BIN_NAMES[ i ] ).append( ' ' ).append( admitted[ i ] ).append( " admitted, " )
+           .append( deferred[ i ] ).append( " deferred, " ).append( rejected[ i ] ).append( " rejected.  " );
+      }
+      return sb.append( "Peak estimated heap " ).append( toMb( getPeakEstimatedBytes() ) )
+               .append( " MB, peak live heap " ).append( toMb( getPeakLiveBytes() ) )
+               .append( " MB, budget " ).append( toMb( _budgetBytes ) )
+               .append( String.format( " MB, %.1f mentions per KB.", getMentionsPerKb() ) ).toString();
+   }
+
+   /**
+    * @return heap used after the last garbage collection of each heap pool, so uncollected garbage is not counted.
+    */
+   static private long getLiveHeap() {
+      long used = 0;
+      for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+         if ( pool.getType() != MemoryType.HEAP ) {
+            continue;
+         }
+         final MemoryUsage usage = pool.getCollectionUsage();
+         used += usage != null ? usage.getUsed() : pool.getUsage().getUsed();
+      }
+      return used;
+   }
+
+   static private long toMb( final long bytes ) {
+      return bytes / ( 1024 * 1024 );
+   }
+
+   static private final class Waiter {
+      private final long _cost;
+      private final long _since = System.nanoTime();
+
+      private Waiter( final long cost ) {
+         _cost = cost;
+      }
+   }
+
+}
@@ -0,0 +1,278 @@
+package org.healthnlp.deepphe.omop.cache;
+
+import org.apache.log4j.Logger;
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.writer.MentionColumns;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Disk store of document results keyed by the content of the document, so that re-sent reports,
+ * addenda and other duplicate notes are not run through the pipeline again.
+ * <p>
+ * The key is the sha-256 of a pipeline version and the normalized document text.
+ * Normalization only replaces carriage returns with spaces, as the piper's CRtoSpace does and as the
+ * mention writers do for terms and windows.  Nothing that could move an offset is normalized,
+ * so a cached result is exactly the result of the document that is looked up.
+ * The version should change whenever the pipeline or its models change; old entries are then never read
+ * and age out.
+ * </p>
+ * Each result is one {@link MentionColumns} file in a directory named by the first two characters of its key.
+ * When the total size of the files goes over the maximum the least recently used files are deleted.
+ * The use order survives restarts as file modification times, which are updated on every hit.
+ * This may be used concurrently, and by several processes sharing a directory, as files are written to a
+ * temporary name and moved into place.
+ *
+ * @since {10/18/2026}
+ */
+final public class ResultCache {
+
+   static private final Logger LOGGER = Logger.getLogger( "ResultCache" );
+
+   static private final String EXTENSION = ".dmc";
+   static private final String TEMP_EXTENSION = ".tmp";
+
+   private final Path _directory;
+   private final String _version;
+   private final long _maxBytes;
+   /**
+    * Access ordered file sizes by key, least recently used first.
+    */
+   private final LinkedHashMap<String, Long> _sizes = new LinkedHashMap<>( 1024, 0.75f, true );
+   private long _totalBytes;
+   private final AtomicLong _hits = new AtomicLong();
+   private final AtomicLong _misses = new AtomicLong();
+   private final AtomicLong _evictions = new AtomicLong();
+
+   /**
+    * @param directory directory of the store, created if necessary.  Existing entries are kept.
+    * @param version   pipeline and model version, part of every key.
+    * @param maxBytes  maximum total size of the stored results.
+    * @throws IOException if the directory cannot be created or read.
+    */
+   public ResultCache( final Path directory, final String version, final long maxBytes ) throws IOException {
+      _directory = directory;
+      _version = version;
+      _maxBytes = maxBytes;
+      Files.createDirectories( directory );
+      final List<Path> files;
+      try ( Stream<Path> paths = Files.walk( directory, 2 ) ) {
+         files = paths.filter( Files::isRegularFile ).collect( Collectors.toList() );
+      }
+      final List<Path> entries = new ArrayList<>( files.size() );
+      final Map<Path, FileTime> times = new HashMap<>( files.size() );
+      for ( Path file : files ) {
+         final String name = file.getFileName().toString();
+         if ( name.endsWith( TEMP_EXTENSION ) ) {
+            // Left by a process that stopped while writing.
+            Files.deleteIfExists( file );
+         } else if ( name.endsWith( EXTENSION ) ) {
+            entries.add( file );
+            times.put( file, Files.getLastModifiedTime( file ) );
+         }
+      }
+      entries.sort( Comparator.comparing( times::get ) );
+      synchronized ( _sizes ) {
+         for ( Path file : entries ) {
+            final String name = file.getFileName().toString();
+            final long size = Files.size( file );
+            _sizes.put( name.substring( 0, name.length() - EXTENSION.length() ), size );
+            _totalBytes += size;
+         }
+      }
+      evict();
+      LOGGER.info( "Result cache " + directory + " has " + getEntryCount() + " results, "
+                   + getTotalBytes() / 1024 + " KB of " + maxBytes / 1024 + " KB." );
+   }
+
+   /**
+    * @return the key of the given text under this cache's version and the mention column version,
+    * so that results stored in an older layout are never read.
+    */
+   public String getKey( final String text ) {
+      final MessageDigest digest = newDigest();
+      digest.update( _version.getBytes( StandardCharsets.UTF_8 ) );
+      digest.update( (byte)0 );
+      digest.update( (byte)MentionColumns.VERSION );
+      digest.update( text.replace( '\r', ' ' ).getBytes( StandardCharsets.UTF_8 ) );
+      return toHex( digest.digest() );
+   }
+
+   /**
+    * @param key from {@link #getKey(String)}.
+    * @return the stored mentions, or null if there are none.
+    */
+   public List<CompactMention> get( final String key ) {
+      synchronized ( _sizes ) {
+         if ( _sizes.get( key ) == null ) {
+            _misses.incrementAndGet();
+            return null;
+         }
+      }
+      final Path file = getFile( key );
+      try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) ) {
+         final List<CompactMention> mentions = MentionColumns.read( in );
+         Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() ) );
+         _hits.incrementAndGet();
+         return mentions;
+      } catch ( IOException ioE ) {
+         // Evicted since the lookup, possibly by another process, or unreadable.  Either way it is a miss.
+         LOGGER.debug( "Could not read cached result " + file + " : " + ioE.getMessage() );
+         remove( key );
+         _misses.incrementAndGet();
+         return null;
+      }
+   }
+
+   /**
+    * Store the mentions of a document.  A failure to store is logged and otherwise ignored.
+    *
+    * @param key      from {@link #getKey(String)}.
+    * @param mentions mentions of the document.
+    */
+   public void put( final String key, final List<CompactMention> mentions ) {
+      final Path file = getFile( key );
+      Path temp = null;
+      try {
+         Files.createDirectories( file.getParent() );
+         temp = Files.createTempFile( file.getParent(), key, TEMP_EXTENSION );
+         try ( DataOutputStream out = new DataOutputStream(
+               new BufferedOutputStream( Files.newOutputStream( temp ) ) ) ) {
+            MentionColumns.write( mentions, out );
+         }
+         final long size = Files.size( temp );
+         try {
+            Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+         } catch ( AtomicMoveNotSupportedException amnsE ) {
+            Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+         }
+         synchronized ( _sizes ) {
+            final Long previous = _sizes.put( key, size );
+            _totalBytes += size - ( previous == null ? 0 : previous );
+         }
+         evict();
+      } catch ( IOException ioE ) {
+         LOGGER.warn( "Could not store result " + file + " : " + ioE.getMessage() );
+         if ( temp != null ) {
+            try {
+               Files.deleteIfExists( temp );
+            } catch ( IOException ignored ) {
+            }
+         }
+      }
+   }
+
+   private void remove( final String key ) {
+      synchronized ( _sizes ) {
+         final Long size = _sizes.remove( key );
+         if ( size != null ) {
+            _totalBytes -= size;
+         }
+      }
+   }
+
+   /**
+    * Delete least recently used results until the total size is within the maximum.
+    */
+   private void evict() {
+      final List<String> evicted = new ArrayList<>();
+      synchronized ( _sizes ) {
+         final Iterator<Map.Entry<String, Long>> entries = _sizes.entrySet().iterator();
+         while ( _totalBytes > _maxBytes && entries.hasNext() ) {
+            final Map.Entry<String, Long> entry = entries.next();
+            _totalBytes -= entry.getValue();
+            evicted.add( entry.getKey() );
+            entries.remove();
+         }
+      }
+      for ( String key : evicted ) {
+         try {
+            Files.deleteIfExists( getFile( key ) );
+            _evictions.incrementAndGet();
+         } catch ( IOException ioE ) {
+            LOGGER.warn( "Could not evict result " + key + " : " + ioE.getMessage() );
+         }
+      }
+   }
+
+   private Path getFile( final String key ) {
+      return _directory.resolve( key.substring( 0, 2 ) ).resolve( key + EXTENSION );
+   }
+
+   public String getVersion() {
+      return _version;
+   }
+
+   public long getHitCount() {
+      return _hits.get();
+   }
+
+   public long getMissCount() {
+      return _misses.get();
+   }
+
+   /**
+    * @return hits over lookups, 0 before the first lookup.
+    */
+   public double getHitRatio() {
+      final long hits = _hits.get();
+      final long lookups = hits + _misses.get();
+      return lookups == 0 ? 0 : (double)hits / lookups;
+   }
+
+   public long getEvictionCount() {
+      return _evictions.get();
+   }
+
+   public int getEntryCount() {
+      synchronized ( _sizes ) {
+         return _sizes.size();
+      }
+   }
+
+   public long getTotalBytes() {
+      synchronized ( _sizes ) {
+         return _totalBytes;
+      }
+   }
+
+   /**
+    * @param parts anything that identifies the pipeline and its models, e.g. the piper text and a release.
+    * @return a short, stable version made from the given parts.
+    */
+   static public String createVersion( final String... parts ) {
+      final MessageDigest digest = newDigest();
+      for ( String part : parts ) {
+         digest.update( String.valueOf( part ).getBytes( StandardCharsets.UTF_8 ) );
+         digest.update( (byte)0 );
+      }
+      return toHex( digest.digest() ).substring( 0, 16 );
+   }
+
+   static private MessageDigest newDigest() {
+      try {
+         return MessageDigest.getInstance( "SHA-256" );
+      } catch ( NoSuchAlgorithmException nsaE ) {
+         // Every Java platform is required to support SHA-256.
+         throw new IllegalStateException( nsaE );
+      }
+   }
+
+   static private String toHex( final byte[] bytes ) {
+      final StringBuilder sb = new StringBuilder( bytes.length * 2 );
+      for ( byte b : bytes ) {
+         sb.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+      }
+      return sb.toString();
+   }
+
+}
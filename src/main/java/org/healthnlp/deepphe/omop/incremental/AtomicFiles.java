@@ -0,0 +1,36 @@
+package org.healthnlp.deepphe.omop.incremental;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Files are written beside their final name with {@link #TEMP_SUFFIX} and moved into place when complete.
+ *
+ * @since {10/18/2026}
+ */
+final class AtomicFiles {
+
+   static final String TEMP_SUFFIX = ".dphe-tmp";
+
+   private AtomicFiles() {
+   }
+
+   static Path getTemp( final Path file ) {
+      return file.resolveSibling( file.getFileName() + TEMP_SUFFIX );
+   }
+
+   /**
+    * Replace target with source in one step where the file system allows it.
+    */
+   static void move( final Path source, final Path target ) throws IOException {
+      try {
+         Files.move( source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException amnsE ) {
+         Files.move( source, target, StandardCopyOption.REPLACE_EXISTING );
+      }
+   }
+
+}
@@ -0,0 +1,133 @@
+package org.healthnlp.deepphe.omop.incremental;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Record of documents whose output is complete, kept as a tab separated file with one line per document:
+ * relative path, size in bytes, sha-256 of the content, relative output path.
+ * <p>
+ * A line is appended and forced to disk only after the document's output has been moved into place,
+ * so after a crash the manifest never names output that is missing or partial.
+ * A partial last line left by a crash is ignored, and the document is processed again.
+ * When a document changes a new line is appended, and the latest line for a path is the one used.
+ * The file is compacted to one line per path each time it is opened.
+ *
+ * @since {10/18/2026}
+ */
+final class DocumentManifest implements Closeable {
+
+   static private final Logger LOGGER = Logger.getLogger( "DocumentManifest" );
+
+   static private final String HEADER = "#path\tsize\tsha256\toutput";
+
+   static final class Entry {
+      final String _path;
+      final long _size;
+      final String _sha256;
+      final String _output;
+
+      Entry( final String path, final long size, final String sha256, final String output ) {
+         _path = path;
+         _size = size;
+         _sha256 = sha256;
+         _output = output;
+      }
+
+      private String toLine() {
+         return _path + '\t' + _size + '\t' + _sha256 + '\t' + _output;
+      }
+
+      static private Entry parse( final String line ) {
+         final String[] fields = line.split( "\t" );
+         if ( fields.length != 4 || fields[ 2 ].length() != 64 ) {
+            return null;
+         }
+         try {
+            return new Entry( fields[ 0 ], Long.parseLong( fields[ 1 ] ), fields[ 2 ], fields[ 3 ] );
+         } catch ( NumberFormatException nfE ) {
+            return null;
+         }
+      }
+   }
+
+   private final Map<String, Entry> _entries = new LinkedHashMap<>();
+   private final FileOutputStream _out;
+   private final Writer _writer;
+
+   /**
+    * Read the manifest at the given file, if there is one, compact it and open it for appending.
+    */
+   DocumentManifest( final Path file ) throws IOException {
+      final boolean exists = Files.exists( file );
+      if ( exists ) {
+         int ignored = 0;
+         try ( BufferedReader reader = Files.newBufferedReader( file, StandardCharsets.UTF_8 ) ) {
+            String line = reader.readLine();
+            while ( line != null ) {
+               if ( !line.isEmpty() && !line.startsWith( "#" ) ) {
+                  final Entry entry = Entry.parse( line );
+                  if ( entry == null ) {
+                     ignored++;
+                  } else {
+                     _entries.put( entry._path, entry );
+                  }
+               }
+               line = reader.readLine();
+            }
+         }
+         if ( ignored > 0 ) {
+            LOGGER.warn( "Ignored " + ignored + " incomplete lines in " + file );
+         }
+         compact( file );
+      }
+      _out = new FileOutputStream( file.toFile(), true );
+      _writer = new OutputStreamWriter( _out, StandardCharsets.UTF_8 );
+      if ( !exists ) {
+         _writer.write( HEADER + '\n' );
+         _writer.flush();
+      }
+   }
+
+   private void compact( final Path file ) throws IOException {
+      final Path temp = AtomicFiles.getTemp( file );
+      try ( Writer writer = Files.newBufferedWriter( temp, StandardCharsets.UTF_8 ) ) {
+         writer.write( HEADER + '\n' );
+         for ( Entry entry : _entries.values() ) {
+            writer.write( entry.toLine() );
+            writer.write( '\n' );
+         }
+      }
+      AtomicFiles.move( temp, file );
+   }
+
+   synchronized Entry get( final String path ) {
+      return _entries.get( path );
+   }
+
+   synchronized int size() {
+      return _entries.size();
+   }
+
+   /**
+    * Record a document whose output is complete, forcing the line to disk before returning.
+    */
+   synchronized void add( final Entry entry ) throws IOException {
+      _entries.put( entry._path, entry );
+      _writer.write( entry.toLine() );
+      _writer.write( '\n' );
+      _writer.flush();
+      _out.getFD().sync();
+   }
+
+   @Override
+   public synchronized void close() throws IOException {
+      _writer.close();
+   }
+
+}
@@ -0,0 +1,274 @@
+package org.healthnlp.deepphe.omop.incremental;
+
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+import org.healthnlp.deepphe.omop.DpheOmopPipelineBuilder;
+import org.healthnlp.deepphe.omop.PiperResources;
+import org.healthnlp.deepphe.omop.sink.DelimitedMentionSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Processes a directory tree of notes, skipping notes that were already processed and have not changed.
+ * <p>
+ * Each note's mentions are written to a bar separated file at the same relative path in the output directory,
+ * with ".bsv" appended.  Output is written to a temporary file and moved into place when complete,
+ * then the note is recorded in the {@link DocumentManifest} by path, size and sha-256.
+ * A note is skipped when the manifest has the same path, size and hash and its output file exists.
+ * After a crash the run can simply be started again: complete notes are skipped
+ * and any note that was in progress is processed again.
+ * </p>
+ * Hidden files are ignored.  As with the piper's CRtoSpace setting, carriage returns are read as spaces.
+ * From the command line the run exits with status 1 if any note failed, so that a shard coordinator retries it.
+ *
+ * @since {10/18/2026}
+ */
+final public class IncrementalDocRunner {
+
+   static private final Logger LOGGER = Logger.getLogger( "IncrementalDocRunner" );
+
+   static public final String MANIFEST_NAME = "dphe-omop-manifest.tsv";
+   static public final String OUTPUT_EXTENSION = ".bsv";
+
+   private final DpheOmopPipelineBuilder _pipeline;
+   private final Path _inputDir;
+   private final Path _outputDir;
+   private final Collection<String> _subDirs;
+   private int _failedCount;
+
+   public IncrementalDocRunner( final DpheOmopPipelineBuilder pipeline, final Path inputDir, final Path outputDir ) {
+      this( pipeline, inputDir, outputDir, Collections.emptyList() );
+   }
+
+   /**
+    * @param subDirs directories within the input directory, e.g. patient directories, to which the run is limited.
+    *                Empty for the whole input directory.
+    */
+   public IncrementalDocRunner( final DpheOmopPipelineBuilder pipeline, final Path inputDir, final Path outputDir,
+                                final Collection<String> subDirs ) {
+      _pipeline = pipeline;
+      _inputDir = inputDir;
+      _outputDir = outputDir;
+      _subDirs = subDirs;
+   }
+
+   /**
+    * @return the number of notes processed, not counting those skipped.
+    * @throws IOException if the input cannot be read or the manifest cannot be written.
+    *                     Notes that fail to process are logged, counted in {@link #getFailedCount()}
+    *                     and left out of the manifest.
+    * @throws Error       the first Error thrown while processing a note, e.g. OutOfMemoryError,
+    *                     once the notes in progress are done.
+    */
+   public int run() throws IOException {
+      Files.createDirectories( _outputDir );
+      removeTempFiles();
+      final List<Path> notes = new ArrayList<>();
+      final Collection<Path> roots = _subDirs.isEmpty()
+                                     ? Collections.singletonList( _inputDir )
+                                     : _subDirs.stream().map( _inputDir::resolve ).collect( Collectors.toList() );
+      for ( Path root : roots ) {
+         try ( Stream<Path> paths = Files.walk( root ) ) {
+            paths.filter( Files::isRegularFile )
+                 .filter( p -> !isHidden( _inputDir.relativize( p ) ) )
+                 .forEach( notes::add );
+         }
+      }
+      Collections.sort( notes );
+      final int threads = Math.max( 1, _pipeline.getPoolSize() * 2 );
+      final ExecutorService executor = Executors.newFixedThreadPool( threads );
+      // Bound the notes held in memory while waiting for an engine.
+      final Semaphore inFlight = new Semaphore( threads * 2 );
+      final AtomicInteger processed = new AtomicInteger();
+      final AtomicInteger failed = new AtomicInteger();
+      final AtomicReference<Error> error = new AtomicReference<>();
+      int skipped = 0;
+      try ( DocumentManifest manifest = new DocumentManifest( _outputDir.resolve( MANIFEST_NAME ) ) ) {
+         LOGGER.info( "Found " + notes.size() + " notes, " + manifest.size() + " in the manifest." );
+         for ( Path note : notes ) {
+            if ( error.get() != null ) {
+               // Start no more notes after an Error.  A restarted run picks them up.
+               break;
+            }
+            final String relative = toRelativeName( note );
+            final byte[] bytes = Files.readAllBytes( note );
+            final String sha256 = sha256( bytes );
+            final String output = relative + OUTPUT_EXTENSION;
+            final DocumentManifest.Entry done = manifest.get( relative );
+            if ( done != null && done._size == bytes.length && done._sha256.equals( sha256 )
+                 && Files.exists( _outputDir.resolve( done._output ) ) ) {
+               skipped++;
+               continue;
+            }
+            final String text = new String( bytes, StandardCharsets.UTF_8 ).replace( '\r', ' ' );
+            final DocumentManifest.Entry entry = new DocumentManifest.Entry( relative, bytes.length, sha256, output );
+            inFlight.acquireUninterruptibly();
+            executor.execute( () -> {
+               try {
+                  process( entry, text, manifest );
+                  processed.incrementAndGet();
+               } catch ( IOException | UIMAException | RuntimeException e ) {
+                  failed.incrementAndGet();
+                  LOGGER.error( "Could not process " + relative + " : " + e.getMessage(), e );
+               } catch ( Error e ) {
+                  failed.incrementAndGet();
+                  error.compareAndSet( null, e );
+                  throw e;
+               } finally {
+                  inFlight.release();
+               }
+            } );
+         }
+         executor.shutdown();
+         try {
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.DAYS );
+         } catch ( InterruptedException intE ) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new IOException( "Interrupted while processing notes." );
+         }
+      }
+      _failedCount = failed.get();
+      LOGGER.info( "Processed " + processed.get() + " notes, skipped " + skipped + " unchanged, "
+                   + _failedCount + " failed." );
+      if ( error.get() != null ) {
+         throw error.get();
+      }
+      return processed.get();
+   }
+
+   /**
+    * @return the number of notes that could not be processed by the last run.
+    */
+   public int getFailedCount() {
+      return _failedCount;
+   }
+
+   private void process( final DocumentManifest.Entry entry, final String text, final DocumentManifest manifest )
+         throws IOException, UIMAException {
+      final Path output = _outputDir.resolve( entry._output );
+      Files.createDirectories( output.getParent() );
+      final Path temp = AtomicFiles.getTemp( output );
+      final String documentId = entry._path.substring( 0, entry._path.length() - getExtension( entry._path ).length() );
+      try ( DelimitedMentionSink sink = new DelimitedMentionSink( temp, DelimitedMentionSink.BSV ) ) {
+         _pipeline.run( documentId, text, sink );
+      } catch ( IOException | UIMAException | RuntimeException e ) {
+         Files.deleteIfExists( temp );
+         throw e;
+      }
+      AtomicFiles.move( temp, output );
+      manifest.add( entry );
+   }
+
+   /**
+    * Remove output left partially written by a run that did not finish.
+    */
+   private void removeTempFiles() throws IOException {
+      try ( Stream<Path> paths = Files.walk( _outputDir ) ) {
+         for ( Path path : paths.filter( p -> p.getFileName().toString().endsWith( AtomicFiles.TEMP_SUFFIX ) )
+                                .collect( Collectors.toList() ) ) {
+            Files.deleteIfExists( path );
+         }
+      }
+   }
+
+   /**
+    * @return the path relative to the input directory with '/' separators, the same on every platform.
+    */
+   private String toRelativeName( final Path note ) {
+      return _inputDir.relativize( note ).toString().replace( '\\', '/' );
+   }
+
+   static private boolean isHidden( final Path relative ) {
+      for ( Path name : relative ) {
+         if ( name.toString().startsWith( "." ) ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   static private String getExtension( final String path ) {
+      final int dot = path.lastIndexOf( '.' );
+      return dot > path.lastIndexOf( '/' ) ? path.substring( dot ) : "";
+   }
+
+   static private String sha256( final byte[] bytes ) {
+      final MessageDigest digest;
+      try {
+         digest = MessageDigest.getInstance( "SHA-256" );
+      } catch ( NoSuchAlgorithmException nsaE ) {
+         // Every Java platform is required to support SHA-256.
+         throw new IllegalStateException( nsaE );
+      }
+      final byte[] hash = digest.digest( bytes );
+      final StringBuilder sb = new StringBuilder( hash.length * 2 );
+      for ( byte b : hash ) {
+         sb.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+      }
+      return sb.toString();
+   }
+
+   public static void main( final String... args ) throws IOException, UIMAException {
+      final Options options = new Options();
+      options.addOption( "i", "inputDir", true, "Directory of notes, e.g. data/input/patient_id/*.txt" );
+      options.addOption( "o", "outputDir", true, "Directory for mention tables and the manifest." );
+      options.addOption( "p", "piper", true, "Piper file." );
+      options.addOption( "r", "resources", true, "Resource directory used in place of /app/resources in the piper." );
+      options.addOption( "c", "concurrency", true, "Notes processed at once, 0 for one per core.  Default 1" );
+      options.addOption( "l", "dirList", true, "File listing the input sub-directories to process, one per line." );
+      final CommandLine cmd;
+      try {
+         cmd = new BasicParser().parse( options, args );
+      } catch ( ParseException pE ) {
+         System.err.println( "Error parsing command line arguments: " + pE.getMessage() );
+         new HelpFormatter().printHelp( "IncrementalDocRunner", options );
+         System.exit( 1 );
+         return;
+      }
+      if ( !cmd.hasOption( "i" ) || !cmd.hasOption( "o" ) || !cmd.hasOption( "p" ) ) {
+         new HelpFormatter().printHelp( "IncrementalDocRunner", options );
+         System.exit( 1 );
+         return;
+      }
+      final DpheOmopPipelineBuilder pipeline = new DpheOmopPipelineBuilder(
+            cmd.getOptionValue( "p" ),
+            cmd.getOptionValue( "r", PiperResources.getResourceRoot() ),
+            Integer.parseInt( cmd.getOptionValue( "c", "1" ) ),
+            0 );
+      final List<String> subDirs = cmd.hasOption( "l" )
+                                   ? Files.readAllLines( Paths.get( cmd.getOptionValue( "l" ) ) ).stream()
+                                          .map( String::trim ).filter( l -> !l.isEmpty() )
+                                          .collect( Collectors.toList() )
+                                   : Collections.emptyList();
+      pipeline.initialize();
+      final IncrementalDocRunner runner = new IncrementalDocRunner( pipeline, Paths.get( cmd.getOptionValue( "i" ) ),
+                                                                    Paths.get( cmd.getOptionValue( "o" ) ), subDirs );
+      try {
+         runner.run();
+      } finally {
+         pipeline.close();
+      }
+      if ( runner.getFailedCount() > 0 ) {
+         LOGGER.error( runner.getFailedCount() + " notes failed.  Run again to retry them." );
+         System.exit( 1 );
+      }
+   }
+
+}
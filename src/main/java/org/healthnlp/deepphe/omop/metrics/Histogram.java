@@ -0,0 +1,118 @@
+package org.healthnlp.deepphe.omop.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed bucket histogram that can be updated from many threads without locking.
+ * Quantiles are estimated as the upper bound of the bucket that holds them, the same as Prometheus would.
+ *
+ * @since {10/18/2026}
+ */
+final public class Histogram {
+
+   /**
+    * Stage and document latency bucket bounds in nanoseconds, from 100 microseconds to 1 minute.
+    */
+   static public final long[] LATENCY_NANOS = {
+         100_000L, 250_000L, 500_000L,
+         1_000_000L, 2_500_000L, 5_000_000L,
+         10_000_000L, 25_000_000L, 50_000_000L,
+         100_000_000L, 250_000_000L, 500_000_000L,
+         1_000_000_000L, 2_500_000_000L, 5_000_000_000L,
+         10_000_000_000L, 30_000_000_000L, 60_000_000_000L };
+
+   /**
+    * Document size bucket bounds in characters.
+    */
+   static public final long[] DOCUMENT_CHARS = {
+         1_000L, 2_000L, 5_000L, 10_000L, 20_000L, 50_000L, 100_000L, 200_000L, 500_000L, 1_000_000L };
+
+   private final long[] _bounds;
+   /**
+    * One count per bound plus one for values over the last bound.
+    */
+   private final AtomicLongArray _counts;
+   private final LongAdder _sum = new LongAdder();
+   private final AtomicLong _max = new AtomicLong();
+
+   public Histogram( final long[] bounds ) {
+      _bounds = bounds;
+      _counts = new AtomicLongArray( bounds.length + 1 );
+   }
+
+   public void record( final long value ) {
+      int bucket = 0;
+      while ( bucket < _bounds.length && value > _bounds[ bucket ] ) {
+         bucket++;
+      }
+      _counts.incrementAndGet( bucket );
+      _sum.add( value );
+      long max = _max.get();
+      while ( value > max && !_max.compareAndSet( max, value ) ) {
+         max = _max.get();
+      }
+   }
+
+   public long[] getBounds() {
+      return _bounds.clone();
+   }
+
+   /**
+    * @return count of values in each bucket, the last being values over every bound.
+    */
+   public long[] getCounts() {
+      final long[] counts = new long[ _counts.length() ];
+      for ( int i = 0; i < counts.length; i++ ) {
+         counts[ i ] = _counts.get( i );
+      }
+      return counts;
+   }
+
+   public long getCount() {
+      long count = 0;
+      for ( int i = 0; i < _counts.length(); i++ ) {
+         count += _counts.get( i );
+      }
+      return count;
+   }
+
+   public long getSum() {
+      return _sum.sum();
+   }
+
+   public long getMax() {
+      return _max.get();
+   }
+
+   public double getMean() {
+      final long count = getCount();
+      return count == 0 ? 0 : (double)getSum() / count;
+   }
+
+   /**
+    * @param quantile between 0 and 1, e.g. 0.99
+    * @return upper bound of the bucket holding the quantile, or the maximum if it is over every bound.
+    */
+   public long getQuantile( final double quantile ) {
+      final long[] counts = getCounts();
+      long total = 0;
+      for ( long count : counts ) {
+         total += count;
+      }
+      if ( total == 0 ) {
+         return 0;
+      }
+      final long rank = (long)Math.ceil( quantile * total );
+      long seen = 0;
+      for ( int i = 0; i < _bounds.length; i++ ) {
+         seen += counts[ i ];
+         if ( seen >= rank ) {
+            return Math.min( _bounds[ i ], getMax() );
+         }
+      }
+      return getMax();
+   }
+
+}
@@ -0,0 +1,425 @@
+package org.healthnlp.deepphe.omop.metrics;
+
+import org.apache.log4j.Logger;
+import org.healthnlp.deepphe.nlp.ae.attribute.AttributeFinderAe;
+import org.healthnlp.deepphe.omop.admission.AdmissionController;
+import org.healthnlp.deepphe.omop.cache.ResultCache;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per stage and per document metrics of every metered pipeline in the JVM.
+ * Stages are recorded by {@link StageMeter}.  The metrics can be read through JMX,
+ * as Prometheus text (e.g. the service's /metrics) or from a file that is rewritten periodically.
+ *
+ * @since {10/18/2026}
+ */
+final public class PipelineMetrics implements PipelineMetricsMXBean {
+
+   static private final Logger LOGGER = Logger.getLogger( "PipelineMetrics" );
+
+   static public final String OBJECT_NAME = "org.healthnlp.deepphe.omop:type=PipelineMetrics";
+
+   static private final double NANOS_PER_SECOND = 1_000_000_000d;
+
+   static private final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+   static public PipelineMetrics getInstance() {
+      return INSTANCE;
+   }
+
+   private final Map<String, StageMetrics> _stages = new ConcurrentHashMap<>();
+   /**
+    * Stages in pipeline order.
+    */
+   private final List<StageMetrics> _stageOrder = new CopyOnWriteArrayList<>();
+   private final Histogram _documentLatency = new Histogram( Histogram.LATENCY_NANOS );
+   private final Histogram _documentChars = new Histogram( Histogram.DOCUMENT_CHARS );
+   private final AtomicLong _documentsTriaged = new AtomicLong();
+   private final AtomicLong _documentsSkipped = new AtomicLong();
+   private final AtomicLong _sectionsTriaged = new AtomicLong();
+   private final AtomicLong _sectionsSkipped = new AtomicLong();
+   private volatile ResultCache _resultCache;
+   private volatile AdmissionController _admission;
+   private boolean _registered;
+   private ScheduledExecutorService _fileReporter;
+
+   private PipelineMetrics() {
+   }
+
+   StageMetrics getStage( final String name ) {
+      final StageMetrics stage = _stages.get( name );
+      if ( stage != null ) {
+         return stage;
+      }
+      synchronized ( _stageOrder ) {
+         return _stages.computeIfAbsent( name, n -> {
+            final StageMetrics created = new StageMetrics( n );
+            _stageOrder.add( created );
+            return created;
+         } );
+      }
+   }
+
+   void recordDocument( final long nanos, final int chars ) {
+      _documentLatency.record( nanos );
+      _documentChars.record( chars );
+   }
+
+   /**
+    * @param skipped true if the document had no candidate words and was not annotated.
+    */
+   public void recordDocumentTriage( final boolean skipped ) {
+      _documentsTriaged.incrementAndGet();
+      if ( skipped ) {
+         _documentsSkipped.incrementAndGet();
+      }
+   }
+
+   /**
+    * @param skipped true if the section had no candidate words and was removed before annotation.
+    */
+   public void recordSectionTriage( final boolean skipped ) {
+      _sectionsTriaged.incrementAndGet();
+      if ( skipped ) {
+         _sectionsSkipped.incrementAndGet();
+      }
+   }
+
+   /**
+    * @param resultCache cache whose hits and misses are reported with the pipeline metrics, or null for none.
+    */
+   public void setResultCache( final ResultCache resultCache ) {
+      _resultCache = resultCache;
+   }
+
+   /**
+    * @param admission controller whose admissions and heap estimates are reported with the pipeline metrics,
+    *                  or null for none.
+    */
+   public void setAdmissionController( final AdmissionController admission ) {
+      _admission = admission;
+   }
+
+   public List<StageMetrics> getStageMetrics() {
+      return new ArrayList<>( _stageOrder );
+   }
+
+   public Histogram getDocumentLatency() {
+      return _documentLatency;
+   }
+
+   public Histogram getDocumentChars() {
+      return _documentChars;
+   }
+
+   /**
+    * Register with the platform MBean server as {@value #OBJECT_NAME}.  Later calls do nothing.
+    */
+   public synchronized void register() {
+      if ( _registered ) {
+         return;
+      }
+      try {
+         ManagementFactory.getPlatformMBeanServer().registerMBean( this, new ObjectName( OBJECT_NAME ) );
+         _registered = true;
+      } catch ( Exception e ) {
+         LOGGER.warn( "Could not register " + OBJECT_NAME + " : " + e.getMessage() );
+      }
+   }
+
+   /**
+    * Rewrite the file with {@link #getPrometheusText()} every period until the JVM exits.
+    * The text is written to a temporary file first and moved into place, so readers never see a partial file.
+    */
+   public synchronized void startFileReporter( final Path file, final long periodSeconds ) {
+      if ( _fileReporter != null ) {
+         return;
+      }
+      _fileReporter = Executors.newSingleThreadScheduledExecutor( r -> {
+         final Thread thread = new Thread( r, "DpheOmopMetricsFile" );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      final long period = Math.max( 1, periodSeconds );
+      _fileReporter.scheduleAtFixedRate( () -> writeFile( file ), period, period, TimeUnit.SECONDS );
+      LOGGER.info( "Writing pipeline metrics to " + file + " every " + period + " seconds." );
+   }
+
+   public synchronized void stopFileReporter() {
+      if ( _fileReporter != null ) {
+         _fileReporter.shutdownNow();
+         _fileReporter = null;
+      }
+   }
+
+   private void writeFile( final Path file ) {
+      try {
+         final Path absolute = file.toAbsolutePath();
+         final Path temp = absolute.resolveSibling( absolute.getFileName() + ".tmp" );
+         Files.write( temp, getPrometheusText().getBytes( StandardCharsets.UTF_8 ) );
+         try {
+            Files.move( temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+         } catch ( AtomicMoveNotSupportedException amnsE ) {
+            Files.move( temp, absolute, StandardCopyOption.REPLACE_EXISTING );
+         }
+      } catch ( IOException ioE ) {
+         LOGGER.warn( "Could not write pipeline metrics to " + file + " : " + ioE.getMessage() );
+      }
+   }
+
+   @Override
+   public long getDocumentCount() {
+      return _documentLatency.getCount();
+   }
+
+   @Override
+   public double getDocumentMeanMillis() {
+      return _documentLatency.getMean() / 1_000_000d;
+   }
+
+   @Override
+   public double getDocumentP99Millis() {
+      return _documentLatency.getQuantile( 0.99 ) / 1_000_000d;
+   }
+
+   @Override
+   public double getDocumentMeanChars() {
+      return _documentChars.getMean();
+   }
+
+   @Override
+   public long getDocumentsSkipped() {
+      return _documentsSkipped.get();
+   }
+
+   @Override
+   public long getSectionsSkipped() {
+      return _sectionsSkipped.get();
+   }
+
+   @Override
+   public double getResultCacheHitRatio() {
+      final ResultCache cache = _resultCache;
+      return cache == null ? 0 : cache.getHitRatio();
+   }
+
+   @Override
+   public long getDocumentsDeferred() {
+      final AdmissionController admission = _admission;
+      return admission == null ? 0 : sum( admission.getDeferredCounts() );
+   }
+
+   @Override
+   public long getDocumentsRejected() {
+      final AdmissionController admission = _admission;
+      return admission == null ? 0 : sum( admission.getRejectedCounts() );
+   }
+
+   static private long sum( final long[] counts ) {
+      long sum = 0;
+      for ( long count : counts ) {
+         sum += count;
+      }
+      return sum;
+   }
+
+   @Override
+   public List<StageSummary> getStages() {
+      final List<StageSummary> summaries = new ArrayList<>( _stageOrder.size() );
+      for ( StageMetrics stage : _stageOrder ) {
+         summaries.add( new StageSummary( stage ) );
+      }
+      return summaries;
+   }
+
+   @Override
+   public String getPrometheusText() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "# HELP dphe_stage_seconds Time taken by each pipeline stage per document.\n" )
+        .append( "# TYPE dphe_stage_seconds histogram\n" );
+      for ( StageMetrics stage : _stageOrder ) {
+         appendHistogram( sb, "dphe_stage_seconds", stageLabel( stage ), stage.getLatency(), NANOS_PER_SECOND );
+      }
+      sb.append( "# HELP dphe_stage_mentions_added_total Mentions added by each pipeline stage.\n" )
+        .append( "# TYPE dphe_stage_mentions_added_total counter\n" );
+      for ( StageMetrics stage : _stageOrder ) {
+         sb.append( "dphe_stage_mentions_added_total{" ).append( stageLabel( stage ) ).append( "} " )
+           .append( stage.getMentionsAdded() ).append( '\n' );
+      }
+      sb.append( "# HELP dphe_stage_mentions_removed_total Mentions removed by each pipeline stage.\n" )
+        .append( "# TYPE dphe_stage_mentions_removed_total counter\n" );
+      for ( StageMetrics stage : _stageOrder ) {
+         sb.append( "dphe_stage_mentions_removed_total{" ).append( stageLabel( stage ) ).append( "} " )
+           .append( stage.getMentionsRemoved() ).append( '\n' );
+      }
+      sb.append( "# HELP dphe_document_seconds Time taken by the whole pipeline per document.\n" )
+        .append( "# TYPE dphe_document_seconds histogram\n" );
+      appendHistogram( sb, "dphe_document_seconds", "", _documentLatency, NANOS_PER_SECOND );
+      sb.append( "# HELP dphe_document_chars Size of each document in characters.\n" )
+        .append( "# TYPE dphe_document_chars histogram\n" );
+      appendHistogram( sb, "dphe_document_chars", "", _documentChars, 1 );
+      if ( _documentsTriaged.get() > 0 || _sectionsTriaged.get() > 0 ) {
+         sb.append( "# HELP dphe_triage_total Documents and sections checked for candidate words, by outcome.\n" )
+           .append( "# TYPE dphe_triage_total counter\n" );
+         appendTriage( sb, "document", _documentsTriaged.get(), _documentsSkipped.get() );
+         appendTriage( sb, "section", _sectionsTriaged.get(), _sectionsSkipped.get() );
+      }
+      final ResultCache cache = _resultCache;
+      if ( cache != null ) {
+         sb.append( "# HELP dphe_result_cache_lookups_total Result cache lookups by outcome.\n" )
+           .append( "# TYPE dphe_result_cache_lookups_total counter\n" )
+           .append( "dphe_result_cache_lookups_total{result=\"hit\"} " ).append( cache.getHitCount() ).append( '\n' )
+           .append( "dphe_result_cache_lookups_total{result=\"miss\"} " ).append( cache.getMissCount() ).append( '\n' )
+           .append( "# HELP dphe_result_cache_evictions_total Results evicted from the result cache.\n" )
+           .append( "# TYPE dphe_result_cache_evictions_total counter\n" )
+           .append( "dphe_result_cache_evictions_total " ).append( cache.getEvictionCount() ).append( '\n' )
+           .append( "# HELP dphe_result_cache_bytes Size of the stored results.\n" )
+           .append( "# TYPE dphe_result_cache_bytes gauge\n" )
+           .append( "dphe_result_cache_bytes " ).append( cache.getTotalBytes() ).append( '\n' );
+      }
+      final AdmissionController admission = _admission;
+      if ( admission != null ) {
+         appendAdmission( sb, admission );
+      }
+      appendAttributeRules( sb );
+      return sb.toString();
+   }
+
+   static private void appendAttributeRules( final StringBuilder sb ) {
+      final Collection<AttributeFinderAe.RuleStats> rules = AttributeFinderAe.getRuleStats();
+      if ( rules.isEmpty() ) {
+         return;
+      }
+      sb.append( "# HELP dphe_attribute_rule_regions_total Documents or sections given to each attribute rule, "
+                 + "by whether they had an anchor.\n" )
+        .append( "# TYPE dphe_attribute_rule_regions_total counter\n" );
+      for ( AttributeFinderAe.RuleStats rule : rules ) {
+         sb.append( "dphe_attribute_rule_regions_total{rule=\"" ).append( rule.getName() )
+           .append( "\",result=\"run\"} " ).append( rule.getRegionsRun() ).append( '\n' )
+           .append( "dphe_attribute_rule_regions_total{rule=\"" ).append( rule.getName() )
+           .append( "\",result=\"skipped\"} " ).append( rule.getRegionsSkipped() ).append( '\n' );
+      }
+      sb.append( "# HELP dphe_attribute_rule_annotations_total Annotations created by each attribute rule.\n" )
+        .append( "# TYPE dphe_attribute_rule_annotations_total counter\n" );
+      for ( AttributeFinderAe.RuleStats rule : rules ) {
+         sb.append( "dphe_attribute_rule_annotations_total{rule=\"" ).append( rule.getName() ).append( "\"} " )
+           .append( rule.getAnnotations() ).append( '\n' );
+      }
+      sb.append( "# HELP dphe_attribute_rule_seconds_total Time spent in each attribute rule and the shared anchor scan.\n" )
+        .append( "# TYPE dphe_attribute_rule_seconds_total counter\n" );
+      for ( AttributeFinderAe.RuleStats rule : rules ) {
+         sb.append( "dphe_attribute_rule_seconds_total{rule=\"" ).append( rule.getName() ).append( "\"} " )
+           .append( rule.getNanos() / NANOS_PER_SECOND ).append( '\n' );
+      }
+      sb.append( "dphe_attribute_rule_seconds_total{rule=\"anchor_scan\"} " )
+        .append( AttributeFinderAe.getScanNanos() / NANOS_PER_SECOND ).append( '\n' );
+   }
+
+   static private void appendAdmission( final StringBuilder sb, final AdmissionController admission ) {
+      final String[] bins = AdmissionController.getBinNames();
+      final long[] admitted = admission.getAdmittedCounts();
+      final long[] deferred = admission.getDeferredCounts();
+      final long[] rejected = admission.getRejectedCounts();
+      sb.append( "# HELP dphe_admission_total Documents admitted, deferred and rejected by size bin.\n" )
+        .append( "# TYPE dphe_admission_total counter\n" );
+      for ( int i = 0; i < bins.length; i++ ) {
+         appendAdmissionCount( sb, bins[ i ], "admitted", admitted[ i ] );
+         appendAdmissionCount( sb, bins[ i ], "deferred", deferred[ i ] );
+         appendAdmissionCount( sb, bins[ i ], "rejected", rejected[ i ] );
+      }
+      sb.append( "# HELP dphe_admission_heap_bytes Heap budget, heap estimated for documents in flight, "
+                 + "and live heap above the heap in use after initialization.\n" )
+        .append( "# TYPE dphe_admission_heap_bytes gauge\n" )
+        .append( "dphe_admission_heap_bytes{kind=\"budget\"} " ).append( admission.getBudgetBytes() ).append( '\n' )
+        .append( "dphe_admission_heap_bytes{kind=\"estimated\"} " ).append( admission.getEstimatedBytes() )
+        .append( '\n' )
+        .append( "dphe_admission_heap_bytes{kind=\"live\"} " ).append( admission.getLiveBytes() ).append( '\n' )
+        .append( "dphe_admission_heap_bytes{kind=\"peak_estimated\"} " )
+        .append( admission.getPeakEstimatedBytes() ).append( '\n' )
+        .append( "dphe_admission_heap_bytes{kind=\"peak_live\"} " ).append( admission.getPeakLiveBytes() )
+        .append( '\n' )
+        .append( "# HELP dphe_admission_documents Documents in flight and waiting for admission.\n" )
+        .append( "# TYPE dphe_admission_documents gauge\n" )
+        .append( "dphe_admission_documents{state=\"in_flight\"} " ).append( admission.getInFlightCount() )
+        .append( '\n' )
+        .append( "dphe_admission_documents{state=\"waiting\"} " ).append( admission.getWaitingCount() )
+        .append( '\n' )
+        .append( "# HELP dphe_admission_mentions_per_kb Learned mentions per KB of text used to estimate heap.\n" )
+        .append( "# TYPE dphe_admission_mentions_per_kb gauge\n" )
+        .append( "dphe_admission_mentions_per_kb " ).append( admission.getMentionsPerKb() ).append( '\n' );
+   }
+
+   static private void appendAdmissionCount( final StringBuilder sb, final String bin, final String result,
+                                             final long count ) {
+      sb.append( "dphe_admission_total{bin=\"" ).append( bin ).append( "\",result=\"" ).append( result )
+        .append( "\"} " ).append( count ).append( '\n' );
+   }
+
+   static private void appendTriage( final StringBuilder sb, final String level, final long triaged,
+                                     final long skipped ) {
+      sb.append( "dphe_triage_total{level=\"" ).append( level ).append( "\",result=\"skipped\"} " )
+        .append( skipped ).append( '\n' )
+        .append( "dphe_triage_total{level=\"" ).append( level ).append( "\",result=\"annotated\"} " )
+        .append( triaged - skipped ).append( '\n' );
+   }
+
+   static private String stageLabel( final StageMetrics stage ) {
+      final String name = stage.getName();
+      final StringBuilder sb = new StringBuilder( name.length() + 8 ).append( "stage=\"" );
+      for ( int i = 0; i < name.length(); i++ ) {
+         final char c = name.charAt( i );
+         if ( c == '\\' || c == '"' ) {
+            sb.append( '\\' ).append( c );
+         } else if ( c == '\n' ) {
+            sb.append( "\\n" );
+         } else {
+            sb.append( c );
+         }
+      }
+      return sb.append( '"' ).toString();
+   }
+
+   /**
+    * Prometheus buckets are cumulative, and the value of each is divided by the given scale.
+    */
+   static private void appendHistogram( final StringBuilder sb, final String name, final String labels,
+                                        final Histogram histogram, final double scale ) {
+      final String prefix = labels.isEmpty() ? "" : labels + ",";
+      final long[] bounds = histogram.getBounds();
+      final long[] counts = histogram.getCounts();
+      long cumulative = 0;
+      for ( int i = 0; i < bounds.length; i++ ) {
+         cumulative += counts[ i ];
+         sb.append( name ).append( "_bucket{" ).append( prefix ).append( "le=\"" )
+           .append( scale == 1 ? Long.toString( bounds[ i ] ) : Double.toString( bounds[ i ] / scale ) )
+           .append( "\"} " ).append( cumulative ).append( '\n' );
+      }
+      cumulative += counts[ bounds.length ];
+      sb.append( name ).append( "_bucket{" ).append( prefix ).append( "le=\"+Inf\"} " )
+        .append( cumulative ).append( '\n' );
+      final String labelSet = labels.isEmpty() ? "" : "{" + labels + "}";
+      sb.append( name ).append( "_sum" ).append( labelSet ).append( ' ' )
+        .append( scale == 1 ? Long.toString( histogram.getSum() ) : Double.toString( histogram.getSum() / scale ) )
+        .append( '\n' );
+      sb.append( name ).append( "_count" ).append( labelSet ).append( ' ' ).append( cumulative ).append( '\n' );
+   }
+
+}
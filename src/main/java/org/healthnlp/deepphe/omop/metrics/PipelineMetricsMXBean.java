@@ -0,0 +1,52 @@
+package org.healthnlp.deepphe.omop.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link PipelineMetrics}, registered as {@value PipelineMetrics#OBJECT_NAME}.
+ *
+ * @since {10/18/2026}
+ */
+public interface PipelineMetricsMXBean {
+
+   long getDocumentCount();
+
+   double getDocumentMeanMillis();
+
+   double getDocumentP99Millis();
+
+   double getDocumentMeanChars();
+
+   /**
+    * @return documents that had no candidate words and were not annotated.
+    */
+   long getDocumentsSkipped();
+
+   /**
+    * @return sections that had no candidate words and were removed before annotation.
+    */
+   long getSectionsSkipped();
+
+   /**
+    * @return hits over lookups of the result cache, 0 if there is no cache or no lookups yet.
+    */
+   double getResultCacheHitRatio();
+
+   /**
+    * @return documents that waited for heap to be admitted, 0 if there is no heap budget.
+    */
+   long getDocumentsDeferred();
+
+   /**
+    * @return documents that could not be admitted within the borrow timeout, 0 if there is no heap budget.
+    */
+   long getDocumentsRejected();
+
+   List<StageSummary> getStages();
+
+   /**
+    * @return every metric in the Prometheus text exposition format.
+    */
+   String getPrometheusText();
+
+}
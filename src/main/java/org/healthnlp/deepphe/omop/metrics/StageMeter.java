@@ -0,0 +1,162 @@
+package org.healthnlp.deepphe.omop.metrics;
+
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.analysis_engine.metadata.FlowConstraints;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.util.InvalidXMLException;
+
+import java.util.*;
+
+/**
+ * Placed before the first stage of a pipeline and after every stage, each meter records the time since the
+ * previous meter and the change in the number of IdentifiedAnnotations to {@link PipelineMetrics}.
+ * The last meter also records the whole document.
+ * A pipeline runs each document start to finish on one thread, so the previous meter's readings are per thread.
+ *
+ * @since {10/18/2026}
+ */
+@PipeBitInfo(
+      name = "StageMeter",
+      description = "Records the time taken and mentions made by the previous pipeline stage.",
+      role = PipeBitInfo.Role.SPECIAL
+)
+final public class StageMeter extends JCasAnnotator_ImplBase {
+
+   static private final Logger LOGGER = Logger.getLogger( "StageMeter" );
+
+   static public final String PARAM_STAGE_NAME = "StageName";
+   @ConfigurationParameter(
+         name = PARAM_STAGE_NAME,
+         description = "Name of the stage before this meter.  Empty for the meter before the first stage.",
+         mandatory = false,
+         defaultValue = ""
+   )
+   private String _stageName;
+
+   static public final String PARAM_LAST_STAGE = "LastStage";
+   @ConfigurationParameter(
+         name = PARAM_LAST_STAGE,
+         description = "This meter follows the last stage.",
+         mandatory = false,
+         defaultValue = "false"
+   )
+   private boolean _lastStage;
+
+   /**
+    * Document start time, previous meter time and previous mention count.
+    */
+   static private final ThreadLocal<long[]> PREVIOUS = ThreadLocal.withInitial( () -> new long[ 3 ] );
+
+   private StageMetrics _stage;
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      if ( !_stageName.isEmpty() ) {
+         _stage = PipelineMetrics.getInstance().getStage( _stageName );
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      final long now = System.nanoTime();
+      final int mentions = jCas.getAnnotationIndex( IdentifiedAnnotation.class ).size();
+      final long[] previous = PREVIOUS.get();
+      if ( _stage == null ) {
+         previous[ 0 ] = now;
+      } else {
+         _stage.record( now - previous[ 1 ], (int)( mentions - previous[ 2 ] ) );
+      }
+      if ( _lastStage ) {
+         final String text = jCas.getDocumentText();
+         PipelineMetrics.getInstance().recordDocument( now - previous[ 0 ], text == null ? 0 : text.length() );
+      }
+      previous[ 2 ] = mentions;
+      // Leave the meter's own time out of the next stage.
+      previous[ 1 ] = System.nanoTime();
+   }
+
+   /**
+    * @param aggregate pipeline with a fixed flow, as made by PipelineBuilder.
+    * @return a copy of the pipeline with a meter before the first stage and after every stage,
+    * or the given pipeline if it cannot be metered.
+    */
+   static public AnalysisEngineDescription instrument( final AnalysisEngineDescription aggregate )
+         throws ResourceInitializationException {
+      final FlowConstraints flow = aggregate.getAnalysisEngineMetaData().getFlowConstraints();
+      if ( aggregate.isPrimitive() || !( flow instanceof FixedFlow ) ) {
+         LOGGER.warn( "Only aggregate pipelines with a fixed flow can be metered." );
+         return aggregate;
+      }
+      final Map<String, ResourceSpecifier> delegates;
+      try {
+         delegates = aggregate.getDelegateAnalysisEngineSpecifiers();
+      } catch ( InvalidXMLException ixE ) {
+         throw new ResourceInitializationException( ixE );
+      }
+      final String[] keys = ( (FixedFlow)flow ).getFixedFlow();
+      final List<AnalysisEngineDescription> descriptions = new ArrayList<>( keys.length * 2 + 1 );
+      final List<String> names = new ArrayList<>( keys.length * 2 + 1 );
+      final Set<String> stageNames = new HashSet<>();
+      descriptions.add( AnalysisEngineFactory.createEngineDescription( StageMeter.class ) );
+      names.add( "StageMeter-start" );
+      for ( int i = 0; i < keys.length; i++ ) {
+         final ResourceSpecifier delegate = delegates.get( keys[ i ] );
+         if ( !( delegate instanceof AnalysisEngineDescription ) ) {
+            LOGGER.warn( "Cannot meter pipeline stage " + keys[ i ] + ", the pipeline will not be metered." );
+            return aggregate;
+         }
+         descriptions.add( (AnalysisEngineDescription)delegate );
+         names.add( keys[ i ] );
+         descriptions.add( AnalysisEngineFactory.createEngineDescription( StageMeter.class,
+               PARAM_STAGE_NAME, getStageName( keys[ i ], (AnalysisEngineDescription)delegate, stageNames ),
+               PARAM_LAST_STAGE, i == keys.length - 1 ) );
+         names.add( "StageMeter-" + i );
+      }
+      // Keys are kept, so the sofa mappings of the original still apply.
+      final AnalysisEngineDescription metered = AnalysisEngineFactory.createEngineDescription(
+            descriptions, names,
+            aggregate.getAnalysisEngineMetaData().getTypePriorities(),
+            aggregate.getSofaMappings(), null );
+      metered.setResourceManagerConfiguration( aggregate.getResourceManagerConfiguration() );
+      return metered;
+   }
+
+   /**
+    * @return the simple class name of the stage's annotator, made unique with a count if it is used more than once.
+    */
+   static private String getStageName( final String key, final AnalysisEngineDescription delegate,
+                                       final Set<String> used ) {
+      String name = delegate.getAnnotatorImplementationName();
+      if ( name == null || name.isEmpty() ) {
+         name = delegate.getMetaData() == null ? null : delegate.getMetaData().getName();
+      }
+      if ( name == null || name.isEmpty() ) {
+         name = key;
+      }
+      name = name.substring( name.lastIndexOf( '.' ) + 1 );
+      String unique = name;
+      for ( int i = 2; !used.add( unique ); i++ ) {
+         unique = name + "#" + i;
+      }
+      return unique;
+   }
+
+}
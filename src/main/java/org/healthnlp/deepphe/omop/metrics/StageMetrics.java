@@ -0,0 +1,56 @@
+package org.healthnlp.deepphe.omop.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and mention counts of one pipeline stage.
+ *
+ * @since {10/18/2026}
+ */
+final public class StageMetrics {
+
+   private final String _name;
+   private final Histogram _latency = new Histogram( Histogram.LATENCY_NANOS );
+   private final LongAdder _mentionsAdded = new LongAdder();
+   private final LongAdder _mentionsRemoved = new LongAdder();
+
+   StageMetrics( final String name ) {
+      _name = name;
+   }
+
+   /**
+    * @param nanos        time the stage took for one document.
+    * @param mentionDelta change in the number of IdentifiedAnnotations made by the stage for that document.
+    */
+   void record( final long nanos, final int mentionDelta ) {
+      _latency.record( nanos );
+      if ( mentionDelta > 0 ) {
+         _mentionsAdded.add( mentionDelta );
+      } else if ( mentionDelta < 0 ) {
+         _mentionsRemoved.add( -mentionDelta );
+      }
+   }
+
+   public String getName() {
+      return _name;
+   }
+
+   public Histogram getLatency() {
+      return _latency;
+   }
+
+   /**
+    * @return mentions added by the stage, summing the net change of each document where the stage added more.
+    */
+   public long getMentionsAdded() {
+      return _mentionsAdded.sum();
+   }
+
+   /**
+    * @return mentions removed by the stage, summing the net change of each document where the stage removed more.
+    */
+   public long getMentionsRemoved() {
+      return _mentionsRemoved.sum();
+   }
+
+}
@@ -0,0 +1,65 @@
+package org.healthnlp.deepphe.omop.metrics;
+
+/**
+ * Snapshot of a stage for JMX.  Times are in milliseconds.
+ *
+ * @since {10/18/2026}
+ */
+final public class StageSummary {
+
+   static private final double NANOS_PER_MILLI = 1_000_000d;
+
+   private final String _name;
+   private final long _documents;
+   private final double _meanMillis;
+   private final double _p50Millis;
+   private final double _p99Millis;
+   private final double _maxMillis;
+   private final long _mentionsAdded;
+   private final long _mentionsRemoved;
+
+   StageSummary( final StageMetrics stage ) {
+      final Histogram latency = stage.getLatency();
+      _name = stage.getName();
+      _documents = latency.getCount();
+      _meanMillis = latency.getMean() / NANOS_PER_MILLI;
+      _p50Millis = latency.getQuantile( 0.5 ) / NANOS_PER_MILLI;
+      _p99Millis = latency.getQuantile( 0.99 ) / NANOS_PER_MILLI;
+      _maxMillis = latency.getMax() / NANOS_PER_MILLI;
+      _mentionsAdded = stage.getMentionsAdded();
+      _mentionsRemoved = stage.getMentionsRemoved();
+   }
+
+   public String getName() {
+      return _name;
+   }
+
+   public long getDocuments() {
+      return _documents;
+   }
+
+   public double getMeanMillis() {
+      return _meanMillis;
+   }
+
+   public double getP50Millis() {
+      return _p50Millis;
+   }
+
+   public double getP99Millis() {
+      return _p99Millis;
+   }
+
+   public double getMaxMillis() {
+      return _maxMillis;
+   }
+
+   public long getMentionsAdded() {
+      return _mentionsAdded;
+   }
+
+   public long getMentionsRemoved() {
+      return _mentionsRemoved;
+   }
+
+}
@@ -0,0 +1,482 @@
+package org.healthnlp.deepphe.omop.service;
+
+import com.google.gson.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+import org.healthnlp.deepphe.omop.DpheOmopPipelineBuilder;
+import org.healthnlp.deepphe.omop.EngineUnavailableException;
+import org.healthnlp.deepphe.omop.Mention;
+import org.healthnlp.deepphe.omop.PiperResources;
+import org.healthnlp.deepphe.omop.WarmUp;
+import org.healthnlp.deepphe.omop.metrics.PipelineMetrics;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A resident http service that keeps one initialized pipeline warm and processes documents on request.
+ * <p>
+ * POST /process   body is the note text (or json {"text":"..."}).  Returns a json array of Mention rows.
+ * POST /batch     body is ndjson, one note per line as {"id":"...","text":"..."} or a json string.
+ * Returns ndjson, one {"id":"...","mentions":[...]} line per note in input order.
+ * GET  /health    200 once the pipeline is initialized and warmed up, 503 before that and while shutting down.
+ * GET  /metrics   per stage and per document metrics in the Prometheus text format.
+ * </p>
+ * At most concurrency + queue requests are admitted at once.  Requests beyond that are refused with 429,
+ * and requests that cannot get an engine within the borrow timeout are refused with 503.
+ * A batch processes at most its batch concurrency of notes at once, so it leaves engines for other requests.
+ * A batch whose client disconnects or whose body cannot be parsed stops, and its notes not yet started are cancelled.
+ * <p>
+ * After initialization synthetic reports are run through the pipeline until its latency is stable,
+ * see {@link WarmUp}.  Only then is the service ready, and a ready file written if one is set,
+ * so that orchestration does not send traffic to a cold JVM.
+ *
+ * @since {10/18/2026}
+ */
+final public class DpheOmopService {
+
+   static private final Logger LOGGER = Logger.getLogger( "DpheOmopService" );
+
+   static private final String DEFAULT_PIPER = "pipeline/OmopDocRunner.piper";
+   static private final String JSON_TYPE = "application/json; charset=utf-8";
+   static private final String NDJSON_TYPE = "application/x-ndjson; charset=utf-8";
+   static private final String METRICS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+   static private final Gson GSON = new Gson();
+   /**
+    * How long stop() waits for requests in progress before closing the pipeline.
+    */
+   static private final long STOP_WAIT_SECONDS = 30;
+
+   private final DpheOmopPipelineBuilder _pipeline;
+   private final HttpServer _server;
+   private final ExecutorService _httpExecutor;
+   private final Semaphore _admission;
+   private volatile boolean _ready;
+   private volatile String _status = "starting";
+   private volatile String _warmUpJson = "";
+   private int _warmUpDocuments = Integer.getInteger( WarmUp.DOCUMENTS_PROPERTY, 200 );
+   private int _batchConcurrency;
+   private Path _readyFile;
+
+   /**
+    * @param pipeline    pipeline to use.  It is initialized by {@link #start()}.
+    * @param port        http port.
+    * @param concurrency number of requests processed at once.  This should match the pipeline pool size.
+    * @param queueSize   number of requests allowed to wait for processing.  Requests beyond this are refused.
+    * @throws IOException if the port cannot be bound.
+    */
+   public DpheOmopService( final DpheOmopPipelineBuilder pipeline, final int port,
+                           final int concurrency, final int queueSize ) throws IOException {
+      _pipeline = pipeline;
+      _admission = new Semaphore( concurrency + queueSize );
+      _batchConcurrency = getDefaultBatchConcurrency( concurrency );
+      // Every admitted request holds a thread while it waits, plus a few to quickly refuse the rest.
+      _httpExecutor = Executors.newFixedThreadPool( concurrency + queueSize + 2 );
+      _server = HttpServer.create( new InetSocketAddress( port ), 0 );
+      _server.setExecutor( _httpExecutor );
+      _server.createContext( "/process", new ProcessHandler() );
+      _server.createContext( "/batch", new BatchHandler() );
+      _server.createContext( "/health", new HealthHandler() );
+      _server.createContext( "/metrics", new MetricsHandler() );
+   }
+
+   /**
+    * @param documents most synthetic reports run before the service is ready.  0 for no warm-up.
+    */
+   public void setWarmUpDocuments( final int documents ) {
+      _warmUpDocuments = documents;
+   }
+
+   /**
+    * @param batchConcurrency most notes of one /batch request processed at once.  Default half the concurrency.
+    */
+   public void setBatchConcurrency( final int batchConcurrency ) {
+      _batchConcurrency = Math.max( 1, batchConcurrency );
+   }
+
+   static private int getDefaultBatchConcurrency( final int concurrency ) {
+      return Math.max( 1, concurrency / 2 );
+   }
+
+   /**
+    * @param readyFile file written once the service is ready and deleted when it stops, or null for none.
+    */
+   public void setReadyFile( final Path readyFile ) {
+      _readyFile = readyFile;
+   }
+
+   /**
+    * Start listening, then initialize and warm up the pipeline.  /health reports 503 until both are complete.
+    */
+   public void start() throws UIMAException, IOException {
+      if ( _readyFile != null ) {
+         // Left by a previous run that did not stop cleanly.
+         Files.deleteIfExists( _readyFile );
+      }
+      _server.start();
+      LOGGER.info( "Listening on port " + _server.getAddress().getPort() + " , initializing pipeline ..." );
+      _pipeline.initialize();
+      _status = "warming";
+      final WarmUp warmUp = new WarmUp( _pipeline, _warmUpDocuments,
+            Long.getLong( WarmUp.SECONDS_PROPERTY, 300L ) * 1000 );
+      warmUp.run();
+      _warmUpJson = String.format( Locale.ROOT, ",\"warmUpDocuments\":%d,\"warmUpMillis\":%d,\"coldMsPerKb\":%.3f,"
+                                   + "\"warmMsPerKb\":%.3f", warmUp.getDocumentCount(), warmUp.getMillis(),
+            warmUp.getColdMsPerKb(), warmUp.getWarmMsPerKb() );
+      _status = "ready";
+      _ready = true;
+      if ( _readyFile != null ) {
+         writeReadyFile( _readyFile, getHealthJson() );
+      }
+      LOGGER.info( "Ready." );
+   }
+
+   public void stop() {
+      _ready = false;
+      _status = "stopping";
+      if ( _readyFile != null ) {
+         try {
+            Files.deleteIfExists( _readyFile );
+         } catch ( IOException ioE ) {
+            LOGGER.warn( "Could not delete " + _readyFile + " : " + ioE.getMessage() );
+         }
+      }
+      _server.stop( 1 );
+      // Not shutdownNow(), which would interrupt engines inside process().  Requests in progress may finish.
+      _httpExecutor.shutdown();
+      try {
+         if ( !_httpExecutor.awaitTermination( STOP_WAIT_SECONDS, TimeUnit.SECONDS ) ) {
+            LOGGER.warn( "Requests still in progress after " + STOP_WAIT_SECONDS + " seconds, closing anyway." );
+         }
+      } catch ( InterruptedException intE ) {
+         Thread.currentThread().interrupt();
+      }
+      _pipeline.close();
+   }
+
+   public boolean isReady() {
+      return _ready;
+   }
+
+   /**
+    * Wraps admission, method checks and error mapping common to the processing endpoints.
+    */
+   private abstract class AdmittedHandler implements HttpHandler {
+      @Override
+      public void handle( final HttpExchange exchange ) throws IOException {
+         try {
+            if ( !"POST".equalsIgnoreCase( exchange.getRequestMethod() ) ) {
+               sendError( exchange, 405, "Use POST." );
+               return;
+            }
+            if ( !_ready ) {
+               sendError( exchange, 503, "The pipeline is not ready." );
+               return;
+            }
+            if ( !_admission.tryAcquire() ) {
+               exchange.getResponseHeaders().set( "Retry-After", "1" );
+               sendError( exchange, 429, "Too many requests in progress." );
+               return;
+            }
+            try {
+               handleAdmitted( exchange );
+            } finally {
+               _admission.release();
+            }
+         } catch ( EngineUnavailableException euE ) {
+            sendError( exchange, 503, euE.getMessage() );
+         } catch ( JsonParseException | IllegalArgumentException badE ) {
+            sendError( exchange, 400, badE.getMessage() );
+         } catch ( UIMAException | DpheOmopPipelineBuilder.BatchFailureException uimaE ) {
+            LOGGER.error( uimaE.getMessage(), uimaE );
+            sendError( exchange, 500, uimaE.getMessage() );
+         } catch ( RuntimeException rtE ) {
+            LOGGER.error( rtE.getMessage(), rtE );
+            sendError( exchange, 500, rtE.getMessage() );
+         } finally {
+            exchange.close();
+         }
+      }
+
+      abstract void handleAdmitted( HttpExchange exchange ) throws IOException, UIMAException;
+   }
+
+   private final class ProcessHandler extends AdmittedHandler {
+      @Override
+      void handleAdmitted( final HttpExchange exchange ) throws IOException, UIMAException {
+         final String body = readBody( exchange );
+         final String contentType = exchange.getRequestHeaders().getFirst( "Content-Type" );
+         final String text = contentType != null && contentType.startsWith( "application/json" )
+                             ? parseNote( body ).text
+                             : body;
+         final List<Mention> mentions = _pipeline.run( text );
+         send( exchange, 200, JSON_TYPE, GSON.toJson( mentions ) );
+      }
+   }
+
+   private final class BatchHandler extends AdmittedHandler {
+      /**
+       * The results are closed early on failure, before the error is written, so that notes not yet started are cancelled.
+       */
+      @Override
+      @SuppressWarnings( "try" )
+      void handleAdmitted( final HttpExchange exchange ) throws IOException {
+         final BufferedReader reader = new BufferedReader(
+               new InputStreamReader( exchange.getRequestBody(), StandardCharsets.UTF_8 ) );
+         final NoteLineIterator notes = new NoteLineIterator( reader );
+         exchange.getResponseHeaders().set( "Content-Type", NDJSON_TYPE );
+         // Length 0 streams the response in chunks as each note completes.
+         exchange.sendResponseHeaders( 200, 0 );
+         // Closing the results cancels notes not yet started, e.g. when a write fails because the client has gone.
+         try ( DpheOmopPipelineBuilder.BatchResults<List<Mention>> results
+                     = _pipeline.runAll( notes.texts(), _batchConcurrency );
+               Writer writer = new BufferedWriter(
+                     new OutputStreamWriter( exchange.getResponseBody(), StandardCharsets.UTF_8 ) ) ) {
+            try {
+               while ( results.hasNext() ) {
+                  final List<Mention> mentions = results.next();
+                  final JsonObject line = new JsonObject();
+                  line.addProperty( "id", notes.nextResultId() );
+                  line.add( "mentions", GSON.toJsonTree( mentions ) );
+                  writer.write( GSON.toJson( line ) );
+                  writer.write( '\n' );
+                  writer.flush();
+               }
+            } catch ( RuntimeException rtE ) {
+               // Headers are already sent, so report the failure in the stream and stop.
+               results.close();
+               LOGGER.error( "Batch failed: " + rtE.getMessage(), rtE );
+               final JsonObject error = new JsonObject();
+               error.addProperty( "error", String.valueOf( rtE.getMessage() ) );
+               writer.write( GSON.toJson( error ) );
+               writer.write( '\n' );
+            }
+         }
+      }
+   }
+
+   private final class HealthHandler implements HttpHandler {
+      @Override
+      public void handle( final HttpExchange exchange ) throws IOException {
+         try {
+            send( exchange, _ready ? 200 : 503, JSON_TYPE, getHealthJson() );
+         } finally {
+            exchange.close();
+         }
+      }
+   }
+
+   /**
+    * Metrics are read without admission, so they can be scraped while the service is saturated.
+    */
+   static private final class MetricsHandler implements HttpHandler {
+      @Override
+      public void handle( final HttpExchange exchange ) throws IOException {
+         try {
+            send( exchange, 200, METRICS_TYPE, PipelineMetrics.getInstance().getPrometheusText() );
+         } finally {
+            exchange.close();
+         }
+      }
+   }
+
+   private String getHealthJson() {
+      return "{\"status\":\"" + _status + "\"" + _warmUpJson + "}";
+   }
+
+   /**
+    * Written to a temporary file then moved, so that a probe never sees a partial file.
+    */
+   static private void writeReadyFile( final Path readyFile, final String json ) throws IOException {
+      final Path parent = readyFile.toAbsolutePath().getParent();
+      if ( parent != null ) {
+         Files.createDirectories( parent );
+      }
+      final Path temp = readyFile.resolveSibling( readyFile.getFileName() + ".tmp" );
+      Files.write( temp, json.getBytes( StandardCharsets.UTF_8 ) );
+      try {
+         Files.move( temp, readyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException amnsE ) {
+         Files.move( temp, readyFile, StandardCopyOption.REPLACE_EXISTING );
+      }
+   }
+
+   static private final class Note {
+      private String id;
+      private String text;
+   }
+
+   /**
+    * @throws IllegalArgumentException if the json is empty, or is not a string or an object with a "text" string.
+    */
+   static private Note parseNote( final String json ) {
+      final JsonElement element = GSON.fromJson( json, JsonElement.class );
+      final Note note = new Note();
+      if ( element != null && element.isJsonPrimitive() ) {
+         note.text = element.getAsString();
+      } else if ( element != null && element.isJsonObject() && element.getAsJsonObject().has( "text" ) ) {
+         final JsonObject object = element.getAsJsonObject();
+         note.text = getString( object.get( "text" ), "text" );
+         note.id = object.has( "id" ) && !object.get( "id" ).isJsonNull() ? getString( object.get( "id" ), "id" ) : null;
+      } else {
+         throw new IllegalArgumentException( "Expected a json string or an object with \"text\"." );
+      }
+      return note;
+   }
+
+   static private String getString( final JsonElement value, final String name ) {
+      if ( value == null || !value.isJsonPrimitive() ) {
+         throw new IllegalArgumentException( "Expected \"" + name + "\" to be a json string." );
+      }
+      return value.getAsString();
+   }
+
+   /**
+    * Lazily parses ndjson notes as the pipeline asks for them, remembering ids until their results are written.
+    */
+   static private final class NoteLineIterator {
+      private final BufferedReader _reader;
+      private final Deque<String> _pendingIds = new ArrayDeque<>();
+      private int _lineCount;
+      private String _nextLine;
+
+      private NoteLineIterator( final BufferedReader reader ) {
+         _reader = reader;
+      }
+
+      private Iterator<String> texts() {
+         return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+               return peekLine() != null;
+            }
+
+            @Override
+            public String next() {
+               final String line = peekLine();
+               if ( line == null ) {
+                  throw new NoSuchElementException();
+               }
+               _nextLine = null;
+               final Note note = parseNote( line );
+               _lineCount++;
+               _pendingIds.add( note.id == null ? String.valueOf( _lineCount ) : note.id );
+               return note.text;
+            }
+         };
+      }
+
+      private String peekLine() {
+         try {
+            while ( _nextLine == null ) {
+               final String line = _reader.readLine();
+               if ( line == null ) {
+                  return null;
+               }
+               if ( !line.trim().isEmpty() ) {
+                  _nextLine = line;
+               }
+            }
+            return _nextLine;
+         } catch ( IOException ioE ) {
+            throw new UncheckedIOException( ioE );
+         }
+      }
+
+      private String nextResultId() {
+         return _pendingIds.poll();
+      }
+   }
+
+   static private String readBody( final HttpExchange exchange ) throws IOException {
+      try ( InputStream body = exchange.getRequestBody() ) {
+         return new String( body.readAllBytes(), StandardCharsets.UTF_8 );
+      }
+   }
+
+   static private void sendError( final HttpExchange exchange, final int status, final String message )
+         throws IOException {
+      final JsonObject error = new JsonObject();
+      error.addProperty( "error", String.valueOf( message ) );
+      send( exchange, status, JSON_TYPE, GSON.toJson( error ) );
+   }
+
+   static private void send( final HttpExchange exchange, final int status, final String contentType,
+                             final String body ) throws IOException {
+      final byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+      exchange.getResponseHeaders().set( "Content-Type", contentType );
+      exchange.sendResponseHeaders( status, bytes.length );
+      try ( OutputStream out = exchange.getResponseBody() ) {
+         out.write( bytes );
+      }
+   }
+
+   public static void main( final String... args ) throws IOException, UIMAException {
+      final Options options = new Options();
+      options.addOption( "p", "piper", true, "Piper file.  Default " + DEFAULT_PIPER );
+      options.addOption( "r", "resources", true, "Resource directory used in place of /app/resources in the piper."
+                                                + "  Default " + PiperResources.RESOURCE_ROOT_PROPERTY
+                                                + " or " + PiperResources.RESOURCE_ROOT_ENV );
+      options.addOption( "port", "port", true, "Http port.  Default 8080" );
+      options.addOption( "c", "concurrency", true, "Documents processed at once, 0 for one per core.  Default 0" );
+      options.addOption( "q", "queue", true, "Requests allowed to wait before 429 is returned.  Default 64" );
+      options.addOption( "bc", "batch_concurrency", true, "Most notes of one /batch request processed at once."
+                                                       + "  Default half the concurrency" );
+      options.addOption( "t", "timeout", true, "Milliseconds to wait for a free engine before 503.  Default 60000" );
+      options.addOption( "w", "warmup", true, "Most synthetic reports run before the service is ready, 0 for none."
+                                             + "  Default " + WarmUp.DOCUMENTS_PROPERTY + " or 200" );
+      options.addOption( "ready", "ready_file", true, "File written once the service is ready, for probes." );
+      final CommandLine cmd;
+      try {
+         cmd = new BasicParser().parse( options, args );
+      } catch ( ParseException pE ) {
+         System.err.println( "Error parsing command line arguments: " + pE.getMessage() );
+         new HelpFormatter().printHelp( "DpheOmopService", options );
+         System.exit( 1 );
+         return;
+      }
+      final String piper = cmd.getOptionValue( "p", DEFAULT_PIPER );
+      final String resources = cmd.getOptionValue( "r", PiperResources.getResourceRoot() );
+      final int port = Integer.parseInt( cmd.getOptionValue( "port", "8080" ) );
+      final int concurrency = Integer.parseInt( cmd.getOptionValue( "c", "0" ) );
+      final int queue = Integer.parseInt( cmd.getOptionValue( "q", "64" ) );
+      final long timeout = Long.parseLong( cmd.getOptionValue( "t", "60000" ) );
+
+      final DpheOmopPipelineBuilder pipeline = new DpheOmopPipelineBuilder( piper, resources, concurrency, timeout );
+      // The pool resolves 0 to the core count, which is only known once it exists; admit up to that many.
+      final int admitted = concurrency > 0 ? concurrency : Math.max( 1, Runtime.getRuntime().availableProcessors() );
+      final DpheOmopService service = new DpheOmopService( pipeline, port, admitted, queue );
+      if ( cmd.hasOption( "w" ) ) {
+         service.setWarmUpDocuments( Integer.parseInt( cmd.getOptionValue( "w" ) ) );
+      }
+      if ( cmd.hasOption( "bc" ) ) {
+         service.setBatchConcurrency( Integer.parseInt( cmd.getOptionValue( "bc" ) ) );
+      }
+      if ( cmd.hasOption( "ready" ) ) {
+         service.setReadyFile( Paths.get( cmd.getOptionValue( "ready" ) ) );
+      }
+      Runtime.getRuntime().addShutdownHook( new Thread( service::stop, "DpheOmopServiceShutdown" ) );
+      service.start();
+   }
+
+}
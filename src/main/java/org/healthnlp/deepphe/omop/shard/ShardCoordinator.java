@@ -0,0 +1,384 @@
+package org.healthnlp.deepphe.omop.shard;
+
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.healthnlp.deepphe.omop.PiperResources;
+import org.healthnlp.deepphe.omop.incremental.IncrementalDocRunner;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Processes a directory of patient directories, data/input/patient_id/*.txt, with several worker JVMs on one machine.
+ * <p>
+ * Patients are split into one shard per worker, balanced by the total bytes of their notes.
+ * Each worker is an {@link IncrementalDocRunner} with its own pipeline, writing to its own shard directory.
+ * A worker that exits abnormally, e.g. out of memory, is restarted and skips the notes it already completed.
+ * When every worker is done their tables are merged into one table ordered by note path, {@value #MERGED_NAME}.
+ * </p>
+ * Workers are started with the coordinator's classpath and, unless -j is given, its jvm options.
+ * Each worker opens the resources itself.  The embedded graph database locks its store, so every worker is given
+ * its own copy of the graph directory in its shard directory, removed when the worker completes.
+ *
+ * @since {10/18/2026}
+ */
+final public class ShardCoordinator {
+
+   static private final Logger LOGGER = Logger.getLogger( "ShardCoordinator" );
+
+   static public final String MERGED_NAME = "mentions.bsv";
+   static private final String SHARD_PREFIX = "shard-";
+   static private final String PATIENT_LIST = "patients.txt";
+   static private final String WORKER_LOG = "worker.log";
+   static private final String GRAPH_COPY = "graph.db";
+
+   private final Path _inputDir;
+   private final Path _outputDir;
+   private final List<String> _workerArgs;
+   private final List<String> _jvmOptions;
+   private final int _maxRestarts;
+   private final Path _graphDb;
+
+   /**
+    * @param workerArgs  arguments for every worker's IncrementalDocRunner other than input, output and patient list.
+    * @param jvmOptions  options for every worker jvm.
+    * @param maxRestarts number of times a worker is restarted after it exits abnormally.
+    * @param graphDb     graph database directory that each worker gets a copy of, or null to let workers share
+    *                    the piper's graph, which only works with a graph that does not lock its store.
+    */
+   public ShardCoordinator( final Path inputDir, final Path outputDir, final List<String> workerArgs,
+                            final List<String> jvmOptions, final int maxRestarts, final Path graphDb ) {
+      _inputDir = inputDir;
+      _outputDir = outputDir;
+      _workerArgs = workerArgs;
+      _jvmOptions = jvmOptions;
+      _maxRestarts = maxRestarts;
+      _graphDb = graphDb;
+   }
+
+   /**
+    * @param workers number of worker jvms.
+    * @return true if every worker completed.  Completed shards are merged either way.
+    */
+   public boolean run( final int workers ) throws IOException, InterruptedException {
+      final List<List<String>> shards = createShards( getPatientBytes(), workers );
+      final List<Worker> running = new ArrayList<>( shards.size() );
+      for ( int i = 0; i < shards.size(); i++ ) {
+         if ( shards.get( i ).isEmpty() ) {
+            continue;
+         }
+         final Path shardDir = _outputDir.resolve( SHARD_PREFIX + i );
+         Files.createDirectories( shardDir );
+         Files.write( shardDir.resolve( PATIENT_LIST ), shards.get( i ), StandardCharsets.UTF_8 );
+         running.add( new Worker( i, shardDir ) );
+      }
+      final Thread stopWorkers = new Thread( () -> running.forEach( Worker::destroy ) );
+      Runtime.getRuntime().addShutdownHook( stopWorkers );
+      for ( Worker worker : running ) {
+         worker.start();
+      }
+      boolean complete = true;
+      for ( Worker worker : running ) {
+         complete &= worker.waitFor();
+      }
+      Runtime.getRuntime().removeShutdownHook( stopWorkers );
+      final int notes = mergeTables( _outputDir, _outputDir.resolve( MERGED_NAME ) );
+      LOGGER.info( "Merged the tables of " + notes + " notes into " + _outputDir.resolve( MERGED_NAME ) );
+      return complete;
+   }
+
+   /**
+    * @return total bytes of the notes under each patient directory, by directory name.
+    * Notes directly in the input directory are each their own entry.
+    */
+   private Map<String, Long> getPatientBytes() throws IOException {
+      final Map<String, Long> patientBytes = new TreeMap<>();
+      try ( Stream<Path> patients = Files.list( _inputDir ) ) {
+         for ( Path patient : patients.collect( Collectors.toList() ) ) {
+            final String name = patient.getFileName().toString();
+            if ( name.startsWith( "." ) ) {
+               continue;
+            }
+            long bytes = 0;
+            try ( Stream<Path> notes = Files.walk( patient ) ) {
+               for ( Path note : notes.filter( Files::isRegularFile ).collect( Collectors.toList() ) ) {
+                  bytes += Files.size( note );
+               }
+            }
+            patientBytes.put( name, bytes );
+         }
+      }
+      return patientBytes;
+   }
+
+   /**
+    * Largest patients first, each to the shard with the fewest bytes so far.
+    *
+    * @return patients of each shard.  Shards are empty if there are fewer patients than shards.
+    */
+   static List<List<String>> createShards( final Map<String, Long> patientBytes, final int shardCount ) {
+      final List<List<String>> shards = new ArrayList<>( shardCount );
+      final long[] shardBytes = new long[ shardCount ];
+      final PriorityQueue<Integer> smallest = new PriorityQueue<>(
+            Comparator.comparingLong( ( Integer s ) -> shardBytes[ s ] ).thenComparingInt( s -> s ) );
+      for ( int i = 0; i < shardCount; i++ ) {
+         shards.add( new ArrayList<>() );
+         smallest.add( i );
+      }
+      final List<Map.Entry<String, Long>> patients = new ArrayList<>( patientBytes.entrySet() );
+      patients.sort( Map.Entry.<String, Long>comparingByValue().reversed().thenComparing( Map.Entry.comparingByKey() ) );
+      for ( Map.Entry<String, Long> patient : patients ) {
+         final int shard = smallest.poll();
+         shards.get( shard ).add( patient.getKey() );
+         shardBytes[ shard ] += patient.getValue();
+         smallest.add( shard );
+      }
+      for ( int i = 0; i < shardCount; i++ ) {
+         LOGGER.info( "Shard " + i + " has " + shards.get( i ).size() + " patients, "
+                      + shardBytes[ i ] / 1024 + " KB." );
+      }
+      return shards;
+   }
+
+   /**
+    * One worker jvm and its restarts.
+    */
+   private final class Worker {
+      private final int _shard;
+      private final Path _shardDir;
+      private volatile Process _process;
+      private int _restarts;
+
+      private Worker( final int shard, final Path shardDir ) {
+         _shard = shard;
+         _shardDir = shardDir;
+      }
+
+      private void start() throws IOException {
+         final List<String> command = new ArrayList<>();
+         command.add( Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString() );
+         command.addAll( _jvmOptions );
+         if ( _graphDb != null ) {
+            command.add( "-D" + PiperResources.GRAPH_DB_PROPERTY + "=" + copyGraph() );
+         }
+         command.add( "-cp" );
+         command.add( System.getProperty( "java.class.path" ) );
+         command.add( IncrementalDocRunner.class.getName() );
+         command.add( "-i" );
+         command.add( _inputDir.toString() );
+         command.add( "-o" );
+         command.add( _shardDir.toString() );
+         command.add( "-l" );
+         command.add( _shardDir.resolve( PATIENT_LIST ).toString() );
+         command.addAll( _workerArgs );
+         _process = new ProcessBuilder( command )
+               .redirectErrorStream( true )
+               .redirectOutput( ProcessBuilder.Redirect.appendTo( _shardDir.resolve( WORKER_LOG ).toFile() ) )
+               .start();
+         LOGGER.info( "Started worker " + _shard + ( _restarts > 0 ? ", restart " + _restarts : "" )
+                      + ", log " + _shardDir.resolve( WORKER_LOG ) );
+      }
+
+      /**
+       * @return true if the worker completed, restarting it as needed.
+       */
+      private boolean waitFor() throws IOException, InterruptedException {
+         while ( true ) {
+            final int exit = _process.waitFor();
+            if ( exit == 0 ) {
+               LOGGER.info( "Worker " + _shard + " complete." );
+               deleteTree( _shardDir.resolve( GRAPH_COPY ) );
+               return true;
+            }
+            if ( _restarts >= _maxRestarts ) {
+               LOGGER.error( "Worker " + _shard + " exited with " + exit + " after " + _restarts
+                             + " restarts.  See " + _shardDir.resolve( WORKER_LOG ) );
+               return false;
+            }
+            LOGGER.warn( "Worker " + _shard + " exited with " + exit + ", restarting." );
+            _restarts++;
+            start();
+         }
+      }
+
+      /**
+       * A copy left by an earlier start is used again.  The copy is made under a temporary name and then renamed,
+       * so a copy that was interrupted is never used.
+       *
+       * @return this worker's copy of the graph database.
+       */
+      private Path copyGraph() throws IOException {
+         final Path copy = _shardDir.resolve( GRAPH_COPY ).toAbsolutePath();
+         if ( Files.isDirectory( copy ) ) {
+            return copy;
+         }
+         final Path temp = _shardDir.resolve( GRAPH_COPY + ".tmp" );
+         deleteTree( temp );
+         final long start = System.currentTimeMillis();
+         try ( Stream<Path> paths = Files.walk( _graphDb ) ) {
+            for ( Path source : paths.collect( Collectors.toList() ) ) {
+               final Path target = temp.resolve( _graphDb.relativize( source ).toString() );
+               if ( Files.isDirectory( source ) ) {
+                  Files.createDirectories( target );
+               } else {
+                  Files.copy( source, target, StandardCopyOption.COPY_ATTRIBUTES );
+               }
+            }
+         }
+         Files.move( temp, copy );
+         LOGGER.info( "Copied " + _graphDb + " for worker " + _shard + " in "
+                      + ( System.currentTimeMillis() - start ) + " ms." );
+         return copy;
+      }
+
+      private void destroy() {
+         final Process process = _process;
+         if ( process != null && process.isAlive() ) {
+            process.destroy();
+         }
+      }
+   }
+
+   /**
+    * Concatenate the note tables of every shard, ordered by note path, with one header row.
+    * If a note was moved between shards by a later run, the newest table is used.
+    *
+    * @return the number of notes merged.
+    */
+   static int mergeTables( final Path outputDir, final Path merged ) throws IOException {
+      final Map<String, Path> tables = new TreeMap<>();
+      try ( Stream<Path> shardDirs = Files.list( outputDir ) ) {
+         for ( Path shardDir : shardDirs.filter( Files::isDirectory )
+                                        .filter( d -> d.getFileName().toString().startsWith( SHARD_PREFIX ) )
+                                        .collect( Collectors.toList() ) ) {
+            try ( Stream<Path> files = Files.walk( shardDir ) ) {
+               for ( Path table : files.filter( f -> f.toString().endsWith( IncrementalDocRunner.OUTPUT_EXTENSION ) )
+                                       .collect( Collectors.toList() ) ) {
+                  final String note = shardDir.relativize( table ).toString().replace( '\\', '/' );
+                  final Path previous = tables.get( note );
+                  if ( previous == null || Files.getLastModifiedTime( table )
+                                                .compareTo( Files.getLastModifiedTime( previous ) ) > 0 ) {
+                     tables.put( note, table );
+                  }
+               }
+            }
+         }
+      }
+      final Path temp = merged.resolveSibling( merged.getFileName() + ".tmp" );
+      try ( OutputStream out = new BufferedOutputStream( Files.newOutputStream( temp ) ) ) {
+         boolean first = true;
+         for ( Path table : tables.values() ) {
+            try ( InputStream in = new BufferedInputStream( Files.newInputStream( table ) ) ) {
+               // Every table starts with the same header row.  Only the first is kept.
+               int b = in.read();
+               while ( b >= 0 && b != '\n' ) {
+                  if ( first ) {
+                     out.write( b );
+                  }
+                  b = in.read();
+               }
+               if ( first && b == '\n' ) {
+                  out.write( b );
+               }
+               first = false;
+               in.transferTo( out );
+            }
+         }
+      }
+      try {
+         Files.move( temp, merged, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException amnsE ) {
+         Files.move( temp, merged, StandardCopyOption.REPLACE_EXISTING );
+      }
+      return tables.size();
+   }
+
+   static private void deleteTree( final Path root ) throws IOException {
+      if ( !Files.exists( root ) ) {
+         return;
+      }
+      try ( Stream<Path> paths = Files.walk( root ) ) {
+         for ( Path path : paths.sorted( Comparator.reverseOrder() ).collect( Collectors.toList() ) ) {
+            Files.delete( path );
+         }
+      }
+   }
+
+   /**
+    * Jvm options of this jvm that a worker can use.  Debug agents would conflict on their ports.
+    */
+   static private List<String> getInheritedJvmOptions() {
+      return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                              .filter( o -> !o.startsWith( "-agentlib" ) && !o.startsWith( "-javaagent" )
+                                            && !o.startsWith( "-Xrunjdwp" ) && !o.startsWith( "-Xdebug" ) )
+                              .collect( Collectors.toList() );
+   }
+
+   public static void main( final String... args ) throws IOException, InterruptedException {
+      final Options options = new Options();
+      options.addOption( "i", "inputDir", true, "Directory of patient directories, e.g. data/input" );
+      options.addOption( "o", "outputDir", true, "Directory for shard tables and the merged table." );
+      options.addOption( "p", "piper", true, "Piper file.  Default pipeline/OmopDocRunner.piper" );
+      options.addOption( "r", "resources", true, "Resource directory used in place of /app/resources in the piper." );
+      options.addOption( "w", "workers", true, "Number of worker jvms.  Default 2" );
+      options.addOption( "c", "concurrency", true, "Notes processed at once by each worker.  Default 1" );
+      options.addOption( "j", "jvmOptions", true, "Options for each worker jvm, e.g. \"-Xmx6g\".  Default those of this jvm." );
+      options.addOption( "restarts", true, "Times a failed worker is restarted.  Default 3" );
+      options.addOption( "g", "graphDb", true, "Graph database directory copied for each worker."
+                                               + "  Default the piper's GraphDb, \"none\" to share it." );
+      final CommandLine cmd;
+      try {
+         cmd = new BasicParser().parse( options, args );
+      } catch ( ParseException pE ) {
+         System.err.println( "Error parsing command line arguments: " + pE.getMessage() );
+         new HelpFormatter().printHelp( "ShardCoordinator", options );
+         System.exit( 1 );
+         return;
+      }
+      if ( !cmd.hasOption( "i" ) || !cmd.hasOption( "o" ) ) {
+         new HelpFormatter().printHelp( "ShardCoordinator", options );
+         System.exit( 1 );
+         return;
+      }
+      final List<String> workerArgs = new ArrayList<>();
+      final String piper = cmd.getOptionValue( "p", "pipeline/OmopDocRunner.piper" );
+      workerArgs.add( "-p" );
+      workerArgs.add( piper );
+      final String resourceRoot = cmd.getOptionValue( "r", PiperResources.getResourceRoot() );
+      if ( resourceRoot != null ) {
+         workerArgs.add( "-r" );
+         workerArgs.add( resourceRoot );
+      }
+      workerArgs.add( "-c" );
+      workerArgs.add( cmd.getOptionValue( "c", "1" ) );
+      final List<String> jvmOptions = cmd.hasOption( "j" )
+                                      ? Arrays.stream( cmd.getOptionValue( "j" ).trim().split( "\\s+" ) )
+                                              .filter( o -> !o.isEmpty() ).collect( Collectors.toList() )
+                                      : getInheritedJvmOptions();
+      final Path outputDir = Paths.get( cmd.getOptionValue( "o" ) );
+      Files.createDirectories( outputDir );
+      final String graphDb = cmd.hasOption( "g" ) ? cmd.getOptionValue( "g" )
+                                                  : PiperResources.getGraphDb( piper, resourceRoot );
+      Path graphDir = null;
+      if ( graphDb == null || graphDb.equals( "none" ) ) {
+         LOGGER.warn( "Workers share the piper's graph database." );
+      } else if ( !Files.isDirectory( Paths.get( graphDb ) ) ) {
+         LOGGER.warn( "No graph database directory " + graphDb + " to copy.  Workers share the piper's graph." );
+      } else {
+         graphDir = Paths.get( graphDb ).toAbsolutePath();
+      }
+      final ShardCoordinator coordinator = new ShardCoordinator( Paths.get( cmd.getOptionValue( "i" ) ), outputDir,
+                                                                 workerArgs, jvmOptions,
+                                                                 Integer.parseInt( cmd.getOptionValue( "restarts", "3" ) ),
+                                                                 graphDir );
+      if ( !coordinator.run( Integer.parseInt( cmd.getOptionValue( "w", "2" ) ) ) ) {
+         System.exit( 1 );
+      }
+   }
+
+}
@@ -0,0 +1,131 @@
+package org.healthnlp.deepphe.omop.sink;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.writer.ConfidenceFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes one row per mention to a delimited file, such as bar (BSV), comma (CSV) or tab separated values.
+ * Columns are the document id followed by the {@link org.healthnlp.deepphe.omop.Mention} fields.
+ * Values that contain the delimiter, a quote or a line break are quoted, with inner quotes doubled.
+ *
+ * @since {10/18/2026}
+ */
+final public class DelimitedMentionSink implements MentionSink {
+
+   static public final char BSV = '|';
+   static public final char CSV = ',';
+   static public final char TAB = '\t';
+
+   static private final String[] HEADER = { "DocId", "Semantic", "URI", "CUI", "TUI",
+                                            "StartOffset", "EndOffset", "PrefText",
+                                            "Negated", "Uncertain", "Historic", "Generic", "Conditional",
+                                            "Confidence", "Term", "Window" };
+
+   static private final int BUFFER_SIZE = 1 << 16;
+
+   private final Writer _writer;
+   private final char _delimiter;
+   private String _documentId = "";
+
+   /**
+    * Create or replace the file at path and write the header row.
+    */
+   public DelimitedMentionSink( final Path path, final char delimiter ) throws IOException {
+      this( new OutputStreamWriter( Files.newOutputStream( path ), StandardCharsets.UTF_8 ), delimiter );
+   }
+
+   /**
+    * @param writer destination for the header row and every mention row.  It is buffered and closed by this sink.
+    */
+   public DelimitedMentionSink( final Writer writer, final char delimiter ) throws IOException {
+      _writer = writer instanceof BufferedWriter ? writer : new BufferedWriter( writer, BUFFER_SIZE );
+      _delimiter = delimiter;
+      for ( int i = 0; i < HEADER.length; i++ ) {
+         if ( i > 0 ) {
+            _writer.write( _delimiter );
+         }
+         _writer.write( HEADER[ i ] );
+      }
+      _writer.write( '\n' );
+   }
+
+   @Override
+   public void startDocument( final String documentId ) {
+      _documentId = documentId;
+   }
+
+   @Override
+   public void accept( final CompactMention mention ) throws IOException {
+      writeValue( _documentId );
+      writeDelimited( mention.semantic );
+      writeDelimited( mention.uri );
+      writeDelimited( mention.cui );
+      writeDelimited( String.join( ",", mention.tuis ) );
+      _writer.write( _delimiter );
+      _writer.write( Integer.toString( mention.begin ) );
+      _writer.write( _delimiter );
+      _writer.write( Integer.toString( mention.end ) );
+      writeDelimited( mention.prefText );
+      writeFlag( mention.isNegated() );
+      writeFlag( mention.isUncertain() );
+      writeFlag( mention.isHistoric() );
+      writeFlag( mention.isGeneric() );
+      writeFlag( mention.isConditional() );
+      _writer.write( _delimiter );
+      _writer.write( ConfidenceFormat.format( mention.confidence ) );
+      writeDelimited( mention.term );
+      writeDelimited( mention.window );
+      _writer.write( '\n' );
+   }
+
+   @Override
+   public void endDocument() {
+   }
+
+   @Override
+   public void close() throws IOException {
+      _writer.close();
+   }
+
+   private void writeFlag( final boolean flag ) throws IOException {
+      _writer.write( _delimiter );
+      _writer.write( flag ? "True" : "False" );
+   }
+
+   private void writeDelimited( final String value ) throws IOException {
+      _writer.write( _delimiter );
+      writeValue( value );
+   }
+
+   private void writeValue( final String value ) throws IOException {
+      if ( !needsQuotes( value ) ) {
+         _writer.write( value );
+         return;
+      }
+      _writer.write( '"' );
+      for ( int i = 0; i < value.length(); i++ ) {
+         final char c = value.charAt( i );
+         if ( c == '"' ) {
+            _writer.write( '"' );
+         }
+         _writer.write( c );
+      }
+      _writer.write( '"' );
+   }
+
+   private boolean needsQuotes( final String value ) {
+      for ( int i = 0; i < value.length(); i++ ) {
+         final char c = value.charAt( i );
+         if ( c == _delimiter || c == '"' || c == '\n' || c == '\r' ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+}
@@ -0,0 +1,39 @@
+package org.healthnlp.deepphe.omop.sink;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives mentions as they are read from a processed document, without the document's mentions being collected first.
+ * For each document the sink receives startDocument, any number of accept calls in text order, then endDocument.
+ * {@link org.healthnlp.deepphe.omop.DpheOmopPipelineBuilder} delivers each document while holding the sink's monitor,
+ * so one sink can be shared by concurrent callers and implementations do not need their own locking.
+ * The mentions of a document are read before the monitor is taken.
+ *
+ * @since {10/18/2026}
+ */
+public interface MentionSink extends Closeable {
+
+   void startDocument( String documentId ) throws IOException;
+
+   /**
+    * @return true if the document id must be given by the caller, e.g. to key database rows,
+    * rather than be whatever the pipeline put in the cas.
+    */
+   default boolean requiresDocumentId() {
+      return false;
+   }
+
+   void accept( CompactMention mention ) throws IOException;
+
+   void endDocument() throws IOException;
+
+   /**
+    * Write anything that is still buffered and release the output.
+    */
+   @Override
+   void close() throws IOException;
+
+}
@@ -0,0 +1,89 @@
+package org.healthnlp.deepphe.omop.sink;
+
+import com.google.gson.stream.JsonWriter;
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.writer.ConfidenceFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes one json object per line for each mention, e.g.
+ * <pre>
+ * {"id":"doc1","semantic":"Finding","uri":"Mass","cui":"C0577559","tui":["T033"],"start_offset":210,"end_offset":214,
+ *  "prefText":"Mass","negated":false,"uncertain":false,"historic":false,"generic":false,"conditional":false,
+ *  "confidence":0.88,"term":"mass","window":"..."}
+ * </pre>
+ * Field names are those of {@link org.healthnlp.deepphe.omop.Mention}, but offsets, flags and confidence are typed.
+ * Objects are streamed straight to the writer without building a json tree.
+ *
+ * @since {10/18/2026}
+ */
+final public class NdjsonMentionSink implements MentionSink {
+
+   static private final int BUFFER_SIZE = 1 << 16;
+
+   private final Writer _writer;
+   private final JsonWriter _json;
+   private String _documentId = "";
+
+   public NdjsonMentionSink( final Path path ) throws IOException {
+      this( new OutputStreamWriter( Files.newOutputStream( path ), StandardCharsets.UTF_8 ) );
+   }
+
+   /**
+    * @param writer destination for every line.  It is buffered and closed by this sink.
+    */
+   public NdjsonMentionSink( final Writer writer ) {
+      _writer = writer instanceof BufferedWriter ? writer : new BufferedWriter( writer, BUFFER_SIZE );
+      _json = new JsonWriter( _writer );
+      // Lenient allows one top level object after another, which is the point of ndjson.
+      _json.setLenient( true );
+   }
+
+   @Override
+   public void startDocument( final String documentId ) {
+      _documentId = documentId;
+   }
+
+   @Override
+   public void accept( final CompactMention mention ) throws IOException {
+      _json.beginObject();
+      _json.name( "id" ).value( _documentId );
+      _json.name( "semantic" ).value( mention.semantic );
+      _json.name( "uri" ).value( mention.uri );
+      _json.name( "cui" ).value( mention.cui );
+      _json.name( "tui" ).beginArray();
+      for ( String tui : mention.tuis ) {
+         _json.value( tui );
+      }
+      _json.endArray();
+      _json.name( "start_offset" ).value( mention.begin );
+      _json.name( "end_offset" ).value( mention.end );
+      _json.name( "prefText" ).value( mention.prefText );
+      _json.name( "negated" ).value( mention.isNegated() );
+      _json.name( "uncertain" ).value( mention.isUncertain() );
+      _json.name( "historic" ).value( mention.isHistoric() );
+      _json.name( "generic" ).value( mention.isGeneric() );
+      _json.name( "conditional" ).value( mention.isConditional() );
+      _json.name( "confidence" ).value( ConfidenceFormat.toHundredths( mention.confidence ) / 100.0 );
+      _json.name( "term" ).value( mention.term );
+      _json.name( "window" ).value( mention.window );
+      _json.endObject();
+      // JsonWriter writes straight through, so the line break lands after the object.
+      _writer.write( '\n' );
+   }
+
+   @Override
+   public void endDocument() {
+   }
+
+   @Override
+   public void close() throws IOException {
+      // JsonWriter.close() complains about an empty document, and it holds nothing that the writer does not.
+      _writer.close();
+   }
+
+}
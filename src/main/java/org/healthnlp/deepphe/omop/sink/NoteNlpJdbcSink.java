@@ -0,0 +1,209 @@
+package org.healthnlp.deepphe.omop.sink;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.writer.ConfidenceFormat;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.function.ToLongFunction;
+
+/**
+ * Inserts one OMOP CDM v5.4 NOTE_NLP row per mention using batched prepared statements.
+ * <ul>
+ *    <li>note_id is taken from the document id, which by default must be numeric.</li>
+ *    <li>note_nlp_concept_id and note_nlp_source_concept_id are 0, as there is no OMOP vocabulary mapping here.
+ *    The semantic group, uri, cui, tui and attributes are instead kept in term_modifiers.</li>
+ *    <li>term_exists is N for negated, uncertain, generic and conditional mentions.
+ *    term_temporal is "past" for historic mentions.</li>
+ *    <li>snippet is the mention window and lexical_variant is the mention text, each cut to 250 characters.</li>
+ * </ul>
+ * Rows are sent in batches of a fixed size, which may span documents.  If the connection is not in auto-commit mode
+ * each batch is committed.  The connection belongs to the caller and is not closed by this sink.
+ * note_nlp_id values continue from the largest in the table, so only one sink should write to a table at a time.
+ *
+ * @since {10/18/2026}
+ */
+final public class NoteNlpJdbcSink implements MentionSink {
+
+   static public final String TABLE = "NOTE_NLP";
+   static public final String NLP_SYSTEM = "DeepPhe OMOP";
+   static public final int DEFAULT_BATCH_SIZE = 1000;
+
+   static private final int MAX_TEXT = 250;
+   static private final int MAX_MODIFIERS = 2000;
+
+   private final Connection _connection;
+   private final PreparedStatement _insert;
+   private final ToLongFunction<String> _noteIdResolver;
+   private final int _batchSize;
+   private final Date _nlpDate;
+   private final Timestamp _nlpDatetime;
+   private final StringBuilder _modifiers = new StringBuilder();
+   private long _nextNoteNlpId;
+   private long _noteId;
+   private int _pending;
+
+   public NoteNlpJdbcSink( final Connection connection ) throws SQLException {
+      this( connection, Long::parseLong, DEFAULT_BATCH_SIZE );
+   }
+
+   /**
+    * @param noteIdResolver maps a document id to the NOTE.note_id of that document.
+    * @param batchSize      number of rows sent to the database at once.
+    */
+   public NoteNlpJdbcSink( final Connection connection, final ToLongFunction<String> noteIdResolver,
+                           final int batchSize ) throws SQLException {
+      _connection = connection;
+      _noteIdResolver = noteIdResolver;
+      _batchSize = Math.max( 1, batchSize );
+      final LocalDateTime now = LocalDateTime.now();
+      _nlpDate = Date.valueOf( now.toLocalDate() );
+      _nlpDatetime = Timestamp.valueOf( now );
+      try ( Statement statement = connection.createStatement();
+            ResultSet max = statement.executeQuery( "SELECT MAX(note_nlp_id) FROM " + TABLE ) ) {
+         _nextNoteNlpId = max.next() ? max.getLong( 1 ) + 1 : 1;
+      }
+      _insert = connection.prepareStatement(
+            "INSERT INTO " + TABLE + " (note_nlp_id, note_id, section_concept_id, snippet, "
+            + getOffsetColumn( connection )
+            + ", lexical_variant, note_nlp_concept_id, note_nlp_source_concept_id, nlp_system, nlp_date,"
+            + " nlp_datetime, term_exists, term_temporal, term_modifiers)"
+            + " VALUES (?, ?, 0, ?, ?, ?, 0, 0, ?, ?, ?, ?, ?, ?)" );
+   }
+
+   /**
+    * Create the NOTE_NLP table as defined by OMOP CDM v5.4, e.g. in an embedded HSQLDB for testing.
+    */
+   static public void createTable( final Connection connection ) throws SQLException {
+      try ( Statement statement = connection.createStatement() ) {
+         statement.execute( "CREATE TABLE " + TABLE + " ("
+                            + "note_nlp_id BIGINT NOT NULL PRIMARY KEY,"
+                            + " note_id BIGINT NOT NULL,"
+                            + " section_concept_id INTEGER,"
+                            + " snippet VARCHAR(250),"
+                            + " " + getOffsetColumn( connection ) + " VARCHAR(50),"
+                            + " lexical_variant VARCHAR(250) NOT NULL,"
+                            + " note_nlp_concept_id INTEGER,"
+                            + " note_nlp_source_concept_id INTEGER,"
+                            + " nlp_system VARCHAR(250),"
+                            + " nlp_date DATE NOT NULL,"
+                            + " nlp_datetime TIMESTAMP,"
+                            + " term_exists VARCHAR(1),"
+                            + " term_temporal VARCHAR(50),"
+                            + " term_modifiers VARCHAR(2000))" );
+      }
+   }
+
+   /**
+    * OFFSET is a reserved word in most databases, so the column must be quoted in the case the database stores.
+    */
+   static private String getOffsetColumn( final Connection connection ) throws SQLException {
+      final DatabaseMetaData meta = connection.getMetaData();
+      final String quote = meta.getIdentifierQuoteString().trim();
+      final String name = meta.storesLowerCaseIdentifiers() ? "offset" : "OFFSET";
+      return quote + name + quote;
+   }
+
+   /**
+    * @return true, as note_id must be the id of the note in the NOTE table.
+    */
+   @Override
+   public boolean requiresDocumentId() {
+      return true;
+   }
+
+   @Override
+   public void startDocument( final String documentId ) throws IOException {
+      try {
+         _noteId = _noteIdResolver.applyAsLong( documentId );
+      } catch ( NumberFormatException nfE ) {
+         throw new IOException( "No NOTE_NLP note_id for document " + documentId, nfE );
+      }
+   }
+
+   @Override
+   public void accept( final CompactMention mention ) throws IOException {
+      try {
+         _insert.setLong( 1, _nextNoteNlpId++ );
+         _insert.setLong( 2, _noteId );
+         _insert.setString( 3, cut( mention.window, MAX_TEXT ) );
+         _insert.setString( 4, Integer.toString( mention.begin ) );
+         _insert.setString( 5, cut( mention.term, MAX_TEXT ) );
+         _insert.setString( 6, NLP_SYSTEM );
+         _insert.setDate( 7, _nlpDate );
+         _insert.setTimestamp( 8, _nlpDatetime );
+         _insert.setString( 9, exists( mention ) ? "Y" : "N" );
+         _insert.setString( 10, mention.isHistoric() ? "past" : null );
+         _insert.setString( 11, cut( getModifiers( mention ), MAX_MODIFIERS ) );
+         _insert.addBatch();
+         _pending++;
+         if ( _pending >= _batchSize ) {
+            flush();
+         }
+      } catch ( SQLException sqlE ) {
+         throw new IOException( sqlE );
+      }
+   }
+
+   @Override
+   public void endDocument() {
+   }
+
+   /**
+    * Send and commit any rows that have not yet reached a full batch.
+    */
+   public void flush() throws IOException {
+      if ( _pending == 0 ) {
+         return;
+      }
+      try {
+         _insert.executeBatch();
+         if ( !_connection.getAutoCommit() ) {
+            _connection.commit();
+         }
+         _pending = 0;
+      } catch ( SQLException sqlE ) {
+         throw new IOException( sqlE );
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         flush();
+      } finally {
+         try {
+            _insert.close();
+         } catch ( SQLException sqlE ) {
+            throw new IOException( sqlE );
+         }
+      }
+   }
+
+   static private boolean exists( final CompactMention mention ) {
+      return !mention.is( CompactMention.NEGATED | CompactMention.UNCERTAIN
+                          | CompactMention.GENERIC | CompactMention.CONDITIONAL );
+   }
+
+   private String getModifiers( final CompactMention mention ) {
+      _modifiers.setLength( 0 );
+      _modifiers.append( "semantic=" ).append( mention.semantic )
+                .append( ";uri=" ).append( mention.uri )
+                .append( ";cui=" ).append( mention.cui )
+                .append( ";tui=" ).append( String.join( ",", mention.tuis ) )
+                .append( ";end=" ).append( mention.end )
+                .append( ";negated=" ).append( mention.isNegated() )
+                .append( ";uncertain=" ).append( mention.isUncertain() )
+                .append( ";historic=" ).append( mention.isHistoric() )
+                .append( ";generic=" ).append( mention.isGeneric() )
+                .append( ";conditional=" ).append( mention.isConditional() )
+                .append( ";confidence=" ).append( ConfidenceFormat.format( mention.confidence ) );
+      return _modifiers.toString();
+   }
+
+   static private String cut( final String text, final int max ) {
+      return text.length() <= max ? text : text.substring( 0, max );
+   }
+
+}
@@ -0,0 +1,41 @@
+package org.healthnlp.deepphe.omop.staged;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the items a stage handles and the time it spends waiting on its neighbors,
+ * e.g. a reader blocked on a full queue or a worker waiting for a document.
+ *
+ * @since {10/18/2026}
+ */
+final class StageTimer {
+
+   private final String _name;
+   private final AtomicLong _items = new AtomicLong();
+   private final AtomicLong _waitNanos = new AtomicLong();
+   private final AtomicLong _busyNanos = new AtomicLong();
+
+   StageTimer( final String name ) {
+      _name = name;
+   }
+
+   void addWait( final long nanos ) {
+      _waitNanos.addAndGet( nanos );
+   }
+
+   void addItem( final long busyNanos ) {
+      _items.incrementAndGet();
+      _busyNanos.addAndGet( busyNanos );
+   }
+
+   long getItems() {
+      return _items.get();
+   }
+
+   @Override
+   public String toString() {
+      return _name + " " + _items.get() + " items, busy " + _busyNanos.get() / 1_000_000 + " ms, waiting "
+             + _waitNanos.get() / 1_000_000 + " ms";
+   }
+
+}
@@ -0,0 +1,371 @@
+package org.healthnlp.deepphe.omop.staged;
+
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.DpheOmopPipelineBuilder;
+import org.healthnlp.deepphe.omop.PiperResources;
+import org.healthnlp.deepphe.omop.sink.DelimitedMentionSink;
+import org.healthnlp.deepphe.omop.sink.MentionSink;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Processes a directory tree of notes in three stages connected by bounded queues,
+ * so that annotation does not wait for notes to be read or for mentions to be written.
+ * <ul>
+ *    <li>Reader threads read and decode notes ahead of annotation.</li>
+ *    <li>Annotation workers, one per pooled cas, run the pipeline on each note.</li>
+ *    <li>One writer thread writes every note's mentions to a single table through a large buffer.</li>
+ * </ul>
+ * The number of notes in the runner at once is bounded, so a slow stage holds back the others instead of
+ * filling the heap.  Mentions are written in the order notes complete, or with -ordered in path order.
+ * Queue depths are logged periodically, and each stage's busy and waiting time when the run is done.
+ * As with the piper's CRtoSpace setting, carriage returns are read as spaces.
+ *
+ * @since {10/18/2026}
+ */
+final public class StagedDocRunner {
+
+   static private final Logger LOGGER = Logger.getLogger( "StagedDocRunner" );
+
+   static public final String OUTPUT_NAME = "mentions.bsv";
+   static private final int WRITE_BUFFER = 1 << 20;
+   static private final long REPORT_SECONDS = 30;
+
+   /**
+    * A note on its way through the stages.  A note without text marks the end of the input.
+    */
+   static private final class Note {
+      static private final Note END = new Note( -1, null, null );
+      static private final Note WORKER_FAILED = new Note( -1, null, null );
+      private final int _index;
+      private final String _documentId;
+      private final String _text;
+      private List<CompactMention> _mentions;
+      private Exception _error;
+
+      private Note( final int index, final String documentId, final String text ) {
+         _index = index;
+         _documentId = documentId;
+         _text = text;
+      }
+   }
+
+   /**
+    * Collects one note's mentions so that a worker never waits on the writer.
+    */
+   static private final class MentionCollector implements MentionSink {
+      private final List<CompactMention> _mentions = new ArrayList<>();
+
+      @Override
+      public void startDocument( final String documentId ) {
+      }
+
+      @Override
+      public void accept( final CompactMention mention ) {
+         _mentions.add( mention );
+      }
+
+      @Override
+      public void endDocument() {
+      }
+
+      @Override
+      public void close() {
+      }
+   }
+
+   private final DpheOmopPipelineBuilder _pipeline;
+   private final Path _inputDir;
+   private final Path _outputFile;
+   private final int _readers;
+   private final int _queueDepth;
+   private final boolean _ordered;
+   private final StageTimer _readTimer = new StageTimer( "Read" );
+   private final StageTimer _annotateTimer = new StageTimer( "Annotate" );
+   private final StageTimer _writeTimer = new StageTimer( "Write" );
+
+   /**
+    * @param readers    threads reading notes.
+    * @param queueDepth notes that may wait between stages.
+    * @param ordered    true to write notes in path order rather than as they complete.
+    */
+   public StagedDocRunner( final DpheOmopPipelineBuilder pipeline, final Path inputDir, final Path outputFile,
+                           final int readers, final int queueDepth, final boolean ordered ) {
+      _pipeline = pipeline;
+      _inputDir = inputDir;
+      _outputFile = outputFile;
+      _readers = Math.max( 1, readers );
+      _queueDepth = Math.max( 1, queueDepth );
+      _ordered = ordered;
+   }
+
+   /**
+    * @return the number of notes written.  Notes that fail are logged and left out.
+    */
+   public int run() throws IOException, InterruptedException {
+      final List<Path> paths;
+      try ( Stream<Path> walk = Files.walk( _inputDir ) ) {
+         paths = walk.filter( Files::isRegularFile )
+                     .filter( p -> !p.getFileName().toString().startsWith( "." ) )
+                     .sorted()
+                     .collect( Collectors.toList() );
+      }
+      final int workers = Math.max( 1, _pipeline.getPoolSize() * 2 );
+      final BlockingQueue<Note> toAnnotate = new ArrayBlockingQueue<>( _queueDepth );
+      final BlockingQueue<Note> toWrite = new ArrayBlockingQueue<>( _queueDepth + workers );
+      // Bounds every note between reading and writing, including those held back for ordered output.
+      final Semaphore inRunner = new Semaphore( _queueDepth * 2 + workers );
+      final AtomicInteger nextPath = new AtomicInteger();
+      final AtomicInteger readersLeft = new AtomicInteger( _readers );
+      final AtomicInteger workersLeft = new AtomicInteger( workers );
+      final AtomicInteger failed = new AtomicInteger();
+
+      final List<Thread> threads = new ArrayList<>();
+      for ( int i = 0; i < _readers; i++ ) {
+         threads.add( new Thread( () -> read( paths, nextPath, inRunner, toAnnotate, readersLeft, workers ),
+                                  "DpheOmopReader-" + i ) );
+      }
+      for ( int i = 0; i < workers; i++ ) {
+         threads.add( new Thread( () -> annotate( toAnnotate, toWrite, workersLeft ), "DpheOmopWorker-" + i ) );
+      }
+      final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor( r -> {
+         final Thread thread = new Thread( r, "DpheOmopStageReporter" );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      reporter.scheduleAtFixedRate( () -> LOGGER.info( "Queued for annotation " + toAnnotate.size()
+                                                       + ", for writing " + toWrite.size()
+                                                       + ".  Written " + _writeTimer.getItems()
+                                                       + " of " + paths.size() ),
+                                    REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS );
+      threads.forEach( Thread::start );
+      try {
+         write( toWrite, inRunner, failed );
+      } finally {
+         reporter.shutdownNow();
+         // Only still running if the writer failed.  Clearing the queues lets blocked threads see the interrupt.
+         for ( Thread thread : threads ) {
+            while ( thread.isAlive() ) {
+               thread.interrupt();
+               toAnnotate.clear();
+               toWrite.clear();
+               thread.join( 100 );
+            }
+         }
+      }
+      LOGGER.info( _readTimer + " ; " + _annotateTimer + " ; " + _writeTimer );
+      LOGGER.info( "Wrote mentions of " + _writeTimer.getItems() + " notes to " + _outputFile
+                   + ", " + failed.get() + " failed." );
+      return (int)_writeTimer.getItems();
+   }
+
+   private void read( final List<Path> paths, final AtomicInteger nextPath, final Semaphore inRunner,
+                      final BlockingQueue<Note> toAnnotate, final AtomicInteger readersLeft, final int workers ) {
+      try {
+         while ( true ) {
+            final long start = System.nanoTime();
+            // Take a permit before a path, so that permits go to notes in path order and ordered output
+            // can never be left waiting for a note that has no permit.
+            inRunner.acquire();
+            final int i = nextPath.getAndIncrement();
+            if ( i >= paths.size() ) {
+               inRunner.release();
+               break;
+            }
+            final long acquired = System.nanoTime();
+            final Path path = paths.get( i );
+            Note note;
+            try {
+               final String text = new String( Files.readAllBytes( path ), StandardCharsets.UTF_8 )
+                     .replace( '\r', ' ' );
+               note = new Note( i, getDocumentId( path ), text );
+            } catch ( IOException ioE ) {
+               note = new Note( i, getDocumentId( path ), "" );
+               note._error = ioE;
+            }
+            final long read = System.nanoTime();
+            toAnnotate.put( note );
+            _readTimer.addItem( read - acquired );
+            _readTimer.addWait( acquired - start + System.nanoTime() - read );
+         }
+      } catch ( InterruptedException intE ) {
+         Thread.currentThread().interrupt();
+      } finally {
+         if ( readersLeft.decrementAndGet() == 0 ) {
+            for ( int i = 0; i < workers; i++ ) {
+               putEnd( toAnnotate, Note.END );
+            }
+         }
+      }
+   }
+
+   private void annotate( final BlockingQueue<Note> toAnnotate, final BlockingQueue<Note> toWrite,
+                          final AtomicInteger workersLeft ) {
+      boolean stopped = false;
+      try {
+         while ( true ) {
+            final long start = System.nanoTime();
+            final Note note = toAnnotate.take();
+            final long taken = System.nanoTime();
+            if ( note == Note.END ) {
+               break;
+            }
+            if ( note._error == null ) {
+               final MentionCollector collector = new MentionCollector();
+               try {
+                  _pipeline.run( note._documentId, note._text, collector );
+                  note._mentions = collector._mentions;
+               } catch ( UIMAException | RuntimeException e ) {
+                  note._error = e;
+               }
+            }
+            final long annotated = System.nanoTime();
+            toWrite.put( note );
+            _annotateTimer.addItem( annotated - taken );
+            _annotateTimer.addWait( taken - start + System.nanoTime() - annotated );
+         }
+         stopped = true;
+      } catch ( InterruptedException intE ) {
+         stopped = true;
+         Thread.currentThread().interrupt();
+      } finally {
+         if ( !stopped ) {
+            // An Error such as running out of memory lost a note, so the writer must not wait for it.
+            putEnd( toWrite, Note.WORKER_FAILED );
+         } else if ( workersLeft.decrementAndGet() == 0 ) {
+            putEnd( toWrite, Note.END );
+         }
+      }
+   }
+
+   /**
+    * The end marker must get through even when the thread has been interrupted.
+    */
+   static private void putEnd( final BlockingQueue<Note> queue, final Note end ) {
+      boolean interrupted = Thread.interrupted();
+      while ( true ) {
+         try {
+            queue.put( end );
+            break;
+         } catch ( InterruptedException intE ) {
+            interrupted = true;
+         }
+      }
+      if ( interrupted ) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private void write( final BlockingQueue<Note> toWrite, final Semaphore inRunner, final AtomicInteger failed )
+         throws IOException, InterruptedException {
+      final Map<Integer, Note> heldBack = new HashMap<>();
+      int nextIndex = 0;
+      try ( MentionSink sink = new DelimitedMentionSink( new BufferedWriter( new OutputStreamWriter(
+            Files.newOutputStream( _outputFile ), StandardCharsets.UTF_8 ), WRITE_BUFFER ), DelimitedMentionSink.BSV ) ) {
+         while ( true ) {
+            final long start = System.nanoTime();
+            final Note note = toWrite.take();
+            _writeTimer.addWait( System.nanoTime() - start );
+            if ( note == Note.END ) {
+               break;
+            }
+            if ( note == Note.WORKER_FAILED ) {
+               throw new IOException( "An annotation worker stopped unexpectedly." );
+            }
+            if ( !_ordered ) {
+               write( note, sink, inRunner, failed );
+               continue;
+            }
+            heldBack.put( note._index, note );
+            for ( Note next = heldBack.remove( nextIndex ); next != null; next = heldBack.remove( nextIndex ) ) {
+               write( next, sink, inRunner, failed );
+               nextIndex++;
+            }
+         }
+      }
+   }
+
+   private void write( final Note note, final MentionSink sink, final Semaphore inRunner, final AtomicInteger failed )
+         throws IOException {
+      final long start = System.nanoTime();
+      try {
+         if ( note._error != null ) {
+            failed.incrementAndGet();
+            LOGGER.error( "Could not process " + note._documentId + " : " + note._error.getMessage(), note._error );
+            return;
+         }
+         sink.startDocument( note._documentId );
+         for ( CompactMention mention : note._mentions ) {
+            sink.accept( mention );
+         }
+         sink.endDocument();
+         _writeTimer.addItem( System.nanoTime() - start );
+      } finally {
+         inRunner.release();
+      }
+   }
+
+   /**
+    * @return the path relative to the input directory, without extension and with '/' separators.
+    */
+   private String getDocumentId( final Path path ) {
+      final String relative = _inputDir.relativize( path ).toString().replace( '\\', '/' );
+      final int dot = relative.lastIndexOf( '.' );
+      return dot > relative.lastIndexOf( '/' ) ? relative.substring( 0, dot ) : relative;
+   }
+
+   public static void main( final String... args ) throws IOException, UIMAException, InterruptedException {
+      final Options options = new Options();
+      options.addOption( "i", "inputDir", true, "Directory of notes." );
+      options.addOption( "o", "outputDir", true, "Directory for the mention table." );
+      options.addOption( "p", "piper", true, "Piper file." );
+      options.addOption( "r", "resources", true, "Resource directory used in place of /app/resources in the piper." );
+      options.addOption( "c", "concurrency", true, "Notes annotated at once, 0 for one per core.  Default 1" );
+      options.addOption( "readers", true, "Threads reading notes.  Default 2" );
+      options.addOption( "q", "queue", true, "Notes that may wait between stages.  Default 64" );
+      options.addOption( "ordered", false, "Write notes in path order instead of as they complete." );
+      final CommandLine cmd;
+      try {
+         cmd = new BasicParser().parse( options, args );
+      } catch ( ParseException pE ) {
+         System.err.println( "Error parsing command line arguments: " + pE.getMessage() );
+         new HelpFormatter().printHelp( "StagedDocRunner", options );
+         System.exit( 1 );
+         return;
+      }
+      if ( !cmd.hasOption( "i" ) || !cmd.hasOption( "o" ) || !cmd.hasOption( "p" ) ) {
+         new HelpFormatter().printHelp( "StagedDocRunner", options );
+         System.exit( 1 );
+         return;
+      }
+      final Path outputDir = Paths.get( cmd.getOptionValue( "o" ) );
+      Files.createDirectories( outputDir );
+      final DpheOmopPipelineBuilder pipeline = new DpheOmopPipelineBuilder(
+            cmd.getOptionValue( "p" ),
+            cmd.getOptionValue( "r", PiperResources.getResourceRoot() ),
+            Integer.parseInt( cmd.getOptionValue( "c", "1" ) ),
+            0 );
+      pipeline.initialize();
+      try {
+         new StagedDocRunner( pipeline, Paths.get( cmd.getOptionValue( "i" ) ), outputDir.resolve( OUTPUT_NAME ),
+                              Integer.parseInt( cmd.getOptionValue( "readers", "2" ) ),
+                              Integer.parseInt( cmd.getOptionValue( "q", "64" ) ),
+                              cmd.hasOption( "ordered" ) ).run();
+      } finally {
+         pipeline.close();
+      }
+   }
+
+}
@@ -0,0 +1,237 @@
+package org.healthnlp.deepphe.omop.triage;
+
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.log4j.Logger;
+import org.healthnlp.deepphe.nlp.dictionary.MmapDictionaryStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Words that must appear in text for the pipeline to find anything in it, e.g. the rare words of the dictionary
+ * and the cue words of the regular expression finders.
+ * <p>
+ * A scan looks every word of the text up in an open addressed hash table as the word is read,
+ * lower casing character by character, so it allocates nothing and costs one pass over the text.
+ * Words are runs of letters and digits.  Terms are split into words the same way and every word is a candidate,
+ * so a term is never missed because only part of it is in the text.
+ * The letter runs of a text word that mixes letters and digits are looked up too, so 1.2cm and pT2N0 find cm and pt.
+ * </p>
+ * Terms are read from a text file with one term per line, # for comments,
+ * or from the keys of a table in a dictionary store, given as store.dmd#TABLE.
+ * Several locations separated by commas are read into one set of terms.
+ *
+ * @since {10/18/2026}
+ */
+final public class CandidateTerms {
+
+   static private final Logger LOGGER = Logger.getLogger( "CandidateTerms" );
+
+   static private final Map<String, CandidateTerms> LOADED = new ConcurrentHashMap<>();
+
+   private final char[][] _words;
+   private final int _mask;
+   private final int _count;
+
+   private CandidateTerms( final List<String> terms ) {
+      int words = 0;
+      for ( String term : terms ) {
+         words += term.split( "[^\\p{L}\\p{Nd}]+" ).length;
+      }
+      // At most half full, so probes stay short.
+      final int capacity = Integer.highestOneBit( Math.max( 16, words * 2 ) - 1 ) << 1;
+      _words = new char[ capacity ][];
+      _mask = capacity - 1;
+      int count = 0;
+      for ( String term : terms ) {
+         count += addWords( term );
+      }
+      _count = count;
+   }
+
+   /**
+    * @param location file or classpath location of a term file, or store.dmd#TABLE, or several separated by commas.
+    * @return the terms at the location, read once however many pipelines use them.
+    */
+   static public CandidateTerms load( final String location ) throws IOException {
+      final CandidateTerms loaded = LOADED.get( location );
+      if ( loaded != null ) {
+         return loaded;
+      }
+      synchronized ( LOADED ) {
+         CandidateTerms terms = LOADED.get( location );
+         if ( terms == null ) {
+            terms = read( location );
+            LOGGER.info( "Read " + terms._count + " candidate words from " + location );
+            LOADED.put( location, terms );
+         }
+         return terms;
+      }
+   }
+
+   static private CandidateTerms read( final String locations ) throws IOException {
+      final List<String> terms = new ArrayList<>();
+      for ( String location : locations.split( "," ) ) {
+         if ( !location.trim().isEmpty() ) {
+            readTerms( location.trim(), terms );
+         }
+      }
+      return new CandidateTerms( terms );
+   }
+
+   static private void readTerms( final String location, final List<String> terms ) throws IOException {
+      final int table = location.lastIndexOf( '#' );
+      if ( table > 0 && location.substring( 0, table ).endsWith( ".dmd" ) ) {
+         final MmapDictionaryStore store = MmapDictionaryStore.open( Paths.get( location.substring( 0, table ) ) );
+         final MmapDictionaryStore.Table keys = store.getTable( location.substring( table + 1 ) );
+         if ( keys == null ) {
+            throw new IOException( "No table " + location.substring( table + 1 ) + " in " + store.getFile() );
+         }
+         for ( int i = 0; i < keys.getKeyCount(); i++ ) {
+            terms.add( keys.getKey( i ) );
+         }
+         return;
+      }
+      try ( BufferedReader reader = new BufferedReader( new InputStreamReader(
+            FileLocator.getAsStream( location ), StandardCharsets.UTF_8 ) ) ) {
+         String line = reader.readLine();
+         while ( line != null ) {
+            line = line.trim();
+            if ( !line.isEmpty() && !line.startsWith( "#" ) ) {
+               terms.add( line );
+            }
+            line = reader.readLine();
+         }
+      }
+   }
+
+   /**
+    * @return the number of distinct candidate words.
+    */
+   public int getWordCount() {
+      return _count;
+   }
+
+   /**
+    * @return true if the text has any candidate word.
+    */
+   public boolean hasCandidate( final CharSequence text ) {
+      return hasCandidate( text, 0, text.length() );
+   }
+
+   /**
+    * @return true if the text from begin to end has any candidate word.
+    */
+   public boolean hasCandidate( final CharSequence text, final int begin, final int end ) {
+      int i = begin;
+      while ( i < end ) {
+         while ( i < end && !Character.isLetterOrDigit( text.charAt( i ) ) ) {
+            i++;
+         }
+         final int wordBegin = i;
+         int hash = 0;
+         int runBegin = -1;
+         int runHash = 0;
+         while ( i < end && Character.isLetterOrDigit( text.charAt( i ) ) ) {
+            final char c = text.charAt( i );
+            final char lower = Character.toLowerCase( c );
+            hash = 31 * hash + lower;
+            if ( Character.isLetter( c ) ) {
+               if ( runBegin < 0 ) {
+                  runBegin = i;
+                  runHash = 0;
+               }
+               runHash = 31 * runHash + lower;
+            } else if ( runBegin >= 0 ) {
+               // A letter run that ends at a digit.
+               if ( contains( text, runBegin, i, runHash ) ) {
+                  return true;
+               }
+               runBegin = -1;
+            }
+            i++;
+         }
+         if ( i > wordBegin && contains( text, wordBegin, i, hash ) ) {
+            return true;
+         }
+         // A letter run that ends the word after a digit.
+         if ( runBegin > wordBegin && contains( text, runBegin, i, runHash ) ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private boolean contains( final CharSequence text, final int begin, final int end, final int hash ) {
+      for ( int slot = mix( hash ) & _mask; _words[ slot ] != null; slot = ( slot + 1 ) & _mask ) {
+         if ( matches( _words[ slot ], text, begin, end ) ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   static private boolean matches( final char[] word, final CharSequence text, final int begin, final int end ) {
+      if ( word.length != end - begin ) {
+         return false;
+      }
+      for ( int i = 0; i < word.length; i++ ) {
+         if ( word[ i ] != Character.toLowerCase( text.charAt( begin + i ) ) ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return the number of new words in the term.
+    */
+   private int addWords( final String term ) {
+      int added = 0;
+      int i = 0;
+      while ( i < term.length() ) {
+         while ( i < term.length() && !Character.isLetterOrDigit( term.charAt( i ) ) ) {
+            i++;
+         }
+         final int wordBegin = i;
+         int hash = 0;
+         while ( i < term.length() && Character.isLetterOrDigit( term.charAt( i ) ) ) {
+            hash = 31 * hash + Character.toLowerCase( term.charAt( i ) );
+            i++;
+         }
+         if ( i > wordBegin && !contains( term, wordBegin, i, hash ) ) {
+            add( term, wordBegin, i, hash );
+            added++;
+         }
+      }
+      return added;
+   }
+
+   private void add( final String term, final int begin, final int end, final int hash ) {
+      final char[] word = new char[ end - begin ];
+      for ( int i = 0; i < word.length; i++ ) {
+         word[ i ] = Character.toLowerCase( term.charAt( begin + i ) );
+      }
+      int slot = mix( hash ) & _mask;
+      while ( _words[ slot ] != null ) {
+         slot = ( slot + 1 ) & _mask;
+      }
+      _words[ slot ] = word;
+   }
+
+   /**
+    * Spread the bits of a string hash, which are poor in the low bits used for the slot.
+    */
+   static private int mix( final int hash ) {
+      final int h = hash * 0x9E3779B9;
+      return h ^ ( h >>> 16 );
+   }
+
+}
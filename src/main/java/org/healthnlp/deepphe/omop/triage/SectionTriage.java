@@ -0,0 +1,86 @@
+package org.healthnlp.deepphe.omop.triage;
+
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.typesystem.type.textspan.Paragraph;
+import org.apache.ctakes.typesystem.type.textspan.Segment;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.healthnlp.deepphe.omop.metrics.PipelineMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes sections that have no candidate words, with their paragraphs, before sentences are detected.
+ * Sentences, tokens and so every later stage then pass over those sections without work.
+ * <p>
+ * Regular expression finders such as the grade, size and tnm finders also only see the remaining sections,
+ * so the candidate terms should include their cue words, e.g. grade, size, cm.
+ * </p>
+ * Run after the stages that find sections and paragraphs and before the sentence detector.
+ *
+ * @since {10/18/2026}
+ */
+@PipeBitInfo(
+      name = "SectionTriage",
+      description = "Removes sections without candidate words so that later stages skip them.",
+      role = PipeBitInfo.Role.SPECIAL,
+      dependencies = { PipeBitInfo.TypeProduct.SECTION }
+)
+final public class SectionTriage extends JCasAnnotator_ImplBase {
+
+   static private final Logger LOGGER = Logger.getLogger( "SectionTriage" );
+
+   static public final String PARAM_TERMS_PATH = "TriageTerms";
+   @ConfigurationParameter(
+         name = PARAM_TERMS_PATH,
+         description = "Term file, one term per line, or a dictionary store table as store.dmd#TABLE."
+   )
+   private String _termsPath;
+
+   private CandidateTerms _terms;
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      try {
+         _terms = CandidateTerms.load( _termsPath );
+      } catch ( IOException ioE ) {
+         throw new ResourceInitializationException( ioE );
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      final String text = jCas.getDocumentText();
+      final List<Segment> skipped = new ArrayList<>();
+      for ( Segment section : JCasUtil.select( jCas, Segment.class ) ) {
+         final boolean candidate = _terms.hasCandidate( text, section.getBegin(), section.getEnd() );
+         PipelineMetrics.getInstance().recordSectionTriage( !candidate );
+         if ( !candidate ) {
+            skipped.add( section );
+         }
+      }
+      for ( Segment section : skipped ) {
+         JCasUtil.selectCovered( jCas, Paragraph.class, section ).forEach( Paragraph::removeFromIndexes );
+         section.removeFromIndexes();
+      }
+      if ( !skipped.isEmpty() ) {
+         LOGGER.debug( "Skipping " + skipped.size() + " sections without candidate words." );
+      }
+   }
+
+}
@@ -0,0 +1,79 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+
+/**
+ * Formats a confidence precise to only 2 digits, the same as DecimalFormat( "#.00" ) : 0.5 is ".50", 1 is "1.00".
+ * DecimalFormat is not thread-safe and is slow, so the usual case is done with plain arithmetic.
+ * Like DecimalFormat, rounding is half-even on the exact binary value.
+ * Unlike DecimalFormat, the decimal separator is always '.' so that tables do not depend upon the default locale.
+ *
+ * @since {10/18/2026}
+ */
+final public class ConfidenceFormat {
+
+   /**
+    * Beyond this hundredths no longer fit comfortably in a double's exact range, so DecimalFormat is used.
+    */
+   static private final double MAX_SIMPLE = 1e9;
+
+   private ConfidenceFormat() {
+   }
+
+   /**
+    * @return the value rounded half-even to hundredths, e.g. 0.125 is 12 and 0.375 is 38.
+    */
+   static public long toHundredths( final double value ) {
+      if ( !isSimple( value ) ) {
+         return 0;
+      }
+      final double scaled = value * 100;
+      final double floor = Math.floor( scaled );
+      final double fraction = scaled - floor;
+      // Away from a tie the product's rounding error cannot change the result.
+      if ( Math.abs( fraction - 0.5 ) > 1e-6 ) {
+         return fraction < 0.5 ? (long)floor : (long)floor + 1;
+      }
+      return new BigDecimal( value ).setScale( 2, RoundingMode.HALF_EVEN ).unscaledValue().longValue();
+   }
+
+   /**
+    * @param hundredths the value as returned by {@link #toHundredths(double)}.
+    * @return the value as DecimalFormat( "#.00" ) would write it.
+    */
+   static public String format( final double value, final long hundredths ) {
+      if ( !isSimple( value ) ) {
+         return new DecimalFormat( "#.00" ).format( value );
+      }
+      // DecimalFormat keeps the sign of values that round to zero, including -0.0
+      final boolean negative = hundredths < 0 || ( hundredths == 0 && Double.doubleToRawLongBits( value ) < 0 );
+      final long magnitude = Math.abs( hundredths );
+      final long whole = magnitude / 100;
+      final int fraction = (int)( magnitude % 100 );
+      final StringBuilder sb = new StringBuilder( 8 );
+      if ( negative ) {
+         sb.append( '-' );
+      }
+      if ( whole > 0 ) {
+         sb.append( whole );
+      }
+      return sb.append( '.' )
+               .append( (char)( '0' + fraction / 10 ) )
+               .append( (char)( '0' + fraction % 10 ) )
+               .toString();
+   }
+
+   /**
+    * @return the value as DecimalFormat( "#.00" ) would write it.
+    */
+   static public String format( final double value ) {
+      return format( value, toHundredths( value ) );
+   }
+
+   static private boolean isSimple( final double value ) {
+      return !Double.isNaN( value ) && Math.abs( value ) < MAX_SIMPLE;
+   }
+
+}
@@ -0,0 +1,180 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary, column oriented encoding of one document's mentions.
+ * <pre>
+ * magic "DPMC" , version , mention count
+ * dictionary : count , utf-8 strings        semantic group, uri, cui, tui and preferred text values
+ * semantic ids , uri ids , cui ids , prefText ids      one int per mention
+ * tui offsets (count + 1 ints) , tui ids
+ * begins , ends                             one int per mention
+ * flags                                     one byte per mention, see {@link CompactMention}
+ * confidences                               one double per mention
+ * terms , windows                           utf-8 strings
+ * </pre>
+ * Repeated codes are stored once per document, and a reader that only wants some columns can skip the rest by length.
+ * Version 1 stored confidences as floats.  It can still be read.
+ *
+ * @since {10/18/2026}
+ */
+final public class MentionColumns {
+
+   static public final int MAGIC = ( 'D' << 24 ) | ( 'P' << 16 ) | ( 'M' << 8 ) | 'C';
+   static public final int VERSION = 2;
+   static private final int FLOAT_VERSION = 1;
+
+   private MentionColumns() {
+   }
+
+   static public void write( final List<CompactMention> mentions, final DataOutput out ) throws IOException {
+      final int count = mentions.size();
+      final Map<String, Integer> ids = new HashMap<>();
+      final List<String> dictionary = new ArrayList<>();
+      final int[] semantics = new int[ count ];
+      final int[] uris = new int[ count ];
+      final int[] cuis = new int[ count ];
+      final int[] prefTexts = new int[ count ];
+      final int[] tuiOffsets = new int[ count + 1 ];
+      final List<Integer> tuiIds = new ArrayList<>( count );
+      for ( int i = 0; i < count; i++ ) {
+         final CompactMention mention = mentions.get( i );
+         semantics[ i ] = getId( mention.semantic, ids, dictionary );
+         uris[ i ] = getId( mention.uri, ids, dictionary );
+         cuis[ i ] = getId( mention.cui, ids, dictionary );
+         prefTexts[ i ] = getId( mention.prefText, ids, dictionary );
+         for ( String tui : mention.tuis ) {
+            tuiIds.add( getId( tui, ids, dictionary ) );
+         }
+         tuiOffsets[ i + 1 ] = tuiIds.size();
+      }
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeInt( count );
+      out.writeInt( dictionary.size() );
+      for ( String value : dictionary ) {
+         writeString( value, out );
+      }
+      writeInts( semantics, out );
+      writeInts( uris, out );
+      writeInts( cuis, out );
+      writeInts( prefTexts, out );
+      writeInts( tuiOffsets, out );
+      for ( int tuiId : tuiIds ) {
+         out.writeInt( tuiId );
+      }
+      for ( CompactMention mention : mentions ) {
+         out.writeInt( mention.begin );
+      }
+      for ( CompactMention mention : mentions ) {
+         out.writeInt( mention.end );
+      }
+      for ( CompactMention mention : mentions ) {
+         out.writeByte( mention.flags );
+      }
+      for ( CompactMention mention : mentions ) {
+         out.writeDouble( mention.confidence );
+      }
+      for ( CompactMention mention : mentions ) {
+         writeString( mention.term, out );
+      }
+      for ( CompactMention mention : mentions ) {
+         writeString( mention.window, out );
+      }
+   }
+
+   static public List<CompactMention> read( final DataInput in ) throws IOException {
+      if ( in.readInt() != MAGIC ) {
+         throw new IOException( "Not a mention column file." );
+      }
+      final int version = in.readInt();
+      if ( version != VERSION && version != FLOAT_VERSION ) {
+         throw new IOException( "Unsupported mention column version " + version );
+      }
+      final int count = in.readInt();
+      final String[] dictionary = new String[ in.readInt() ];
+      for ( int i = 0; i < dictionary.length; i++ ) {
+         dictionary[ i ] = readString( in );
+      }
+      final int[] semantics = readInts( count, in );
+      final int[] uris = readInts( count, in );
+      final int[] cuis = readInts( count, in );
+      final int[] prefTexts = readInts( count, in );
+      final int[] tuiOffsets = readInts( count + 1, in );
+      final int[] tuiIds = readInts( tuiOffsets[ count ], in );
+      final int[] begins = readInts( count, in );
+      final int[] ends = readInts( count, in );
+      final byte[] flags = new byte[ count ];
+      in.readFully( flags );
+      final double[] confidences = new double[ count ];
+      for ( int i = 0; i < count; i++ ) {
+         confidences[ i ] = version == FLOAT_VERSION ? in.readFloat() : in.readDouble();
+      }
+      final String[] terms = new String[ count ];
+      for ( int i = 0; i < count; i++ ) {
+         terms[ i ] = readString( in );
+      }
+      final List<CompactMention> mentions = new ArrayList<>( count );
+      for ( int i = 0; i < count; i++ ) {
+         final String[] tuis = new String[ tuiOffsets[ i + 1 ] - tuiOffsets[ i ] ];
+         for ( int t = 0; t < tuis.length; t++ ) {
+            tuis[ t ] = dictionary[ tuiIds[ tuiOffsets[ i ] + t ] ];
+         }
+         mentions.add( new CompactMention( dictionary[ semantics[ i ] ], dictionary[ uris[ i ] ],
+                                           dictionary[ cuis[ i ] ], tuis, begins[ i ], ends[ i ], flags[ i ],
+                                           confidences[ i ], dictionary[ prefTexts[ i ] ], terms[ i ],
+                                           readString( in ) ) );
+      }
+      return mentions;
+   }
+
+   static private int getId( final String value, final Map<String, Integer> ids, final List<String> dictionary ) {
+      final Integer id = ids.get( value );
+      if ( id != null ) {
+         return id;
+      }
+      ids.put( value, dictionary.size() );
+      dictionary.add( value );
+      return dictionary.size() - 1;
+   }
+
+   static private void writeInts( final int[] values, final DataOutput out ) throws IOException {
+      for ( int value : values ) {
+         out.writeInt( value );
+      }
+   }
+
+   static private int[] readInts( final int count, final DataInput in ) throws IOException {
+      final int[] values = new int[ count ];
+      for ( int i = 0; i < count; i++ ) {
+         values[ i ] = in.readInt();
+      }
+      return values;
+   }
+
+   /**
+    * Length prefixed utf-8.  Unlike writeUTF there is no 64k limit, which a long window could otherwise reach.
+    */
+   static private void writeString( final String value, final DataOutput out ) throws IOException {
+      final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+      out.writeInt( bytes.length );
+      out.write( bytes );
+   }
+
+   static private String readString( final DataInput in ) throws IOException {
+      final byte[] bytes = new byte[ in.readInt() ];
+      in.readFully( bytes );
+      return new String( bytes, StandardCharsets.UTF_8 );
+   }
+
+}
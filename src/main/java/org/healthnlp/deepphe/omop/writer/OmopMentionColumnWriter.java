@@ -0,0 +1,42 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import org.apache.ctakes.core.cc.AbstractJCasFileWriter;
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.log4j.Logger;
+import org.apache.uima.jcas.JCas;
+
+import java.io.*;
+
+/**
+ * Writes the same mentions as {@link OmopMentionTableWriter}, in the same order,
+ * as a binary column file that is a fraction of the size of the BSV table.
+ * See {@link MentionColumns} for the layout.
+ *
+ * @since {10/18/2026}
+ */
+@PipeBitInfo (
+  name = "Omop Mention Column Writer",
+  description = "Writes Document mention information to a binary column file.",
+  role = PipeBitInfo.Role.WRITER
+)
+public class OmopMentionColumnWriter extends AbstractJCasFileWriter {
+
+   static private final Logger LOGGER = Logger.getLogger( "OmopMentionColumnWriter" );
+
+   static public final String FILE_EXTENSION = ".dmc";
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void writeFile( final JCas jCas, final String outputDir,
+                          final String documentId, final String fileName ) throws IOException {
+      final File file = new File( outputDir, fileName + FILE_EXTENSION );
+      LOGGER.info( "Writing mention columns to " + file.getPath() + " ..." );
+      try ( DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream( new FileOutputStream( file ) ) ) ) {
+         MentionColumns.write( new OmopMentionTableWriter().createCompactMentions( jCas ), out );
+      }
+   }
+
+}
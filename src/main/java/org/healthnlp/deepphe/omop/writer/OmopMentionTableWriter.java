@@ -12,11 +12,14 @@ import org.apache.uima.cas.CASException;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.healthnlp.deepphe.nlp.neo4j.Neo4jOntologyConceptUtil;
+import org.healthnlp.deepphe.nlp.ontology.UriLookupCache;
+import org.healthnlp.deepphe.omop.CompactMention;
 import org.healthnlp.deepphe.omop.Mention;
+import org.healthnlp.deepphe.omop.sink.MentionSink;
 
-import java.text.DecimalFormat;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 /**
  * @author SPF , chip-nlp
@@ -31,11 +34,10 @@ public class OmopMentionTableWriter extends AbstractTableFileWriter {
 
    static private final Logger LOGGER = Logger.getLogger( "OmopMentionTableWriter" );
 
-
    /**
-    * To print a decimal precise to only 2 digits.
+    * Best Dphe Group of the uris of an annotation.  Shared by every writer, as every engine shares the ontology.
     */
-   static private final DecimalFormat DECIMAL_FORMATTER = new DecimalFormat("#.00");
+   static private final UriLookupCache<DpheGroup> GROUP_CACHE = UriLookupCache.create( "Dphe Group" );
 
 
    /**
@@ -65,60 +67,165 @@ public class OmopMentionTableWriter extends AbstractTableFileWriter {
     */
    @Override
    public List<List<String>> createDataRows( final JCas jCas ) {
-      final Collection<IdentifiedAnnotation> mentions = JCasUtil.select( jCas, IdentifiedAnnotation.class );
-      return mentions.stream()
-        .map( MentionInfoHolder::new )
-        .sorted( MENTION_COMPARATOR )
-        .map( MentionInfoHolder::getRow )
-        .collect( Collectors.toList() );
+      final List<MentionInfoHolder> holders = createSortedHolders( jCas );
+      final List<List<String>> rows = new ArrayList<>( holders.size() );
+      for ( MentionInfoHolder holder : holders ) {
+         rows.add( holder.getRow() );
+      }
+      return rows;
    }
 
    // Add mention holder
    public List<Mention> createDataFields( final JCas jCas ) {
+      final List<MentionInfoHolder> holders = createSortedHolders( jCas );
+      final List<Mention> mentions = new ArrayList<>( holders.size() );
+      for ( MentionInfoHolder holder : holders ) {
+         mentions.add( holder.toMention() );
+      }
+      return mentions;
+   }
+
+   /**
+    * @return the mentions in the same order as {@link #createDataFields(JCas)}, but typed and with interned codes.
+    */
+   public List<CompactMention> createCompactMentions( final JCas jCas ) {
+      final List<MentionInfoHolder> holders = createSortedHolders( jCas );
+      final List<CompactMention> mentions = new ArrayList<>( holders.size() );
+      for ( MentionInfoHolder holder : holders ) {
+         mentions.add( holder.toCompactMention() );
+      }
+      return mentions;
+   }
+
+   /**
+    * Send each mention to the sink as soon as it is read, in text order, without collecting or sorting them.
+    *
+    * @return the number of mentions sent.
+    */
+   public int streamMentions( final JCas jCas, final String documentId, final MentionSink sink ) throws IOException {
+      final StringBuilder buffer = new StringBuilder();
+      int count = 0;
+      sink.startDocument( documentId );
+      for ( IdentifiedAnnotation mention : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         sink.accept( new MentionInfoHolder( mention, buffer ).toCompactMention() );
+         count++;
+      }
+      sink.endDocument();
+      return count;
+   }
+
+   /**
+    * Send mentions that have already been read to the sink as one document.
+    *
+    * @return the number of mentions sent.
+    */
+   static public int sendMentions( final String documentId, final List<CompactMention> mentions,
+                                   final MentionSink sink ) throws IOException {
+      sink.startDocument( documentId );
+      for ( CompactMention mention : mentions ) {
+         sink.accept( mention );
+      }
+      sink.endDocument();
+      return mentions.size();
+   }
+
+   /**
+    * @return the cache of the best Dphe Group of annotation uris, for its hit, miss and eviction counts.
+    */
+   static public UriLookupCache<DpheGroup> getGroupCache() {
+      return GROUP_CACHE;
+   }
+
+   /**
+    * The groups of an annotation with uris are the groups of its uris, so the best group is cached by uris.
+    * An annotation without uris is grouped by what else it carries, e.g. its tuis, so its group is not cached.
+    *
+    * @param uris   uris of the annotation.
+    * @param lookup finds the best group of the annotation.
+    * @return the best group of the annotation.
+    */
+   static DpheGroup getDpheGroup( final Collection<String> uris, final Supplier<DpheGroup> lookup ) {
+      if ( uris.isEmpty() ) {
+         return lookup.get();
+      }
+      final String key = uris.size() == 1 ? uris.iterator().next() : String.join( " ", uris );
+      return GROUP_CACHE.get( key, k -> lookup.get() );
+   }
+
+   /**
+    * @return the window of text around a mention at the given document offsets, cleaned as every mention window is.
+    */
+   static public String getWindow( final String docText, final int begin, final int end ) {
+      return MentionInfoHolder.getWindow( docText, begin, end, new StringBuilder() );
+   }
+
+   static private List<MentionInfoHolder> createSortedHolders( final JCas jCas ) {
       final Collection<IdentifiedAnnotation> mentions = JCasUtil.select( jCas, IdentifiedAnnotation.class );
-      return mentions.stream()
-        .map( MentionInfoHolder::new )
-        .sorted( MENTION_COMPARATOR )
-        .map( MentionInfoHolder::toMention )
-        .collect( Collectors.toList() );
+      final List<MentionInfoHolder> holders = new ArrayList<>( mentions.size() );
+      // One buffer is reused to clean the text of every mention in the document.
+      final StringBuilder buffer = new StringBuilder();
+      for ( IdentifiedAnnotation mention : mentions ) {
+         holders.add( new MentionInfoHolder( mention, buffer ) );
+      }
+      holders.sort( MENTION_COMPARATOR );
+      return holders;
    }
 
    protected static class MentionInfoHolder {
       static private final int WINDOW_EDGE = 40;
+      static private final String TRUE = "True";
+      static private final String FALSE = "False";
       private final DpheGroup _dpheGroup;
       private final String _uri;
       private final String _cui;
       private final List<String> _tui;
-      private final String _start_offset;
-      private final String _end_offset;
+      private final int _begin;
+      private final int _end;
       private final String _prefText;
-      private final String _negated;
-      private final String _uncertain;
-      private final String _historic;
-      private final String _generic;
-      private final String _conditional;
+      private final boolean _negated;
+      private final boolean _uncertain;
+      private final boolean _historic;
+      private final boolean _generic;
+      private final boolean _conditional;
       private final String _term;
       private String _termWindow = "";
+      /**
+       * Confidence rounded to hundredths, which is what is written and compared.
+       */
+      private final long _confidenceHundredths;
       private final String _confidence;
+      private final double _confidenceValue;
+
       protected MentionInfoHolder( final IdentifiedAnnotation annotation ) {
-         _uri = Neo4jOntologyConceptUtil.getUris( annotation ).stream().findFirst().orElse( "" );
-         _cui = IdentifiedAnnotationUtil.getCuis( annotation ).stream().findFirst().orElse( "" );
-         _dpheGroup = DpheGroupAccessor.getInstance()
-           .getBestGroup( DpheGroupAccessor.getInstance()
-             .getAnnotationGroups( annotation ) );
-         _tui = SemanticTui.getTuis( annotation ).stream().map( SemanticTui::name ).collect( Collectors.toList() );
-         _start_offset = String.valueOf(annotation.getBegin());
-         _end_offset = String.valueOf(annotation.getEnd());
-         _negated =  IdentifiedAnnotationUtil.isNegated( annotation ) ? "True" : "False";
-         _uncertain = IdentifiedAnnotationUtil.isUncertain( annotation ) ? "True" : "False";
-         _historic = IdentifiedAnnotationUtil.isHistoric( annotation ) ? "True" : "False";
-         _generic = IdentifiedAnnotationUtil.isGeneric( annotation ) ? "True" : "False";
-         _conditional = IdentifiedAnnotationUtil.isConditional( annotation ) ? "True" : "False";
-         // Replace newlines and carriage returns with spaces to keep the CSV rows clean
-         _prefText = IdentifiedAnnotationUtil.getPreferredTexts( annotation ).stream().findFirst().orElse( "" )
-           .replace('\n', ' ').replace('\r', ' ').replace('|', ' ');
-         _term = annotation.getCoveredText().replace('\n', ' ').replace('\r', ' ')
-           .replace('|', ' ');
+         this( annotation, new StringBuilder() );
+      }
+
+      /**
+       * @param buffer reusable buffer for cleaning text.  Its contents are replaced.
+       */
+      protected MentionInfoHolder( final IdentifiedAnnotation annotation, final StringBuilder buffer ) {
+         final Collection<String> uris = Neo4jOntologyConceptUtil.getUris( annotation );
+         _uri = getFirst( uris );
+         _cui = getFirst( IdentifiedAnnotationUtil.getCuis( annotation ) );
+         _dpheGroup = getDpheGroup( uris, () -> DpheGroupAccessor.getInstance()
+                                           .getBestGroup( DpheGroupAccessor.getInstance()
+                                             .getAnnotationGroups( annotation ) ) );
+         final Collection<SemanticTui> tuis = SemanticTui.getTuis( annotation );
+         _tui = new ArrayList<>( tuis.size() );
+         for ( SemanticTui tui : tuis ) {
+            _tui.add( tui.name() );
+         }
+         _begin = annotation.getBegin();
+         _end = annotation.getEnd();
+         _negated = IdentifiedAnnotationUtil.isNegated( annotation );
+         _uncertain = IdentifiedAnnotationUtil.isUncertain( annotation );
+         _historic = IdentifiedAnnotationUtil.isHistoric( annotation );
+         _generic = IdentifiedAnnotationUtil.isGeneric( annotation );
+         _conditional = IdentifiedAnnotationUtil.isConditional( annotation );
+         // Replace newlines, carriage returns and pipes with spaces to keep the CSV rows clean
+         final String prefText = getFirst( IdentifiedAnnotationUtil.getPreferredTexts( annotation ) );
+         _prefText = clean( prefText, 0, prefText.length(), buffer );
+         String term = null;
          try {
             //////////////////////////////////////////////////////////////
             //   This is kind of strange, but you must use getView() on an annotation, not getCAS().
@@ -127,21 +234,66 @@ public class OmopMentionTableWriter extends AbstractTableFileWriter {
 //                final JCas annotationCas = annotation.getCAS().getJCas();
             final JCas annotationCas = annotation.getView().getJCas();
             final String docText = annotationCas.getDocumentText();
-            _termWindow = docText
-              .substring(
-                Math.max( 0, annotation.getBegin()-WINDOW_EDGE ),
-                Math.min( docText.length(), annotation.getEnd() + WINDOW_EDGE ) )
-              // Replace newlines and carriage returns with spaces to keep the CSV rows clean
-              .replace('\n', ' ').replace('\r', ' ').replace('|', ' ');
+            // Clean the term and window straight from the document text without copying them first.
+            term = clean( docText, _begin, _end, buffer );
+            _termWindow = getWindow( docText, _begin, _end, buffer );
          } catch ( CASException casE ) {
             LOGGER.error( "Could not find JCas for annotation " + annotation.getCoveredText() );
          }
-         _confidence = DECIMAL_FORMATTER.format( annotation.getConfidence() );
+         if ( term == null ) {
+            final String coveredText = annotation.getCoveredText();
+            term = clean( coveredText, 0, coveredText.length(), buffer );
+         }
+         _term = term;
+         final double confidence = annotation.getConfidence();
+         _confidenceValue = confidence;
+         _confidenceHundredths = ConfidenceFormat.toHundredths( confidence );
+         _confidence = ConfidenceFormat.format( confidence, _confidenceHundredths );
+      }
+
+      static private String getWindow( final String docText, final int begin, final int end,
+                                       final StringBuilder buffer ) {
+         return clean( docText, Math.max( 0, begin - WINDOW_EDGE ), Math.min( docText.length(), end + WINDOW_EDGE ),
+                       buffer );
+      }
+
+      static private String getFirst( final Collection<String> values ) {
+         return values.isEmpty() ? "" : values.iterator().next();
+      }
+
+      /**
+       * Copy text[begin,end) replacing newlines, carriage returns and pipes with spaces, in a single pass.
+       * If nothing needs to be replaced the text is copied directly.
+       */
+      static private String clean( final String text, final int begin, final int end, final StringBuilder buffer ) {
+         int i = begin;
+         while ( i < end && !isDirty( text.charAt( i ) ) ) {
+            i++;
+         }
+         if ( i == end ) {
+            return text.substring( begin, end );
+         }
+         buffer.setLength( 0 );
+         buffer.append( text, begin, i );
+         for ( ; i < end; i++ ) {
+            final char c = text.charAt( i );
+            buffer.append( isDirty( c ) ? ' ' : c );
+         }
+         return buffer.toString();
+      }
+
+      static private boolean isDirty( final char c ) {
+         return c == '\n' || c == '\r' || c == '|';
       }
+
+      static private String toText( final boolean value ) {
+         return value ? TRUE : FALSE;
+      }
+
       protected List<String> getRow() {
          return Arrays.asList( _dpheGroup.getName(),
            _uri, _cui, String.join( ",", _tui ), _prefText,
-           _negated, _uncertain, _historic,
+           toText( _negated ), toText( _uncertain ), toText( _historic ),
            _confidence, _term, _termWindow );
       }
       protected Mention toMention() {
@@ -150,19 +302,35 @@ public class OmopMentionTableWriter extends AbstractTableFileWriter {
            _uri,
            _cui,
            _tui,
-           _start_offset,
-           _end_offset,
+           String.valueOf( _begin ),
+           String.valueOf( _end ),
            _prefText,
-           _negated,
-           _uncertain,
-           _historic,
-           _generic,
-           _conditional,
+           toText( _negated ),
+           toText( _uncertain ),
+           toText( _historic ),
+           toText( _generic ),
+           toText( _conditional ),
            _confidence,
            _term,
            _termWindow
          );
       }
+
+      protected CompactMention toCompactMention() {
+         return new CompactMention(
+           _dpheGroup.getName(),
+           _uri,
+           _cui,
+           _tui.toArray( new String[ 0 ] ),
+           _begin,
+           _end,
+           CompactMention.toFlags( _negated, _uncertain, _historic, _generic, _conditional ),
+           _confidenceValue,
+           _prefText,
+           _term,
+           _termWindow
+         );
+      }
    }
 
    /**
@@ -178,7 +346,23 @@ public class OmopMentionTableWriter extends AbstractTableFileWriter {
          return uri;
       }
       // Reverse confidence
-      return String.CASE_INSENSITIVE_ORDER.compare( m2._confidence, m1._confidence );
+      return Long.compare( m2._confidenceHundredths, m1._confidenceHundredths );
+   };
+
+   /**
+    * The same order as {@link #MENTION_COMPARATOR}, for mentions that have already been read.
+    */
+   static public final Comparator<CompactMention> COMPACT_MENTION_COMPARATOR = ( m1, m2 ) -> {
+      final int group = String.CASE_INSENSITIVE_ORDER.compare( m1.semantic, m2.semantic );
+      if ( group != 0 ) {
+         return group;
+      }
+      final int uri = String.CASE_INSENSITIVE_ORDER.compare( m1.uri, m2.uri );
+      if ( uri != 0 ) {
+         return uri;
+      }
+      return Long.compare( ConfidenceFormat.toHundredths( m2.confidence ),
+                           ConfidenceFormat.toHundredths( m1.confidence ) );
    };
 
 
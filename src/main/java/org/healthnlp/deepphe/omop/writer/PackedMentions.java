@@ -0,0 +1,261 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The mentions of one or more documents packed into a single ByteBuffer, for callers in other languages.
+ * A bridge copies the whole buffer once (or wraps it, e.g. with numpy.frombuffer) instead of converting
+ * fifteen strings and a list per mention.
+ * <p>
+ * Every value is little endian.  Every section starts on a 4 byte boundary.
+ * <pre>
+ * header          8 ints     magic "DPPK" , version , document count , mention count , string count ,
+ *                            tui count , string bytes offset , total length
+ * documents       int[ document count + 1 ]     index of the first mention of each document, then mention count
+ * mentions        mention count records of {@value #RECORD_BYTES} bytes, in document order
+ * tuis            int[ tui count ]              string ids
+ * string offsets  int[ string count + 1 ]       byte offset of each string within the string bytes, then their length
+ * string bytes    utf-8
+ * </pre>
+ * Each mention record is 12 little endian 4 byte values:
+ * <pre>
+ * semantic , uri , cui , prefText , term , window     string ids
+ * tui start , tui count                               range of the mention's ids in tuis
+ * begin , end                                         character offsets
+ * confidence                                          hundredths, as the table writers round it
+ * flags                                               bits, see {@link CompactMention}
+ * </pre>
+ * As a numpy dtype every value is '&lt;i4'.  Divide confidence by 100 for the value the table writers print.
+ * The string table is shared by every document in the buffer.
+ * Semantic group, uri, cui, tui and preferred text values are stored once; terms and windows are stored as they come.
+ *
+ * @since {10/18/2026}
+ */
+final public class PackedMentions {
+
+   static public final int MAGIC = ( 'D' << 24 ) | ( 'P' << 16 ) | ( 'P' << 8 ) | 'K';
+   static public final int VERSION = 2;
+   static public final int HEADER_BYTES = 8 * Integer.BYTES;
+   static public final int RECORD_BYTES = 12 * Integer.BYTES;
+
+   private PackedMentions() {
+   }
+
+   /**
+    * @param documents mentions of each document.
+    * @return a heap buffer positioned at 0 and limited to the packed length.
+    * @throws IllegalArgumentException if the mentions do not fit in one buffer.
+    */
+   static public ByteBuffer pack( final List<List<CompactMention>> documents ) {
+      return pack( documents, null );
+   }
+
+   /**
+    * Pack into a buffer that the caller keeps, so that a bridge reading the mentions of many calls
+    * does not allocate direct memory for each one.
+    *
+    * @param documents mentions of each document.
+    * @param reuse     buffer to pack into if it is large enough, usually the buffer returned by the last call.
+    *                  Its previous contents are overwritten.  May be null.
+    * @return the reuse buffer, or a new buffer of the same kind (heap if null) when it is too small,
+    * positioned at 0 and limited to the packed length.
+    * @throws IllegalArgumentException if the mentions do not fit in one buffer.
+    */
+   static public ByteBuffer pack( final List<List<CompactMention>> documents, final ByteBuffer reuse ) {
+      final StringTable strings = new StringTable();
+      int mentionCount = 0;
+      int tuiCount = 0;
+      for ( List<CompactMention> mentions : documents ) {
+         mentionCount += mentions.size();
+         for ( CompactMention mention : mentions ) {
+            tuiCount += mention.tuis.length;
+         }
+      }
+      final int[] records = new int[ mentionCount * 10 ];
+      final int[] tuis = new int[ tuiCount ];
+      int record = 0;
+      int tui = 0;
+      for ( List<CompactMention> mentions : documents ) {
+         for ( CompactMention mention : mentions ) {
+            records[ record++ ] = strings.getSharedId( mention.semantic );
+            records[ record++ ] = strings.getSharedId( mention.uri );
+            records[ record++ ] = strings.getSharedId( mention.cui );
+            records[ record++ ] = strings.getSharedId( mention.prefText );
+            records[ record++ ] = strings.add( mention.term );
+            records[ record++ ] = strings.add( mention.window );
+            records[ record++ ] = tui;
+            records[ record++ ] = mention.tuis.length;
+            records[ record++ ] = mention.begin;
+            records[ record++ ] = mention.end;
+            for ( String value : mention.tuis ) {
+               tuis[ tui++ ] = strings.getSharedId( value );
+            }
+         }
+      }
+      final long stringBytesOffset = HEADER_BYTES
+                                     + ( documents.size() + 1L ) * Integer.BYTES
+                                     + (long)mentionCount * RECORD_BYTES
+                                     + (long)tuiCount * Integer.BYTES
+                                     + ( strings.size() + 1L ) * Integer.BYTES;
+      final long length = stringBytesOffset + strings._byteCount;
+      if ( length > Integer.MAX_VALUE ) {
+         throw new IllegalArgumentException( "Mentions need " + length + " bytes, too many for one buffer." );
+      }
+      final ByteBuffer buffer = getBuffer( reuse, (int)length );
+      buffer.putInt( MAGIC )
+            .putInt( VERSION )
+            .putInt( documents.size() )
+            .putInt( mentionCount )
+            .putInt( strings.size() )
+            .putInt( tuiCount )
+            .putInt( (int)stringBytesOffset )
+            .putInt( (int)length );
+      int first = 0;
+      for ( List<CompactMention> mentions : documents ) {
+         buffer.putInt( first );
+         first += mentions.size();
+      }
+      buffer.putInt( first );
+      record = 0;
+      for ( List<CompactMention> mentions : documents ) {
+         for ( CompactMention mention : mentions ) {
+            for ( int i = 0; i < 10; i++ ) {
+               buffer.putInt( records[ record++ ] );
+            }
+            buffer.putInt( (int)ConfidenceFormat.toHundredths( mention.confidence ) );
+            buffer.putInt( mention.flags & 0xff );
+         }
+      }
+      for ( int id : tuis ) {
+         buffer.putInt( id );
+      }
+      int offset = 0;
+      for ( byte[] bytes : strings._bytes ) {
+         buffer.putInt( offset );
+         offset += bytes.length;
+      }
+      buffer.putInt( offset );
+      for ( byte[] bytes : strings._bytes ) {
+         buffer.put( bytes );
+      }
+      buffer.flip();
+      return buffer;
+   }
+
+   /**
+    * @param packed buffer written by {@link #pack(List)}.  Its position and byte order are not changed.
+    * @return mentions of each document.
+    * @throws IllegalArgumentException if the buffer is not packed mentions.
+    */
+   static public List<List<CompactMention>> unpack( final ByteBuffer packed ) {
+      final ByteBuffer buffer = packed.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+      final int base = buffer.position();
+      if ( buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC ) {
+         throw new IllegalArgumentException( "Not packed mentions." );
+      }
+      final int version = buffer.getInt();
+      if ( version != VERSION ) {
+         throw new IllegalArgumentException( "Unsupported packed mention version " + version );
+      }
+      final int documentCount = buffer.getInt();
+      buffer.getInt();
+      final int stringCount = buffer.getInt();
+      final int tuiCount = buffer.getInt();
+      final int stringBytesOffset = buffer.getInt();
+      buffer.getInt();
+      final int[] firsts = getInts( buffer, documentCount + 1 );
+      final int recordsOffset = buffer.position();
+      buffer.position( recordsOffset + firsts[ documentCount ] * RECORD_BYTES );
+      final int[] tuis = getInts( buffer, tuiCount );
+      final int[] stringOffsets = getInts( buffer, stringCount + 1 );
+      final String[] strings = new String[ stringCount ];
+      for ( int i = 0; i < stringCount; i++ ) {
+         final byte[] bytes = new byte[ stringOffsets[ i + 1 ] - stringOffsets[ i ] ];
+         buffer.position( base + stringBytesOffset + stringOffsets[ i ] );
+         buffer.get( bytes );
+         strings[ i ] = new String( bytes, StandardCharsets.UTF_8 );
+      }
+      buffer.position( recordsOffset );
+      final List<List<CompactMention>> documents = new ArrayList<>( documentCount );
+      for ( int d = 0; d < documentCount; d++ ) {
+         final List<CompactMention> mentions = new ArrayList<>( firsts[ d + 1 ] - firsts[ d ] );
+         for ( int m = firsts[ d ]; m < firsts[ d + 1 ]; m++ ) {
+            final int[] record = getInts( buffer, 10 );
+            final String[] mentionTuis = new String[ record[ 7 ] ];
+            for ( int t = 0; t < mentionTuis.length; t++ ) {
+               mentionTuis[ t ] = strings[ tuis[ record[ 6 ] + t ] ];
+            }
+            final double confidence = buffer.getInt() / 100.0;
+            final int flags = buffer.getInt();
+            mentions.add( new CompactMention( strings[ record[ 0 ] ], strings[ record[ 1 ] ], strings[ record[ 2 ] ],
+                                              mentionTuis, record[ 8 ], record[ 9 ], flags, confidence,
+                                              strings[ record[ 3 ] ], strings[ record[ 4 ] ],
+                                              strings[ record[ 5 ] ] ) );
+         }
+         documents.add( mentions );
+      }
+      return documents;
+   }
+
+   static private ByteBuffer getBuffer( final ByteBuffer reuse, final int length ) {
+      if ( reuse == null ) {
+         return ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+      }
+      if ( reuse.capacity() < length ) {
+         // Grow by half again, so that a bridge packing notes of increasing size reallocates rarely.
+         final int capacity = (int)Math.min( Integer.MAX_VALUE, Math.max( length, reuse.capacity() * 3L / 2 ) );
+         final ByteBuffer grown = reuse.isDirect() ? ByteBuffer.allocateDirect( capacity )
+                                                   : ByteBuffer.allocate( capacity );
+         return grown.order( ByteOrder.LITTLE_ENDIAN );
+      }
+      reuse.clear();
+      return reuse.order( ByteOrder.LITTLE_ENDIAN );
+   }
+
+   static private int[] getInts( final ByteBuffer buffer, final int count ) {
+      final int[] values = new int[ count ];
+      for ( int i = 0; i < count; i++ ) {
+         values[ i ] = buffer.getInt();
+      }
+      return values;
+   }
+
+   /**
+    * Utf-8 encoded strings in id order.
+    */
+   static private final class StringTable {
+      private final Map<String, Integer> _ids = new HashMap<>();
+      private final List<byte[]> _bytes = new ArrayList<>();
+      private long _byteCount;
+
+      private int getSharedId( final String value ) {
+         final Integer id = _ids.get( value );
+         if ( id != null ) {
+            return id;
+         }
+         final int added = add( value );
+         _ids.put( value, added );
+         return added;
+      }
+
+      private int add( final String value ) {
+         final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+         _bytes.add( bytes );
+         _byteCount += bytes.length;
+         return _bytes.size() - 1;
+      }
+
+      private int size() {
+         return _bytes.size();
+      }
+   }
+
+}
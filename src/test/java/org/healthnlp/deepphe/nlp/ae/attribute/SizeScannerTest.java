@@ -0,0 +1,111 @@
+package org.healthnlp.deepphe.nlp.ae.attribute;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SizeScanner must report exactly the spans of the regex that SizeFinder used before it.
+ *
+ * @since {10/18/2026}
+ */
+public class SizeScannerTest {
+
+   /**
+    * The former SizeFinder FULL_REGEX, unchanged.
+    */
+   static private final Pattern FULL_PATTERN = Pattern.compile(
+         "(?:\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b)|(?:\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)?\\s*(?:x|by|to|and|&)?\\s*\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b)|(?:\\b\\d+(?:\\.\\d+)?\\s*(?:cm|mm)\\b)",
+         Pattern.CASE_INSENSITIVE );
+
+   static private final String[] CORPUS = {
+         "",
+         "1 cm",
+         "A 1.2 cm mass.",
+         "Measuring 1.2x3.4x5.6 cm in the upper inner quadrant.",
+         "1.2 x 3.4 x 5.6 MM",
+         "1.2 cm x 3.4 cm x 5.6 cm",
+         "1.2 by 3.4 cm and 2 to 3 mm",
+         "1 & 2 & 3 cm",
+         "sizes 1.2.3 cm, 1.23.4 cm, 12.34.56 mm, 1.2.3.4.5 cm",
+         "version 10.4.2 mm",
+         "12 34 56 78 cm",
+         "1234567 mm",
+         "a1.2 cm, _3 cm, 3 cmx, 3 cm_, 3cm2",
+         "thickened cortex of 7 mm.  She now presents",
+         "The right 1 o'clock position 5 cm from the nipple",
+         "2.0\tcm\n3.0\r\nmm",
+         "1.2 Cm x 3.4 cM",
+         "1.2 cm x",
+         "1 x 2 x 3 x 4 cm",
+         "5 and 6 and 7 and 8 mm",
+         "9 by by 10 cm",
+         "1.. 2 cm",
+         "0.5cm 0.6mm 0.7 km",
+         "é1 cm ́ 2 cm",
+         "𝟎1 cm 𝟎 2 cm",
+         "1 cḿ 2 mm𝟎"
+   };
+
+   @Test
+   public void corpus() {
+      for ( String text : CORPUS ) {
+         assertSameSpans( text, 0, text.length() );
+      }
+   }
+
+   @Test
+   public void windows() {
+      for ( String text : CORPUS ) {
+         for ( int from = 0; from <= text.length(); from++ ) {
+            for ( int to = from; to <= text.length(); to++ ) {
+               assertSameSpans( text, from, to );
+            }
+         }
+      }
+   }
+
+   /**
+    * Random text built from the pieces the pattern cares about, in random windows.
+    */
+   @Test
+   public void randomText() {
+      final String[] pieces = { "0", "1", "2", "9", "12", "345", ".", ".", " ", "  ", "\t", "\n", "cm", "mm", "CM",
+                                "Mm", "c", "m", "x", "X", "by", "to", "and", "AND", "&", "a", "_", "-", ",",
+                                "́", "é", "𝟎", "\uD800", "\uDC00" };
+      final Random random = new Random( 20261018L );
+      final StringBuilder sb = new StringBuilder();
+      for ( int n = 0; n < 200_000; n++ ) {
+         sb.setLength( 0 );
+         final int count = 1 + random.nextInt( 16 );
+         for ( int i = 0; i < count; i++ ) {
+            sb.append( pieces[ random.nextInt( pieces.length ) ] );
+         }
+         final String text = sb.toString();
+         final int from = random.nextInt( 4 ) == 0 ? random.nextInt( text.length() + 1 ) : 0;
+         final int to = random.nextInt( 4 ) == 0 ? from + random.nextInt( text.length() - from + 1 ) : text.length();
+         assertSameSpans( text, from, to );
+      }
+   }
+
+   static private void assertSameSpans( final String text, final int from, final int to ) {
+      // SizeFinder matched the covered text of a window, so the pattern sees only the window.
+      final List<String> expected = new ArrayList<>();
+      final Matcher matcher = FULL_PATTERN.matcher( text.substring( from, to ) );
+      while ( matcher.find() ) {
+         expected.add( ( from + matcher.start() ) + "-" + ( from + matcher.end() ) );
+      }
+      final List<String> actual = new ArrayList<>();
+      final int count = SizeScanner.scan( text, from, to, ( begin, end ) -> actual.add( begin + "-" + end ) );
+      final String message = "[" + text.substring( from, to ) + "] in " + from + "-" + to + " of [" + text + "]";
+      assertEquals( message, expected, actual );
+      assertEquals( message, expected.size(), count );
+   }
+
+}
@@ -0,0 +1,127 @@
+package org.healthnlp.deepphe.nlp.dictionary;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Queries of a converted dictionary store must answer as the HSQLDB dictionary does.
+ *
+ * @since {10/18/2026}
+ */
+public class MmapDictionaryDriverTest {
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   private Connection _hsqldb;
+   private Connection _store;
+
+   @Before
+   public void convert() throws Exception {
+      _hsqldb = DriverManager.getConnection( "jdbc:hsqldb:mem:mmap_driver_test", "SA", "" );
+      try ( Statement statement = _hsqldb.createStatement() ) {
+         statement.execute( "CREATE TABLE CUI_TERMS ( CUI BIGINT, RINDEX INTEGER, TCOUNT INTEGER,"
+                            + " TEXT VARCHAR(255), RWORD VARCHAR(48) )" );
+         statement.execute( "INSERT INTO CUI_TERMS VALUES ( 6826, 1, 2, 'breast carcinoma', 'carcinoma' )" );
+         statement.execute( "INSERT INTO CUI_TERMS VALUES ( 6826, 0, 2, 'carcinoma breast', 'carcinoma' )" );
+         statement.execute( "INSERT INTO CUI_TERMS VALUES ( 24621, 0, 1, 'mass', 'mass' )" );
+         statement.execute( "CREATE TABLE TUI ( CUI BIGINT, TUI INTEGER )" );
+         statement.execute( "INSERT INTO TUI VALUES ( 6826, 191 )" );
+         statement.execute( "INSERT INTO TUI VALUES ( 24621, 33 )" );
+         statement.execute( "CREATE TABLE PREFTERM ( CUI BIGINT, PREFTERM VARCHAR(255) )" );
+         statement.execute( "INSERT INTO PREFTERM VALUES ( 6826, 'Breast Carcinoma' )" );
+         statement.execute( "INSERT INTO PREFTERM VALUES ( 24621, NULL )" );
+      }
+      final Path file = _folder.getRoot().toPath().resolve( "test.dmd" );
+      HsqldbDictionaryConverter.convert( _hsqldb, Collections.emptyList(),
+                                         Collections.singletonMap( "CUI_TERMS", "RWORD" ), file );
+      _store = DriverManager.getConnection( MmapDictionaryDriver.URL_PREFIX + file, "SA", "" );
+   }
+
+   @After
+   public void close() throws SQLException {
+      _store.close();
+      try ( Statement statement = _hsqldb.createStatement() ) {
+         statement.execute( "DROP SCHEMA PUBLIC CASCADE" );
+      }
+      _hsqldb.close();
+   }
+
+   @Test
+   public void keyedQueriesMatch() throws SQLException {
+      assertSameRows( "SELECT * FROM CUI_TERMS WHERE RWORD = ?", "carcinoma" );
+      assertSameRows( "SELECT * FROM CUI_TERMS WHERE RWORD = ?", "mass" );
+      assertSameRows( "SELECT * FROM CUI_TERMS WHERE RWORD = ?", "missing" );
+      assertSameRows( "select TUI from TUI where CUI = ?", "6826" );
+      assertSameRows( "SELECT PREFTERM FROM PREFTERM WHERE CUI = ?", "24621" );
+      assertSameRows( "SELECT * FROM TUI", null );
+   }
+
+   @Test
+   public void typedGettersParseText() throws SQLException {
+      try ( PreparedStatement statement = _store.prepareStatement( "SELECT * FROM CUI_TERMS WHERE RWORD = ?" ) ) {
+         statement.setString( 1, "mass" );
+         try ( ResultSet rows = statement.executeQuery() ) {
+            assertTrue( rows.next() );
+            assertEquals( 24621L, rows.getLong( "CUI" ) );
+            assertEquals( 1, rows.getInt( 3 ) );
+            assertEquals( "mass", rows.getString( "text" ) );
+            assertFalse( rows.next() );
+         }
+      }
+      try ( PreparedStatement statement = _store.prepareStatement( "SELECT PREFTERM FROM PREFTERM WHERE CUI = ?" ) ) {
+         statement.setLong( 1, 24621 );
+         try ( ResultSet rows = statement.executeQuery() ) {
+            assertTrue( rows.next() );
+            assertNull( rows.getString( 1 ) );
+            assertTrue( rows.wasNull() );
+         }
+      }
+   }
+
+   @Test( expected = SQLFeatureNotSupportedException.class )
+   public void otherKeysAreRejected() throws SQLException {
+      _store.prepareStatement( "SELECT * FROM CUI_TERMS WHERE CUI = ?" );
+   }
+
+   @Test( expected = SQLFeatureNotSupportedException.class )
+   public void otherStatementsAreRejected() throws SQLException {
+      _store.prepareStatement( "DELETE FROM TUI" );
+   }
+
+   private void assertSameRows( final String sql, final String key ) throws SQLException {
+      assertEquals( sql + " " + key, getRows( _hsqldb, sql, key ), getRows( _store, sql, key ) );
+   }
+
+   /**
+    * @return rows as text, in a stable order as neither database promises one.
+    */
+   static private List<String> getRows( final Connection connection, final String sql, final String key )
+         throws SQLException {
+      final List<String> rows = new ArrayList<>();
+      try ( PreparedStatement statement = connection.prepareStatement( sql ) ) {
+         if ( key != null ) {
+            statement.setString( 1, key );
+         }
+         try ( ResultSet results = statement.executeQuery() ) {
+            final ResultSetMetaData metaData = results.getMetaData();
+            while ( results.next() ) {
+               final StringBuilder row = new StringBuilder();
+               for ( int c = 1; c <= metaData.getColumnCount(); c++ ) {
+                  row.append( metaData.getColumnName( c ) ).append( '=' ).append( results.getString( c ) ).append( '|' );
+               }
+               rows.add( row.toString() );
+            }
+         }
+      }
+      Collections.sort( rows );
+      return rows;
+   }
+
+}
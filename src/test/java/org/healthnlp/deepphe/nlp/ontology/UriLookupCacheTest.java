@@ -0,0 +1,56 @@
+package org.healthnlp.deepphe.nlp.ontology;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @since {10/18/2026}
+ */
+public class UriLookupCacheTest {
+
+   @Test
+   public void countsHitsAndMisses() {
+      final UriLookupCache<String> cache = new UriLookupCache<>( "Test", 1024 );
+      final AtomicInteger lookups = new AtomicInteger();
+      for ( int i = 0; i < 3; i++ ) {
+         assertEquals( "BREAST", cache.get( "Breast", uri -> {
+            lookups.incrementAndGet();
+            return uri.toUpperCase();
+         } ) );
+      }
+      assertEquals( 1, lookups.get() );
+      assertEquals( 2, cache.getHitCount() );
+      assertEquals( 1, cache.getMissCount() );
+      assertEquals( 0, cache.getEvictionCount() );
+      assertEquals( 1, cache.size() );
+   }
+
+   @Test
+   public void nullIsNotCached() {
+      final UriLookupCache<String> cache = new UriLookupCache<>( "Test", 1024 );
+      assertNull( cache.get( "Unknown", uri -> null ) );
+      assertEquals( "Known", cache.get( "Unknown", uri -> "Known" ) );
+      assertEquals( 2, cache.getMissCount() );
+   }
+
+   @Test
+   public void evictsLeastRecentlyUsedEntries() {
+      // 16 segments of one entry each.
+      final UriLookupCache<String> cache = new UriLookupCache<>( "Test", 16 );
+      for ( int i = 0; i < 1000; i++ ) {
+         cache.get( "Uri_" + i, uri -> uri );
+      }
+      assertTrue( cache.size() <= 16 );
+      assertEquals( 1000 - cache.size(), cache.getEvictionCount() );
+      // The most recent uri is still cached.
+      cache.get( "Uri_999", uri -> {
+         fail( "Uri_999 was evicted." );
+         return uri;
+      } );
+      assertEquals( 1, cache.getHitCount() );
+   }
+
+}
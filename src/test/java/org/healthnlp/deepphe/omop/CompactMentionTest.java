@@ -0,0 +1,42 @@
+package org.healthnlp.deepphe.omop;
+
+import org.healthnlp.deepphe.omop.writer.ConfidenceFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @since {10/18/2026}
+ */
+public class CompactMentionTest {
+
+   static private CompactMention create( final double confidence, final String... tuis ) {
+      return new CompactMention( "Finding", "Mass", "C0000000", tuis, 4, 8, CompactMention.NEGATED, confidence,
+                                 "mass", "mass", "a mass here" );
+   }
+
+   /**
+    * Every value from 0 to 10 in thousandths, where a float would round some of them the other way, e.g. 0.055 .
+    */
+   @Test
+   public void confidenceIsWrittenAsTheTableWriterWritesIt() {
+      for ( int thousandths = 0; thousandths <= 10_000; thousandths++ ) {
+         final double confidence = thousandths / 1000d;
+         assertEquals( String.valueOf( confidence ), ConfidenceFormat.format( confidence ),
+                       create( confidence ).toMention().confidence );
+      }
+   }
+
+   @Test
+   public void callerTuisAreNotChanged() {
+      final String t047 = new String( "T047" );
+      final String[] tuis = { t047, null };
+      final CompactMention mention = create( 0.5, tuis );
+      assertEquals( "T047", mention.tuis[ 0 ] );
+      assertEquals( "", mention.tuis[ 1 ] );
+      assertArrayEquals( new String[] { t047, null }, tuis );
+      assertEquals( true, tuis[ 0 ] == t047 );
+   }
+
+}
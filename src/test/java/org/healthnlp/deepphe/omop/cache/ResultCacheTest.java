@@ -0,0 +1,82 @@
+package org.healthnlp.deepphe.omop.cache;
+
+import com.google.gson.Gson;
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.Mention;
+import org.healthnlp.deepphe.omop.writer.ConfidenceFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Mentions read from the result cache must be the mentions that the pipeline returns with the cache off.
+ *
+ * @since {10/18/2026}
+ */
+public class ResultCacheTest {
+
+   static private final Gson GSON = new Gson();
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   /**
+    * Annotation confidence is a float.  With the cache off the table writer widens it to a double and formats that,
+    * so a cached mention must format to the same text from whatever was stored.
+    */
+   @Test
+   public void cachedMentionsMatchUncachedMentions() throws IOException {
+      final List<Float> confidences = new ArrayList<>();
+      for ( int thousandths = 0; thousandths <= 10_000; thousandths++ ) {
+         confidences.add( thousandths / 1000f );
+      }
+      final Random random = new Random( 20261018L );
+      for ( int i = 0; i < 10_000; i++ ) {
+         confidences.add( random.nextFloat() );
+         confidences.add( Float.intBitsToFloat( random.nextInt() ) );
+      }
+      confidences.add( -0f );
+      confidences.add( Float.NaN );
+      confidences.add( Float.POSITIVE_INFINITY );
+      confidences.add( Float.MAX_VALUE );
+      confidences.add( Float.MIN_VALUE );
+
+      final List<CompactMention> mentions = new ArrayList<>( confidences.size() );
+      for ( int i = 0; i < confidences.size(); i++ ) {
+         mentions.add( new CompactMention( i % 2 == 0 ? "Finding" : "Disease", "Uri_" + i % 7, "C000000" + i % 3,
+                                           new String[] { "T047", "T191" }, i, i + 5,
+                                           CompactMention.toFlags( i % 2 == 0, i % 3 == 0, i % 5 == 0, false, true ),
+                                           confidences.get( i ), "Pref " + i % 11, "term", "a | term | here" ) );
+      }
+      final ResultCache cache = new ResultCache( _folder.getRoot().toPath(), "test", 1L << 30 );
+      final String key = cache.getKey( "A note." );
+      cache.put( key, mentions );
+      final List<CompactMention> cached = cache.get( key );
+      assertNotNull( cached );
+      assertEquals( mentions.size(), cached.size() );
+      for ( int i = 0; i < mentions.size(); i++ ) {
+         // As OmopMentionTableWriter.MentionInfoHolder formats annotation.getConfidence() .
+         final double confidence = confidences.get( i );
+         final String uncached = ConfidenceFormat.format( confidence, ConfidenceFormat.toHundredths( confidence ) );
+         final Mention mention = cached.get( i ).toMention();
+         assertEquals( String.valueOf( confidences.get( i ) ), uncached, mention.confidence );
+         assertEquals( GSON.toJson( mentions.get( i ).toMention() ), GSON.toJson( mention ) );
+      }
+   }
+
+   @Test
+   public void missIsCounted() throws IOException {
+      final ResultCache cache = new ResultCache( _folder.getRoot().toPath(), "test", 1L << 30 );
+      assertNull( cache.get( cache.getKey( "Not stored." ) ) );
+      assertEquals( 1, cache.getMissCount() );
+      assertEquals( 0, cache.getHitCount() );
+   }
+
+}
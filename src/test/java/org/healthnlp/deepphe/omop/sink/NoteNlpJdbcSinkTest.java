@@ -0,0 +1,115 @@
+package org.healthnlp.deepphe.omop.sink;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.healthnlp.deepphe.omop.writer.OmopMentionTableWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes NOTE_NLP rows to an embedded in-memory HSQLDB.
+ *
+ * @since {10/18/2026}
+ */
+public class NoteNlpJdbcSinkTest {
+
+   private Connection _connection;
+
+   @Before
+   public void createTable() throws SQLException {
+      _connection = DriverManager.getConnection( "jdbc:hsqldb:mem:note_nlp_test", "SA", "" );
+      NoteNlpJdbcSink.createTable( _connection );
+   }
+
+   @After
+   public void dropDatabase() throws SQLException {
+      try ( Statement statement = _connection.createStatement() ) {
+         statement.execute( "DROP SCHEMA PUBLIC CASCADE" );
+      }
+      _connection.close();
+   }
+
+   static private CompactMention create( final int begin, final int flags, final double confidence ) {
+      return new CompactMention( "Finding", "Mass", "C0577559", new String[] { "T033", "T047" }, begin, begin + 4,
+                                 flags, confidence, "Mass", "mass", "a mass | here" );
+   }
+
+   @Test
+   public void writesOneRowPerMention() throws IOException, SQLException {
+      // A batch size of 2 sends one full batch and leaves one row for close.
+      try ( NoteNlpJdbcSink sink = new NoteNlpJdbcSink( _connection, Long::parseLong, 2 ) ) {
+         OmopMentionTableWriter.sendMentions( "101", Arrays.asList(
+               create( 2, 0, 0.055 ),
+               create( 10, CompactMention.NEGATED | CompactMention.HISTORIC, 1 ) ), sink );
+         OmopMentionTableWriter.sendMentions( "102", Collections.singletonList(
+               create( 20, CompactMention.GENERIC, 0.5 ) ), sink );
+      }
+      try ( Statement statement = _connection.createStatement();
+            ResultSet rows = statement.executeQuery(
+                  "SELECT note_nlp_id, note_id, \"OFFSET\", lexical_variant, snippet, nlp_system, term_exists,"
+                  + " term_temporal, term_modifiers FROM NOTE_NLP ORDER BY note_nlp_id" ) ) {
+         assertTrue( rows.next() );
+         assertEquals( 1, rows.getLong( 1 ) );
+         assertEquals( 101, rows.getLong( 2 ) );
+         assertEquals( "2", rows.getString( 3 ) );
+         assertEquals( "mass", rows.getString( 4 ) );
+         assertEquals( "a mass | here", rows.getString( 5 ) );
+         assertEquals( NoteNlpJdbcSink.NLP_SYSTEM, rows.getString( 6 ) );
+         assertEquals( "Y", rows.getString( 7 ) );
+         assertNull( rows.getString( 8 ) );
+         assertEquals( "semantic=Finding;uri=Mass;cui=C0577559;tui=T033,T047;end=6;negated=false;uncertain=false;"
+                       + "historic=false;generic=false;conditional=false;confidence=.06", rows.getString( 9 ) );
+         assertTrue( rows.next() );
+         assertEquals( 101, rows.getLong( 2 ) );
+         assertEquals( "N", rows.getString( 7 ) );
+         assertEquals( "past", rows.getString( 8 ) );
+         assertTrue( rows.getString( 9 ).endsWith( ";confidence=1.00" ) );
+         assertTrue( rows.next() );
+         assertEquals( 3, rows.getLong( 1 ) );
+         assertEquals( 102, rows.getLong( 2 ) );
+         assertEquals( "N", rows.getString( 7 ) );
+         assertFalse( rows.next() );
+      }
+   }
+
+   @Test
+   public void continuesNoteNlpIds() throws IOException, SQLException {
+      try ( NoteNlpJdbcSink sink = new NoteNlpJdbcSink( _connection ) ) {
+         OmopMentionTableWriter.sendMentions( "7", Collections.singletonList( create( 0, 0, 0.9 ) ), sink );
+      }
+      try ( NoteNlpJdbcSink sink = new NoteNlpJdbcSink( _connection ) ) {
+         OmopMentionTableWriter.sendMentions( "8", Collections.singletonList( create( 0, 0, 0.9 ) ), sink );
+      }
+      try ( Statement statement = _connection.createStatement();
+            ResultSet max = statement.executeQuery( "SELECT MAX(note_nlp_id), COUNT(*) FROM NOTE_NLP" ) ) {
+         assertTrue( max.next() );
+         assertEquals( 2, max.getLong( 1 ) );
+         assertEquals( 2, max.getLong( 2 ) );
+      }
+   }
+
+   @Test
+   public void requiresNumericNoteId() throws SQLException, IOException {
+      try ( NoteNlpJdbcSink sink = new NoteNlpJdbcSink( _connection ) ) {
+         assertTrue( sink.requiresDocumentId() );
+         try {
+            sink.startDocument( "report_1.txt" );
+            fail( "A non-numeric document id has no note_id." );
+         } catch ( IOException ioE ) {
+            assertTrue( ioE.getMessage().contains( "report_1.txt" ) );
+         }
+      }
+   }
+
+}
@@ -0,0 +1,44 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import org.apache.ctakes.ner.group.dphe.DpheGroup;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The cached Dphe Group of an annotation must be the group that the annotation's own lookup gives.
+ *
+ * @since {10/18/2026}
+ */
+public class OmopMentionTableWriterTest {
+
+   @Test
+   public void annotationsWithoutUrisAreNotCached() {
+      assertEquals( DpheGroup.SIZE,
+                    OmopMentionTableWriter.getDpheGroup( Collections.emptyList(), () -> DpheGroup.SIZE ) );
+      assertEquals( DpheGroup.DISEASE_GRADE_QUALIFIER,
+                    OmopMentionTableWriter.getDpheGroup( Collections.emptyList(),
+                                                         () -> DpheGroup.DISEASE_GRADE_QUALIFIER ) );
+   }
+
+   @Test
+   public void annotationsWithUrisAreCachedByUris() {
+      final AtomicInteger lookups = new AtomicInteger();
+      for ( int i = 0; i < 3; i++ ) {
+         assertEquals( DpheGroup.SIZE, OmopMentionTableWriter.getDpheGroup(
+               Arrays.asList( "Test_Size_Uri", "Test_Other_Uri" ), () -> {
+                  lookups.incrementAndGet();
+                  return DpheGroup.SIZE;
+               } ) );
+      }
+      assertEquals( 1, lookups.get() );
+      // One of the same uris is a different key.
+      assertEquals( DpheGroup.DISEASE_GRADE_QUALIFIER, OmopMentionTableWriter.getDpheGroup(
+            Collections.singletonList( "Test_Size_Uri" ), () -> DpheGroup.DISEASE_GRADE_QUALIFIER ) );
+   }
+
+}
@@ -0,0 +1,147 @@
+package org.healthnlp.deepphe.omop.writer;
+
+import org.healthnlp.deepphe.omop.CompactMention;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The packed layout is read by other languages, so it is checked byte for byte as well as by unpacking.
+ *
+ * @since {10/18/2026}
+ */
+public class PackedMentionsTest {
+
+   static private CompactMention create( final String uri, final int begin, final double confidence,
+                                         final String term, final String... tuis ) {
+      return new CompactMention( "Finding", uri, "C" + uri.length(), tuis, begin, begin + term.length(),
+                                 CompactMention.NEGATED | CompactMention.HISTORIC, confidence,
+                                 uri.toLowerCase(), term, "a " + term + " here" );
+   }
+
+   static private List<List<CompactMention>> createDocuments() {
+      return Arrays.asList(
+            Arrays.asList( create( "Mass", 2, 0.125, "mass", "T047", "T191" ),
+                           create( "Grade", 10, 0.055, "grade 2", "T047" ) ),
+            Collections.emptyList(),
+            Collections.singletonList( create( "Mass", 0, 1, "massé 𝟎", "T191", "T047" ) ) );
+   }
+
+   static private void assertSameMentions( final List<List<CompactMention>> expected,
+                                           final List<List<CompactMention>> actual ) {
+      assertEquals( expected.size(), actual.size() );
+      for ( int d = 0; d < expected.size(); d++ ) {
+         assertEquals( expected.get( d ).size(), actual.get( d ).size() );
+         for ( int m = 0; m < expected.get( d ).size(); m++ ) {
+            final CompactMention want = expected.get( d ).get( m );
+            final CompactMention got = actual.get( d ).get( m );
+            assertEquals( want.semantic, got.semantic );
+            assertEquals( want.uri, got.uri );
+            assertEquals( want.cui, got.cui );
+            assertArrayEquals( want.tuis, got.tuis );
+            assertEquals( want.begin, got.begin );
+            assertEquals( want.end, got.end );
+            assertEquals( want.flags, got.flags );
+            assertEquals( want.prefText, got.prefText );
+            assertEquals( want.term, got.term );
+            assertEquals( want.window, got.window );
+            // Packed confidence is what the table writer writes.
+            assertEquals( ConfidenceFormat.format( want.confidence ), ConfidenceFormat.format( got.confidence ) );
+         }
+      }
+   }
+
+   @Test
+   public void roundTrip() {
+      final List<List<CompactMention>> documents = createDocuments();
+      final ByteBuffer packed = PackedMentions.pack( documents );
+      assertFalse( packed.isDirect() );
+      assertEquals( 0, packed.position() );
+      assertSameMentions( documents, PackedMentions.unpack( packed ) );
+      assertEquals( 0, packed.position() );
+   }
+
+   @Test
+   public void layout() {
+      final List<List<CompactMention>> documents = createDocuments();
+      final ByteBuffer packed = PackedMentions.pack( documents ).order( ByteOrder.LITTLE_ENDIAN );
+      assertEquals( PackedMentions.MAGIC, packed.getInt( 0 ) );
+      assertEquals( 2, packed.getInt( 4 ) );
+      assertEquals( 3, packed.getInt( 8 ) );
+      assertEquals( 3, packed.getInt( 12 ) );
+      // Shared strings once each: Finding, Mass, C4, mass, T047, T191, Grade, C5, grade.
+      // Terms and windows once per mention: 6.
+      assertEquals( 15, packed.getInt( 16 ) );
+      assertEquals( 5, packed.getInt( 20 ) );
+      assertEquals( packed.limit(), packed.getInt( 28 ) );
+      final int documentsOffset = PackedMentions.HEADER_BYTES;
+      assertEquals( 0, packed.getInt( documentsOffset ) );
+      assertEquals( 2, packed.getInt( documentsOffset + 4 ) );
+      assertEquals( 2, packed.getInt( documentsOffset + 8 ) );
+      assertEquals( 3, packed.getInt( documentsOffset + 12 ) );
+      final int recordsOffset = documentsOffset + 4 * Integer.BYTES;
+      // Rounded half-even on the exact binary value, so 0.125 is 12 and 0.055 is 6.
+      final int[] confidences = { 12, 6, 100 };
+      for ( int m = 0; m < 3; m++ ) {
+         final int record = recordsOffset + m * PackedMentions.RECORD_BYTES;
+         // Semantic group is shared by every mention.
+         assertEquals( packed.getInt( recordsOffset ), packed.getInt( record ) );
+         assertEquals( confidences[ m ], packed.getInt( record + 40 ) );
+         assertEquals( CompactMention.NEGATED | CompactMention.HISTORIC, packed.getInt( record + 44 ) );
+      }
+      assertEquals( ConfidenceFormat.toHundredths( 0.055 ), confidences[ 1 ] );
+      // The first and third mentions share the uri and tuis, in a different order.
+      assertEquals( packed.getInt( recordsOffset + 4 ), packed.getInt( recordsOffset + 2 * 48 + 4 ) );
+      final int stringBytesOffset = packed.getInt( 24 );
+      assertEquals( 0, stringBytesOffset % 4 );
+   }
+
+   @Test
+   public void reuseTooSmallHeap() {
+      final ByteBuffer small = ByteBuffer.allocate( 16 );
+      final ByteBuffer packed = PackedMentions.pack( createDocuments(), small );
+      assertNotSame( small, packed );
+      assertFalse( packed.isDirect() );
+      assertSameMentions( createDocuments(), PackedMentions.unpack( packed ) );
+   }
+
+   @Test
+   public void reuseTooSmallDirect() {
+      final ByteBuffer small = ByteBuffer.allocateDirect( 16 );
+      final ByteBuffer packed = PackedMentions.pack( createDocuments(), small );
+      assertNotSame( small, packed );
+      assertTrue( packed.isDirect() );
+      assertSameMentions( createDocuments(), PackedMentions.unpack( packed ) );
+   }
+
+   @Test
+   public void reuseLargeEnough() {
+      for ( ByteBuffer large : new ByteBuffer[] { ByteBuffer.allocate( 4096 ), ByteBuffer.allocateDirect( 4096 ) } ) {
+         // Not at 0 and big endian, as a caller might leave it.
+         large.position( 100 ).order( ByteOrder.BIG_ENDIAN );
+         final ByteBuffer first = PackedMentions.pack( createDocuments(), large );
+         assertSame( large, first );
+         assertEquals( 0, first.position() );
+         assertSameMentions( createDocuments(), PackedMentions.unpack( first ) );
+         // A smaller result overwrites the previous one.
+         final List<List<CompactMention>> smaller
+               = Collections.singletonList( Collections.singletonList( create( "Size", 3, 0.5, "2 cm" ) ) );
+         final ByteBuffer second = PackedMentions.pack( smaller, first );
+         assertSame( large, second );
+         assertEquals( second.getInt( 28 ), second.limit() );
+         assertSameMentions( smaller, PackedMentions.unpack( second ) );
+      }
+   }
+
+   @Test( expected = IllegalArgumentException.class )
+   public void notPacked() {
+      PackedMentions.unpack( ByteBuffer.allocate( 64 ) );
+   }
+
+}